@@ -14,12 +14,12 @@ import edu.caltech.ipac.firefly.messaging.Subscriber;
 import edu.caltech.ipac.firefly.server.RequestOwner;
 import edu.caltech.ipac.firefly.server.ServerContext;
 import edu.caltech.ipac.firefly.server.cache.DistribMapCache;
+import edu.caltech.ipac.firefly.server.cache.DistributedCache;
 import edu.caltech.ipac.firefly.server.events.FluxAction;
 import edu.caltech.ipac.firefly.server.events.ServerEventManager;
 import edu.caltech.ipac.firefly.server.events.WebsocketConnector;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.util.AppProperties;
-import edu.caltech.ipac.util.cache.Cache;
 import edu.caltech.ipac.util.cache.CacheKey;
 import edu.caltech.ipac.util.cache.CacheManager;
 import edu.caltech.ipac.util.cache.StringKey;
@@ -34,6 +34,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -49,9 +50,7 @@ import static edu.caltech.ipac.firefly.core.background.JobInfo.*;
 import static edu.caltech.ipac.firefly.core.background.JobUtil.*;
 import static edu.caltech.ipac.firefly.data.ServerParams.EMAIL;
 import static edu.caltech.ipac.util.StringUtils.isEmpty;
-import static edu.caltech.ipac.firefly.core.background.Job.Type.PACKAGE;
 import static edu.caltech.ipac.firefly.core.background.JobInfo.Phase.*;
-import static java.util.Optional.ofNullable;
 
 
 /**
@@ -66,15 +65,18 @@ public class JobManager {
     public static final long CLEANUP_INTVL_MINS = AppProperties.getIntProperty("job.cleanup.interval", 60);     // run cleanup once every 60 minutes
     private static final int KEEP_ALIVE_INTERVAL = AppProperties.getIntProperty("job.keepalive.interval", 30);  // default keepalive interval in seconds
     private static final int WAIT_COMPLETE = AppProperties.getIntProperty("job.wait.complete", 1);              // wait for complete after submit in seconds
-    private static final int MAX_PACKAGERS = AppProperties.getIntProperty("job.max.packagers", 10);             // maximum number of simultaneous packaging threads
     private static final int JOB_RETENTION_PERIOD = AppProperties.getIntProperty("job.retention.period", 24*14);   // Time in hours to keep a job before deletion.  Default to 14 days.
 
     private static final Logger.LoggerImpl LOG = Logger.getLogger();
-    private static final ExecutorService packagers = Executors.newFixedThreadPool(MAX_PACKAGERS);
-    private static final ExecutorService searches = Executors.newCachedThreadPool();
+    private static final JobScheduler scheduler = new JobScheduler();                                           // see JobScheduler.Priority for the limits of each type of job
     private static final HashMap<String, JobEntry> runningJobs = new HashMap<>();
-    private static final Cache<JobInfo> allJobInfos = new DistribMapCache<>("ALL_JOB_INFOS", JOB_RETENTION_PERIOD*60*60*2L, new JobInfoSerializer()); // twice the retention period; default to 28 days
+    private static final int NEAR_CACHE_TTL = AppProperties.getIntProperty("job.nearCache.ttl", 10);           // seconds a JobInfo is read locally before going back to Redis
+    private static final DistributedCache<JobInfo> allJobInfos = new DistribMapCache<JobInfo>("ALL_JOB_INFOS", JOB_RETENTION_PERIOD*60*60*2L,   // twice the retention period; default to 28 days
+                                                            new DistribMapCache.DeflateSerializer(new JobInfoSerializer()))
+                                                            .withNearCache(1000, NEAR_CACHE_TTL)
+                                                            .withIndex(ji -> ji.getMeta().getUserKey());     // to list a user's jobs without reading all jobs
     private static final String COMPLETED_HANDLER = AppProperties.getProperty("job.completed.handler");
+    private static volatile boolean ownerIndexReady;        // true once jobs written before the owner index existed are in it
 
 
     static {
@@ -89,6 +91,7 @@ public class JobManager {
         }
 
         Messenger.subscribe(JobEvent.TOPIC, new JobEventHandler());
+        Thread.ofVirtual().name("job-owner-index").start(JobManager::indexJobsByOwner);
         Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(
                     JobManager::checkJobs, KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL, TimeUnit.SECONDS);   // check every 30 seconds
     }
@@ -122,7 +125,7 @@ public class JobManager {
         });
 
         try {
-            Future<String> future = job.getType() == PACKAGE ? packagers.submit(job) : searches.submit(job);
+            Future<String> future = scheduler.submit(JobScheduler.Priority.of(job.getType()), reqOwner.getUserKey(), job);
             runningJobs.put(jobId, new JobEntry(future, job));
 
             future.get(WAIT_COMPLETE, TimeUnit.SECONDS);        // wait in seconds for a job to complete
@@ -130,8 +133,9 @@ public class JobManager {
             // it's ok; job may take longer to complete
         } catch (Exception e) {
             // job run() handles exceptions; this only happens if submit or future.get() fails
+            int code = e instanceof RejectedExecutionException ? 503 : 500;
             sendUpdate(jobId, (ji) -> {
-                ji.setError(new JobInfo.Error(500, e.getMessage()));
+                ji.setError(new JobInfo.Error(code, e.getMessage()));
                 ji.getMeta().setProgress(100, null);
             });
             LOG.error(e);
@@ -301,6 +305,7 @@ public class JobManager {
 
             sb.append(String.format("%9s |%,12d %,12d %,12d\n", type, total, active, error));
         });
+        sb.append("\n").append(scheduler.getStatistics());
 
         if (details) {
             sb.append("\n");
@@ -331,14 +336,7 @@ public class JobManager {
     static List<JobInfo> getAllJobs() {
         List<? extends CacheKey> keys = allJobInfos.getKeys();
         if (keys == null || keys.isEmpty()) return Collections.emptyList();
-        ArrayList<JobInfo> rval = new ArrayList<JobInfo>(keys.size());
-        for (CacheKey key : keys) {
-            JobInfo jobInfo = ifNotNull(() -> allJobInfos.get(key)).get();  // ignore error
-            if (jobInfo != null) {
-                rval.add(jobInfo);
-            }
-        }
-        return rval;
+        return new ArrayList<>(allJobInfos.getAll(keys).values());     // one round trip instead of one per job
     }
 
     /**
@@ -347,14 +345,26 @@ public class JobManager {
      */
     static List<JobInfo> getAllUserJobs() {
         String userKey = ServerContext.getRequestOwner().getUserKey();
-        return ofNullable(getAllJobs())
-                .orElse(Collections.emptyList())
-                .stream()
+        Collection<JobInfo> jobs = ownerIndexReady ? allJobInfos.getAllOf(userKey).values() : getAllJobs();    // the index may be missing older jobs until it's ready
+        return jobs.stream()
                 .filter(info -> userKey.equals(info.getMeta().getUserKey()) && info.getMeta().isMonitored())  // only return monitored jobs belonging to the current user
                 .toList();
 
     }
 
+    /**
+     * Add jobs written before the owner index existed to it.  Until this is done, getAllUserJobs reads every job.
+     */
+    private static void indexJobsByOwner() {
+        try {
+            var keys = allJobInfos.getKeys();
+            if (!keys.isEmpty()) allJobInfos.addToIndex(allJobInfos.getAll(keys));
+            ownerIndexReady = true;
+        } catch (Exception e) {
+            LOG.error(e, "Unable to index jobs by owner; listing a user's jobs will read every job");
+        }
+    }
+
 //====================================================================
 //  internal methods
 //====================================================================
@@ -498,16 +508,22 @@ public class JobManager {
     }
 
     public static void cleanup() {
-        allJobInfos.getKeys().forEach( k -> {
-            JobInfo job = allJobInfos.get(k);
+        var jobs = allJobInfos.getAll(allJobInfos.getKeys());
+        jobs.entrySet().removeIf( e -> {
+            CacheKey k = e.getKey();
+            JobInfo job = e.getValue();
             if (!job.getMeta().isMonitored() && job.getEndTime().plus(1, ChronoUnit.HOURS).isBefore(Instant.now())) {
                 LOG.info("Removing non-monitored job: " + k);
                 allJobInfos.remove(k);      // remove non-monitored job after 1 hour
+                return true;
             } else if (!CLEANUP_PHASES_EXCLUDES.contains(job.getPhase()) && job.getEndTime().plus(JOB_RETENTION_PERIOD, ChronoUnit.HOURS).isBefore(Instant.now())) {
                 LOG.info("Removing expired job: " + k);
                 allJobInfos.remove(k);
+                return true;
             }
+            return false;
         });
+        allJobInfos.addToIndex(jobs);       // index jobs created before the index existed
     }
 
     /**
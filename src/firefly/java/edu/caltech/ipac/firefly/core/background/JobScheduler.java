@@ -0,0 +1,195 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.core.background;
+
+import edu.caltech.ipac.util.AppProperties;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Schedules the background jobs submitted to {@link JobManager}.
+ * <p>
+ * - Jobs are grouped into priority classes, each with its own limit of running jobs, so a backlog of packaging
+ *   never delays a search.
+ * - Within a class, an owner may only run so many jobs at once.  Owners with waiting jobs take turns,
+ *   so one owner submitting dozens of jobs does not starve the others.
+ * - Each class has a bounded queue.  Once full, new jobs are rejected instead of queued.
+ * - ASYNC jobs mostly wait on I/O, so each runs on its own virtual thread.  SEARCH and PACKAGING jobs spend long
+ *   stretches in native(DuckDB) calls and synchronized sections, which pin a virtual thread to its carrier.  They run
+ *   on platform threads instead, at most the class limit at a time, so they never starve the virtual threads.
+ *
+ * Date: 10/18/26
+ */
+public class JobScheduler {
+
+    /**
+     * Priority classes, from most to least interactive.  Limits can be changed with the given property names.
+     */
+    public enum Priority {
+        SEARCH("job.max.searches", 200, 10, false),
+        ASYNC("job.max.async", 50, 5, true),
+        PACKAGING("job.max.packagers", 10, 3, false);
+
+        final String prop;
+        final int defMax;
+        final int defPerOwner;
+        final boolean virtual;      // true to run on virtual threads; only for jobs that mostly wait on I/O
+
+        Priority(String prop, int defMax, int defPerOwner, boolean virtual) {
+            this.prop = prop;
+            this.defMax = defMax;
+            this.defPerOwner = defPerOwner;
+            this.virtual = virtual;
+        }
+
+        public static Priority of(Job.Type type) {
+            return switch (type) {
+                case SEARCH -> SEARCH;
+                case PACKAGE -> PACKAGING;
+                default -> ASYNC;           // UWS, TAP, SCRIPT
+            };
+        }
+    }
+
+    private static final int MAX_QUEUED = AppProperties.getIntProperty("job.queue.max", 1000);    // per priority class
+
+    private final Map<Priority, ClassQueue> queues = new EnumMap<>(Priority.class);
+
+    public JobScheduler() {
+        for (Priority p : Priority.values()) {
+            queues.put(p, new ClassQueue(p, AppProperties.getIntProperty(p.prop, p.defMax),
+                                         AppProperties.getIntProperty(p.prop + ".perOwner", p.defPerOwner),
+                                         MAX_QUEUED));
+        }
+    }
+
+    JobScheduler(int maxRunning, int maxPerOwner, int maxQueued) {
+        for (Priority p : Priority.values()) {
+            queues.put(p, new ClassQueue(p, maxRunning, maxPerOwner, maxQueued));
+        }
+    }
+
+    /**
+     * Queue the given task.  It runs once its class and its owner are below their limits, and it's the owner's turn.
+     * @param priority  the priority class of the task
+     * @param owner     the owner of the task, i.e. the user key
+     * @param task      the task
+     * @return the future of the task
+     * @throws RejectedExecutionException if the queue of this class is full
+     */
+    public synchronized Future<String> submit(Priority priority, String owner, Callable<String> task) throws RejectedExecutionException {
+        ClassQueue cq = queues.get(priority);
+        if (cq.queued >= cq.maxQueued) {
+            cq.rejected++;
+            throw new RejectedExecutionException("Too many %s jobs waiting; try again later".formatted(priority.name().toLowerCase()));
+        }
+        Task t = new Task(new FutureTask<>(task), String.valueOf(owner), System.currentTimeMillis());
+        cq.waiting.computeIfAbsent(t.owner, k -> new ArrayDeque<>()).add(t);
+        cq.queued++;
+        dispatch(cq);
+        return t.future;
+    }
+
+    /**
+     * @return a table of running, waiting, and wait times per priority class
+     */
+    public synchronized String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Priority   |  Running  Waiting  Started Rejected Avg wait(ms) Max wait(ms)\n");
+        sb.append("-----------|-------- -------- -------- -------- ------------ ------------\n");
+        queues.forEach((p, cq) -> sb.append(String.format("%-10s |%,8d %,8d %,8d %,8d %,12d %,12d\n",
+                p, cq.running, cq.queued, cq.started, cq.rejected,
+                cq.started == 0 ? 0 : cq.totalWait / cq.started, cq.maxWait)));
+        return sb.toString();
+    }
+
+    synchronized int getRunning(Priority priority) { return queues.get(priority).running; }
+    synchronized int getQueued(Priority priority) { return queues.get(priority).queued; }
+
+//====================================================================
+//  internal
+//====================================================================
+
+    /**
+     * Start waiting tasks while the class is below its limit.  Owners are visited in turn; an owner that started
+     * a task goes to the back of the line.
+     */
+    private void dispatch(ClassQueue cq) {
+        while (cq.running < cq.maxRunning) {
+            Task next = null;
+            for (Iterator<Map.Entry<String, ArrayDeque<Task>>> itr = cq.waiting.entrySet().iterator(); itr.hasNext(); ) {
+                Map.Entry<String, ArrayDeque<Task>> e = itr.next();
+                if (cq.runningByOwner.getOrDefault(e.getKey(), 0) < cq.maxPerOwner) {
+                    next = e.getValue().poll();
+                    itr.remove();
+                    if (!e.getValue().isEmpty()) cq.waiting.put(e.getKey(), e.getValue());     // back of the line
+                    break;
+                }
+            }
+            if (next == null) return;       // every owner with waiting tasks is at its limit
+            start(cq, next);
+        }
+    }
+
+    private void start(ClassQueue cq, Task t) {
+        long wait = System.currentTimeMillis() - t.queuedAt;
+        cq.queued--;
+        cq.running++;
+        cq.started++;
+        cq.totalWait += wait;
+        cq.maxWait = Math.max(cq.maxWait, wait);
+        cq.runningByOwner.merge(t.owner, 1, Integer::sum);
+        cq.executor.execute(() -> {
+            try {
+                t.future.run();
+            } finally {
+                done(cq, t);
+            }
+        });
+    }
+
+    private synchronized void done(ClassQueue cq, Task t) {
+        cq.running--;
+        cq.runningByOwner.computeIfPresent(t.owner, (k, v) -> v > 1 ? v - 1 : null);
+        dispatch(cq);
+    }
+
+    private record Task(FutureTask<String> future, String owner, long queuedAt) {}
+
+    private static class ClassQueue {
+        final int maxRunning;
+        final int maxPerOwner;
+        final int maxQueued;
+        final ExecutorService executor;
+        final LinkedHashMap<String, ArrayDeque<Task>> waiting = new LinkedHashMap<>();   // owners in turn order
+        final Map<String, Integer> runningByOwner = new HashMap<>();
+        int running;
+        int queued;
+        long started;
+        long rejected;
+        long totalWait;
+        long maxWait;
+
+        ClassQueue(Priority priority, int maxRunning, int maxPerOwner, int maxQueued) {
+            this.maxRunning = Math.max(1, maxRunning);
+            this.maxPerOwner = Math.max(1, maxPerOwner);
+            this.maxQueued = maxQueued;
+            String name = "job-%s-".formatted(priority.name().toLowerCase());
+            // dispatch never runs more than maxRunning tasks at once, which bounds the number of busy platform threads
+            executor = priority.virtual ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory())
+                                        : Executors.newCachedThreadPool(Thread.ofPlatform().name(name, 0).daemon().factory());
+        }
+    }
+}
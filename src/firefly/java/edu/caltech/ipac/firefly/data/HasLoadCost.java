@@ -0,0 +1,14 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.data;
+
+/**
+ * An object that is expensive to re-create once it is evicted from a cache
+ */
+public interface HasLoadCost {
+    /**
+     * @return the time it took to create this object, in milliseconds
+     */
+    long getLoadTime();
+}
@@ -0,0 +1,42 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.cache;
+
+import edu.caltech.ipac.firefly.data.HasLoadCost;
+import edu.caltech.ipac.firefly.data.HasSizeOf;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.store.AbstractPolicy;
+
+/**
+ * An eviction policy for caches holding large objects that are expensive to re-create, i.e. VIS_SHARED_MEM.
+ * <p>
+ * Of the elements sampled by ehcache, the one with the highest score is evicted, where
+ * score = idle time x size / (1 + load time).  So large entries that have not been used for a while go first,
+ * and the ones that took long to create, i.e. a FITS file that had to be decompressed, are kept longer.
+ * Size comes from {@link HasSizeOf} and load time from {@link HasLoadCost}; without them this is the same as LRU.
+ *
+ * Date: 10/18/26
+ */
+public class CostEvictionPolicy extends AbstractPolicy {
+    public static final String NAME = "COST";
+
+    public String getName() { return NAME; }
+
+    /**
+     * @return true if element2 should be evicted before element1
+     */
+    public boolean compare(Element element1, Element element2) {
+        long now = System.currentTimeMillis();
+        return getScore(element2, now) > getScore(element1, now);
+    }
+
+    static double getScore(Element e, long now) {
+        long lastUsed = Math.max(e.getLastAccessTime(), e.getCreationTime());
+        double idle = Math.max(1, now - lastUsed);
+        Object v = e.getObjectValue();
+        double size = v instanceof HasSizeOf s ? Math.max(1, s.getSizeOf()) : 1;
+        double loadTime = v instanceof HasLoadCost c ? Math.max(0, c.getLoadTime()) : 0;
+        return idle * size / (1 + loadTime);
+    }
+}
@@ -4,8 +4,13 @@
 package edu.caltech.ipac.firefly.server.cache;
 
 import redis.clients.jedis.Jedis;
-import java.util.ArrayList;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * Like {@link DistributedCache} but specifically designed for managing Redis Maps.
@@ -37,18 +42,38 @@ public class DistribMapCache<T> extends DistributedCache<T> {
 //  override for Redis Map implementation
 //====================================================================
 
+    String cacheName() {
+        return mapKey;
+    }
+
+    long getLifespan() {
+        return lifespanInSecs;
+    }
+
     String get(Jedis redis, String key) {
         return redis.hget(mapKey, key);
     }
 
-    void del(Jedis redis, String key) {
-        redis.hdel(mapKey, key);
+    List<String> mget(Jedis redis, List<String> keys) {
+        return redis.hmget(mapKey, keys.toArray(new String[0]));
+    }
+
+    void del(Jedis redis, String... keys) {
+        redis.hdel(mapKey, keys);
     }
 
     void set(Jedis redis, String key, String value) {
-        boolean exists = redis.exists(mapKey);
-        redis.hset(mapKey, key, value);
-        if (!exists && lifespanInSecs > 0) {
+        mset(redis, Map.of(key, value));
+    }
+
+    void mset(Jedis redis, Map<String, String> values) {
+        Response<Boolean> exists;
+        try (Pipeline p = redis.pipelined()) {        // check and set in one round trip
+            exists = p.exists(mapKey);
+            p.hset(mapKey, values);
+            p.sync();
+        }
+        if (!exists.get() && lifespanInSecs > 0) {
             redis.expire(mapKey, lifespanInSecs);      // set only when creating a new map; setting here instead of hset to accommodate older version of redis.
         }
     }
@@ -57,8 +82,9 @@ public class DistribMapCache<T> extends DistributedCache<T> {
         throw new IllegalArgumentException("Cannot set expiry on individual key.  Do it as  Map");
     }
 
-    List<String> keys(Jedis redis) {
-        return new ArrayList<>(redis.hkeys(mapKey));
+    ScanPage scan(Jedis redis, String cursor) {
+        ScanResult<Map.Entry<String, String>> r = redis.hscan(mapKey, cursor, new ScanParams().count(SCAN_COUNT));
+        return new ScanPage(r.getCursor(), r.getResult().stream().map(Map.Entry::getKey).toList());
     }
 
     boolean exists(Jedis redis, String key) {
@@ -5,15 +5,36 @@ package edu.caltech.ipac.firefly.server.cache;
 
 import edu.caltech.ipac.firefly.core.RedisService;
 import edu.caltech.ipac.firefly.core.Util;
+import edu.caltech.ipac.firefly.messaging.Message;
+import edu.caltech.ipac.firefly.messaging.Messenger;
+import edu.caltech.ipac.firefly.messaging.Subscriber;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.util.cache.Cache;
 import edu.caltech.ipac.util.cache.CacheKey;
 import edu.caltech.ipac.util.cache.StringKey;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
 
-import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * This class provides an implementation of a distributed cache using Redis.
@@ -29,6 +50,12 @@ import java.util.function.Predicate;
  * This approach ensures compatibility with Redis's string data type while
  * maintaining flexibility for handling diverse data types.
  * <p>
+ * {@link #getAll(Collection)} and {@link #putAll(Map)} read and write many keys in one round trip.
+ * A long-lived instance can also keep a near-cache of the values it has seen; see {@link #withNearCache(int, int)}.
+ * <p>
+ * Keys are listed with SCAN (HSCAN for maps), a page at a time; see {@link #keyIterator()}.  To list the entries of one
+ * owner without going through all the keys, define an index with {@link #withIndex(Function)}.
+ * <p>
  * Date: Nov 18, 2024
  * @author loi
  * @version $Id: EhcacheImpl.java,v 1.8 2009/12/16 21:43:25 loi Exp $
@@ -36,9 +63,17 @@ import java.util.function.Predicate;
 public class DistributedCache<T> implements Cache<T> {
     static final Logger.LoggerImpl LOG = Logger.getLogger();
     private static final String BASE64 = "BASE64::";
+    private static final String DEFLATE = "DEFLATE::";
+    private static final int BATCH_SIZE = 1000;                             // max keys sent in one command
+    static final int SCAN_COUNT = 500;                                      // keys returned per SCAN round trip
+    static final String INDEX_PREFIX = "DistributedCache.idx:";             // prefix of the keys of the index sets
+    static final String INVALIDATE_TOPIC = "DistributedCache.invalidate";
+    private static final String SOURCE_ID = UUID.randomUUID().toString();   // identifies this server; to ignore its own invalidations
     private transient Predicate<T> getValidator;
 
     private Serializer serializer;
+    private NearCache nearCache;
+    private Function<T, String> indexer;
 
     public DistributedCache() {
         this(new JavaSerializer());
@@ -52,6 +87,34 @@ public class DistributedCache<T> implements Cache<T> {
         return this;
     }
 
+    /**
+     * Keep a local copy of the values read or written through this cache, so repeated reads do not go to Redis.
+     * Writes made on other servers invalidate the local copy through {@link Messenger}.  Because pub/sub delivery is
+     * not guaranteed, a local copy is never used for longer than ttlSecs.
+     * <p>
+     * Only use this on long-lived instances; each one subscribes to the invalidation topic.
+     * @param maxSize   the maximum number of values to keep locally
+     * @param ttlSecs   the maximum time a local copy is used
+     * @return this cache
+     */
+    public DistributedCache<T> withNearCache(int maxSize, int ttlSecs) {
+        nearCache = new NearCache(cacheName(), maxSize, ttlSecs);
+        Messenger.subscribe(INVALIDATE_TOPIC, nearCache);
+        return this;
+    }
+
+    /**
+     * Keep a set of keys per owner, so {@link #getAllOf(String)} only reads the entries of that owner.
+     * The sets are updated on put and remove.  Entries written before the index was defined can be
+     * added with {@link #addToIndex(Map)}.
+     * @param indexer returns the owner of a value, or null if it should not be indexed
+     * @return this cache
+     */
+    public DistributedCache<T> withIndex(Function<T, String> indexer) {
+        this.indexer = indexer;
+        return this;
+    }
+
     public void put(CacheKey key, Object value) {
         put(key, value, 0);
     }
@@ -61,13 +124,18 @@ public class DistributedCache<T> implements Cache<T> {
             try(Jedis redis = RedisService.getConnection()) {
                 if (redis != null) {
                     if (value == null) {
+                        removeFromIndex(redis, keystr);
                         del(redis, keystr);
+                        changed(keystr, null);
                     } else {
+                        String v = serializer.serialize(value);
                         if (lifespanInSecs > 0) {
-                            setex(redis, keystr, serializer.serialize(value), lifespanInSecs);
+                            setex(redis, keystr, v, lifespanInSecs);
                         } else {
-                            set(redis, keystr, serializer.serialize(value));
+                            set(redis, keystr, v);
                         }
+                        addToIndex(redis, Map.of(keystr, (T) value));
+                        changed(keystr, v);
                     }
                 }
             } catch (Exception ex) { LOG.error(ex); }
@@ -75,15 +143,25 @@ public class DistributedCache<T> implements Cache<T> {
 
     public void remove(CacheKey key) {
         try(Jedis redis = RedisService.getConnection()) {
+            removeFromIndex(redis, key.getUniqueString());
             del(redis, key.getUniqueString());
+            changed(key.getUniqueString(), null);
         } catch (Exception ex) { LOG.error(ex); }
     }
 
     public T get(CacheKey key) {
-        try(Jedis redis = RedisService.getConnection()) {
-            T v = (T) serializer.deserialize( get(redis, key.getUniqueString()) );
+        String keystr = key.getUniqueString();
+        try {
+            String s = nearCache == null ? null : nearCache.get(keystr);
+            if (s == null) {
+                try(Jedis redis = RedisService.getConnection()) {
+                    s = get(redis, keystr);
+                }
+                if (nearCache != null && s != null) nearCache.put(keystr, s);
+            }
+            T v = (T) serializer.deserialize(s);
             if (v != null && getValidator != null && !getValidator.test(v)) {
-                del(redis, key.getUniqueString());
+                remove(key);
                 return null;
             } else {
                 return v;
@@ -95,7 +173,87 @@ public class DistributedCache<T> implements Cache<T> {
         return null;
     }
 
+    /**
+     * Returns the values of the given keys, fetched from Redis in batches of up to BATCH_SIZE keys per round trip.
+     * @param keys the keys to look up
+     * @return a map of key to value; keys not in the cache are left out
+     */
+    public Map<CacheKey, T> getAll(Collection<? extends CacheKey> keys) {
+        Map<CacheKey, T> rval = new LinkedHashMap<>();
+        if (keys == null || keys.isEmpty()) return rval;
+
+        Map<CacheKey, String> found = new LinkedHashMap<>();
+        List<CacheKey> toFetch = new ArrayList<>();
+        for (CacheKey k : keys) {
+            String s = nearCache == null ? null : nearCache.get(k.getUniqueString());
+            found.put(k, s);
+            if (s == null) toFetch.add(k);
+        }
+        if (!toFetch.isEmpty()) {
+            try(Jedis redis = RedisService.getConnection()) {
+                for (int i = 0; i < toFetch.size(); i += BATCH_SIZE) {
+                    List<CacheKey> batch = toFetch.subList(i, Math.min(i + BATCH_SIZE, toFetch.size()));
+                    List<String> values = mget(redis, batch.stream().map(CacheKey::getUniqueString).toList());
+                    for (int j = 0; j < batch.size(); j++) {
+                        String s = values.get(j);
+                        found.put(batch.get(j), s);
+                        if (nearCache != null && s != null) nearCache.put(batch.get(j).getUniqueString(), s);
+                    }
+                }
+            } catch (Exception ex) {
+                LOG.error(ex);
+                return rval;
+            }
+        }
+
+        List<CacheKey> invalid = new ArrayList<>();
+        found.forEach((k, s) -> {
+            if (s == null) return;
+            try {
+                T v = (T) serializer.deserialize(s);
+                if (v != null && getValidator != null && !getValidator.test(v)) {
+                    invalid.add(k);
+                } else if (v != null) {
+                    rval.put(k, v);
+                }
+            } catch (Exception ex) {
+                invalid.add(k);
+                LOG.warn("Encountered %s while retrieving key=%s; removing entry from cache.".formatted(ex.getClass().getName(), k) );
+            }
+        });
+        invalid.forEach(this::remove);
+        return rval;
+    }
+
+    /**
+     * Put all the given values into Redis in one round trip.  A null value removes its key.
+     * @param values a map of key to value
+     */
+    public void putAll(Map<? extends CacheKey, ? extends T> values) {
+        if (values == null || values.isEmpty()) return;
+        Map<String, String> toSet = new LinkedHashMap<>();
+        Map<String, T> toIndex = new LinkedHashMap<>();
+        List<String> toDel = new ArrayList<>();
+        values.forEach((k, v) -> {
+            if (v == null) {
+                toDel.add(k.getUniqueString());
+            } else {
+                toSet.put(k.getUniqueString(), serializer.serialize(v));
+                toIndex.put(k.getUniqueString(), v);
+            }
+        });
+        try(Jedis redis = RedisService.getConnection()) {
+            if (!toSet.isEmpty()) mset(redis, toSet);
+            addToIndex(redis, toIndex);
+            for (String k : toDel) removeFromIndex(redis, k);
+            if (!toDel.isEmpty()) del(redis, toDel.toArray(new String[0]));
+            toSet.forEach(this::changed);
+            toDel.forEach(k -> changed(k, null));
+        } catch (Exception ex) { LOG.error(ex); }
+    }
+
     public boolean isCached(CacheKey key) {
+        if (nearCache != null && nearCache.get(key.getUniqueString()) != null) return true;
         try(Jedis redis = RedisService.getConnection()) {
             return exists(redis, key.getUniqueString());
         } catch (Exception ex) { LOG.error(ex); }
@@ -103,10 +261,80 @@ public class DistributedCache<T> implements Cache<T> {
     }
 
     public List<StringKey> getKeys() {
+        Set<StringKey> keys = new LinkedHashSet<>();       // SCAN may return a key more than once
+        keyIterator().forEachRemaining(keys::add);
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Iterate over the keys of this cache using SCAN, SCAN_COUNT keys per round trip, so Redis is never blocked
+     * by a full listing.  A connection is only held while a page is fetched.  Keys added or removed during the
+     * iteration may or may not be returned, and a key may be returned more than once.
+     * @return an iterator of the keys in this cache
+     */
+    public Iterator<StringKey> keyIterator() {
+        return new Iterator<>() {
+            private String cursor = ScanParams.SCAN_POINTER_START;
+            private Iterator<String> page = null;
+
+            public boolean hasNext() {
+                while ((page == null || !page.hasNext()) && cursor != null) {
+                    try(Jedis redis = RedisService.getConnection()) {
+                        ScanPage p = scan(redis, cursor);
+                        page = p.keys().iterator();
+                        cursor = p.cursor().equals(ScanParams.SCAN_POINTER_START) ? null : p.cursor();
+                    } catch (Exception ex) {
+                        LOG.error(ex);
+                        cursor = null;
+                    }
+                }
+                return page != null && page.hasNext();
+            }
+
+            public StringKey next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return new StringKey(page.next());
+            }
+        };
+    }
+
+    /**
+     * Returns the entries of the given owner, as defined by {@link #withIndex(Function)}.
+     * Keys in the index that are no longer in the cache are removed from it.
+     * @param owner the owner of the entries
+     * @return a map of key to value
+     */
+    public Map<CacheKey, T> getAllOf(String owner) {
+        if (indexer == null) throw new IllegalStateException("No index defined for this cache");
+        Set<String> members;
+        try(Jedis redis = RedisService.getConnection()) {
+            members = redis.smembers(indexKey(owner));
+        } catch (Exception ex) {
+            LOG.error(ex);
+            return new LinkedHashMap<>();
+        }
+        Map<CacheKey, T> found = getAll(members.stream().map(StringKey::new).toList());
+        found.values().removeIf(v -> !owner.equals(indexer.apply(v)));
+        List<String> stale = members.stream().filter(k -> !found.containsKey(new StringKey(k))).toList();
+        if (!stale.isEmpty()) {
+            try(Jedis redis = RedisService.getConnection()) {
+                redis.srem(indexKey(owner), stale.toArray(new String[0]));
+            } catch (Exception ex) { LOG.error(ex); }
+        }
+        return found;
+    }
+
+    /**
+     * Add the given entries to the index, i.e. entries written before the index was defined.
+     * @param values a map of key to value
+     */
+    public void addToIndex(Map<? extends CacheKey, ? extends T> values) {
+        if (indexer == null || values == null || values.isEmpty()) return;
+        Map<String, T> toIndex = new LinkedHashMap<>();
+        values.forEach((k, v) -> toIndex.put(k.getUniqueString(), v));
         try(Jedis redis = RedisService.getConnection()) {
-            return keys(redis).stream().map(StringKey::new).toList();
+            addToIndex(redis, toIndex);
         } catch (Exception ex) { LOG.error(ex); }
-        return null;
     }
 
     public int getSize() {
@@ -116,30 +344,110 @@ public class DistributedCache<T> implements Cache<T> {
         return -1;
     }
 
+    /**
+     * Update the near-cache, if any, and let the other servers know the key has changed
+     * @param key   the key that changed
+     * @param value the new serialized value, or null if removed
+     */
+    private void changed(String key, String value) {
+        if (nearCache == null) return;
+        if (value == null) {
+            nearCache.remove(key);
+        } else {
+            nearCache.put(key, value);
+        }
+        Messenger.publish(INVALIDATE_TOPIC, new Message()
+                .setValue(SOURCE_ID, "source")
+                .setValue(nearCache.name, "cache")
+                .setValue(key, "key"));
+    }
+
+    private String indexKey(String owner) {
+        return INDEX_PREFIX + "%s:%s".formatted(cacheName(), owner);
+    }
+
+    private void addToIndex(Jedis redis, Map<String, ? extends T> values) {
+        if (indexer == null || values.isEmpty()) return;
+        try (Pipeline p = redis.pipelined()) {
+            values.forEach((k, v) -> {
+                String owner = indexer.apply(v);
+                if (owner != null) {
+                    p.sadd(indexKey(owner), k);
+                    if (getLifespan() > 0) p.expire(indexKey(owner), getLifespan());
+                }
+            });
+            p.sync();
+        }
+    }
+
+    private void removeFromIndex(Jedis redis, String key) {
+        if (indexer == null) return;
+        try {
+            T v = (T) serializer.deserialize(get(redis, key));
+            String owner = v == null ? null : indexer.apply(v);
+            if (owner != null) redis.srem(indexKey(owner), key);
+        } catch (Exception ex) {
+            LOG.trace("Unable to remove key=%s from index: %s".formatted(key, ex.getMessage()));      // stale keys are removed by getAllOf
+        }
+    }
+
 //====================================================================
 // Implementation of redis string;  override for map, list, and set.
 //====================================================================
 
+    record ScanPage(String cursor, List<String> keys) {}
+
+    /**
+     * @return the name used to identify this cache in invalidation messages
+     */
+    String cacheName() {
+        return "";
+    }
+
+    /**
+     * @return the lifespan of the whole cache in seconds, or 0 if entries do not expire together
+     */
+    long getLifespan() {
+        return 0;
+    }
+
     String  get(Jedis redis, String key) {
         return redis.get(key);
     }
 
-    void del(Jedis redis, String key) {
-        redis.del(key);
+    /**
+     * @return the values of the given keys, in the same order; null for keys not found
+     */
+    List<String> mget(Jedis redis, List<String> keys) {
+        return redis.mget(keys.toArray(new String[0]));
+    }
+
+    void del(Jedis redis, String... keys) {
+        redis.del(keys);
     }
 
     void set(Jedis redis, String key, String value) {
         redis.set(key, value);
     }
 
+    void mset(Jedis redis, Map<String, String> values) {
+        String[] keysValues = new String[values.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            keysValues[i++] = e.getKey();
+            keysValues[i++] = e.getValue();
+        }
+        redis.mset(keysValues);
+    }
+
     void setex(Jedis redis, String key, String value, long lifespanInSecs) {
         redis.setex(key, lifespanInSecs, value);
     }
 
-    @Nonnull
-    List<String> keys(Jedis redis) {
-        var keys = redis.keys("*");
-        return keys == null ? List.of() : keys.stream().toList();
+    ScanPage scan(Jedis redis, String cursor) {
+        ScanResult<String> r = redis.scan(cursor, new ScanParams().count(SCAN_COUNT));
+        List<String> keys = r.getResult().stream().filter(k -> !k.startsWith(INDEX_PREFIX)).toList();     // index sets are not entries
+        return new ScanPage(r.getCursor(), keys);
     }
 
     boolean exists(Jedis redis, String key) {
@@ -176,4 +484,110 @@ public class DistributedCache<T> implements Cache<T> {
         }
     }
 
+    /**
+     * Wraps another serializer, and compresses its output when it is larger than minSize.
+     * Values written by the wrapped serializer alone can still be read.
+     */
+    public static class DeflateSerializer implements Serializer {
+        private final Serializer serializer;
+        private final int minSize;
+
+        public DeflateSerializer(Serializer serializer) {
+            this(serializer, 1024);
+        }
+
+        public DeflateSerializer(Serializer serializer, int minSize) {
+            this.serializer = serializer;
+            this.minSize = minSize;
+        }
+
+        public String serialize(Object object) {
+            String s = serializer.serialize(object);
+            if (s == null || s.length() < minSize) return s;
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(s.getBytes(StandardCharsets.UTF_8));
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(s.length() / 2);
+                byte[] buf = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buf, 0, deflater.deflate(buf));
+                }
+                String z = DEFLATE + Base64.getEncoder().encodeToString(out.toByteArray());
+                return z.length() < s.length() ? z : s;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        public Object deserialize(String s) throws Exception {
+            if (s == null || !s.startsWith(DEFLATE)) return serializer.deserialize(s);
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(Base64.getDecoder().decode(s.substring(DEFLATE.length())));
+                ByteArrayOutputStream out = new ByteArrayOutputStream(s.length() * 3);
+                byte[] buf = new byte[8192];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buf);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("Truncated DEFLATE value");
+                    }
+                    out.write(buf, 0, n);
+                }
+                return serializer.deserialize(out.toString(StandardCharsets.UTF_8));
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * A small LRU map of serialized values, kept for at most ttl milliseconds.
+     * It removes the keys changed by other servers as their invalidations arrive.
+     */
+    static class NearCache implements Subscriber {
+        private final String name;
+        private final long ttl;
+        private final LinkedHashMap<String, Entry> entries;
+
+        record Entry(String value, long expires) {}
+
+        NearCache(String name, int maxSize, int ttlSecs) {
+            this.name = name;
+            this.ttl = ttlSecs * 1000L;
+            this.entries = new LinkedHashMap<>(16, .75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized String get(String key) {
+            Entry e = entries.get(key);
+            if (e == null) return null;
+            if (e.expires < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return e.value;
+        }
+
+        synchronized void put(String key, String value) {
+            entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+        }
+
+        synchronized void remove(String key) {
+            entries.remove(key);
+        }
+
+        public void onMessage(Message msg) {
+            if (SOURCE_ID.equals(msg.getValue(null, "source"))) return;
+            if (!name.equals(msg.getValue(null, "cache"))) return;
+            String key = msg.getValue(null, "key");
+            if (key != null) remove(key);
+        }
+    }
+
 }
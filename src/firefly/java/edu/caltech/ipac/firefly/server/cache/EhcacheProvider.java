@@ -83,6 +83,9 @@ public class EhcacheProvider implements Cache.Provider {
                 String sizeEngName= ObjectSizeEngineWrapper.class.getName();
                 System.setProperty("net.sf.ehcache.sizeofengine.localCache.VIS_SHARED_MEM", sizeEngName);
                 manager = net.sf.ehcache.CacheManager.newInstance(url);
+                if (AppProperties.getBooleanProperty("vis.shared.costEviction", true)) {
+                    manager.getCache(VIS_SHARED_MEM).setMemoryStoreEvictionPolicy(new CostEvictionPolicy());
+                }
             } catch (RuntimeException e) {
                 _log.error(e, "unable to create net.sf.ehcache.CacheManager");
                 throw new CacheException("unable to create net.sf.ehcache.CacheManager");
@@ -63,6 +63,12 @@ public abstract class BaseGator extends EmbeddedDbProcessor {
     private static final int MSG_IDX = 1;
 
 
+    /**
+     * Gator catalogs are public; identical searches return identical results for everyone.
+     */
+    @Override
+    protected boolean isSharable(TableServerRequest treq) { return true; }
+
     public DataGroup fetchDataGroup(TableServerRequest req) throws DataAccessException {
         try {
             return IpacTableReader.read(loadDataFile(req));
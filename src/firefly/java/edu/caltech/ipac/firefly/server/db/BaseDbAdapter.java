@@ -37,10 +37,12 @@ import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static edu.caltech.ipac.firefly.core.Util.Opt.ifNotNull;
 import static edu.caltech.ipac.firefly.data.TableServerRequest.INCL_COLUMNS;
@@ -79,10 +81,18 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
         EmbeddedDbInstance ins = getDbInstances().get(getDbFile().getPath());
         if (ins == null && create) {
+            boolean reopen = getDbFile().exists();
             ins = createDbInstance();
             getDbInstances().put(getDbFile().getPath(), ins);
             getRuntimeStats().totalDbs++;
             getRuntimeStats().peakMemDbs = Math.max(getDbInstances().size(), getRuntimeStats().peakMemDbs);
+            if (reopen) {
+                try {
+                    indexResultSets(ins.getResultSets());
+                } catch (Exception e) {
+                    LOGGER.warn("Unable to index result sets of %s: %s".formatted(getDbFile().getPath(), e.getMessage()));
+                }
+            }
         }
         if (ins != null && create) {        // only update access time when create is requested.
             try {
@@ -182,11 +192,21 @@ abstract public class BaseDbAdapter implements DbAdapter {
             String wherePart = wherePart(treq);
             String orderBy = orderByPart(treq);
 
-            // copy data
-            String datasetSql = "select %s FROM %s %s %s".formatted(selectPart, getDataTable(), wherePart, orderBy);
-            String datasetSqlWithIdx = "select b.*, (%s -1) as %s from (%s) as b".formatted(rowNumSql(), DataGroup.ROW_NUM, datasetSql);
-            String sql = createTableFromSelect(resultSetID, datasetSqlWithIdx);
-            execUpdate(sql);
+            // copy data; use a smaller result set when the new filters only narrow it down
+            ResultSetManager resultSets = getResultSets();
+            String baseTbl = resultSets == null ? null : resultSets.findBase(treq);
+            if (baseTbl != null) {
+                String baseOrderBy = isEmpty(orderBy) ? "ORDER BY " + DataGroup.ROW_IDX : orderBy;     // keep the original order when not sorted
+                try {
+                    copyData(resultSetID, selectPart, baseTbl, wherePart, baseOrderBy);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("createTempResults from %s failed; using %s instead: %s".formatted(baseTbl, getDataTable(), e.getMessage()));
+                    baseTbl = null;
+                }
+            }
+            if (baseTbl == null) {
+                copyData(resultSetID, selectPart, getDataTable(), wherePart, orderBy);
+            }
 
             // copy dd
             List<String> cnames = getColumnNamesFromSys(resultSetID, "'");
@@ -198,16 +218,22 @@ abstract public class BaseDbAdapter implements DbAdapter {
             String metaSql = "select * from DATA_META";
             metaSql = createTableFromSelect(resultSetID + "_META", metaSql);
             try {
-                getJdbc().update(metaSql);
+                getJdbcForUpdate().update(metaSql);
             } catch (Exception mx) {/*ignore table may not exist*/}
 
             // copy aux
             String auxSql = "select * from DATA_AUX";
             auxSql = createTableFromSelect(resultSetID + "_AUX", auxSql);
             try {
-                getJdbc().update(auxSql);
+                getJdbcForUpdate().update(auxSql);
             } catch (Exception ax) {/*ignore table may not exist*/}
 
+            if (resultSets != null) {
+                int rowCnt = getJdbc().queryForInt("select count(*) from " + resultSetID);
+                resultSets.add(resultSetID, treq, rowCnt, cnames.size());
+                dropResultSets(resultSets.evict(resultSetID));
+            }
+            DbMonitor.checkBudget();
         }catch (RuntimeException e) {
             LOGGER.error("createTempResults failed with error: " + e.getMessage(),
                     "resultSetID: " + resultSetID,
@@ -218,12 +244,76 @@ abstract public class BaseDbAdapter implements DbAdapter {
         }
     }
     
+    private void copyData(String resultSetID, String selectPart, String fromTable, String wherePart, String orderBy) {
+        String datasetSql = "select %s FROM %s %s %s".formatted(selectPart, fromTable, wherePart, orderBy);
+        String datasetSqlWithIdx = "select b.*, (%s -1) as %s from (%s) as b".formatted(rowNumSql(), DataGroup.ROW_NUM, datasetSql);
+        execUpdate(createTableFromSelect(resultSetID, datasetSqlWithIdx));
+    }
+
+    private void dropResultSets(Collection<String> resultSetIDs) {
+        if (resultSetIDs.isEmpty()) return;
+        LOGGER.debug("%s -> evicting result sets: %s".formatted(getName(), resultSetIDs));
+        String[] stmts = resultSetIDs.stream()
+                .flatMap(id -> Stream.of(id, id + "_DD", id + "_META", id + "_AUX"))
+                .map(t -> "drop table IF EXISTS " + t)
+                .toArray(String[]::new);
+        try {
+            getJdbcTmplForUpdate().batchUpdate(stmts);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to drop result sets: " + e.getMessage());
+        }
+    }
+
+    void clearCachedPages() {
+        ResultSetManager resultSets = getResultSets();
+        if (resultSets != null) resultSets.clearPages();
+    }
+
+    /**
+     * Called when an existing database is opened, to add the result sets already in it to the given manager.
+     * Otherwise, they would never be evicted.  Does nothing by default.
+     * @param resultSets  the ResultSetManager of this database
+     */
+    protected void indexResultSets(ResultSetManager resultSets) {}
+
+    /**
+     * @param tableName the table name
+     * @return true if the table is in this database.  If it's a result set, it's also marked as just used.
+     */
+    public boolean hasTable(String tableName) {
+        boolean found = DbAdapter.super.hasTable(tableName);
+        if (found) {
+            ResultSetManager resultSets = getResultSets();
+            if (resultSets != null) resultSets.touch(tableName);
+        }
+        return found;
+    }
+
+    /**
+     * @return the ResultSetManager of this database, or null if this database is not an embedded one
+     */
+    ResultSetManager getResultSets() {
+        return getDbInstance() instanceof EmbeddedDbInstance db ? db.getResultSets() : null;
+    }
+
     protected String buildSqlFrom(TableServerRequest treq, String forTable) {
         String selectPart = selectPart(treq);
         String wherePart = wherePart(treq);
         String orderByPart = orderByPart(treq);
         String pagingPart = pagingPart(treq);
 
+        if (ResultSetManager.KEYSET_PAGING && !isEmpty(pagingPart) && isEmpty(wherePart) && isEmpty(orderByPart)) {
+            // the ROW_NUM of DATA, and of a result set, runs from 0 to rowCount-1 in the order of the rows.
+            // fetch the page by ROW_NUM range instead of offset, so a page deep into the table costs the same as the first one.
+            ResultSetManager resultSets = getResultSets();
+            if (resultSets != null && (forTable.equals(getDataTable()) || resultSets.contains(forTable))) {
+                long start = treq.getStartIndex();
+                wherePart = "WHERE %s >= %d AND %s < %d".formatted(ROW_NUM, start, ROW_NUM, start + treq.getPageSize());
+                orderByPart = "ORDER BY " + ROW_NUM;
+                pagingPart = "";
+            }
+        }
+
         if (forTable.equals(getDataTable())) {
             // fix select * so that it selects the columns in its supposed order
             if (selectPart.toLowerCase().replaceAll("\\s", "").equals("select*")) {
@@ -242,13 +332,26 @@ abstract public class BaseDbAdapter implements DbAdapter {
      */
     public DataGroupPart execRequestQuery(TableServerRequest treq, String forTable) throws DataAccessException {
         String sql = buildSqlFrom(treq, forTable);
-        DataGroup data = execQuery(sql, forTable);
+        ResultSetManager resultSets = getResultSets();
+        if (resultSets != null) resultSets.touch(forTable);
+        // only pages are cached; not a whole table, nor a page too large to keep around
+        boolean cachePage = resultSets != null && !isEmpty(pagingPart(treq)) && treq.getPageSize() <= ResultSetManager.PAGE_CACHE_MAX_ROWS;
+        DataGroup data = cachePage ? resultSets.getPage(forTable, sql) : null;
+        if (data == null) {
+            data = execQuery(sql, forTable);
+            if (cachePage) resultSets.putPage(forTable, sql, data);
+        }
 
         int rowCnt = data.size();
         if (!isEmpty(pagingPart(treq))) {
             // fetch total row count for the query; datagroup may contain partial results(paging)
-            String cntSql = "select count(*) FROM %s %s".formatted(forTable, wherePart(treq));
-            rowCnt = getJdbc().queryForInt(cntSql);
+            Integer knownCnt = resultSets == null || !isEmpty(wherePart(treq)) ? null : resultSets.getRowCount(forTable);
+            if (knownCnt != null) {
+                rowCnt = knownCnt;
+            } else {
+                String cntSql = "select count(*) FROM %s %s".formatted(forTable, wherePart(treq));
+                rowCnt = getJdbc().queryForInt(cntSql);
+            }
         }
 
         DataGroupPart page = EmbeddedDbUtil.toDataGroupPart(data, treq);
@@ -260,6 +363,12 @@ abstract public class BaseDbAdapter implements DbAdapter {
         return page;
     }
 
+    public DataGroup execPageQuery(TableServerRequest treq, String forTable) throws DataAccessException {
+        ResultSetManager resultSets = getResultSets();
+        if (resultSets != null) resultSets.touch(forTable);
+        return execQuery(buildSqlFrom(treq, forTable), forTable);
+    }
+
     /**
      * Executes the give sql and returns the results as a DataGroup.  If refTable is provided, it will query the
      * ?_DD and ?_META tables of this refTable and add the information into the returned DataGroup.
@@ -311,6 +420,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
         DbInstance dbInstance = getDbInstance();
         sql = translateSql(sql);
         LOGGER.trace("execUpdate => SQL: " + sql);
+        clearCachedPages();
         try {
             return getJdbc().update(sql, params);
         } catch (Exception e) {
@@ -326,6 +436,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
         DbInstance dbInstance = getDbInstance();
         sql = translateSql(sql);
         LOGGER.trace("batchUpdate => SQL: " + sql);
+        clearCachedPages();
         try {
             getJdbc().batchUpdate(sql, params);
         } catch (Exception e) {
@@ -343,7 +454,8 @@ abstract public class BaseDbAdapter implements DbAdapter {
 //====================================================================
 
     public void addColumn(DataType col, int atIndex, String expression, String preset, String resultSetID, SelectionInfo si)  throws DataAccessException {
-        JdbcTemplate jdbc = getJdbcTmpl();
+        prepareDataForUpdate();
+        JdbcTemplate jdbc = getJdbcTmplForUpdate();
 
         try {
             // add column to main table
@@ -381,7 +493,8 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
         if (isEmpty(editColName)) return;
 
-        JdbcTemplate jdbc = getJdbcTmpl();
+        prepareDataForUpdate();
+        JdbcTemplate jdbc = getJdbcTmplForUpdate();
 
         String swapCname = null;     // set if swap is in play; use for rollback.
 
@@ -446,6 +559,8 @@ abstract public class BaseDbAdapter implements DbAdapter {
      */
     public void deleteColumn(String cname) {
 
+        prepareDataForUpdate();
+
         // drop column from DATA table
         execUpdate("ALTER TABLE %s DROP COLUMN \"%s\"".formatted(getDataTable(), cname));
 
@@ -471,7 +586,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
      * @param atIndex   the order index to add this column at.
      */
     protected void addColumnToDD(JdbcTemplate jdbc, DataType col, int atIndex) {
-        jdbc = jdbc == null ? getJdbcTmpl() : jdbc;
+        jdbc = jdbc == null ? getJdbcTmplForUpdate() : jdbc;
         int colCnt = getColumnNames(getDataTable(), null).stream()
                         .filter(cname -> !CollectionUtil.exists(cname, ROW_IDX, ROW_NUM))
                         .toList().size();
@@ -492,7 +607,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
      * @param shiftBy   the number of position to shift.  Normally, it's either +1 or -1.
      */
     private void shiftColsAt(JdbcTemplate jdbc, int atIndex, int shiftBy) {
-        jdbc = jdbc == null ? getJdbcTmpl() : jdbc;
+        jdbc = jdbc == null ? getJdbcTmplForUpdate() : jdbc;
         jdbc.update("UPDATE %s_DD SET order_index = order_index + (%d) WHERE order_index >= %d".formatted(getDataTable(), shiftBy, atIndex));
     }
 
@@ -574,11 +689,13 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
     public void clearCachedData() {
         LOGGER.debug("DbAdapter -> compacting DB: %s".formatted(getDbFile().getPath()));
+        ResultSetManager resultSets = getResultSets();
+        if (resultSets != null) resultSets.clear();
         List<String> tables = getTempTables();
         if (tables.size() > 0) {
             // remove all temporary tables
             String[] stmts = tables.stream().map(s -> "drop table IF EXISTS " + s).toArray(String[]::new);
-            getJdbcTmpl().batchUpdate(stmts);
+            getJdbcTmplForUpdate().batchUpdate(stmts);
 
         }
     }
@@ -608,6 +725,12 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
     protected void shutdown(EmbeddedDbInstance db) {}
     protected void removeDbFile() {}
+
+    /**
+     * Called before the DATA table is modified, i.e. adding or removing a column.
+     * Override this if DATA may not be modifiable as is.
+     */
+    protected void prepareDataForUpdate() {}
     protected String rowNumSql() { return "ROWNUM"; }
 
     protected List<String> getTempTables() {
@@ -662,10 +785,10 @@ abstract public class BaseDbAdapter implements DbAdapter {
         int totalRows = dg.size();
 
         String createDataSql = createDataSql(colsAry, tblName);
-        getJdbc().update(createDataSql);
+        getJdbcForUpdate().update(createDataSql);
 
         if (totalRows > 0) {
-            JdbcTemplate jdbc = getJdbcTmpl();
+            JdbcTemplate jdbc = getJdbcTmplForUpdate();
 
             String insertDataSql = insertDataSql(colsAry, tblName);
             if (useTxnDuringLoad()) {
@@ -858,6 +981,23 @@ abstract public class BaseDbAdapter implements DbAdapter {
         return JdbcFactory.getTemplate(getDbInstance());
     }
 
+    /**
+     * Same as {@link #getJdbc()}, but for statements that modify the database.  Cached pages are cleared first,
+     * the same as {@link #execUpdate(String, Object...)} does.
+     */
+    SimpleJdbcTemplate getJdbcForUpdate() {
+        clearCachedPages();
+        return getJdbc();
+    }
+
+    /**
+     * Same as {@link #getJdbcTmpl()}, but for statements that modify the database.  Cached pages are cleared first.
+     */
+    JdbcTemplate getJdbcTmplForUpdate() {
+        clearCachedPages();
+        return getJdbcTmpl();
+    }
+
 
 //====================================================================
 //  O-R mapping functions
@@ -866,7 +1006,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
     public void metaToDb(DataGroup dg, String forTable) {
         TableMeta meta = dg.getTableMeta();
         String createMetaSql = createMetaSql(forTable);
-        getJdbc().update(createMetaSql);
+        getJdbcForUpdate().update(createMetaSql);
 
         // for consistency, we will create the table even if no metadata exists; but no data
         if (meta.isEmpty()) return;
@@ -879,7 +1019,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
                 .filter(kw -> !kw.isKeyword())
                 .forEach(kw -> data.add(new Object[]{kw.getKey(), kw.getValue(), kw.isKeyword()}));
         String insertMetaSql = insertMetaSql(forTable);
-        getJdbc().batchUpdate(insertMetaSql, data);
+        getJdbcForUpdate().batchUpdate(insertMetaSql, data);
     }
 
     private static Object dbToMeta(DataGroup dg, ResultSet rs) {
@@ -903,12 +1043,12 @@ abstract public class BaseDbAdapter implements DbAdapter {
     void auxDataToDb(DataGroup dg, String tblName) {
 
         String createAuxDataSql = createAuxDataSql(tblName);
-        getJdbc().update(createAuxDataSql);
+        getJdbcForUpdate().update(createAuxDataSql);
 
         List<Object[]> data = new ArrayList<>();
         data.add( getAuxFrom(dg));
         String insertAuxSql = insertAuxDataSql(tblName);
-        getJdbc().batchUpdate(insertAuxSql, data);
+        getJdbcForUpdate().batchUpdate(insertAuxSql, data);
     }
 
 
@@ -963,7 +1103,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
         DataType[] colsAry = EmbeddedDbUtil.makeDbCols(dg);
         String createDDSql = createDDSql(tblName);
-        getJdbc().update(createDDSql);
+        getJdbcForUpdate().update(createDDSql);
 
         List<Object[]> data = new ArrayList<>();
         for (int i = 0; i < colsAry.length; i++) {
@@ -971,7 +1111,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
             data.add(acol);
         }
         String insertDDSql = insertDDSql(tblName);
-        getJdbc().batchUpdate(insertDDSql, data);
+        getJdbcForUpdate().batchUpdate(insertDDSql, data);
     }
 
 
@@ -129,6 +129,15 @@ public interface DbAdapter {
      */
     DataGroupPart execRequestQuery(TableServerRequest treq, String forTable) throws DataAccessException;
 
+    /**
+     * Same as execRequestQuery, except the results are not cached and the total row count is not fetched.
+     * Use this to read a large result one page at a time.
+     * @param treq      request parameters used for select, where, order by, and limit
+     * @param forTable  table to run the query on.
+     * @return the requested page of data
+     */
+    DataGroup execPageQuery(TableServerRequest treq, String forTable) throws DataAccessException;
+
     /**
      * Executes the give sql and returns the results as a DataGroup.  If refTable is provided, it will query the
      * ?_DD and ?_META tables of this refTable and add the information into the returned DataGroup.
@@ -296,6 +305,9 @@ public interface DbAdapter {
         boolean isCompact;
         DbStats dbStats;
         boolean isResourceDb;
+        long createCost;            // time it took to create this database, in ms
+        volatile int users;         // number of requests currently using this database; updated under lock
+        final ResultSetManager resultSets = new ResultSetManager();
 
         EmbeddedDbInstance(String type, DbAdapter dbAdapter, String dbUrl, String driver) {
             this(type, dbAdapter, dbUrl, driver, System.currentTimeMillis());
@@ -324,13 +336,46 @@ public interface DbAdapter {
         public long getCreated() { return created; }
 
         public boolean hasExpired() {
-            return System.currentTimeMillis() - lastAccessed > maxIdle();
+            return !isInUse() && System.currentTimeMillis() - lastAccessed > maxIdle();
         }
 
         public boolean mayCompact() {
-            return !isCompact && getDbStats().totalRows > 0 && System.currentTimeMillis() - lastAccessed > maxIdle() * DbMonitor.COMPACT_FACTOR;
+            return !isCompact && !isInUse() && getDbStats().totalRows > 0 && System.currentTimeMillis() - lastAccessed > maxIdle() * DbMonitor.COMPACT_FACTOR;
         }
 
+        /**
+         * @param now the current time
+         * @return true if this database was created or accessed within the last DbMonitor.MIN_IDLE ms
+         */
+        public boolean isRecent(long now) {
+            return now - Math.max(created, lastAccessed) < DbMonitor.MIN_IDLE;
+        }
+
+        /**
+         * Mark this database as in use for the duration of a request.  Must be paired with {@link #release()}.
+         */
+        public void acquire() {
+            lock.lock();
+            try {
+                users++;
+                touch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void release() {
+            lock.lock();
+            try {
+                users = Math.max(0, users - 1);
+                lastAccessed = System.currentTimeMillis();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean isInUse() { return users > 0; }
+
         public File getDbFile() {
             return dbAdapter.getDbFile();
         }
@@ -349,14 +394,25 @@ public interface DbAdapter {
         }
         public void setCompact(boolean compact) { isCompact = compact;}
         public boolean isCompact() { return isCompact; }
+        public ResultSetManager getResultSets() { return resultSets; }
 
         public DbStats getDbStats() { return dbStats == null ? new DbStats() : dbStats; }
 
         public void updateStats() {
-            if (dbStats == null || dbStats.created < lastAccessed) {
+            updateStats(false);
+        }
+
+        /**
+         * @param force  update even when the database has not been accessed since the last update
+         */
+        public void updateStats(boolean force) {
+            if (force || dbStats == null || dbStats.created < lastAccessed) {
                 this.dbStats = dbAdapter.getDbStats();
             }
         }
+
+        public long getCreateCost() { return createCost; }
+        public void setCreateCost(long createCost) { this.createCost = createCost; }
     }
 
     /**
@@ -374,6 +430,7 @@ public interface DbAdapter {
         public long memory;
         public long peakMemory;
         public long lastCleanup;
+        public long budgetEvictions;
     }
 
 
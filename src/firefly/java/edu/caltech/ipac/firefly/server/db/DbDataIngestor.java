@@ -83,7 +83,7 @@ public class DbDataIngestor {
 
     static FileInfo ingestVoTable(DbAdapter dbAdapter, String source, Consumer<DataGroup> extraMetaSetter, int tblIdx, boolean searchForSpectrum) throws IOException, DataAccessException {
         if (dbAdapter instanceof DuckDbAdapter) {
-            VoTableReader.parse(new TableParseHandler.DbIngest(dbAdapter, extraMetaSetter, searchForSpectrum), source, tblIdx);
+            VoTableReader.parse(TableParseHandler.dbIngest(dbAdapter, extraMetaSetter, searchForSpectrum), source, tblIdx);
             return new FileInfo(dbAdapter.getDbFile());
         } else {
             DataGroup table = VoTableReader.voToDataGroups(source, tblIdx)[0];
@@ -93,7 +93,7 @@ public class DbDataIngestor {
 
     static FileInfo ingestIpacTable(DbAdapter dbAdapter, File source, Consumer<DataGroup> extraMetaSetter, boolean searchForSpectrum) throws IOException, DataAccessException {
         if (dbAdapter instanceof DuckDbAdapter) {
-            IpacTableReader.parseTable(new TableParseHandler.DbIngest(dbAdapter, extraMetaSetter, searchForSpectrum), source);   // only the first table.
+            IpacTableReader.parseTable(TableParseHandler.dbIngest(dbAdapter, extraMetaSetter, searchForSpectrum), source);   // only the first table.
             return new FileInfo(dbAdapter.getDbFile());
         } else {
             DataGroup table = IpacTableReader.read(source);
@@ -102,6 +102,10 @@ public class DbDataIngestor {
     }
 
     static FileInfo ingestFitsTable(TableServerRequest req, DbAdapter dbAdapter, String source, int tableIndex) throws IOException, DataAccessException {
+        if (dbAdapter instanceof DuckDbAdapter &&
+                FITSTableReader.parseTable(TableParseHandler.dbIngest(dbAdapter, null, false), source, req, tableIndex)) {   // spectrum search is done by the reader
+            return new FileInfo(dbAdapter.getDbFile());
+        }
         var table = FITSTableReader.convertFitsToDataGroup(source, req, tableIndex);
         return ingestTable(dbAdapter, table, false);        //logic is already in the reader
     }
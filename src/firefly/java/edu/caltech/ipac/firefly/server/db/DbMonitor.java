@@ -8,14 +8,14 @@ import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.Ref;
 import edu.caltech.ipac.util.AppProperties;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static edu.caltech.ipac.firefly.core.Util.Try;
 
@@ -37,7 +37,12 @@ class DbMonitor {
         There are two stages of clean-up; compact(remove all temp tables), then shutdown(remove from memory)
         - Compact DB once it has idled longer than a time based on COMPACT_FACTOR
         - Shutdown DB once it has expired; idle longer than MAX_IDLE_TIME
-        - Shutdown DB based on LRU(Least Recently Used) once the total rows have exceeded MAX_MEMORY_ROWS
+        - When total memory(or rows) exceeds MAX_MEMORY(or MAX_MEMORY_ROWS), compact then shutdown DBs
+          in the order of their eviction score until it's back within budget.  See #evictScore.
+          The DB files are kept, so they can be reopened quickly when needed again.
+        - The budget is checked on every cleanup cycle, and also right after a DB grows; see #checkBudget
+        - DBs in use by a request, or created/accessed within the last MIN_IDLE ms, are never compacted nor shutdown
+          to meet the budget
 
         Default settings:
           - CLEANUP_INTVL:  1 minutes
@@ -50,6 +55,7 @@ class DbMonitor {
     public static final long MAX_IDLE_TIME_RSC = AppProperties.getLongProperty("dbRsc.maxIdle", MAX_IDLE_PROP) * 1000 * 60;  // same as dbTbl.maxIdle, but for Resource tables.
     public static final float COMPACT_FACTOR = AppProperties.getFloatProperty("dbTbl.compactFactor", 0.5f);             // when to compact the DB as a factor of MAX_IDLE.  defaults to 1/2 of MAX_IDLE_TIME
     public static final int  CLEANUP_INTVL  = 1000 * 60;        // check every 1 minutes
+    public static final long MIN_IDLE = 10 * 1000;              // do not evict DBs created or used in the last 10 seconds
 
     public static long MAX_MEM_ROWS   = AppProperties.getLongProperty("dbTbl.maxMemRows", maxMemRows());
     public static long MAX_MEMORY   = AppProperties.getLongProperty("dbTbl.maxMemory", maxMemory());
@@ -73,6 +79,8 @@ class DbMonitor {
     private static final DbAdapter.EmbeddedDbStats dbStats = new DbAdapter.EmbeddedDbStats();
     private static final Logger.LoggerImpl LOGGER = Logger.getLogger();
     private static final ExecutorService DB_STATS_THREADS = Executors.newFixedThreadPool(5);    // up to 5 threads for gathering DB stats
+    private static final ExecutorService BUDGET_CHECKER = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean budgetCheckPending = new AtomicBoolean(false);
 
     public static ConcurrentHashMap<String, DbAdapter.EmbeddedDbInstance> getDbInstances() {
         return dbInstances;
@@ -101,7 +109,7 @@ class DbMonitor {
         LOGGER.trace("DbAdapter -> updateDbStats");
         Ref<Future<?>> t = new Ref<>();
         for (DbAdapter.EmbeddedDbInstance db : dbInstances.values()) {
-            t.set(DB_STATS_THREADS.submit(db::updateStats));
+            t.set(DB_STATS_THREADS.submit(() -> db.updateStats()));
         }
         Try.it(() -> t.get().get(10, TimeUnit.SECONDS));      // run all in parallel, but wait for up to 5 seconds
     }
@@ -135,15 +143,11 @@ class DbMonitor {
                     .filter((db) -> db.mayCompact())
                     .forEach((db) -> db.dbAdapter.compact());
 
-            var sysStats = getRuntimeStats(true);
-            boolean useMemory = sysStats.memory > 0;
+            // remove search results based on eviction score when usage is greater than the high-water mark
+            enforceBudget(deleteFile);
+            // remove idled shared databases
+            if (SharedDbStore.ENABLED) SharedDbStore.cleanup();
 
-            // remove search results based on LRU(least recently used) when count is greater than the high-water mark
-            if (useMemory && sysStats.memory > MAX_MEMORY) {
-                doMemoryCleanup(deleteFile);
-            } else if (sysStats.memRows > MAX_MEM_ROWS) {
-                doRowCleanup(deleteFile);
-            }
             dbStats.lastCleanup = System.currentTimeMillis();
         } catch (Exception e) {
             LOGGER.error(e);
@@ -151,28 +155,91 @@ class DbMonitor {
 
     }
 
-    private static void doRowCleanup(boolean deleteFile) {
-        long cRows = 0;
-        List<DbAdapter.EmbeddedDbInstance> active = new ArrayList<>(dbInstances.values());
-        Collections.sort(active, (db1, db2) -> Long.compare(db2.getLastAccessed(), db1.getLastAccessed()));  // sorted descending..
-        for (DbAdapter.EmbeddedDbInstance db : active) {
-            cRows += db.getDbStats().totalRows;
-            if (cRows > MAX_MEM_ROWS) {
-                db.dbAdapter.close(deleteFile);
-            }
+    /**
+     * Check memory usage now instead of waiting for the next cleanup cycle.  Call this after a database has grown,
+     * i.e. new data ingested or a new result set created.  Calls made while a check is pending are coalesced into one.
+     */
+    public static void checkBudget() {
+        if (budgetCheckPending.compareAndSet(false, true)) {
+            BUDGET_CHECKER.submit(() -> {
+                budgetCheckPending.set(false);
+                try {
+                    enforceBudget(false);
+                } catch (Exception e) {
+                    LOGGER.error(e);
+                }
+            });
         }
     }
 
-    private static void doMemoryCleanup(boolean deleteFile) {
-        long memory = 0;
-        List<DbAdapter.EmbeddedDbInstance> active = new ArrayList<>(dbInstances.values());
-        Collections.sort(active, (db1, db2) -> Long.compare(db2.getLastAccessed(), db1.getLastAccessed()));  // sorted descending..
-        for (DbAdapter.EmbeddedDbInstance db : active) {
-            memory += db.getDbStats().memory;
-            if (memory > MAX_MEMORY) {
-                db.dbAdapter.close(deleteFile);
+    /**
+     * Bring memory usage back within budget.  Databases with the highest eviction score are compacted first.
+     * If that's not enough, they are shut down.  Databases in use are skipped.
+     * @param deleteFile  true to also delete the files of the databases shut down
+     */
+    static void enforceBudget(boolean deleteFile) {
+        var sysStats = getRuntimeStats(true);
+        boolean useMemory = sysStats.memory > 0;
+        if (!isOverBudget(sysStats, useMemory)) return;
+
+        long now = System.currentTimeMillis();
+        List<DbAdapter.EmbeddedDbInstance> byScore = dbInstances.values().stream()
+                .sorted(Comparator.comparingDouble((DbAdapter.EmbeddedDbInstance db) -> evictScore(db, useMemory, now)).reversed())
+                .toList();
+        LOGGER.info("DB usage is over budget; memory: %,d  rows: %,d".formatted(sysStats.memory, sysStats.memRows));
+
+        // 1st tier: remove temp tables
+        for (DbAdapter.EmbeddedDbInstance db : byScore) {
+            if (!isOverBudget(getRuntimeStats(), useMemory)) return;
+            if (!db.isCompact()) {
+                ifEvictable(db, now, () -> {
+                    db.dbAdapter.compact();
+                    db.updateStats(true);
+                });
             }
         }
+        // 2nd tier: shutdown; the file stays on disk, ready to be reopened on the next request
+        for (DbAdapter.EmbeddedDbInstance db : byScore) {
+            if (!isOverBudget(getRuntimeStats(), useMemory)) return;
+            if (ifEvictable(db, now, () -> db.dbAdapter.close(deleteFile))) {
+                dbStats.budgetEvictions++;
+            }
+        }
+    }
+
+    /**
+     * Run the given action while holding the database's lock, so that no request can start using it in the meantime.
+     * Databases in use, or created/accessed recently, are skipped.
+     * @return true if the action was run
+     */
+    private static boolean ifEvictable(DbAdapter.EmbeddedDbInstance db, long now, Runnable action) {
+        if (db.isRecent(now) || !db.getLock().tryLock()) return false;
+        try {
+            if (db.isInUse()) return false;
+            action.run();
+            return true;
+        } finally {
+            db.getLock().unlock();
+        }
+    }
+
+    private static boolean isOverBudget(DbAdapter.EmbeddedDbStats sysStats, boolean useMemory) {
+        return useMemory ? sysStats.memory > MAX_MEMORY : sysStats.memRows > MAX_MEM_ROWS;
+    }
+
+    /**
+     * A database that has idled longer, uses more memory, and is cheaper to re-create is a better candidate for eviction.
+     * The score grows with idle time from zero, so a database just used never outranks one that has been sitting idle.
+     * @param db        the database
+     * @param useMemory true to use memory as size, otherwise, number of rows
+     * @param now       the current time
+     * @return the eviction score of this database; higher gets evicted first
+     */
+    static double evictScore(DbAdapter.EmbeddedDbInstance db, boolean useMemory, long now) {
+        double idleMins = Math.max(0, now - db.getLastAccessed()) / 60_000.0;
+        double size = Math.max(0, useMemory ? db.getDbStats().memory : db.getDbStats().totalRows);
+        double createSecs = db.getCreateCost() / 1000.0;
+        return idleMins * size / (1 + createSecs);
     }
 }
 /*
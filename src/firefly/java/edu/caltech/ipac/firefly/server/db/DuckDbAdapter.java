@@ -12,6 +12,7 @@ import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.Ref;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
+import edu.caltech.ipac.table.PrimitiveList;
 import edu.caltech.ipac.util.AppProperties;
 import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
@@ -22,6 +23,7 @@ import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -47,6 +49,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
     public static final String DRIVER = "org.duckdb.DuckDBDriver";
     public static final String EXT_DIR = AppProperties.getProperty("duckdb.ext.dir", System.getProperty("java.io.tmpdir"));
     public static String maxMemory = AppProperties.getProperty("duckdb.max.memory");        // in GB; 2G, 5.5G, etc
+    private static final int HEALPIX_CHUNK_SIZE = 1_000_000;     // rows indexed at a time
     private static int threadCnt=1;    // min 125mb per thread.  recommend 5gb per thread; we will config 1gb per thread but not more than 4.
 
     static {
@@ -70,6 +73,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
     };
 
     private static final List<String> SUPPORTS = List.of("duckdb");
+    static final String SHARED_ALIAS = "SHARED_SRC";
 
     public DuckDbAdapter(DbFileCreator dbFileCreator) { this(dbFileCreator.create(NAME)); }
     public DuckDbAdapter(File dbFile) { super(dbFile); }
@@ -80,19 +84,114 @@ public class DuckDbAdapter extends BaseDbAdapter {
     protected EmbeddedDbInstance createDbInstance() {
         String filePath = getDbFile() == null ? "" : getDbFile().getAbsolutePath();
         String dbUrl = "jdbc:duckdb:" + filePath;
-        var db = new EmbeddedDbInstance(getName(), this, dbUrl, DRIVER) {
-            public boolean testConn(Connection conn) {
-                // test connection plus additional session-scoped properties
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("SET errors_as_json = true");
-                    return true;
-                } catch (SQLException e) { return false; }
-            }
-        };
+        var db = new DuckDbInstance(this, dbUrl);
         db.consumeProps("memory_limit=%s,threads=%d,extension_directory=%s".formatted(maxMemory, threadCnt, EXT_DIR));
         return db;
     }
 
+    /**
+     * A DuckDB database instance.  When linked to a shared database, it is resolved once when the instance
+     * is created, and then attached to every new connection.
+     */
+    static class DuckDbInstance extends EmbeddedDbInstance {
+        private File sharedDb;              // the shared database this database is linked to; null if none
+        private boolean staleLink;          // linked to a shared database that no longer exists
+
+        DuckDbInstance(DuckDbAdapter dbAdapter, String dbUrl) {
+            super(dbAdapter.getName(), dbAdapter, dbUrl, DRIVER);
+            if (dbAdapter.getDbFile() == null) return;
+            File ref = dbAdapter.getSharedDbRef();
+            if (!ref.exists()) return;
+
+            File f = new File(Try.it(() -> Files.readString(ref.toPath()).trim()).getOrElse(""));
+            if (f.exists()) {
+                setSharedDb(f);
+            } else {
+                staleLink = true;
+            }
+        }
+
+        public boolean testConn(Connection conn) {
+            // test connection plus additional session-scoped properties
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET errors_as_json = true");
+                attachSharedDb(stmt);
+                return true;
+            } catch (SQLException e) { return false; }
+        }
+
+        synchronized File getSharedDb() { return sharedDb; }
+
+        synchronized void setSharedDb(File f) {
+            if (sharedDb != null) SharedDbStore.unlinked(sharedDb);
+            sharedDb = f;
+            if (f != null) SharedDbStore.linked(f);     // so it's not removed while this database is open
+        }
+
+        private synchronized void attachSharedDb(Statement stmt) throws SQLException {
+            DuckDbAdapter dbAdapter = (DuckDbAdapter) this.dbAdapter;
+            if (staleLink) {
+                // shared database was removed while this database was closed; drop the view so DATA will be re-created on the next request.
+                stmt.execute("DROP VIEW IF EXISTS " + dbAdapter.getDataTable());
+                dbAdapter.getSharedDbRef().delete();
+                staleLink = false;
+            } else if (sharedDb != null) {
+                stmt.execute("ATTACH IF NOT EXISTS '%s' AS %s (READ_ONLY)".formatted(sharedDb.getAbsolutePath(), SHARED_ALIAS));
+            }
+        }
+    }
+
+//====================================================================
+//  Shared data support; see SharedDbStore
+//====================================================================
+
+    /**
+     * Use the DATA of the given shared database instead of ingesting a copy of it.  The shared database
+     * is attached read-only, and DATA becomes a view of its DATA.  The small DD, META, and AUX tables are
+     * copied, so they can be modified per session.  DATA is copied into this database only when
+     * it needs to be modified.  See {@link #prepareDataForUpdate()}
+     * @param sharedDb  the shared database
+     */
+    public void linkSharedData(File sharedDb) throws DataAccessException {
+        try {
+            Files.writeString(getSharedDbRef().toPath(), sharedDb.getAbsolutePath());      // to resolve the link when this database is reopened
+            ((DuckDbInstance) getDbInstance()).setSharedDb(sharedDb);                      // new connections will attach the shared database
+            execUpdate("CREATE VIEW %s AS SELECT * FROM %s.%s".formatted(getDataTable(), SHARED_ALIAS, getDataTable()));
+            execUpdate("CREATE TABLE %s_DD AS SELECT * FROM %s.%s_DD".formatted(getDataTable(), SHARED_ALIAS, getDataTable()));
+            for (String t : List.of("_META", "_AUX")) {
+                try {
+                    getJdbcForUpdate().update("CREATE TABLE %s%s AS SELECT * FROM %s.%s%s".formatted(getDataTable(), t, SHARED_ALIAS, getDataTable(), t));
+                } catch (Exception ignored) {/*ignore table may not exist*/}
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new DataAccessException("Failed to link shared data: " + sharedDb.getPath(), e);
+        }
+    }
+
+    /**
+     * When DATA is a view of a shared database, copy it into this database so that it can be modified.
+     */
+    protected void prepareDataForUpdate() {
+        if (getDbFile() == null || !getSharedDbRef().exists()) return;
+        File ref = getSharedDbRef();
+
+        String tmpTbl = getDataTable() + "_COPY";
+        execUpdate("CREATE OR REPLACE TABLE %s AS SELECT * FROM %s".formatted(tmpTbl, getDataTable()));
+        execUpdate("DROP VIEW %s".formatted(getDataTable()));
+        execUpdate("ALTER TABLE %s RENAME TO %s".formatted(tmpTbl, getDataTable()));
+        if (!ref.delete()) {
+            LOGGER.trace("Unable to remove shared database reference:" + ref.getAbsolutePath());
+        }
+        if (getDbInstance() instanceof DuckDbInstance db) db.setSharedDb(null);
+    }
+
+    /**
+     * @return the file holding the path of the shared database this database is linked to
+     */
+    File getSharedDbRef() {
+        return new File(getDbFile().getPath() + ".shared");
+    }
+
     void createUDFs() {
         SimpleJdbcTemplate jdbc = getJdbc();
         for (String cf : customFunctions) {
@@ -106,7 +205,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
 
     @Override
     List<String> getColumnNamesFromSys(String forTable, String enclosedBy) {
-        String sql = "select column_name from duckdb_columns() where table_name = '%s'".formatted(forTable.toUpperCase());
+        String sql = "select column_name from duckdb_columns() where database_name = current_database() and table_name = '%s'".formatted(forTable.toUpperCase());
         return JdbcFactory.getSimpleTemplate(getDbInstance()).query(sql, (rs, i) -> (enclosedBy == null) ? rs.getString(1) : enclosedBy + rs.getString(1) + enclosedBy);
     }
 
@@ -129,8 +228,11 @@ public class DuckDbAdapter extends BaseDbAdapter {
         ((EmbeddedDbInstance) getDbInstance()).setCompact(true);
     }
 
-    protected void shutdown(EmbeddedDbInstance db) {}
+    protected void shutdown(EmbeddedDbInstance db) {
+        if (db instanceof DuckDbInstance ddb) ddb.setSharedDb(null);        // release the shared database; the link is kept in the .shared file
+    }
     protected void removeDbFile() {
+        getSharedDbRef().delete();
         var dbFile = getDbFile();
         if (dbFile.exists()) {
             if (!dbFile.delete()) {
@@ -145,10 +247,25 @@ public class DuckDbAdapter extends BaseDbAdapter {
     }
 
     public List<String> getTableNames() {
-        String sql = "SELECT table_name FROM duckdb_tables()";
+        // include views; DATA is a view when linked to a shared database
+        String sql = "SELECT table_name FROM duckdb_tables() WHERE database_name = current_database() " +
+                     "UNION ALL SELECT view_name FROM duckdb_views() WHERE database_name = current_database() AND NOT internal";
         return JdbcFactory.getSimpleTemplate(getDbInstance()).query(sql, (rs, i) -> rs.getString(1));
     }
 
+    protected void indexResultSets(ResultSetManager resultSets) {
+        // result sets are named DATA_[md5 of its params]; see EmbeddedDbProcessor#getResultSetID
+        SimpleJdbcTemplate jdbc = getJdbc();
+        String sql = "SELECT table_name, column_count FROM duckdb_tables() WHERE database_name = current_database() " +
+                     "AND REGEXP_MATCHES(table_name, '^%s_[0-9A-F]{32}$')".formatted(getDataTable());
+        jdbc.query(sql, (rs, i) -> new Object[]{rs.getString(1), rs.getInt(2)})
+            .forEach(t -> {
+                String id = (String) t[0];
+                resultSets.addExisting(id, jdbc.queryForInt("SELECT count(*) FROM " + id), (Integer) t[1]);
+            });
+        LOGGER.debug("%s -> %d result sets found in %s".formatted(getName(), resultSets.size(), getDbFile().getPath()));
+    }
+
     public DbAdapter.DbStats getDbStats() {
         DbStats dbStats = new DbStats();
         try {
@@ -156,16 +273,23 @@ public class DuckDbAdapter extends BaseDbAdapter {
             if (db == null)  return dbStats;
 
             SimpleJdbcTemplate jdbc = JdbcFactory.getSimpleTemplate(db);
-            jdbc.queryForObject("SELECT count(*), sum(estimated_size) from duckdb_tables() where not REGEXP_MATCHES(table_name,'.*_DD$|.*_META$|.*_AUX$')", (rs, i) -> {
+            jdbc.queryForObject("SELECT count(*), sum(estimated_size) from duckdb_tables() where database_name = current_database() and not REGEXP_MATCHES(table_name,'.*_DD$|.*_META$|.*_AUX$')", (rs, i) -> {
                 dbStats.tblCnt = rs.getInt(1);
                 dbStats.totalRows = rs.getInt(2);
                 return null;
             });
-            jdbc.queryForObject("SELECT column_count, estimated_size from duckdb_tables() where table_name = 'DATA'", (rs, i) -> {
+            // when linked to a shared database, DATA is a view; its stats come from the attached database
+            boolean isShared = db instanceof DuckDbInstance ddb && ddb.getSharedDb() != null;
+            String dataDb = isShared ? "'%s'".formatted(SHARED_ALIAS) : "current_database()";
+            jdbc.queryForObject("SELECT column_count, estimated_size from duckdb_tables() where database_name = %s and table_name = '%s'".formatted(dataDb, getDataTable()), (rs, i) -> {
                 dbStats.colCnt = rs.getInt(1);
                 dbStats.rowCnt = rs.getInt(2);
                 return null;
             });
+            if (isShared) {
+                dbStats.tblCnt++;
+                dbStats.totalRows += dbStats.rowCnt;
+            }
             dbStats.memory = jdbc.queryForLong("select sum(memory_usage_bytes) from duckdb_memory()");
 
         } catch (Exception ignored) {}
@@ -180,6 +304,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
 
         String createDataSql = createDataSql(colsAry, tblName);
 
+        clearCachedPages();
         try (DuckDBConnection conn = (DuckDBConnection) JdbcFactory.getDataSource(getDbInstance()).getConnection();
              Statement  stmt = conn.createStatement() ) {
 
@@ -189,11 +314,18 @@ public class DuckDbAdapter extends BaseDbAdapter {
             if (totalRows > 0) {
                 // using try-with-resources to automatically close the appender at the end of the scope
                 try (var appender = conn.createAppender(DuckDBConnection.DEFAULT_SCHEMA, tblName)) {
-                    List<Integer> aryIdx = colIdxWithArrayData(colsAry);
+                    // read from the columns directly; avoid creating a boxed row for every record
+                    PrimitiveList[] colData = dg.getColumnData();
+                    boolean[] isAry = new boolean[colData.length];
+                    colIdxWithArrayData(colsAry).forEach(idx -> isAry[idx] = true);
                     for (int r = 0; r < totalRows; r++) {
-                        Object[] row = dg.get(r).getData();
-                        aryIdx.forEach(idx -> row[idx] = Util.serialize(row[idx]));      // serialize array data if necessary
-                        addRow(appender, row, r);
+                        appender.beginRow();
+                        for (int c = 0; c < colData.length; c++) {
+                            appendValue(appender, colData[c], r, isAry[c]);
+                        }
+                        appender.append(r);         // add ROW_IDX
+                        appender.append(r);         // add ROW_NUM
+                        appender.endRow();
                     }
                     appender.flush();
                 }
@@ -206,33 +338,120 @@ public class DuckDbAdapter extends BaseDbAdapter {
         return totalRows;
     }
 
+    /**
+     * Add a HEALPix index column to the given table.  The indices are computed in Java a chunk of rows at a time,
+     * see {@link DuckDbUDF#deg2pix(int, double[], double[], boolean[], int, long[])}, and loaded back with an appender.
+     * This is much faster than evaluating the deg2pix SQL function row by row.
+     * @param table     the table to index
+     * @param ra        ra column, in degrees
+     * @param dec       dec column, in degrees
+     * @param idxCol    name of the index column to add; replaced if it exists
+     * @param order     HEALPix order of the index
+     */
+    public void addHealpixIndex(String table, String ra, String dec, String idxCol, int order) throws DataAccessException {
+        if (table.equals(getDataTable())) prepareDataForUpdate();
+        String pixTbl = table + "_HPX";
+        int chunk = HEALPIX_CHUNK_SIZE;
+        double[] raAry = new double[chunk];
+        double[] decAry = new double[chunk];
+        boolean[] isNull = new boolean[chunk];
+        int[] rowIdx = new int[chunk];
+        long[] pixels = new long[chunk];
+
+        try (DuckDBConnection conn = (DuckDBConnection) JdbcFactory.getDataSource(getDbInstance()).getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.execute("ALTER TABLE %s DROP COLUMN IF EXISTS %s".formatted(table, idxCol));
+            stmt.execute("ALTER TABLE %s ADD COLUMN %s LONG".formatted(table, idxCol));
+            stmt.execute("CREATE OR REPLACE TABLE %s (%s INTEGER, pixel BIGINT)".formatted(pixTbl, DataGroup.ROW_IDX));
+            long maxIdx = 0;
+            try (var rs = stmt.executeQuery("SELECT max(%s) FROM %s".formatted(DataGroup.ROW_IDX, table))) {
+                if (rs.next()) maxIdx = rs.getLong(1);
+            }
+
+            try (var appender = conn.createAppender(DuckDBConnection.DEFAULT_SCHEMA, pixTbl)) {
+                // read by ranges of ROW_IDX, so only one chunk is ever held in memory
+                for (long start = 0; start <= maxIdx; start += chunk) {
+                    int len = 0;
+                    String sql = "SELECT %s, %s, %s FROM %s WHERE %s >= %d AND %s < %d".formatted(
+                                    DataGroup.ROW_IDX, ra, dec, table, DataGroup.ROW_IDX, start, DataGroup.ROW_IDX, start + chunk);
+                    try (Statement read = conn.createStatement(); var rs = read.executeQuery(sql)) {
+                        while (len < chunk && rs.next()) {
+                            rowIdx[len] = rs.getInt(1);
+                            raAry[len] = rs.getDouble(2);
+                            boolean raNull = rs.wasNull();
+                            decAry[len] = rs.getDouble(3);
+                            isNull[len] = raNull || rs.wasNull() || Double.isNaN(raAry[len]) || Double.isNaN(decAry[len]);
+                            len++;
+                        }
+                    }
+                    DuckDbUDF.deg2pix(order, raAry, decAry, isNull, len, pixels);
+                    for (int i = 0; i < len; i++) {
+                        if (isNull[i]) continue;
+                        appender.beginRow();
+                        appender.append(rowIdx[i]);
+                        appender.append(pixels[i]);
+                        appender.endRow();
+                    }
+                }
+                appender.flush();
+            }
+            stmt.execute("UPDATE %1$s SET %2$s = h.pixel FROM %3$s h WHERE %1$s.%4$s = h.%4$s".formatted(table, idxCol, pixTbl, DataGroup.ROW_IDX));
+            stmt.execute("DROP TABLE %s".formatted(pixTbl));
+        } catch (SQLException e) {
+            LOGGER.error(e, "Failed to add HEALPix index to table: " + table);
+            throw new DataAccessException(e);
+        }
+    }
+
     public static void addRow(DuckDBAppender appender, Object[] row, int ridx) throws SQLException {
         appender.beginRow();
         for (Object d : row) {
-            switch (d) {
-                case null -> appender.append(null);
-                case Boolean v -> appender.append(v);
-                case Byte v -> appender.append(v);
-                case Short v -> appender.append(v);
-                case Integer v -> appender.append(v);
-                case Long v -> appender.append(v);
-                case Float v -> appender.append(v);
-                case Double v -> appender.append(v);
-                case String v -> appender.append(v);
-                case Character v -> appender.append(String.valueOf(v));
-                case BigDecimal v -> appender.append(v.doubleValue());
-                case java.sql.Date v -> appender.appendLocalDateTime(v.toLocalDate().atStartOfDay());
-                case LocalDate v -> appender.appendLocalDateTime(v.atStartOfDay());
-                case LocalDateTime v -> appender.appendLocalDateTime(v.atZone(ZoneOffset.UTC).toLocalDateTime());
-                case Date v -> appender.appendLocalDateTime(LocalDateTime.ofInstant(v.toInstant(), ZoneOffset.UTC));    // date/time should be stored as utc.
-                default -> throw new IllegalStateException("Unexpected value: " + d);
-            }
+            appendValue(appender, d);
         }
         appender.append(ridx);         // add ROW_IDX
         appender.append(ridx);         // add ROW_NUM
         appender.endRow();
     }
 
+    static void appendValue(DuckDBAppender appender, PrimitiveList col, int r, boolean isAry) throws SQLException {
+        if (col.isNull(r)) {
+            appendValue(appender, null);
+            return;
+        }
+        switch (col) {
+            case PrimitiveList.Doubles v -> appender.append(v.getDouble(r));
+            case PrimitiveList.Floats v -> appender.append(v.getFloat(r));
+            case PrimitiveList.Longs v -> appender.append(v.getLong(r));
+            case PrimitiveList.Integers v -> appender.append(v.getInt(r));
+            case PrimitiveList.Shorts v -> appender.append(v.getShort(r));
+            case PrimitiveList.Bytes v -> appender.append(v.getByte(r));
+            case PrimitiveList.Booleans v -> appender.append(v.getBoolean(r));
+            default -> appendValue(appender, isAry ? Util.serialize(col.get(r)) : col.get(r));      // serialize array data if necessary
+        }
+    }
+
+    static void appendValue(DuckDBAppender appender, Object d) throws SQLException {
+        switch (d) {
+            case null -> appender.append(null);
+            case Boolean v -> appender.append(v);
+            case Byte v -> appender.append(v);
+            case Short v -> appender.append(v);
+            case Integer v -> appender.append(v);
+            case Long v -> appender.append(v);
+            case Float v -> appender.append(v);
+            case Double v -> appender.append(v);
+            case String v -> appender.append(v);
+            case Character v -> appender.append(String.valueOf(v));
+            case BigDecimal v -> appender.append(v.doubleValue());
+            case java.sql.Date v -> appender.appendLocalDateTime(v.toLocalDate().atStartOfDay());
+            case LocalDate v -> appender.appendLocalDateTime(v.atStartOfDay());
+            case LocalDateTime v -> appender.appendLocalDateTime(v.atZone(ZoneOffset.UTC).toLocalDateTime());
+            case Date v -> appender.appendLocalDateTime(LocalDateTime.ofInstant(v.toInstant(), ZoneOffset.UTC));    // date/time should be stored as utc.
+            default -> throw new IllegalStateException("Unexpected value: " + d);
+        }
+    }
+
     @Override
     // DuckDB do not have a global property to make all LIKE operations case-insensitive
     String wherePart(TableServerRequest treq) {
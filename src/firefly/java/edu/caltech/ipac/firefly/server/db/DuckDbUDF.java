@@ -29,6 +29,90 @@ public class DuckDbUDF {
         END
     """;
 
+    private static final long[] UTAB = new long[256];      // bits of i spread to the even bits
+    static {
+        for (int i = 0; i < 256; i++) {
+            long v = 0;
+            for (int b = 0; b < 8; b++) v |= (long) ((i >> b) & 1) << (2 * b);
+            UTAB[i] = v;
+        }
+    }
+
+    /**
+     * Java implementation of the deg2pix SQL function; NESTED scheme.
+     * Converted from HealpixBase.loc2pix of the HEALPix java library, the same as healpix-java.sql.
+     * @param order     HEALPix order
+     * @param ra        ra in degrees
+     * @param dec       dec in degrees
+     * @return the pixel index
+     */
+    public static long deg2pix(int order, double ra, double dec) {
+        double theta = Math.toRadians(90 - dec);
+        double phi = Math.toRadians(ra);
+        double twoPi = 2 * Math.PI;
+        if (phi >= twoPi) phi -= twoPi;
+        else if (phi < 0) phi += twoPi;
+
+        double z = Math.cos(theta);
+        double za = Math.abs(z);
+        double tt = fmodulo(phi * (2 / Math.PI), 4.0);
+        long nside = 1L << order;
+
+        if (za <= 2.0 / 3) {       // equatorial region
+            double temp1 = nside * (0.5 + tt);
+            double temp2 = nside * (z * 0.75);
+            long jp = (long) (temp1 - temp2);   // ascending edge line
+            long jm = (long) (temp1 + temp2);   // descending edge line
+            long ifp = jp >>> order;            // in {0,4}
+            long ifm = jm >>> order;
+            long face = (ifp == ifm) ? (ifp | 4) : ((ifp < ifm) ? ifp : (ifm + 8));
+            long ix = jm & (nside - 1);
+            long iy = nside - (jp & (nside - 1)) - 1;
+            return xyf2nest(ix, iy, face, order);
+        } else {                    // polar region
+            int ntt = Math.min(3, (int) tt);
+            double tp = tt - ntt;
+            double tmp = za <= 0.99 ? nside * Math.sqrt(3 * (1 - za))
+                                   : nside * Math.sin(theta) / Math.sqrt((1 + za) / 3);
+            long jp = Math.min((long) (tp * tmp), nside - 1);
+            long jm = Math.min((long) ((1.0 - tp) * tmp), nside - 1);
+            return z >= 0 ? xyf2nest(nside - jm - 1, nside - jp - 1, ntt, order)
+                          : xyf2nest(jp, jm, ntt + 8, order);
+        }
+    }
+
+    /**
+     * Compute the pixel index of a whole vector of positions at once.
+     * @param order     HEALPix order
+     * @param ra        ra in degrees
+     * @param dec       dec in degrees
+     * @param isNull    true when ra or dec is null; no index is computed for it
+     * @param len       number of positions to compute
+     * @param pixels    the results
+     */
+    public static void deg2pix(int order, double[] ra, double[] dec, boolean[] isNull, int len, long[] pixels) {
+        for (int i = 0; i < len; i++) {
+            if (!isNull[i]) pixels[i] = deg2pix(order, ra[i], dec[i]);
+        }
+    }
+
+    private static double fmodulo(double v1, double v2) {
+        if (v1 >= 0) return (v1 < v2) ? v1 : v1 % v2;
+        double tmp = v1 % v2 + v2;
+        return (tmp == v2) ? 0.0 : tmp;
+    }
+
+    private static long spreadBits(long v) {
+        return UTAB[(int) (v & 0xff)]
+                | (UTAB[(int) ((v >>> 8) & 0xff)] << 16)
+                | (UTAB[(int) ((v >>> 16) & 0xff)] << 32)
+                | (UTAB[(int) ((v >>> 24) & 0xff)] << 48);
+    }
+
+    private static long xyf2nest(long ix, long iy, long face, int order) {
+        return (face << (2 * order)) + spreadBits(ix) + (spreadBits(iy) << 1);
+    }
+
     private static String importDeg2Pix() {
         try {
             String deg2pixFile = "/edu/caltech/ipac/firefly/resources/healpix-java.sql";
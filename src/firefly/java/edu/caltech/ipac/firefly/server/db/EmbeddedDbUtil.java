@@ -136,20 +136,49 @@ public class EmbeddedDbUtil {
         } catch (Exception ignored) {
             return dg;                // no row found
         }
-        List<Boolean> isAryType = isColumnTypeArray(dg.getDataDefinitions());
+        // fill the columns directly; no row objects, and numeric values are not boxed
+        DataType[] cols = dg.getDataDefinitions();
+        PrimitiveList[] colData = dg.getColumnData();
+        List<Boolean> isAryType = isColumnTypeArray(cols);
+        int rows = dg.size();
         do {
-            DataObject row = new DataObject(dg);
-            for (int i = 0; i < dg.getDataDefinitions().length; i++) {
-                DataType dt = dg.getDataDefinitions()[i];
-                Object val = convertToType(dt.getDataType(), rs, i, isAryType.get(i));  // ResultSet index starts from 1
-                row.setDataElement(dt, val);
+            for (int i = 0; i < cols.length; i++) {
+                readInto(colData[i], cols[i].getDataType(), rs, i, isAryType.get(i));
             }
-            dg.add(row);
+            rows++;
         } while (rs.next()) ;
+        dg.setSize(rows);
         logger.trace("converting a %,d rows ResultSet into a DataGroup".formatted(dg.size()));
         return dg;
     }
 
+    private static void readInto(PrimitiveList col, Class clz, ResultSet rs, int idx, boolean isAry) throws SQLException {
+        int cIdx = idx+1;      // ResultSet index starts from 1
+        if (isAry) {
+            col.add(convertToType(clz, rs, idx, true));
+            return;
+        }
+        switch (col) {
+            case PrimitiveList.Doubles l when clz == Double.class -> {
+                double v = rs.getDouble(cIdx);
+                if (rs.wasNull()) l.addNull(); else l.addDouble(v);
+            }
+            case PrimitiveList.Floats l when clz == Float.class -> {
+                float v = rs.getFloat(cIdx);
+                if (rs.wasNull()) l.addNull(); else l.addFloat(v);
+            }
+            case PrimitiveList.Longs l when clz == Long.class -> {
+                long v = rs.getLong(cIdx);
+                if (rs.wasNull()) l.addNull(); else l.addLong(v);
+            }
+            case PrimitiveList.Integers l when clz == Integer.class -> {
+                int v = rs.getInt(cIdx);
+                if (rs.wasNull()) l.addNull(); else l.addInt(v);
+            }
+            default -> col.add(convertToType(clz, rs, idx, false));
+        }
+    }
+
     private static Object convertToType(Class clz, ResultSet rs, int idx, boolean isAry) throws SQLException {
         int cIdx = idx+1;      // ResultSet index starts from 1
         Object val = rs.getObject(cIdx);
@@ -0,0 +1,271 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.db;
+
+import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.table.DataGroup;
+import edu.caltech.ipac.util.AppProperties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static edu.caltech.ipac.firefly.data.TableServerRequest.parseSqlFilter;
+import static edu.caltech.ipac.table.DataGroup.ROW_NUM;
+import static edu.caltech.ipac.util.StringUtils.isEmpty;
+
+/**
+ * Keeps track of the result set tables(DATA_[hash_id]) created for a database.
+ * <p>
+ * - the row count of each result set is stored, so paging does not need to re-count it.
+ * - result sets are evicted in LRU order once there are more than MAX_RESULT_SETS of them, or
+ *   once their total size(rows x cols) exceeds MAX_CELLS.
+ * - when a new request only narrows the filters of an existing result set, the new result set can
+ *   be derived from that smaller table instead of from DATA.
+ * - when an existing database is reopened, its result sets are indexed again; see BaseDbAdapter#indexResultSets.
+ *   The requests that created them are not known, so they are only used for paging and eviction.
+ * - when KEYSET_PAGING is on, pages of a result set, or of DATA, are fetched by ROW_NUM range instead of LIMIT/OFFSET.
+ * - the last PAGE_CACHE_SIZE pages fetched from the result sets are kept, so scrolling back and forth
+ *   does not hit the database.  Only pages of up to PAGE_CACHE_MAX_ROWS rows are kept.
+ *   Any update to the database clears the cached pages.
+ * <p>
+ * One instance is kept per EmbeddedDbInstance, so it goes away when the database is closed.
+ *
+ * Date: 10/18/26
+ */
+public class ResultSetManager {
+    public static final int MAX_RESULT_SETS = AppProperties.getIntProperty("dbTbl.resultSet.maxCount", 10);
+    public static final long MAX_CELLS = AppProperties.getLongProperty("dbTbl.resultSet.maxCells", 200_000_000L);
+    public static final boolean KEYSET_PAGING = AppProperties.getBooleanProperty("dbTbl.keysetPaging", true);
+    public static final int PAGE_CACHE_SIZE = AppProperties.getIntProperty("dbTbl.pageCache.size", 20);
+    public static final int PAGE_CACHE_MAX_ROWS = AppProperties.getIntProperty("dbTbl.pageCache.maxRows", 1000);      // larger pages are not cached
+    private static final long MIN_IDLE = 10 * 1000;     // do not evict result sets used in the last 10 seconds; they may still be paged
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, .75f, true);     // access-ordered
+    private final LinkedHashMap<PageKey, DataGroup> pages = new LinkedHashMap<>(16, .75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<PageKey, DataGroup> eldest) {
+            return size() > PAGE_CACHE_SIZE;
+        }
+    };
+
+    record PageKey(String resultSetID, String sql) {}
+
+    static class Entry {
+        final String id;
+        final List<String> filters;
+        final String sqlFilter;
+        final String inclCols;
+        final int rowCnt;
+        final int colCnt;
+        long lastAccessed = System.currentTimeMillis();
+        int pins;                   // number of readers that need this result set to stay, i.e. exports in progress
+
+        Entry(String id, TableServerRequest treq, int rowCnt, int colCnt) {
+            this.id = id;
+            this.filters = treq == null ? null : treq.getFilters() == null ? List.of() : new ArrayList<>(treq.getFilters());
+            this.sqlFilter = treq == null ? null : treq.getSqlFilter();
+            this.inclCols = treq == null ? null : treq.getInclColumns();
+            this.rowCnt = rowCnt;
+            this.colCnt = colCnt;
+        }
+
+        long size() { return (long) rowCnt * colCnt; }
+
+        /**
+         * @return true if every row matching treq is also in this result set, and this result set has all the columns
+         */
+        boolean isRefinedBy(TableServerRequest treq) {
+            if (filters == null) return false;          // found on disk; the request that created it is not known
+            if (!isEmpty(inclCols)) return false;       // may not have all the columns needed by the new filters
+
+            List<String> nFilters = treq.getFilters() == null ? List.of() : treq.getFilters();
+            String nSqlFilter = treq.getSqlFilter();
+            // ROW_NUM is different in a result set
+            if (hasRowNum(nFilters) || hasRowNum(filters) || hasRowNum(List.of(nz(nSqlFilter), nz(sqlFilter)))) return false;
+            if (treq.getSortInfo() != null && hasRowNum(treq.getSortInfo().getSortColumns())) return false;
+            if (!nFilters.stream().map(Entry::normalize).collect(Collectors.toSet())
+                    .containsAll(filters.stream().map(Entry::normalize).toList())) return false;
+
+            if (isEmpty(sqlFilter)) {
+                // an OR-ed sql filter would widen the results
+                return isEmpty(nSqlFilter) || parseSqlFilter(nSqlFilter)[0].trim().equalsIgnoreCase("AND");
+            }
+            return normalize(sqlFilter).equals(normalize(nz(nSqlFilter)));
+        }
+
+        /**
+         * @return the given filter in lower case and with its whitespaces collapsed, except within string literals
+         */
+        static String normalize(String filter) {
+            StringBuilder sb = new StringBuilder();
+            boolean inLiteral = false;
+            for (char c : filter.trim().toCharArray()) {
+                if (c == '\'') inLiteral = !inLiteral;
+                if (inLiteral) {
+                    sb.append(c);
+                } else if (Character.isWhitespace(c)) {
+                    if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+                } else {
+                    sb.append(Character.toLowerCase(c));
+                }
+            }
+            return sb.toString();
+        }
+
+        private static boolean hasRowNum(List<String> exps) {
+            return exps.stream().anyMatch(s -> s.toUpperCase().contains(ROW_NUM));
+        }
+
+        private static String nz(String s) { return s == null ? "" : s; }
+    }
+
+    /**
+     * @param treq  the request to create a new result set for
+     * @return the ID of the smallest result set the new one can be derived from, or null if none
+     */
+    public synchronized String findBase(TableServerRequest treq) {
+        return entries.values().stream()
+                .filter(e -> e.isRefinedBy(treq))
+                .min((e1, e2) -> Integer.compare(e1.rowCnt, e2.rowCnt))
+                .map(e -> e.id)
+                .orElse(null);
+    }
+
+    public synchronized void add(String resultSetID, TableServerRequest treq, int rowCnt, int colCnt) {
+        remove(resultSetID);        // in case it was re-created
+        entries.put(resultSetID, new Entry(resultSetID, treq, rowCnt, colCnt));
+    }
+
+    /**
+     * Add a result set found in the database when it was reopened.  It's not known how it was created, so it will
+     * not be used as the base of another result set.
+     * @param resultSetID the result set ID
+     * @param rowCnt      its row count
+     * @param colCnt      its column count
+     */
+    public synchronized void addExisting(String resultSetID, int rowCnt, int colCnt) {
+        if (!entries.containsKey(resultSetID)) entries.put(resultSetID, new Entry(resultSetID, null, rowCnt, colCnt));
+    }
+
+    /**
+     * Mark the given result set as just used, so it's the last to be evicted.
+     * @param resultSetID the result set ID
+     */
+    public synchronized void touch(String resultSetID) {
+        Entry e = entries.get(resultSetID);     // moves it to the end of the LRU order
+        if (e != null) e.lastAccessed = System.currentTimeMillis();
+    }
+
+    /**
+     * @param resultSetID the result set ID
+     * @return the row count of the given result set, or null if it's not known
+     */
+    public synchronized Integer getRowCount(String resultSetID) {
+        Entry e = entries.get(resultSetID);
+        if (e == null) return null;
+        e.lastAccessed = System.currentTimeMillis();
+        return e.rowCnt;
+    }
+
+    /**
+     * Keep the given result set from being evicted until {@link #unpin(String)} is called, i.e. while it's being exported.
+     * @param resultSetID the result set ID
+     * @return true if the result set is known and now pinned
+     */
+    public synchronized boolean pin(String resultSetID) {
+        Entry e = entries.get(resultSetID);
+        if (e == null) return false;
+        e.pins++;
+        e.lastAccessed = System.currentTimeMillis();
+        return true;
+    }
+
+    public synchronized void unpin(String resultSetID) {
+        Entry e = entries.get(resultSetID);
+        if (e == null) return;
+        e.pins = Math.max(0, e.pins - 1);
+        e.lastAccessed = System.currentTimeMillis();
+    }
+
+    public synchronized boolean contains(String resultSetID) {
+        return entries.containsKey(resultSetID);
+    }
+
+    public synchronized void remove(String resultSetID) {
+        entries.remove(resultSetID);
+        pages.keySet().removeIf(k -> k.resultSetID.equals(resultSetID));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        pages.clear();
+    }
+
+//====================================================================
+//  page cache
+//====================================================================
+
+    /**
+     * @param resultSetID   the result set the page is from
+     * @param sql           the sql used to fetch the page
+     * @return a copy of the cached page, or null if it's not in the cache
+     */
+    public synchronized DataGroup getPage(String resultSetID, String sql) {
+        DataGroup page = pages.get(new PageKey(resultSetID, sql));
+        return page == null ? null : page.subset(0, page.size());      // callers modify the returned page
+    }
+
+    /**
+     * Cache a copy of the given page.  Only pages from a known result set are cached.
+     * @param resultSetID   the result set the page is from
+     * @param sql           the sql used to fetch the page
+     * @param page          the page
+     */
+    public synchronized void putPage(String resultSetID, String sql, DataGroup page) {
+        if (PAGE_CACHE_SIZE <= 0 || !entries.containsKey(resultSetID)) return;
+        pages.put(new PageKey(resultSetID, sql), page.subset(0, page.size()));
+    }
+
+    public synchronized void clearPages() {
+        pages.clear();
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long totalCells() {
+        return entries.values().stream().mapToLong(Entry::size).sum();
+    }
+
+    /**
+     * Remove the least recently used result sets until it's within the limits.  Pinned result sets are kept.
+     * The caller is responsible for dropping the returned tables.
+     * @param keep  a result set that should not be evicted, i.e. the one just created
+     * @return the IDs of the evicted result sets
+     */
+    public synchronized Collection<String> evict(String keep) {
+        return evict(keep, System.currentTimeMillis());
+    }
+
+    /**
+     * @param keep  a result set that should not be evicted
+     * @param now   the current time; result sets used within MIN_IDLE of it are kept
+     * @return the IDs of the evicted result sets
+     */
+    synchronized Collection<String> evict(String keep, long now) {
+        List<String> evicted = new ArrayList<>();
+        long cells = totalCells();
+        for (Entry e : new ArrayList<>(entries.values())) {        // least recently used first
+            if (entries.size() <= MAX_RESULT_SETS && cells <= MAX_CELLS) break;
+            if (e.id.equals(keep) || e.pins > 0 || now - e.lastAccessed < MIN_IDLE) continue;
+            remove(e.id);
+            cells -= e.size();
+            evicted.add(e.id);
+        }
+        return evicted;
+    }
+}
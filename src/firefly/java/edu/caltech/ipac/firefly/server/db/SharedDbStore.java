@@ -0,0 +1,125 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.db;
+
+import edu.caltech.ipac.firefly.core.Util;
+import edu.caltech.ipac.firefly.server.ServerContext;
+import edu.caltech.ipac.firefly.server.query.DataAccessException;
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.AppProperties;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A store of DuckDB databases shared by all sessions.
+ * <p>
+ * Results of identical searches are ingested once into a database keyed by a hash of the search parameters.
+ * Each session's database then attaches it read-only, and sees its DATA through a view.
+ * See {@link DuckDbAdapter#linkSharedData(File)}.
+ * <p>
+ * A shared database is removed once it has not been used for longer than MAX_IDLE, and no open database is
+ * linked to it.  Sessions whose closed database still points to it will re-create their database on the next request.
+ *
+ * Date: 10/18/26
+ */
+public class SharedDbStore {
+    public static final boolean ENABLED = AppProperties.getBooleanProperty("dbTbl.sharedStore.enabled", true);
+    public static final long MAX_IDLE = AppProperties.getLongProperty("dbTbl.sharedStore.maxIdle", 24 * 60) * 60 * 1000;   // in minutes; defaults to 1 day
+    private static final String SUBDIR = "shared_db";
+    private static final Util.SynchronizedAccess BUILDING = new Util.SynchronizedAccess();
+    private static final Logger.LoggerImpl LOGGER = Logger.getLogger();
+    private static final Map<File, Integer> linkCounts = new HashMap<>();      // shared database -> number of open databases linked to it
+
+    public static File getStoreDir() {
+        File dir = new File(ServerContext.getTempWorkDir(), SUBDIR);
+        if (!dir.exists()) dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Returns the shared database for the given ID.  If it does not exist, it will be created
+     * from the data returned by the given supplier.  Concurrent requests for the same ID will wait
+     * for the first one to finish.
+     * @param sharedID  an ID uniquely identifying the data, i.e. the search parameters.  It should not include session information.
+     * @param supplier  supplies the data when the database needs to be created
+     * @return the shared database file
+     * @throws DataAccessException if the database could not be created
+     */
+    public static File getOrCreate(String sharedID, DbAdapter.DataGroupSupplier supplier) throws DataAccessException {
+        String hash = DigestUtils.md5Hex(sharedID);
+        File dbFile = new File(getStoreDir(), "%s.%s".formatted(hash, DuckDbAdapter.NAME));
+        var locked = BUILDING.lock(hash);
+        try {
+            if (!dbFile.exists()) {
+                // build it under a temporary name so others never attach a partial database
+                File tmpFile = new File(getStoreDir(), "%s.tmp.%s".formatted(hash, DuckDbAdapter.NAME));
+                DuckDbAdapter builder = new DuckDbAdapter(tmpFile);
+                try {
+                    builder.initDbFile();
+                    builder.ingestData(supplier, builder.getDataTable());
+                    builder.execUpdate("CHECKPOINT");        // flush the WAL into the file before it's moved
+                    builder.close(false);
+                } catch (IOException | RuntimeException e) {
+                    builder.close(true);
+                    throw new DataAccessException("Failed to create shared database", e);
+                } catch (DataAccessException e) {
+                    builder.close(true);
+                    throw e;
+                }
+                if (!tmpFile.renameTo(dbFile)) {
+                    throw new DataAccessException("Unable to move shared database into place: " + dbFile.getPath());
+                }
+                LOGGER.debug("Shared database created: %s for %s".formatted(dbFile.getPath(), sharedID));
+            }
+            dbFile.setLastModified(System.currentTimeMillis());     // used by cleanup to determine idle time
+            return dbFile;
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    /**
+     * Called when an open database attaches the given shared database.  It will not be removed until
+     * every database linked to it has called {@link #unlinked(File)}.
+     * @param sharedDb  the shared database
+     */
+    static synchronized void linked(File sharedDb) {
+        linkCounts.merge(sharedDb.getAbsoluteFile(), 1, Integer::sum);
+        sharedDb.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Called when a database linked to the given shared database is closed, or no longer uses it.
+     * @param sharedDb  the shared database
+     */
+    static synchronized void unlinked(File sharedDb) {
+        linkCounts.computeIfPresent(sharedDb.getAbsoluteFile(), (f, cnt) -> cnt > 1 ? cnt - 1 : null);
+        sharedDb.setLastModified(System.currentTimeMillis());     // idle from now on
+    }
+
+    static synchronized boolean isLinked(File sharedDb) {
+        return linkCounts.containsKey(sharedDb.getAbsoluteFile());
+    }
+
+    /**
+     * Remove shared databases that have been idle for longer than MAX_IDLE, and are not attached by any open database
+     */
+    public static synchronized void cleanup() {
+        File[] files = getStoreDir().listFiles();
+        if (files == null) return;
+        long now = System.currentTimeMillis();
+        for (File f : files) {
+            if (now - f.lastModified() > MAX_IDLE && !isLinked(f)) {
+                if (!f.delete()) {
+                    LOGGER.trace("Unable to remove shared database file:" + f.getAbsolutePath());
+                }
+            }
+        }
+    }
+}
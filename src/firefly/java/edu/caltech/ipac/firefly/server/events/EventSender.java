@@ -0,0 +1,140 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.events;
+
+import edu.caltech.ipac.util.AppProperties;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The outbound side of a {@link ServerEventQueue}.
+ * <p>
+ * Messages are queued and sent from a virtual thread, so a slow client never blocks the thread firing the event,
+ * and does not tie up a platform thread while its send is in progress.
+ * - a message with the same coalescing key as one still waiting, i.e. progress of the same job, replaces it in place,
+ *   so messages are still sent in the order they were first queued.
+ * - messages queued within BATCH_WINDOW of each other are sent together; as one JSON array when the connector accepts it.
+ * - while a send is in progress, new messages wait.  Once more than MAX_PENDING are waiting, the oldest ones are dropped.
+ *
+ * Date: 10/18/26
+ */
+class EventSender {
+    static final long BATCH_WINDOW = AppProperties.getLongProperty("event.batch.window", 50);       // in millis
+    static final int MAX_PENDING = AppProperties.getIntProperty("event.queue.maxPending", 1000);
+    static final int MAX_BATCH = 100;                                                               // max messages in one frame
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EventSender-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private static final AtomicLong totalSent = new AtomicLong();
+    private static final AtomicLong totalCoalesced = new AtomicLong();
+    private static final AtomicLong totalDropped = new AtomicLong();
+
+    private final ServerEventQueue.EventConnector connector;
+    private final Consumer<Exception> onFailure;
+    private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+    private long seq;
+    private boolean scheduled;
+    private long sentCnt;
+    private long coalescedCnt;
+    private long droppedCnt;
+
+    /**
+     * @param connector the connector to send the messages to
+     * @param onFailure called when the connector fails to send; the pending messages are discarded
+     */
+    EventSender(ServerEventQueue.EventConnector connector, Consumer<Exception> onFailure) {
+        this.connector = connector;
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Queue a message to be sent.  This method does not block.
+     * @param coalesceKey   a message replaces a waiting one with the same key; null to always send it
+     * @param message       the message
+     */
+    synchronized void add(String coalesceKey, String message) {
+        String key = coalesceKey == null ? "#" + seq++ : coalesceKey;
+        if (pending.put(key, message) != null) {      // replaced in place; it keeps the turn of the one it replaced
+            coalescedCnt++;
+            totalCoalesced.incrementAndGet();
+        }
+        for (Iterator<String> itr = pending.keySet().iterator(); pending.size() > MAX_PENDING && itr.hasNext(); ) {
+            itr.next();
+            itr.remove();
+            droppedCnt++;
+            totalDropped.incrementAndGet();
+        }
+        if (!scheduled) schedule();
+    }
+
+    synchronized int getPendingCnt() { return pending.size(); }
+    synchronized long getSentCnt() { return sentCnt; }
+    synchronized long getCoalescedCnt() { return coalescedCnt; }
+    synchronized long getDroppedCnt() { return droppedCnt; }
+
+    static long getTotalSent() { return totalSent.get(); }
+    static long getTotalCoalesced() { return totalCoalesced.get(); }
+    static long getTotalDropped() { return totalDropped.get(); }
+
+//====================================================================
+//  internal
+//====================================================================
+
+    private void schedule() {
+        scheduled = true;
+        timer.schedule(() -> senders.execute(this::flush), BATCH_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<String> messages;
+        synchronized (this) {
+            messages = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        boolean failed = false;
+        try {
+            for (int i = 0; i < messages.size(); i += MAX_BATCH) {
+                send(messages.subList(i, Math.min(i + MAX_BATCH, messages.size())));
+            }
+        } catch (Exception e) {
+            failed = true;
+            onFailure.accept(e);
+        } finally {
+            synchronized (this) {
+                if (failed) {
+                    pending.clear();
+                    scheduled = false;
+                } else {
+                    sentCnt += messages.size();
+                    totalSent.addAndGet(messages.size());
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                    } else {
+                        schedule();         // queued while sending
+                    }
+                }
+            }
+        }
+    }
+
+    private void send(List<String> messages) throws Exception {
+        if (messages.size() > 1 && connector.acceptsBatch()) {
+            connector.send("[" + String.join(",", messages) + "]");
+        } else {
+            for (String msg : messages) connector.send(msg);
+        }
+    }
+}
@@ -6,34 +6,78 @@
 package edu.caltech.ipac.firefly.server.events;
 import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.util.cache.Cache;
-import edu.caltech.ipac.util.cache.CacheKey;
 import edu.caltech.ipac.util.cache.CacheManager;
 import edu.caltech.ipac.util.cache.StringKey;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
+ * The event queues of all nodes, stored in a distributed map keyed by host name.
+ * The queues are also stored per channel and per user key, so finding the queues of one channel or user
+ * does not need to read every queue in the cluster.
+ *
  * @author Trey Roby
  */
 class ReplicatedQueueList {
 
    private static final StringKey HOST_NAME= new StringKey(FileUtil.getHostname());
    private static final String REP_QUEUE_MAP = "ReplicatedEventQueueMap";
+   private static final String BY_CHANNEL = REP_QUEUE_MAP + ".channel:";
+   private static final String BY_USER = REP_QUEUE_MAP + ".user:";
+
    private static Cache<List<ServerEventQueue>> getCache() {
-       return CacheManager.getDistributedMap(REP_QUEUE_MAP);
+       return getCache(REP_QUEUE_MAP);
+   }
+
+   private static Cache<List<ServerEventQueue>> getCache(String mapKey) {
+       return CacheManager.getDistributedMap(mapKey);
    }
 
    synchronized void setQueueListForNode(List<ServerEventQueue> list)  {
       getCache().put(HOST_NAME, list);
    }
 
+   /**
+    * Set this node's queues on the given channel
+    * @param channel the channel
+    * @param queues the queues of this node on that channel; empty to remove them
+    */
+   synchronized void setQueuesForChannel(String channel, Collection<ServerEventQueue> queues)  {
+       if (channel != null) getCache(BY_CHANNEL + channel).put(HOST_NAME, queues.isEmpty() ? null : new ArrayList<>(queues));
+   }
+
+   /**
+    * Set this node's queues of the given user
+    * @param userKey the user key
+    * @param queues the queues of this node for that user; empty to remove them
+    */
+   synchronized void setQueuesForUser(String userKey, Collection<ServerEventQueue> queues)  {
+       if (userKey != null) getCache(BY_USER + userKey).put(HOST_NAME, queues.isEmpty() ? null : new ArrayList<>(queues));
+   }
+
    synchronized List<ServerEventQueue> getCombinedNodeList()  {
+       return combine(getCache());
+   }
+
+   /**
+    * @param channel the channel
+    * @param userKey the user key
+    * @return the queues of all nodes that are on the given channel or belong to the given user
+    */
+   synchronized List<ServerEventQueue> getQueues(String channel, String userKey)  {
+       Set<ServerEventQueue> queues = new LinkedHashSet<>();
+       if (channel != null) queues.addAll(combine(getCache(BY_CHANNEL + channel)));
+       if (userKey != null) queues.addAll(combine(getCache(BY_USER + userKey)));
+       return new ArrayList<>(queues);
+   }
+
+   private static List<ServerEventQueue> combine(Cache<List<ServerEventQueue>> cache) {
        List<ServerEventQueue> retList= new ArrayList<>();
-       Cache<List<ServerEventQueue>> cache= getCache();
-       for(CacheKey k : cache.getKeys()) {
-           retList.addAll(cache.get(k));
-       }
+       cache.getAll(cache.getKeys()).values().forEach(retList::addAll);
        return retList;
    }
 
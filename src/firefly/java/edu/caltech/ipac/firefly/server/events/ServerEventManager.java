@@ -15,7 +15,11 @@ import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.event.Name;
 import edu.caltech.ipac.util.StringUtils;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -27,10 +31,14 @@ public class ServerEventManager {
     private static final EventWorker eventWorker = USE_MESSAGE_EVENT_WORKER ?
                                                     new MessageEventWorker() : new LocalEventWorker();
     private static final List<ServerEventQueue> localEventQueues = new CopyOnWriteArrayList<>();
+    // indexes of localEventQueues, so an event is only matched against the queues it may go to
+    private static final Map<String, Set<ServerEventQueue>> queuesByConnID = new ConcurrentHashMap<>();
+    private static final Map<String, Set<ServerEventQueue>> queuesByChannel = new ConcurrentHashMap<>();
+    private static final Map<String, Set<ServerEventQueue>> queuesByUserKey = new ConcurrentHashMap<>();
     private static final ReplicatedQueueList allEventQueues = new ReplicatedQueueList();
     private static final Logger.LoggerImpl LOG = Logger.getLogger();
     private static long totalEventCnt;
-    private static long deliveredEventCnt;
+    private static long queuedEventCnt;
 
 
     /**
@@ -103,7 +111,10 @@ public class ServerEventManager {
     public static void addEventQueue(ServerEventQueue queue) {
         Logger.briefInfo("Channel: create new Queue for: "+ queue.getQueueID() );
         localEventQueues.add(queue);
-        allEventQueues.setQueueListForNode(localEventQueues);
+        addToIndex(queuesByConnID, queue.getConnID(), queue);
+        addToIndex(queuesByChannel, queue.getChannel(), queue);
+        addToIndex(queuesByUserKey, queue.getUserKey(), queue);
+        updateReplicatedQueues(queue);
     }
 
     /**
@@ -114,6 +125,21 @@ public class ServerEventManager {
         return localEventQueues;
     }
 
+    /**
+     * Get the ServerEventQueues local to this node that match any of the given values.  A null value matches nothing.
+     * @param connID    the connection ID
+     * @param channel   the channel
+     * @param userKey   the user key
+     * @return the matching queues
+     */
+    static Set<ServerEventQueue> getLocalEventQueues(String connID, String channel, String userKey) {
+        Set<ServerEventQueue> queues = new LinkedHashSet<>();
+        if (connID != null) queues.addAll(queuesByConnID.getOrDefault(connID, Set.of()));
+        if (channel != null) queues.addAll(queuesByChannel.getOrDefault(channel, Set.of()));
+        if (userKey != null) queues.addAll(queuesByUserKey.getOrDefault(userKey, Set.of()));
+        return queues;
+    }
+
     /**
      * Get the list of all ServerEventQueue across all nodes(multiple instances of Firefly).
      * @return list of ServerEventQueue
@@ -122,16 +148,26 @@ public class ServerEventManager {
         return  allEventQueues.getCombinedNodeList();
     }
 
+    /**
+     * Get the ServerEventQueues across all nodes that are on the given channel or belong to the given user.
+     * @param channel   the channel
+     * @param userKey   the user key
+     * @return list of ServerEventQueue
+     */
+    static List<ServerEventQueue> getAllEventQueue(String channel, String userKey) {
+        return  allEventQueues.getQueues(channel, userKey);
+    }
+
     // bypass distributed event messaging.  should not be call directly unless you know exactly why it's needed.
     public static void processEvent(ServerEvent ev) {
         totalEventCnt++;
-        boolean delivered = false;
-        for(ServerEventQueue queue : localEventQueues) {
+        boolean queued = false;
+        for(ServerEventQueue queue : findCandidates(ev)) {
             try {
                 if (queue.matches(ev)) {
                     try {
                         queue.putEvent(ev);
-                        delivered = true;
+                        queued = true;
                     } catch (Exception e) {
                         // queue is bad..  release it.
                         LOG.warn("Event queue is bad.. releasing it:" + queue.getQueueID(), "Exception: "+e.getMessage());
@@ -145,12 +181,58 @@ public class ServerEventManager {
                 LOG.warn(e, "Unexpected exception while processing event: " + ev + " for queue:" + queue == null ? "null" : queue.getQueueID());
             }
         }
-        if (delivered) deliveredEventCnt++;
+        if (queued) queuedEventCnt++;
     }
 
     public static void removeEventQueue(ServerEventQueue queue) {
         localEventQueues.remove(queue);
+        removeFromIndex(queuesByConnID, queue.getConnID(), queue);
+        removeFromIndex(queuesByChannel, queue.getChannel(), queue);
+        removeFromIndex(queuesByUserKey, queue.getUserKey(), queue);
+        updateReplicatedQueues(queue);
+    }
+
+    /**
+     * @param ev the event
+     * @return the local queues this event may go to, based on its target.  Each one still has to match the event.
+     */
+    private static Set<ServerEventQueue> findCandidates(ServerEvent ev) {
+        ServerEvent.EventTarget target = ev.getTarget();
+        ServerEvent.Scope scope = target == null ? null : target.getScope();
+        Set<ServerEventQueue> queues = getLocalEventQueues(ServerEvent.SERVER_CONN_ID, null, null);   // a server's terminal gets all events
+        if (scope == ServerEvent.Scope.WORLD) {
+            queues.addAll(localEventQueues);
+        } else if (scope == ServerEvent.Scope.CHANNEL) {
+            queues.addAll(getLocalEventQueues(null, target.getChannel(), null));
+        } else if (scope == ServerEvent.Scope.USER) {
+            queues.addAll(getLocalEventQueues(null, null, target.getUserKey()));
+        } else if (scope == ServerEvent.Scope.SELF) {
+            queues.addAll(getLocalEventQueues(target.getConnID(), null, null));
+        }
+        return queues;
+    }
+
+    private static void addToIndex(Map<String, Set<ServerEventQueue>> index, String key, ServerEventQueue queue) {
+        if (key == null) return;
+        index.compute(key, (k, queues) -> {
+            if (queues == null) queues = ConcurrentHashMap.newKeySet();
+            queues.add(queue);
+            return queues;
+        });
+    }
+
+    private static void removeFromIndex(Map<String, Set<ServerEventQueue>> index, String key, ServerEventQueue queue) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, queues) -> {
+            queues.remove(queue);
+            return queues.isEmpty() ? null : queues;
+        });
+    }
+
+    private static void updateReplicatedQueues(ServerEventQueue queue) {
         allEventQueues.setQueueListForNode(localEventQueues);
+        allEventQueues.setQueuesForChannel(queue.getChannel(), getLocalEventQueues(null, queue.getChannel(), null));
+        allEventQueues.setQueuesForUser(queue.getUserKey(), getLocalEventQueues(null, null, queue.getUserKey()));
     }
 
 //====================================================================
@@ -200,8 +282,39 @@ public class ServerEventManager {
         return totalEventCnt;
     }
 
-    public static long getDeliveredEventCnt() {
-        return deliveredEventCnt;
+    /**
+     * @return the number of events queued to be sent to at least one client
+     */
+    public static long getQueuedEventCnt() {
+        return queuedEventCnt;
+    }
+
+    /**
+     * @return the number of events sent to clients, counted once per client
+     */
+    public static long getSentEventCnt() {
+        return EventSender.getTotalSent();
+    }
+
+    /**
+     * @return the number of events replaced by a newer one before they were sent
+     */
+    public static long getCoalescedEventCnt() {
+        return EventSender.getTotalCoalesced();
+    }
+
+    /**
+     * @return the number of events dropped because a client was not keeping up
+     */
+    public static long getDroppedEventCnt() {
+        return EventSender.getTotalDropped();
+    }
+
+    /**
+     * @return the number of events waiting to be sent, over all local queues
+     */
+    public static int getPendingEventCnt() {
+        return localEventQueues.stream().mapToInt(q -> q.convertToDescription().pendingCnt()).sum();
     }
 
 
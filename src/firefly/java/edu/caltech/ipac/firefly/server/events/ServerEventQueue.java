@@ -12,18 +12,27 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * This class manages server events and their delivery to clients.
  * It holds information about the connection ID, channel, and user key associated with the event queue.
  * The class provides methods to convert events to JSON, parse JSON events, and deliver events to the appropriate clients.
  * It also includes functionality to match events based on their scope and target information.
+ * <p>
+ * Events are delivered through an {@link EventSender}, which coalesces superseded events(see COALESCED_ACTIONS),
+ * batches them, and keeps a slow client from blocking the thread firing the event.
  *
  * @author Trey Roby
  */
 public class ServerEventQueue implements Serializable {
     private static final transient Logger.LoggerImpl LOG = Logger.getLogger();
+    // actions superseded by a newer one of the same type and payload key; only the latest waiting one is sent
+    private static final Map<String, String> COALESCED_ACTIONS = Map.of(
+            FluxAction.JOB_INFO, "jobId",
+            "ImagePlotCntlr.PlotProgressUpdate", "requestKey");
     private final transient EventConnector eventTerminal;
+    private final transient EventSender sender;
     private String connID;
     private String channel;
     private String userKey;
@@ -34,9 +43,15 @@ public class ServerEventQueue implements Serializable {
         this.channel = channel;
         this.userKey = userKey;
         this.eventTerminal = terminal;
+        this.sender = terminal == null ? null : new EventSender(terminal, this::onSendFailed);
     }
 
     public static String convertToJson(ServerEvent ev) {
+        JSONObject eventJ = toJsonObject(ev);
+        return eventJ == null ? null : eventJ.toJSONString();
+    }
+
+    private static JSONObject toJsonObject(ServerEvent ev) {
         try {
             ServerEvent.EventTarget target = ev.getTarget();
             ServerEvent.Scope scope = (target == null || target.getScope() == null) ?
@@ -53,7 +68,7 @@ public class ServerEventQueue implements Serializable {
             if (!StringUtils.isEmpty(ev.getFrom())) {
                 eventJ.put("from", ev.getFrom());
             }
-            return eventJ.toJSONString();
+            return eventJ;
         } catch (Exception e) {
             LOG.warn(e, "Fail to convert ServerEvent to json: " + ev);
             return null;
@@ -85,15 +100,40 @@ public class ServerEventQueue implements Serializable {
 
     public String getUserKey() { return userKey; }
 
+    /**
+     * Queue the event to be sent to this client.  This does not wait for the event to be sent.
+     * @param ev the event
+     */
     public void putEvent(ServerEvent ev) throws Exception{
         if (eventTerminal ==null){
             throw new IllegalStateException("Event terminal is null.. should remove this queue.");
         }
-        String message = convertToJson(ev);
-        if (message != null) {
+        JSONObject eventJ = toJsonObject(ev);
+        if (eventJ != null) {
             lastPutTime= System.currentTimeMillis();
-            eventTerminal.send(message);
+            sender.add(getCoalesceKey(eventJ), eventJ.toJSONString());
+        }
+    }
+
+    /**
+     * @param eventJ the event as JSON
+     * @return the coalescing key of this event, or null if it should never be replaced by a newer one
+     */
+    static String getCoalesceKey(JSONObject eventJ) {
+        if (eventJ.get("data") instanceof JSONObject action && action.get(FluxAction.TYPE) instanceof String type) {
+            String keyName = COALESCED_ACTIONS.get(type);
+            if (keyName != null && action.get(FluxAction.PAYLOAD) instanceof JSONObject payload && payload.get(keyName) != null) {
+                return type + "|" + payload.get(keyName);
+            }
         }
+        return null;
+    }
+
+    private void onSendFailed(Exception e) {
+        // queue is bad..  release it.
+        LOG.warn("Event queue is bad.. releasing it:" + getQueueID(), "Exception: "+e.getMessage());
+        eventTerminal.close();
+        ServerEventManager.removeEventQueue(this);  // cleanup.. but only as a precaution.  WebsocketConnector should have done it already.
     }
 
     public EventConnector getEventConnector() {
@@ -153,10 +193,19 @@ public class ServerEventQueue implements Serializable {
         public void send(String message) throws Exception;
         public boolean isOpen();
         public void close();
+
+        /**
+         * @return true if the client accepts a JSON array of events in one message
+         */
+        public default boolean acceptsBatch() { return false; }
     }
 
-    public QueueDescription convertToDescription() { return new QueueDescription(connID,channel,userKey,lastPutTime); }
+    public QueueDescription convertToDescription() {
+        return sender == null ? new QueueDescription(connID,channel,userKey,lastPutTime, 0, 0, 0) :
+                new QueueDescription(connID,channel,userKey,lastPutTime, sender.getPendingCnt(), sender.getCoalescedCnt(), sender.getDroppedCnt());
+    }
 
-    public record QueueDescription(String connID, String channel, String userKey, long lastPutTime) {}
+    public record QueueDescription(String connID, String channel, String userKey, long lastPutTime,
+                                   int pendingCnt, long coalescedCnt, long droppedCnt) {}
 }
 
@@ -28,12 +28,14 @@ import java.util.concurrent.locks.ReentrantLock;
 @ServerEndpoint(value = "/sticky/firefly/events")
 public class WebsocketConnector implements ServerEventQueue.EventConnector {
     public static final String CHANNEL_ID = "channelID";
+    public static final String BATCH = "batch";         // when true, the client accepts a JSON array of events in one message
     public static final Logger.LoggerImpl LOG = Logger.getLogger();
     private static final String CONN_UPDATED = "app_data.wsConnUpdated";
     private Session session;
     private String channelID;
     private String userKey;
     private ServerEventQueue eventQueue;
+    private boolean acceptsBatch;
     private final ReentrantLock lock = new ReentrantLock();
 
     private static final long WS_TIMEOUT = 30*1000;  // give up after 30 sec when sending msg
@@ -50,6 +52,7 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
             userKey = ServerContext.getRequestOwner().getUserKey();
             channelID = params.containsKey(CHANNEL_ID) ? String.valueOf(params.get(CHANNEL_ID).get(0)) : null;
             channelID = StringUtils.isEmpty(channelID) ? userKey : channelID;
+            acceptsBatch = params.containsKey(BATCH) && Boolean.parseBoolean(params.get(BATCH).get(0));
             eventQueue = new ServerEventQueue(session.getId(), channelID, userKey, this);
             ServerEvent connected = new ServerEvent(Name.EVT_CONN_EST, ServerEvent.Scope.SELF, "{\"connID\": \"" + session.getId() + "\", \"channel\": \"" + channelID + "\"}");
             send(ServerEventQueue.convertToJson(connected));
@@ -126,6 +129,10 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
         return session != null && session.isOpen();
     }
 
+    public boolean acceptsBatch() {
+        return acceptsBatch;
+    }
+
     public void close() {
         if (session != null) {
             try {
@@ -142,14 +149,11 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
      * @param userKey
      */
     public static void pingClient(String userKey, String eventConnId) {
-        List<ServerEventQueue> conns = ServerEventManager.getLocalEventQueues();
-        for (ServerEventQueue seq : conns) {
+        for (ServerEventQueue seq : ServerEventManager.getLocalEventQueues(eventConnId, null, userKey)) {
             // need to notify clients that are affected by update
-            if (seq.getConnID().equals(eventConnId) || seq.getUserKey().equals(userKey)) {
-                ServerEvent.EventTarget target = new ServerEvent.EventTarget(ServerEvent.Scope.SELF, seq.getConnID(), null, null);
-                ServerEvent sev = new ServerEvent(Name.PING, target, "");
-                ServerEventManager.fireEvent(sev);
-            }
+            ServerEvent.EventTarget target = new ServerEvent.EventTarget(ServerEvent.Scope.SELF, seq.getConnID(), null, null);
+            ServerEvent sev = new ServerEvent(Name.PING, target, "");
+            ServerEventManager.fireEvent(sev);
         }
     }
 
@@ -163,8 +167,7 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
      * @param channelID
      */
     private void updateClientConnections(String type, String channelID, String userKey) {
-//        List<ServerEventQueue> conns = ServerEventManager.getEvQueueList();
-        List<ServerEventQueue> conns = ServerEventManager.getAllEventQueue();
+        List<ServerEventQueue> conns = ServerEventManager.getAllEventQueue(channelID, userKey);     // only the queues on this channel or of this user
         for (ServerEventQueue seq : conns) {
             // need to notify clients that are affected by update
             if (seq.getChannel().equals(channelID) || seq.getUserKey().equals(userKey)) {
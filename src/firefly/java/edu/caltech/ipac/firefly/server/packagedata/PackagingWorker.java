@@ -25,8 +25,14 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipOutputStream;
 
 import static edu.caltech.ipac.firefly.core.Util.Opt.ifNotNull;
@@ -47,6 +53,7 @@ public final class PackagingWorker implements Job.Worker {
 
     private static final String DOWNLOAD_SERVLET_PATH = "servlet/Download";
     private static final long MAX_ZIP_FILE_SIZE = AppProperties.getLongProperty("download.data.bytesize", 1024*1024*1024*16L);
+    private static final int PREFETCH = Math.max(1, AppProperties.getIntProperty("download.prefetch", 8));     // entries fetched ahead of the zip writer
     private final static String README_SUCCESS_TEXT = AppProperties.getProperty("download.readme.success", "");
     private static final Logger.LoggerImpl logger = Logger.getLogger();
 
@@ -61,8 +68,8 @@ public final class PackagingWorker implements Job.Worker {
     private long lastUpdatedTime = System.currentTimeMillis();
     private int lastUpdatedPct;
     private int totalFiles;
-    private int totalBytes;
-    private int zippedBytes;
+    private long totalBytes;
+    private long zippedBytes;
     private String suggestedName;
     private String wsDestPath;
     private boolean hasErrors;
@@ -94,24 +101,44 @@ public final class PackagingWorker implements Job.Worker {
 
             totalFiles = result.stream().mapToInt(fg -> fg.getSize()).sum();
 
+            List<Map.Entry<ZipHandler, FileInfo>> entries = new ArrayList<>(totalFiles);
             for (FileGroup fg : result) {
                 ZipHandler zipHandler = new ZipHandler((fg.getBaseDir()));
-                for (FileInfo fi : fg) {
-
-                    rotateZipFileIfNeeded();
-
-                    updateJobProgress();
+                for (FileInfo fi : fg) entries.add(Map.entry(zipHandler, fi));
+            }
 
-                    curFileInfoIdx++;
-                    try {
-                        zippedBytes += (int) zipHandler.addZipEntry(zout, fi);
-                        totalBytes += zippedBytes;
-                    } catch (AccessDeniedException e) {
-                        denied.add(e.getMessage());
-                    } catch (Exception e) {
-                        failed.add(e.getMessage());
+            // fetch up to PREFETCH entries ahead, while the zip is written in order
+            File stagingDir = getJobWorkDir(getJob().getJobId());
+            ArrayDeque<Future<ZipHandler.StagedEntry>> staging = new ArrayDeque<>();
+            int nextToStage = 0;
+            try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+                try {
+                    for (Map.Entry<ZipHandler, FileInfo> entry : entries) {
+                        while (nextToStage < entries.size() && staging.size() < PREFETCH) {
+                            var next = entries.get(nextToStage++);
+                            staging.add(fetchers.submit(() -> next.getKey().stage(next.getValue(), stagingDir)));
+                        }
+                        rotateZipFileIfNeeded();
+
+                        updateJobProgress();
+
+                        curFileInfoIdx++;
+                        try {
+                            long bytes = entry.getKey().addZipEntry(zout, getStaged(staging.poll()));
+                            zippedBytes += bytes;
+                            totalBytes += bytes;
+                        } catch (AccessDeniedException e) {
+                            denied.add(e.getMessage());
+                        } catch (Exception e) {
+                            failed.add(e.getMessage());
+                        }
+                        hasErrors = hasErrors || denied.size() > 0 || failed.size() > 0;
+                    }
+                } finally {
+                    // when aborted, don't leave downloaded content behind
+                    for (Future<ZipHandler.StagedEntry> f : staging) {
+                        if (!f.cancel(true) && f.state() == Future.State.SUCCESS) f.resultNow().discard();
                     }
-                    hasErrors = hasErrors || denied.size() > 0 || failed.size() > 0;
                 }
             }
 
@@ -132,6 +159,14 @@ public final class PackagingWorker implements Job.Worker {
         return "";
     }
 
+    private static ZipHandler.StagedEntry getStaged(Future<ZipHandler.StagedEntry> staged) throws Exception {
+        try {
+            return staged.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+    }
+
     private void rotateZipFileIfNeeded() throws FileNotFoundException {
         if (zipFile.length() > MAX_ZIP_FILE_SIZE) {
             closeZipFile();
@@ -13,6 +13,7 @@ import edu.caltech.ipac.util.FileUtil;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
@@ -20,8 +21,13 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -38,6 +44,10 @@ import static org.reflections.util.Utils.isEmpty;
 public class ZipHandler {
 
     public final static int COMPRESSION_LEVEL = AppProperties.getIntProperty("download.compression.level", 1);
+    private final static boolean GUNZIP = AppProperties.getBooleanProperty("download.gunzip", true);    // if false, .gz files are STORED as is
+    private final static int BUFFER_SIZE = 256 * 1024;
+    // already compressed; deflating them again costs time and saves nothing
+    private final static Set<String> STORED_EXT = Set.of("fz", "png", "jpg", "jpeg", "gif", "zip", "tgz", "bz2", "xz");
     private final static Logger.LoggerImpl logger = Logger.getLogger();
 
     private File baseDir;
@@ -58,51 +68,100 @@ public class ZipHandler {
      * @throws Exception
      */
     public long addZipEntry(ZipOutputStream zout, FileInfo fi) throws Exception {
+        return addZipEntry(zout, stage(fi, null));
+    }
+
+    /**
+     * Fetch the content of the given file so it is ready to be added to the zip.  This does not touch the zip,
+     * so it can be called on other threads ahead of {@link #addZipEntry(ZipOutputStream, StagedEntry)}.
+     * Remote content is downloaded to a temp file; local files are read in place.
+     * @param fi        file to fetch
+     * @param tmpDir    directory to download remote content into, null for the default temp directory
+     * @return          the staged entry
+     * @throws Exception AccessDeniedException if the file is proprietary
+     */
+    StagedEntry stage(FileInfo fi, File tmpDir) throws Exception {
 
         if (!fi.hasAccess()) {
             throw new AccessDeniedException("");
         }
 
-        // construct and add zip entry
-        InputStream is = null;
-        BufferedInputStream bis = null;
+        File tmpFile = null;
+        try {
+            File file;
+            long size;
+            long crc = -1;
+            File local = getLocalFile(fi.getInternalFilename(), baseDir);
+            if (local == null) {
+                tmpFile = File.createTempFile("staged-", ".tmp", tmpDir);
+                // external name may be set from the url's response
+                try (CheckedInputStream is = new CheckedInputStream(getInputStream(fi.getInternalFilename(), fi, baseDir), new CRC32())) {
+                    size = Files.copy(is, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    crc = is.getChecksum().getValue();
+                }
+                file = tmpFile;
+            } else {
+                if (!local.canRead()) throw new FileNotFoundException(local.getPath());
+                file = local;
+                size = local.length();
+            }
+
+            String filename = fi.getExternalName();
+            boolean isGzip = filename != null && FileUtil.isExtension(filename, FileUtil.GZ) && isGzipContent(file);
+            boolean gunzip = isGzip && GUNZIP;
+            boolean store = isGzip ? !GUNZIP : filename != null && STORED_EXT.contains(FileUtil.getExtension(filename));
+            if (store && crc == -1) crc = checksum(file);
+            if (Thread.interrupted()) throw new InterruptedException("cancelled");
+
+            return new StagedEntry(fi, file, file == tmpFile, gunzip, store, size, crc);
+        } catch (Exception e) {
+            if (tmpFile != null) tmpFile.delete();
+            String error = "Failed packaging " + fi.getExternalName() + " - " + e.getMessage();
+            Logger.error(error);
+            throw new Exception(fi.getExternalName());
+        }
+    }
+
+    /**
+     * Write a staged entry to the zip.  Entries must be written one at a time, in order.
+     * Already compressed content is STORED as is; everything else is deflated.
+     * @param zout      ZipOutputStream to add to
+     * @param staged    the entry returned by {@link #stage(FileInfo, File)}
+     * @return          the number of bytes added
+     * @throws Exception
+     */
+    long addZipEntry(ZipOutputStream zout, StagedEntry staged) throws Exception {
+
+        FileInfo fi = staged.fi;
         ZipEntry zipEntry = null;
         long totalBytes = 0;
 
         String filename = fi.getExternalName();
 
-        try {
+        try (InputStream is = staged.open()) {
 
-            is = getInputStream(fi.getInternalFilename(), fi, baseDir);  // filename may change if FileNameResolver is set
             String zipEntryComment = "(" + fi.getSizeInBytes() + "b) ";
             //getExternalName/suggestedName,
             filename = FileUtil.getUniqueFileNameForGroup(fi.getExternalName(), dupMap);
 
-            int inBufSize = 4096;
-            if (filename != null && FileUtil.isExtension(filename, FileUtil.GZ)) {
-                InputStream decompressedIs = null;
-                try {// try to uncompress the data
-                    decompressedIs = new GZIPInputStream(is);  // for uncompressed data, throw an exception
-                    bis = new BufferedInputStream(decompressedIs);
-                } catch (Exception e) {
-                    FileUtil.silentClose(decompressedIs);
-                    bis = new BufferedInputStream(is, inBufSize);
-                }
-            } else {
-                bis = new BufferedInputStream(is, inBufSize);
-            }
             // remove .gz, if exists - filename or url stream are all going to be uncompressed at this point
-            if (FileUtil.isExtension(filename, FileUtil.GZ)) {
+            if (!staged.store && FileUtil.isExtension(filename, FileUtil.GZ)) {
                 filename = filename.substring(0, filename.length() - 3);
             }
 
             zipEntry = new ZipEntry(filename);
             zipEntry.setComment(zipEntryComment);
+            if (staged.store) {
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(staged.size);
+                zipEntry.setCompressedSize(staged.size);
+                zipEntry.setCrc(staged.crc);
+            }
             zout.putNextEntry(zipEntry);
 
             int read;
-            byte[] buffer = new byte[inBufSize];
-            while ((read = bis.read(buffer)) != -1) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while ((read = is.read(buffer)) != -1) {
                 zout.write(buffer, 0, read);
                 totalBytes += read;
             }
@@ -124,14 +183,7 @@ public class ZipHandler {
             throw new Exception(fi.getExternalName());
 
         } finally {
-            FileUtil.silentClose(bis);
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (Exception e) {
-                    logger.warn("Can not close input stream: " + e.getMessage());
-                }
-            }
+            staged.discard();
             if (zipEntry != null) {
                 try {
                     zout.closeEntry();
@@ -143,6 +195,47 @@ public class ZipHandler {
         return totalBytes;
     }
 
+    /**
+     * The content of one file, fetched and ready to be written to the zip.
+     */
+    static final class StagedEntry {
+        private final FileInfo fi;
+        private final File file;
+        private final boolean isTemp;
+        private final boolean gunzip;
+        private final boolean store;
+        private final long size;
+        private final long crc;
+
+        StagedEntry(FileInfo fi, File file, boolean isTemp, boolean gunzip, boolean store, long size, long crc) {
+            this.fi = fi;
+            this.file = file;
+            this.isTemp = isTemp;
+            this.gunzip = gunzip;
+            this.store = store;
+            this.size = size;
+            this.crc = crc;
+        }
+
+        boolean isStored() { return store; }
+
+        InputStream open() throws IOException {
+            InputStream is = new FileInputStream(file);
+            try {
+                return gunzip ? new GZIPInputStream(is, BUFFER_SIZE) : new BufferedInputStream(is, BUFFER_SIZE);
+            } catch (IOException e) {
+                FileUtil.silentClose(is);
+                throw e;
+            }
+        }
+
+        /**
+         * Remove the downloaded content, if any.  Call it when the entry will not be written.
+         */
+        void discard() {
+            if (isTemp) file.delete();
+        }
+    }
 
     static public void addReadmeZipEntry(ZipOutputStream zout, String msg) {
 
@@ -164,6 +257,30 @@ public class ZipHandler {
         }
     }
 
+    /**
+     * @param filename  the internal filename
+     * @param baseDir   the directory a relative filename is resolved against
+     * @return the local file, or null if filename is a url
+     */
+    private static File getLocalFile(String filename, File baseDir) {
+        if (filename.contains("://")) return null;
+        return baseDir == null ? new File(filename) : new File(baseDir, filename);
+    }
+
+    private static boolean isGzipContent(File f) throws IOException {
+        try (InputStream is = new FileInputStream(f)) {
+            return is.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && is.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+        }
+    }
+
+    private static long checksum(File f) throws IOException {
+        try (CheckedInputStream is = new CheckedInputStream(new FileInputStream(f), new CRC32())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (is.read(buffer) != -1) {}
+            return is.getChecksum().getValue();
+        }
+    }
+
     /**
      * @param filename (filename can be url)
      * @param fi       file info pbject
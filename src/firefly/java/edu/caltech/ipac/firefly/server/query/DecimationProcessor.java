@@ -71,8 +71,6 @@ public class DecimationProcessor extends TableFunctionProcessor {
         }
 
         DecimateKey deciKey = getDeciKey(deciInfo, dbAdapter, dataTbl);
-        DecimateKey deciFunc = deciKey.clone();     // decimate_key function to execute over the dataTbl
-        deciFunc.setCols(deciInfo.getxExp(), deciInfo.getyExp());
 
         int dataPoints = Math.min(deciKey.getxCount(), deciKey.getyCount());
         int deciEnableSize = deciInfo.getDeciEnableSize() > -1 ? deciInfo.getDeciEnableSize() : DECI_ENABLE_SIZE;
@@ -85,34 +83,101 @@ public class DecimationProcessor extends TableFunctionProcessor {
                 """.formatted(tblName, deciInfo.getxExp(), deciKey.getXCol(), deciInfo.getyExp(), deciKey.getYCol(), ROW_NUM, ROW_IDX, dataTbl, deciKey.getXCol(), deciKey.getYCol());
             dbAdapter.execUpdate(sql);
         } else {
-            String sql = """
-                CREATE TABLE %s as (
-                SELECT *, ROW_NUMBER() OVER () AS %s, ROW_NUMBER() OVER () AS %s
-                FROM (
-                    SELECT
-                       FIRST(%s) as "%s",
-                       FIRST(%s) as "%s",
-                       FIRST(ROW_NUM) as "rowidx",
-                       count(*) as "weight",
-                       %s as "dkey"
-                    FROM %s GROUP BY "dkey"
-                ) WHERE "%s" IS NOT NULL AND "%s" IS NOT NULL
-                )
-                """.formatted(tblName, ROW_NUM, ROW_IDX, deciInfo.getxExp(), deciKey.getXCol(), deciInfo.getyExp(), deciKey.getYCol(), deciFunc, dataTbl, deciKey.getXCol(), deciKey.getYCol());
-            dbAdapter.execUpdate(sql);
+            DecimateKey key = deciKey;
+            if (isZoomed(deciInfo)) {
+                // zoomed in; decimate from the pyramid when it's fine enough, otherwise from the data within the view
+                DecimationPyramid pyramid = DecimationPyramid.getPyramid(dbAdapter, dataTbl, deciInfo, deciKey);
+                DecimationPyramid.Grid grid = pyramid == null ? null : pyramid.getGrid(deciInfo);
+                if (grid != null) {
+                    key = grid.key();
+                    dbAdapter.execUpdate(decimateSql(tblName, deciKey, pyramid.selectCells(grid), "SUM(weight)"));
+                } else {
+                    key = getViewKey(deciInfo, deciKey);
+                    dbAdapter.execUpdate(decimateSql(tblName, deciKey, selectBins(deciInfo, dataTbl, key, true), "count(*)"));
+                }
+                key.setxCount(deciKey.getxCount());
+                key.setyCount(deciKey.getyCount());
+            } else {
+                dbAdapter.execUpdate(decimateSql(tblName, deciKey, selectBins(deciInfo, dataTbl, deciKey, false), "count(*)"));
+            }
 
             // add decimation info to the returned table
             var minMax = dbAdapter.execQuery("""
                             SELECT MIN("weight") as "minWeight", MAX("weight") as "maxWeight"
                             FROM %s""".formatted(tblName),null);
-            long minW = (long) minMax.getData("minWeight", 0);
-            long maxW = (long) minMax.getData("maxWeight", 0);
+            long minW = minMax.getData("minWeight", 0) instanceof Number n ? n.longValue() : 0;     // null when the view is empty
+            long maxW = minMax.getData("maxWeight", 0) instanceof Number n ? n.longValue() : 0;
             DataGroup meta = new DataGroup();
-            insertDecimateInfo(meta, deciInfo, deciKey, minW, maxW);
+            insertDecimateInfo(meta, deciInfo, key, minW, maxW);
             ((BaseDbAdapter)dbAdapter).metaToDb(meta, tblName);
         }
     }
 
+    /**
+     * @return true if the request is limited to a view, i.e. the chart is zoomed in
+     */
+    static boolean isZoomed(DecimateInfo deciInfo) {
+        return !Double.isNaN(deciInfo.getXMin()) || !Double.isNaN(deciInfo.getXMax())
+                || !Double.isNaN(deciInfo.getYMin()) || !Double.isNaN(deciInfo.getYMax());
+    }
+
+    /**
+     * @return the grid over the view of the request, within the range of the data
+     */
+    private static DecimateKey getViewKey(DecimateInfo deciInfo, DecimateKey deciKey) {
+        double xMax = deciKey.getXMin() + deciKey.getXUnit() * deciKey.getNX();
+        double yMax = deciKey.getYMin() + deciKey.getYUnit() * deciKey.getNY();
+        double vx0 = Double.isNaN(deciInfo.getXMin()) ? deciKey.getXMin() : Math.max(deciKey.getXMin(), deciInfo.getXMin());
+        double vx1 = Double.isNaN(deciInfo.getXMax()) ? xMax : Math.min(xMax, deciInfo.getXMax());
+        double vy0 = Double.isNaN(deciInfo.getYMin()) ? deciKey.getYMin() : Math.max(deciKey.getYMin(), deciInfo.getYMin());
+        double vy1 = Double.isNaN(deciInfo.getYMax()) ? yMax : Math.min(yMax, deciInfo.getYMax());
+        DecimateKey key = getDecimateKey(deciInfo, Math.max(vx0, vx1), vx0, Math.max(vy0, vy1), vy0);
+        key.setCols(deciInfo.getxColumnName(), deciInfo.getyColumnName());
+        return key;
+    }
+
+    /**
+     * @param inView    if true, only the points within the grid are selected
+     * @return a select of the points of dataTbl as (x, y, rowidx, bx, by), where bx and by are the bin of the point in the grid
+     */
+    private static String selectBins(DecimateInfo deciInfo, String dataTbl, DecimateKey key, boolean inView) {
+        String x = deciInfo.getxExp();
+        String y = deciInfo.getyExp();
+        String where = "%s IS NOT NULL AND %s IS NOT NULL".formatted(x, y);
+        if (inView) {
+            where += " AND %1$s BETWEEN %2$s AND %3$s AND %4$s BETWEEN %5$s AND %6$s".formatted(
+                    x, key.getXMin(), key.getXMin() + key.getXUnit() * key.getNX(),
+                    y, key.getYMin(), key.getYMin() + key.getYUnit() * key.getNY());
+        }
+        return """
+            SELECT %1$s AS x, %2$s AS y, %3$s AS rowidx,
+                   TRUNC((%1$s - %4$s) / %5$s)::INT AS bx, TRUNC((%2$s - %6$s) / %7$s)::INT AS by
+            FROM %8$s WHERE %9$s
+            """.formatted(x, y, ROW_NUM, key.getXMin(), key.getXUnit(), key.getYMin(), key.getYUnit(), dataTbl, where);
+    }
+
+    /**
+     * Group the rows selected by binSql by their bin, keeping one point per bin and the weight of the bin.
+     * @param binSql    a select returning (x, y, rowidx, bx, by), plus weight when selecting from the pyramid
+     * @param weight    the weight of a bin; count(*) or SUM(weight)
+     * @return the result table as x, y, rowidx, weight, dkey, ROW_NUM, ROW_IDX
+     */
+    private static String decimateSql(String tblName, DecimateKey deciKey, String binSql, String weight) {
+        return """
+            CREATE TABLE %1$s as (
+            SELECT *, ROW_NUMBER() OVER () AS %2$s, ROW_NUMBER() OVER () AS %3$s
+            FROM (
+                SELECT
+                   FIRST(x) as "%4$s",
+                   FIRST(y) as "%5$s",
+                   FIRST(rowidx) as "rowidx",
+                   %6$s::BIGINT as "weight",
+                   bx || ':' || by as "dkey"
+                FROM (%7$s) GROUP BY bx, by
+            ))
+            """.formatted(tblName, ROW_NUM, ROW_IDX, deciKey.getXCol(), deciKey.getYCol(), weight, binSql);
+    }
+
     /* Old method of doing decimation */
     DataGroup createDecimateData(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
         DecimateInfo decimateInfo = getDecimateInfo(treq);
@@ -0,0 +1,236 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.query;
+
+import edu.caltech.ipac.firefly.data.DecimateInfo;
+import edu.caltech.ipac.firefly.server.db.DbAdapter;
+import edu.caltech.ipac.firefly.server.util.QueryUtil;
+import edu.caltech.ipac.table.DataGroup;
+import edu.caltech.ipac.util.AppProperties;
+import edu.caltech.ipac.util.decimate.DecimateKey;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static edu.caltech.ipac.table.DataGroup.ROW_NUM;
+
+/**
+ * A quadtree of point counts over the x/y plane of a table, used to decimate a zoomed-in view without
+ * reading the whole table again.
+ * <p>
+ * Level L divides the bounding box of the data into 2^L x 2^L cells, and keeps one row per non-empty cell:
+ * its integer indices (ix, iy), the number of points, and one of its points.  The finest level, LEVELS, is
+ * aggregated from the data, and each coarser level from the one below it.  Empty cells are not stored.
+ * <p>
+ * To answer a request, the coarsest level whose cells are at most a quarter of the requested bin is picked.
+ * Then the grid of the request is aligned to that level, so every cell falls into exactly one bin.
+ * Only the cells within the view are read.
+ * <p>
+ * It's kept in the same database as the data.  Like other derived tables, it's dropped when the data changes.
+ * Its INFO table is written last, and marks the pyramid as complete; a pyramid without it is a failed or
+ * unfinished build, and is built again.
+ *
+ * Date: 10/18/26
+ */
+class DecimationPyramid {
+    static final int LEVELS = AppProperties.getIntProperty("decimation.pyramid.levels", 11);     // finest level; 2048 x 2048 cells
+    private static final Map<String, CompletableFuture<DecimationPyramid>> building = new ConcurrentHashMap<>();
+
+    private final String table;
+    private final double xMin;
+    private final double yMin;
+    private final double cellW;       // cell size at LEVELS
+    private final double cellH;
+
+    private DecimationPyramid(String table, double xMin, double xMax, double yMin, double yMax) {
+        this.table = table;
+        this.xMin = xMin;
+        this.yMin = yMin;
+        this.cellW = span(xMin, xMax) / (1L << LEVELS);
+        this.cellH = span(yMin, yMax) / (1L << LEVELS);
+    }
+
+    /**
+     * The cells of a pyramid level, within a view, grouped into the bins of a request
+     * @param level     the pyramid level
+     * @param ix0       first cell on x
+     * @param ix1       last cell on x
+     * @param iy0       first cell on y
+     * @param iy1       last cell on y
+     * @param kx        cells per bin on x
+     * @param ky        cells per bin on y
+     * @param key       the grid of the request, aligned to the cells
+     */
+    record Grid(int level, int ix0, int ix1, int iy0, int iy1, int kx, int ky, DecimateKey key) {}
+
+    /**
+     * Returns the pyramid of the given expressions, building it if it does not exist.
+     * @param dbAdapter the database of the data
+     * @param dataTbl   the table of the data
+     * @param deciInfo  the x and y expressions
+     * @param stats     min, max, and count of the x and y expressions; see DecimationProcessor.getDeciKey
+     * @return the pyramid, or null if the data has no finite bounding box
+     */
+    static DecimationPyramid getPyramid(DbAdapter dbAdapter, String dataTbl, DecimateInfo deciInfo, DecimateKey stats) throws DataAccessException {
+        String table = ("DECI_PYR_" + DigestUtils.md5Hex(dataTbl + "|" + deciInfo.getxExp() + "|" + deciInfo.getyExp())).toUpperCase();
+        if (isBuilt(dbAdapter, table)) return load(dbAdapter, table);
+
+        double xMax = stats.getXMin() + stats.getXUnit() * stats.getNX();
+        double yMax = stats.getYMin() + stats.getYUnit() * stats.getNY();
+        if (!Double.isFinite(stats.getXMin()) || !Double.isFinite(xMax) || !Double.isFinite(stats.getYMin()) || !Double.isFinite(yMax)) return null;
+
+        // one build per pyramid; concurrent requests wait for it
+        String buildKey = dbAdapter.getDbFile() + "|" + table;
+        CompletableFuture<DecimationPyramid> result = new CompletableFuture<>();
+        CompletableFuture<DecimationPyramid> pending = building.putIfAbsent(buildKey, result);
+        if (pending != null) return pending.join();
+        try {
+            DecimationPyramid pyramid = isBuilt(dbAdapter, table) ? load(dbAdapter, table)
+                                        : build(dbAdapter, table, dataTbl, deciInfo, stats.getXMin(), xMax, stats.getYMin(), yMax);
+            result.complete(pyramid);
+            return pyramid;
+        } catch (DataAccessException | RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.remove(buildKey, result);
+        }
+    }
+
+    /**
+     * @param deciInfo  the request; its x/y min/max is the view
+     * @return the grid of this request aligned to a level of the pyramid, or null if the request needs cells
+     *         finer than the pyramid has
+     */
+    Grid getGrid(DecimateInfo deciInfo) {
+        double xMax = xMin + cellW * (1L << LEVELS);
+        double yMax = yMin + cellH * (1L << LEVELS);
+        double vx0 = Double.isNaN(deciInfo.getXMin()) ? xMin : Math.max(xMin, deciInfo.getXMin());
+        double vx1 = Double.isNaN(deciInfo.getXMax()) ? xMax : Math.min(xMax, deciInfo.getXMax());
+        double vy0 = Double.isNaN(deciInfo.getYMin()) ? yMin : Math.max(yMin, deciInfo.getYMin());
+        double vy1 = Double.isNaN(deciInfo.getYMax()) ? yMax : Math.min(yMax, deciInfo.getYMax());
+        if (vx1 < vx0) vx1 = vx0;
+        if (vy1 < vy0) vy1 = vy0;
+
+        DecimateKey requested = QueryUtil.getDecimateKey(deciInfo, vx1, vx0, vy1, vy0);
+        int lx = levelFor(cellW, requested.getXUnit() / 4);
+        int ly = levelFor(cellH, requested.getYUnit() / 4);
+        if (lx < 0 || ly < 0) return null;
+
+        int level = Math.max(lx, ly);
+        int n = 1 << level;
+        double cx = cellW * (1L << (LEVELS - level));
+        double cy = cellH * (1L << (LEVELS - level));
+        int kx = Math.max(1, (int) (requested.getXUnit() / cx));
+        int ky = Math.max(1, (int) (requested.getYUnit() / cy));
+        int ix0 = clamp((int) Math.floor((vx0 - xMin) / cx), n);
+        int ix1 = clamp((int) Math.floor((vx1 - xMin) / cx), n);
+        int iy0 = clamp((int) Math.floor((vy0 - yMin) / cy), n);
+        int iy1 = clamp((int) Math.floor((vy1 - yMin) / cy), n);
+
+        DecimateKey key = new DecimateKey(xMin + ix0 * cx, yMin + iy0 * cy,
+                                          (ix1 - ix0) / kx + 1, (iy1 - iy0) / ky + 1, kx * cx, ky * cy);
+        key.setCols(deciInfo.getxColumnName(), deciInfo.getyColumnName());
+        return new Grid(level, ix0, ix1, iy0, iy1, kx, ky, key);
+    }
+
+    /**
+     * @param grid  the grid of the request
+     * @return a select of the cells in the view as (x, y, rowidx, weight, bx, by), where bx and by are the bin
+     *         of the cell in the grid of the request
+     */
+    String selectCells(Grid grid) {
+        return """
+            SELECT x, y, rowidx, weight, (ix - %2$d) // %6$d AS bx, (iy - %4$d) // %7$d AS by
+            FROM %8$s WHERE lvl = %1$d AND ix BETWEEN %2$d AND %3$d AND iy BETWEEN %4$d AND %5$d
+            """.formatted(grid.level(), grid.ix0(), grid.ix1(), grid.iy0(), grid.iy1(), grid.kx(), grid.ky(), table);
+    }
+
+//====================================================================
+//  internal
+//====================================================================
+
+    private static boolean isBuilt(DbAdapter dbAdapter, String table) {
+        return dbAdapter.hasTable(table + "_INFO");
+    }
+
+    private static DecimationPyramid build(DbAdapter dbAdapter, String table, String dataTbl, DecimateInfo deciInfo,
+                                           double xMin, double xMax, double yMin, double yMax) throws DataAccessException {
+        DecimationPyramid pyramid = new DecimationPyramid(table, xMin, xMax, yMin, yMax);
+        try {
+            // leftovers of a failed build
+            drop(dbAdapter, table);
+            buildLevels(dbAdapter, pyramid, dataTbl, deciInfo.getxExp(), deciInfo.getyExp());
+            // the bounding box is kept in an INFO table, so the pyramid can be used without scanning the data again.
+            // it's created last; until then, the pyramid is not used
+            dbAdapter.execUpdate("""
+                CREATE TABLE %s_INFO AS SELECT %s::DOUBLE AS "xMin", %s::DOUBLE AS "xMax", %s::DOUBLE AS "yMin", %s::DOUBLE AS "yMax"
+                """.formatted(table, xMin, xMax, yMin, yMax));
+            return pyramid;
+        } catch (RuntimeException e) {
+            try {
+                drop(dbAdapter, table);
+            } catch (RuntimeException ignored) {}
+            throw e;
+        }
+    }
+
+    private static void buildLevels(DbAdapter dbAdapter, DecimationPyramid pyramid, String dataTbl, String xExp, String yExp) {
+        String table = pyramid.table;
+        int n = 1 << LEVELS;
+        dbAdapter.execUpdate("""
+            CREATE TABLE %1$s AS
+            SELECT %2$d::INT AS lvl, ix, iy, FIRST(x) AS x, FIRST(y) AS y, FIRST(%11$s) AS rowidx, count(*) AS weight
+            FROM (
+                SELECT LEAST(TRUNC((%3$s - %5$s) / %6$s)::INT, %9$d) AS ix,
+                       LEAST(TRUNC((%4$s - %7$s) / %8$s)::INT, %9$d) AS iy,
+                       %3$s AS x, %4$s AS y, %11$s
+                FROM %10$s WHERE %3$s IS NOT NULL AND %4$s IS NOT NULL
+            ) GROUP BY ix, iy
+            """.formatted(table, LEVELS, xExp, yExp, pyramid.xMin, pyramid.cellW, pyramid.yMin, pyramid.cellH, n - 1, dataTbl, ROW_NUM));
+        for (int l = LEVELS - 1; l >= 0; l--) {
+            dbAdapter.execUpdate("""
+                INSERT INTO %1$s
+                SELECT %2$d, ix >> 1, iy >> 1, FIRST(x), FIRST(y), FIRST(rowidx), SUM(weight) FROM %1$s WHERE lvl = %3$d GROUP BY 2, 3
+                """.formatted(table, l, l + 1));
+        }
+    }
+
+    private static void drop(DbAdapter dbAdapter, String table) {
+        dbAdapter.execUpdate("DROP TABLE IF EXISTS %s_INFO".formatted(table));
+        dbAdapter.execUpdate("DROP TABLE IF EXISTS %s".formatted(table));
+    }
+
+    private static DecimationPyramid load(DbAdapter dbAdapter, String table) throws DataAccessException {
+        DataGroup info = dbAdapter.execQuery("SELECT * FROM %s_INFO".formatted(table), null);
+        return new DecimationPyramid(table,
+                ((Number) info.getData("xMin", 0)).doubleValue(), ((Number) info.getData("xMax", 0)).doubleValue(),
+                ((Number) info.getData("yMin", 0)).doubleValue(), ((Number) info.getData("yMax", 0)).doubleValue());
+    }
+
+    /**
+     * @return the width of the range, a bit wider so the max falls into the last cell
+     */
+    private static double span(double min, double max) {
+        double w = max - min;
+        if (w == 0) w = Math.abs(min) > 0 ? Math.abs(min) : 1;        // case when min and max values are the same
+        return w + w / 1e6;
+    }
+
+    /**
+     * @return the coarsest level whose cells are no larger than maxCell, or -1 if the finest level is too coarse
+     */
+    private static int levelFor(double finestCell, double maxCell) {
+        if (!(finestCell <= maxCell)) return -1;
+        int level = LEVELS;
+        while (level > 0 && finestCell * (1L << (LEVELS - level + 1)) <= maxCell) level--;
+        return level;
+    }
+
+    private static int clamp(int idx, int n) {
+        return Math.max(0, Math.min(idx, n - 1));
+    }
+}
@@ -5,9 +5,12 @@ package edu.caltech.ipac.firefly.server.query;
 
 import edu.caltech.ipac.firefly.core.Util;
 import edu.caltech.ipac.firefly.server.ServCommand;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
 import edu.caltech.ipac.firefly.server.db.DuckDbReadable;
+import edu.caltech.ipac.firefly.server.db.SharedDbStore;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.table.TableUtil;
+import edu.caltech.ipac.table.io.BatchedTable;
 import edu.caltech.ipac.table.io.IpacTableException;
 import edu.caltech.ipac.table.io.IpacTableWriter;
 import edu.caltech.ipac.table.io.RegionTableWriter;
@@ -18,6 +21,7 @@ import edu.caltech.ipac.firefly.data.TableServerRequest;
 import edu.caltech.ipac.firefly.data.table.SelectionInfo;
 import edu.caltech.ipac.table.TableMeta;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
+import edu.caltech.ipac.firefly.server.db.DbMonitor;
 import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
 import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
 import edu.caltech.ipac.firefly.server.util.QueryUtil;
@@ -27,6 +31,7 @@ import edu.caltech.ipac.table.JsonTableUtil;
 import edu.caltech.ipac.util.CollectionUtil;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.FormatUtil;
 import edu.caltech.ipac.util.StringUtils;
 import edu.caltech.ipac.firefly.core.background.Job;
@@ -85,6 +90,7 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
                                                      SearchProcessor.CanFetchDataGroup, Job.Worker {
     private static final Logger.LoggerImpl logger = Logger.getLogger();
     private static final Util.SynchronizedAccess GET_DATA_CHECKER = new Util.SynchronizedAccess();
+    private static final int EXPORT_BATCH_SIZE = AppProperties.getIntProperty("export.batch.size", 10_000);     // rows read at a time when writing out a table
     private Job job;
 
     public void setJob(Job job) {
@@ -130,8 +136,13 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
         // make sure multiple requests for the same data waits for the first one to create before accessing.
         String uniqueID = this.getUniqueID(request);
         var locked = GET_DATA_CHECKER.lock(uniqueID);
+        EmbeddedDbInstance inUse = null;
         try {
             var dbAdapter = getDbAdapter(treq);
+            if (dbAdapter.getDbInstance() instanceof EmbeddedDbInstance db) {
+                inUse = db;
+                inUse.acquire();        // keep it from being evicted while this request is using it
+            }
             sendJobUpdate(ji -> ji.getMeta().setProgress(10, "fetching data..."));
 
             DataGroupPart results;
@@ -174,13 +185,19 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
             logger.error(e);
             throw e;
         } finally {
+            if (inUse != null) inUse.release();
             locked.unlock();
         }
     }
 
     protected void createDbFromRequest(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
         try {
+            long start = System.currentTimeMillis();
             FileInfo dbFileInfo = ingestDataIntoDb(treq, dbAdapter);
+            if (dbAdapter.getDbInstance() instanceof EmbeddedDbInstance db) {
+                db.setCreateCost(System.currentTimeMillis() - start);       // used to decide which DB to evict when memory is low
+            }
+            DbMonitor.checkBudget();
             if (dbAdapter.hasTable(dbAdapter.getDataTable())) {
                 int totalRows = JdbcFactory.getSimpleTemplate(dbAdapter.getDbInstance()).queryForInt("Select count(*) from " + dbAdapter.getDataTable());
                 var headers = dbAdapter.getHeaders(dbAdapter.getDataTable());
@@ -215,8 +232,17 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
             dbAdapter.initDbFile();
             StopWatch.getInstance().start("ingestDataIntoDb: " + req.getRequestId());
 
-            // dataSupplier is passed in.  the adapter decides if fetch is needed.
-            FileInfo finfo = dbAdapter.ingestData(makeDgSupplier(req, () -> fetchDataGroup(req)), dbAdapter.getDataTable());
+            FileInfo finfo;
+            if (SharedDbStore.ENABLED && isSharable(req)
+                    && dbAdapter instanceof DuckDbAdapter duckDb && !(dbAdapter instanceof DuckDbReadable)) {
+                // identical results are ingested once, then shared by all sessions
+                File sharedDb = SharedDbStore.getOrCreate(getSharedID(req), makeDgSupplier(req, () -> fetchDataGroup(req)));
+                duckDb.linkSharedData(sharedDb);
+                finfo = new FileInfo(dbAdapter.getDbFile());
+            } else {
+                // dataSupplier is passed in.  the adapter decides if fetch is needed.
+                finfo = dbAdapter.ingestData(makeDgSupplier(req, () -> fetchDataGroup(req)), dbAdapter.getDataTable());
+            }
 
             StopWatch.getInstance().stop("ingestDataIntoDb: " + req.getRequestId()).printLog("ingestDataIntoDb: " + req.getRequestId());
             return finfo;
@@ -283,19 +309,24 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
                     return new FileInfo(dbAdapter.getDbFile());
             }
 
-            DataGroupPart page = getData(treq);
-            switch(format) {
-                case REGION:
-                    RegionTableWriter.write(new OutputStreamWriter(out), page.getData(), request.getParam("center_cols"));
-                    break;
-                case VO_TABLE_TABLEDATA:
-                case VO_TABLE_BINARY:
-                case VO_TABLE_BINARY2:
-                case VO_TABLE_FITS:
-                    VoTableWriter.save(out, page.getData(), format);
-                    break;
-                default:
-                    IpacTableWriter.save(out, page.getData());
+            // read the results one batch at a time, so a large download does not need to fit in memory
+            BatchedTable table = getBatchedData(treq, dbAdapter);
+            try {
+                switch(format) {
+                    case REGION:
+                        RegionTableWriter.write(new OutputStreamWriter(out), table, request.getParam("center_cols"));
+                        break;
+                    case VO_TABLE_TABLEDATA:
+                    case VO_TABLE_BINARY:
+                    case VO_TABLE_BINARY2:
+                    case VO_TABLE_FITS:
+                        VoTableWriter.save(out, table, format);
+                        break;
+                    default:
+                        IpacTableWriter.save(out, table);
+                }
+            } finally {
+                if (table instanceof DbBatchedTable dbt) dbt.close();      // the result set and database may be evicted again
             }
             // this is not accurate information if used to determine exactly what was written to output stream.
             // dbFile is the database file which contains the whole search results.  What get written to the output
@@ -310,6 +341,74 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
         return EmbeddedDbUtil.getUniqueID((TableServerRequest) request);
     }
 
+    /**
+     * Returns the results of this request, to be read one batch of rows at a time.  The paging of the request is kept.
+     * When the results are not a result set of this database, i.e. a subclass creates its own, they are fetched
+     * all at once instead.
+     * The result set, and its database, are kept from being evicted until the returned table is closed.
+     * @param treq      the request
+     * @param dbAdapter the database of this request
+     * @return the results
+     */
+    protected BatchedTable getBatchedData(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
+        // fetch the first row; this creates the result set and collects its headers and meta
+        TableServerRequest hreq = (TableServerRequest) treq.cloneRequest();
+        if (hreq.getMeta() != null) hreq.getMeta().remove(TableMeta.RESULTSET_ID);
+        hreq.setStartIndex(0);
+        hreq.setPageSize(1);
+        DataGroupPart head = getData(hreq);
+        String resultSetID = hreq.getMeta(TableMeta.RESULTSET_ID);
+        if (resultSetID == null || head.getErrorMsg() != null) {
+            DataGroup all = getData(treq).getData();
+            return new DbBatchedTable(all, all.size(), idx -> idx == 0 ? all : null, () -> {});
+        }
+        EmbeddedDbInstance db = dbAdapter.getDbInstance() instanceof EmbeddedDbInstance edb ? edb : null;
+        boolean pinned = db != null && db.getResultSets().pin(resultSetID);     // false for DATA itself; it's never evicted
+        if (db != null) db.acquire();
+        Runnable release = () -> {
+            if (pinned) db.getResultSets().unpin(resultSetID);
+            if (db != null) db.release();
+        };
+
+        // same as getResultSet; filters and sort are already applied to the result set
+        TableServerRequest nreq = (TableServerRequest) treq.cloneRequest();
+        nreq.setFilters(null);
+        nreq.setSqlFilter(null);
+        nreq.setSortInfo(null);
+        nreq.setInclColumns();
+
+        int start = Math.max(0, treq.getStartIndex());
+        boolean paged = treq.getPageSize() > 0 && treq.getPageSize() != Integer.MAX_VALUE;
+        int end = paged ? (int) Math.min((long) start + treq.getPageSize(), head.getRowCount()) : head.getRowCount();
+        return new DbBatchedTable(head.getData(), Math.max(0, end - start), idx -> {
+            int from = start + idx * EXPORT_BATCH_SIZE;
+            if (from >= end) return null;
+            nreq.setStartIndex(from);
+            nreq.setPageSize(Math.min(EXPORT_BATCH_SIZE, end - from));
+            return dbAdapter.execPageQuery(nreq, resultSetID);
+        }, release);
+    }
+
+    /**
+     * Returns true if the results of this request are the same for every user, and can therefore be stored once
+     * and shared by all sessions.  See {@link SharedDbStore}.
+     * Defaults to false.  Only override this for public data that does not depend on who is asking.
+     * @param treq  the request
+     * @return true if the results can be shared
+     */
+    protected boolean isSharable(TableServerRequest treq) { return false; }
+
+    /**
+     * @param treq  the request
+     * @return an ID identifying the results of this request regardless of the session it's from;
+     *         the same as {@link #getUniqueID(ServerRequest)}, minus the session
+     */
+    protected String getSharedID(TableServerRequest treq) {
+        TableServerRequest sreq = (TableServerRequest) treq.cloneRequest();
+        sreq.removeParam(TableServerRequest.FF_SESSION_ID);
+        return getUniqueID(sreq);
+    }
+
     public void prepareTableMeta(TableMeta defaults, List<DataType> columns, ServerRequest request) {
         // This is part of the older api.  Opportunity for SearchProcessor to add additonal TaIn the new API, you should update these info directly in fetchDataGroup().
     }
@@ -554,5 +653,27 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
         // I will use the format 'error:cause' as a way to transport these messages.
     }
 
-}
 
+    private interface BatchFetcher {
+        /**
+         * @return the batch at the given index, or null when there is no more
+         */
+        DataGroup fetch(int batchIdx) throws DataAccessException;
+    }
+
+    private record DbBatchedTable(DataGroup headers, long rowCount, BatchFetcher fetcher, Runnable onClose) implements BatchedTable {
+        public void close() { onClose.run(); }
+        public DataGroup getHeaders() { return headers; }
+        public long getRowCount() { return rowCount; }
+        public Batches batches() {
+            int[] next = {0};
+            return () -> {
+                try {
+                    return fetcher.fetch(next[0]++);
+                } catch (DataAccessException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            };
+        }
+    }
+}
@@ -5,6 +5,7 @@ package edu.caltech.ipac.firefly.server.query;
 
 import edu.caltech.ipac.firefly.data.TableServerRequest;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
 import edu.caltech.ipac.firefly.server.util.QueryUtil;
 import edu.caltech.ipac.firefly.server.util.StopWatch;
 import edu.caltech.ipac.table.DataGroup;
@@ -27,10 +28,10 @@ import static edu.caltech.ipac.util.StringUtils.split;
     @ParamDoc(name = DEC, desc = "int[], dec column name"),
 })
 /**
- * Handles indexing of data and generates the pixel map for BASE_ORDER.
- * See healpy-java.sql for implementation of deg2pix() function.
+ * Handles indexing of data and generates the pixel maps for every order up to BASE_ORDER.
+ * See DuckDbUDF.deg2pix() for implementation of the index function; healpy-java.sql for its SQL version.
  * The added index column is called ff_healpix_idx
- * The pixel map contains two columns: pixel and count.
+ * The pixel maps are kept in one table with columns norder, pixel, and count.  A map request returns pixel and count.
  * Supports two modes: map and points.
  *   map: Generates and returns the pixel map.
  *   points: Returns the ROW_NUM of all points within specified pixel(s).
@@ -77,20 +78,18 @@ public class HealpixProcessor extends TableFunctionProcessor {
 
         DataGroup results;
         if (mode.equals(MAP)) {
-            String wherePart = "";
+            // the map of every order is precomputed; a request at a finer order than BASE_ORDER gets the BASE_ORDER map
+            int mapOrder = Math.max(0, Math.min(order, BASE_ORDER));
+            String wherePart = "WHERE norder = %d".formatted(mapOrder);
             if (pixels != null && pixels.length > 0) {
-                String lhs = orderDelta > 0 ? "TRUNC(pixel/4^%s)".formatted(orderDelta) : "pixel";
                 String rhs =  pixels.length == 1 ? " = %s".formatted(pixels[0]) : " IN (%s)".formatted(String.join(",", pixels));
-                wherePart = "WHERE %s %s".formatted(lhs, rhs);
-            }
-            String sql = "SELECT * from %s %s".formatted(healpixTable, wherePart);
-            if (orderDelta > 0) {
-                sql = "SELECT TRUNC(pixel/4^%s)::LONG AS 'pixel', SUM(count)::LONG AS 'count' from %s %s GROUP BY 1".formatted(orderDelta, healpixTable, wherePart);
+                wherePart += " AND pixel %s".formatted(rhs);
             }
+            String sql = "SELECT pixel, count from %s %s".formatted(healpixTable, wherePart);
             results = dbAdapter.execQuery(sql, null);
         } else if (mode.equals(POINTS)) {
             if (pixels == null || pixels.length == 0) throw new DataAccessException("POINTS mode: pixels parameter is missing");
-            String lhs = orderDelta > 0 ? "TRUNC(%s/4^%s)".formatted(HEALPIX_IDX, orderDelta) : HEALPIX_IDX;
+            String lhs = orderDelta > 0 ? "(%s >> %d)".formatted(HEALPIX_IDX, 2 * orderDelta) : HEALPIX_IDX;
             String rhs =  pixels.length == 1 ? " = %s".formatted(pixels[0]) : " IN (%s)".formatted(String.join(",", pixels));
             String sql = "SELECT %s, %s, ROW_NUM from %s WHERE %s %s".formatted(ra, dec, dataTable, lhs, rhs);   // need ra,dec(?)
             results = dbAdapter.execQuery(sql, null);
@@ -109,19 +108,32 @@ public class HealpixProcessor extends TableFunctionProcessor {
             sreq.setPageSize(1);    // load table into database; ignore results.
             new SearchManager().getDataGroup(sreq);
         }
+        // a map created before every order was precomputed has no norder column; drop it so it is created again
+        if (dbAdapter.hasTable(healpixTable) &&
+                dbAdapter.execQuery("select * from %s limit 0".formatted(healpixTable), null).getDataDefintion("norder") == null) {
+            dbAdapter.execUpdate("drop table %s".formatted(healpixTable));
+        }
         // if healpix map doesn't exist, index the data table, then create the map
         if (!dbAdapter.hasTable(healpixTable)) {
 
             // create healpix index at BASE_ORDER
             StopWatch.getInstance().start("HealpixProcessor: create index");
-            dbAdapter.execUpdate("ALTER TABLE %s DROP COLUMN IF EXISTS %s".formatted(dataTable, HEALPIX_IDX));  // remove existing index
-            dbAdapter.execUpdate("ALTER TABLE %s ADD COLUMN %s LONG".formatted(dataTable, HEALPIX_IDX));
-            dbAdapter.execUpdate("UPDATE %s SET %s = deg2pix(%s, %s, %s)".formatted(dataTable, HEALPIX_IDX, BASE_ORDER, ra, dec));
+            if (dbAdapter instanceof DuckDbAdapter duckDb) {
+                duckDb.addHealpixIndex(dataTable, ra, dec, HEALPIX_IDX, BASE_ORDER);
+            } else {
+                dbAdapter.execUpdate("ALTER TABLE %s DROP COLUMN IF EXISTS %s".formatted(dataTable, HEALPIX_IDX));  // remove existing index
+                dbAdapter.execUpdate("ALTER TABLE %s ADD COLUMN %s LONG".formatted(dataTable, HEALPIX_IDX));
+                dbAdapter.execUpdate("UPDATE %s SET %s = deg2pix(%s, %s, %s)".formatted(dataTable, HEALPIX_IDX, BASE_ORDER, ra, dec));
+            }
             StopWatch.getInstance().printLog("HealpixProcessor: create index");
 
-            // create healpix map at BASE_ORDER
+            // create healpix maps for every order, from BASE_ORDER down to 0.  Only BASE_ORDER reads the data table;
+            // each coarser order is summed from the one above it, merging 4 pixels into 1.
             StopWatch.getInstance().start("HealpixProcessor: create pixel map");
-            dbAdapter.execUpdate("create table %s as (select %s as 'pixel', count() as 'count' from %s group by 1)".formatted(healpixTable, HEALPIX_IDX, dataTable));
+            dbAdapter.execUpdate("create table %s as (select %d::INT as 'norder', %s as 'pixel', count() as 'count' from %s group by 2)".formatted(healpixTable, BASE_ORDER, HEALPIX_IDX, dataTable));
+            for (int o = BASE_ORDER - 1; o >= 0; o--) {
+                dbAdapter.execUpdate("insert into %1$s select %2$d, pixel >> 2, sum(count) from %1$s where norder = %3$d group by 2".formatted(healpixTable, o, o + 1));
+            }
             StopWatch.getInstance().printLog("HealpixProcessor: create pixel map");
 
         }
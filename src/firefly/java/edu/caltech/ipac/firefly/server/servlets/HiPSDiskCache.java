@@ -0,0 +1,149 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.servlets;
+
+import edu.caltech.ipac.firefly.server.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the HiPS tile directory under a size limit by removing the least recently used directories.
+ * <p>
+ * Usage is tracked per directory, not per file.  A HiPS survey keeps its tiles in directories of up to 10,000
+ * files (Norder/Dir), so this stays small however many tiles are on disk.
+ * The directories already on disk are indexed in the background at startup, oldest first, by the newest file in each.
+ * From then on, each file served or downloaded moves its directory to the back of the line.  Once the total goes
+ * over the limit, the files of the directories at the front are removed until it's 10% under.
+ *
+ * Date: 10/18/26
+ */
+class HiPSDiskCache {
+
+    private static final Logger.LoggerImpl LOG = Logger.getLogger();
+
+    private final File dir;
+    private final List<File> excluded;
+    private final long maxSize;
+    private final Executor executor;
+    private final LinkedHashMap<File, Long> dirs = new LinkedHashMap<>(64, .75f, true);    // access order; directory -> size of its files
+    private long totalSize;
+    private boolean loaded;
+    private boolean evicting;
+
+    /**
+     * @param dir       the directory to manage
+     * @param excluded  sub-directories that are not tiles; they are never removed
+     * @param maxSize   the size limit in bytes; 0 for no limit
+     * @param executor  used to index the directory and to remove files
+     */
+    HiPSDiskCache(File dir, List<File> excluded, long maxSize, Executor executor) {
+        this.dir = dir;
+        this.excluded = excluded;
+        this.maxSize = maxSize;
+        this.executor = executor;
+        if (maxSize > 0) executor.execute(this::load);
+    }
+
+    /**
+     * @param f a file that was just served
+     */
+    synchronized void accessed(File f) {
+        dirs.get(f.getParentFile());       // moves it to the back of the line
+    }
+
+    /**
+     * @param f a file that was just downloaded or replaced
+     * @param oldSize the size of the file it replaced; 0 if it is new
+     */
+    void added(File f, long oldSize) {
+        if (maxSize <= 0) return;
+        synchronized (this) {
+            dirs.merge(f.getParentFile(), f.length() - oldSize, Long::sum);
+            totalSize += f.length() - oldSize;
+            if (!needsEviction()) return;
+            evicting = true;
+        }
+        executor.execute(this::evict);
+    }
+
+    synchronized long getTotalSize() { return totalSize; }
+    synchronized int getDirCount() { return dirs.size(); }
+
+//====================================================================
+//  internal
+//====================================================================
+
+    private boolean needsEviction() {
+        return loaded && !evicting && totalSize > maxSize;
+    }
+
+    private void load() {
+        Map<File, long[]> found = new HashMap<>();       // directory -> {size, newest lastModified}
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.filter(Files::isRegularFile)
+                 .filter(p -> excluded.stream().noneMatch(ex -> p.startsWith(ex.toPath())))
+                 .forEach(p -> {
+                     File f = p.toFile();
+                     long[] usage = found.computeIfAbsent(f.getParentFile(), k -> new long[2]);
+                     usage[0] += f.length();
+                     usage[1] = Math.max(usage[1], f.lastModified());
+                 });
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to index HiPS cache: " + e.getMessage());
+        }
+        List<Map.Entry<File, long[]>> sorted = new ArrayList<>(found.entrySet());
+        sorted.sort(Comparator.comparingLong(e -> e.getValue()[1]));
+
+        synchronized (this) {
+            // directories added to while indexing are more recent than any found on disk.  The walk may have
+            // counted those files already, so keep the larger of the two sizes.
+            LinkedHashMap<File, Long> recent = new LinkedHashMap<>(dirs);
+            dirs.clear();
+            totalSize = 0;
+            for (Map.Entry<File, long[]> e : sorted) dirs.put(e.getKey(), e.getValue()[0]);
+            recent.forEach((d, size) -> dirs.merge(d, size, Math::max));
+            for (long size : dirs.values()) totalSize += size;
+            loaded = true;
+            LOG.info("HiPS cache: %,d directories, %,d MB".formatted(dirs.size(), totalSize / (1024 * 1024)));
+            if (!needsEviction()) return;
+            evicting = true;
+        }
+        evict();
+    }
+
+    private void evict() {
+        List<File> toDelete = new ArrayList<>();
+        synchronized (this) {
+            long target = maxSize - maxSize / 10;
+            for (Iterator<Map.Entry<File, Long>> itr = dirs.entrySet().iterator(); totalSize > target && itr.hasNext(); ) {
+                Map.Entry<File, Long> e = itr.next();
+                itr.remove();
+                totalSize -= e.getValue();
+                toDelete.add(e.getKey());
+            }
+            evicting = false;
+        }
+        int cnt = 0;
+        for (File d : toDelete) {
+            File[] files = d.listFiles(File::isFile);      // only its own files; sub-directories are tracked on their own
+            if (files == null) continue;
+            for (File f : files) {
+                if (f.delete()) cnt++;
+            }
+        }
+        LOG.info("HiPS cache: removed %,d files from %,d least recently used directories".formatted(cnt, toDelete.size()));
+    }
+}
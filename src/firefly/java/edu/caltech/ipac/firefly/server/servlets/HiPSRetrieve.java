@@ -8,30 +8,71 @@ package edu.caltech.ipac.firefly.server.servlets;
 
 import edu.caltech.ipac.firefly.data.FileInfo;
 import edu.caltech.ipac.firefly.server.ServerContext;
+import edu.caltech.ipac.firefly.server.query.ResourceProcessor;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.download.FailedRequestException;
 import edu.caltech.ipac.util.download.URLDownload;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-
-import static java.net.HttpURLConnection.HTTP_CLIENT_TIMEOUT;
-import static java.net.HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
 
 /**
+ * Proxy cache for HiPS tiles, properties and lists.
+ * <p>
+ * - A file we already have is returned right away.  If it was last checked more than REVALIDATE_INTERVAL ago,
+ *   it is checked with a conditional GET in the background.
+ * - Requests for the same file while it is being downloaded wait for that download instead of starting their own.
+ * - At most MAX_PER_HOST downloads run against one host at a time.
+ * - Images are validated by their signature, not by decoding them.
+ * - Files are downloaded to a temp file, then moved in place, so a partial file is never served.
+ * - The directory is kept under MAX_CACHE_SIZE by removing the least recently used files, see {@link HiPSDiskCache}.
+ *
  * @author Trey Roby
  */
 public class HiPSRetrieve {
 
     private static final List<String> extList= Arrays.asList("jpg", "jpeg", "png", "webp");
+    private static final int MAX_PER_HOST= AppProperties.getIntProperty("hips.maxConnectionsPerHost", 6);
+    private static final long REVALIDATE_INTERVAL= AppProperties.getLongProperty("hips.revalidate.interval", 300) * 1000;  // in millis
+    private static final long MAX_CACHE_SIZE= AppProperties.getLongProperty("hips.cache.maxSize", 50L*1024*1024*1024);  // 0 for no limit
+    private static final int HOST_WAIT_SECS= 30;
+    private static final int FETCH_WAIT_SECS= 2 * HOST_WAIT_SECS;     // longest wait for another request's download
+    private static final int REVALIDATE_TIMEOUT_SECS= 4;
+    private static final int MIN_FILE_SIZE= 400;
+
+    private static final Map<File, CompletableFuture<FileInfo>> inFlight= new ConcurrentHashMap<>();
+    private static final Map<String, Semaphore> hostPermits= new ConcurrentHashMap<>();
+    private static final ExecutorService background= Executors.newVirtualThreadPerTaskExecutor();
+    private static final HiPSDiskCache diskCache= new HiPSDiskCache(ServerContext.getHiPSDir(),
+            List.of(new File(ServerContext.getHiPSDir(), ResourceProcessor.SUBDIR_PATH)), MAX_CACHE_SIZE, background);
 
     public static FileInfo retrieveHiPSData(String urlStr, String pathExt, boolean alwaysUseCached) {
         try {
@@ -42,75 +83,172 @@ public class HiPSRetrieve {
             if (!dir.exists()) dir.mkdirs();
 
             File targetFile= new File(dir, new File((pathExt == null ? url.getFile() : pathExt)).getName());
-            boolean fileExistLocal= targetFile.canRead() && targetFile.length()>400;
-            FileInfo preFetchFileInfo= new FileInfo(targetFile);
-            if (alwaysUseCached && fileExistLocal) return preFetchFileInfo;
+            if (targetFile.canRead() && targetFile.length()>MIN_FILE_SIZE) {
+                diskCache.accessed(targetFile);
+                if (!alwaysUseCached && System.currentTimeMillis()-targetFile.lastModified() > REVALIDATE_INTERVAL) {
+                    revalidateLater(url, targetFile);
+                }
+                return new FileInfo(targetFile);
+            }
+            return fetch(url, targetFile);
+        } catch (MalformedURLException e) {
+            return new FileInfo(null, null, 404, e.toString());
+        }
+    }
 
-            // if we already have a version of the file set the download modified only option. Also set a very time timeout,
-            // so that if the server is down we don't wait long.
-            URLDownload.Options options= fileExistLocal ? URLDownload.Options.modifiedAndTimeoutOp(true,4) : URLDownload.Options.def();
+    /**
+     * Download the file, or wait for the download already in progress
+     */
+    private static FileInfo fetch(URL url, File targetFile) {
+        CompletableFuture<FileInfo> result= new CompletableFuture<>();
+        CompletableFuture<FileInfo> pending= inFlight.putIfAbsent(targetFile, result);
+        if (pending!=null) {
+            // a copy, so that timing out here does not complete the download for the other waiters
+            return pending.copy().completeOnTimeout(new FileInfo(HTTP_UNAVAILABLE), FETCH_WAIT_SECS, TimeUnit.SECONDS).join();
+        }
+        try {
+            FileInfo fi= download(url, targetFile, false);
+            result.complete(fi);
+            return fi;
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(targetFile, result);
+        }
+    }
+
+    /**
+     * Check the file with the server in the background, unless it's already being downloaded or checked
+     */
+    private static void revalidateLater(URL url, File targetFile) {
+        CompletableFuture<FileInfo> result= new CompletableFuture<>();
+        if (inFlight.putIfAbsent(targetFile, result)!=null) return;
+        background.execute(() -> {
+            try {
+                result.complete(download(url, targetFile, true));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                inFlight.remove(targetFile, result);
+            }
+        });
+    }
+
+    /**
+     * @param url the url of the file
+     * @param targetFile where to save it
+     * @param revalidate if true, targetFile exists; only replace it if it was modified.  This never waits for a
+     *                   connection to the host; if none is available it is left for the next request.
+     * @return the file info.  When revalidating, it's always targetFile; an error keeps the version we have.
+     */
+    private static FileInfo download(URL url, File targetFile, boolean revalidate) {
+        Semaphore permits= hostPermits.computeIfAbsent(url.getHost(), h -> new Semaphore(MAX_PER_HOST));
+        try {
+            boolean acquired= revalidate ? permits.tryAcquire() : permits.tryAcquire(HOST_WAIT_SECS, TimeUnit.SECONDS);
+            if (!acquired) return revalidate ? new FileInfo(targetFile) : new FileInfo(HTTP_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FileInfo(HTTP_UNAVAILABLE);
+        }
+
+        File tmpFile= new File(targetFile.getParentFile(), targetFile.getName() + "-" + UUID.randomUUID() + ".part");
+        try {
+            // when revalidating, set a very short timeout, so that if the server is down we don't wait long.
+            Map<String,String> headers= revalidate ? Map.of("If-Modified-Since", httpDate(targetFile.lastModified())) : null;
+            URLDownload.Options options= revalidate ? URLDownload.Options.modifiedAndTimeoutOp(false,REVALIDATE_TIMEOUT_SECS) : URLDownload.Options.def();
             int rCode;
-            File retFile;
             FileInfo fetchedFileInfo;
             try {
-                fetchedFileInfo= URLDownload.getDataToFile(url,targetFile,null, null, options);
+                fetchedFileInfo= URLDownload.getDataToFile(url,tmpFile,null, headers, options);
                 rCode= fetchedFileInfo.getResponseCode();
-                retFile= fetchedFileInfo.getFile();
             }
             catch (FailedRequestException e) {
-                return fileExistLocal ? preFetchFileInfo : new FileInfo(e.getResponseCode());
+                fetchedFileInfo= null;
+                rCode= e.getResponseCode();
             }
 
-            switch (rCode) {
-                case 200 -> {
-                    if (isValid(retFile)) return fetchedFileInfo;
-                    if (retFile!=null) retFile.delete();
-                    return new FileInfo(rCode);
-                }
-                case HTTP_NOT_MODIFIED -> {
-                    return fetchedFileInfo;
-                }
-                case HTTP_GATEWAY_TIMEOUT, HTTP_CLIENT_TIMEOUT -> {
-                    return fileExistLocal ? preFetchFileInfo : new FileInfo(rCode);
-                }
-                default -> {
-                    if (fileExistLocal && targetFile.length() > 400) return preFetchFileInfo; // if the file existed and it still has content, return it
-                    if (retFile != null) retFile.delete();
-                    if (rCode == 404 && imageRequest(retFile)) return new FileInfo(204);
-                    else return new FileInfo(rCode);
+            if (revalidate) {
+                if (rCode==HTTP_OK && isValid(tmpFile, targetFile.getName())) {
+                    moveInPlace(tmpFile, targetFile);
+                } else if (rCode==HTTP_NOT_MODIFIED) {
+                    targetFile.setLastModified(System.currentTimeMillis());
                 }
+                return new FileInfo(targetFile);
             }
-        } catch (MalformedURLException e) {
-            return new FileInfo(null, null, 404, e.toString());
+
+            if (rCode==HTTP_OK && fetchedFileInfo!=null) {
+                if (!isValid(tmpFile, targetFile.getName())) return new FileInfo(rCode);
+                moveInPlace(tmpFile, targetFile);
+                return new FileInfo(targetFile, fetchedFileInfo.getExternalName(), rCode,
+                                    fetchedFileInfo.getResponseCodeMsg(), fetchedFileInfo.getContentType());
+            }
+            if (rCode == 404 && imageRequest(targetFile.getName())) return new FileInfo(204);
+            return new FileInfo(rCode);
+        } catch (IOException e) {
+            return revalidate ? new FileInfo(targetFile) : new FileInfo(HTTP_INTERNAL_ERROR);
+        } finally {
+            tmpFile.delete();
+            permits.release();
+        }
+    }
+
+    private static void moveInPlace(File tmpFile, File targetFile) throws IOException {
+        long oldSize= targetFile.length();
+        try {
+            Files.move(tmpFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
+        diskCache.added(targetFile, oldSize);
+    }
+
+    private static String httpDate(long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
     }
 
-    private static boolean imageRequest(File f) {
-        if (f==null) return false;
-        String lowerF= f.getAbsolutePath().toLowerCase();
+    private static boolean imageRequest(String name) {
+        if (name==null) return false;
+        String lowerF= name.toLowerCase();
         return extList.stream().anyMatch(lowerF::contains);
     }
 
-    private static boolean isValid(File f) {
-        if (f==null) return false;
+    /**
+     * @param f the downloaded file
+     * @param name the name it will be saved as
+     * @return true if the content looks like what the name says it is
+     */
+    static boolean isValid(File f, String name) {
+        if (f==null || !f.canRead()) return false;
+        String fLowStr= name.toLowerCase();
         try {
-            String fLowStr= f.getAbsolutePath().toLowerCase();
             if (fLowStr.endsWith("properties") || fLowStr.endsWith("list")) {
                 Properties p = new Properties();
-                p.load(new FileReader(f));
-                if (p.size()<2) return false;
+                try (Reader r= new FileReader(f)) {
+                    p.load(r);
+                }
+                return p.size()>=2;
             }
-            else if (imageRequest(f)) {
-                BufferedImage i = ImageIO.read(f);
-                if (i==null) return false;
+            else if (imageRequest(fLowStr)) {
+                return hasImageSignature(f);
             }
-
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             return false;
         }
-
         return true;
     }
 
-
+    /**
+     * @return true if the file starts with a PNG, JPEG, or WEBP signature
+     */
+    static boolean hasImageSignature(File f) throws IOException {
+        byte[] h= new byte[12];
+        int len;
+        try (InputStream is= new FileInputStream(f)) {
+            len= is.readNBytes(h, 0, h.length);
+        }
+        if (len>=8 && (h[0]&0xff)==0x89 && h[1]=='P' && h[2]=='N' && h[3]=='G' && h[4]=='\r' && h[5]=='\n') return true;
+        if (len>=3 && (h[0]&0xff)==0xFF && (h[1]&0xff)==0xD8 && (h[2]&0xff)==0xFF) return true;
+        return len==12 && h[0]=='R' && h[1]=='I' && h[2]=='F' && h[3]=='F' && h[8]=='W' && h[9]=='E' && h[10]=='B' && h[11]=='P';
+    }
 }
@@ -170,8 +170,9 @@ public class ServerStatus extends BaseHttpServlet {
             --------------------
             Rows: %,15d       Peak Rows: %,15d 
             Databases: %,10d       Peak Databases: %,10d      Total Database: %,10d
+            Budget Evictions: %,10d
             
-            """, stats.memRows, stats.peakMemRows, stats.memDbs, stats.peakMemDbs, stats.totalDbs);
+            """, stats.memRows, stats.peakMemRows, stats.memDbs, stats.peakMemDbs, stats.totalDbs, stats.budgetEvictions);
 
         String driver;
         if (DbAdapter.DEF_DB_TYPE.equals(DuckDbAdapter.NAME)) {
@@ -302,7 +303,11 @@ public class ServerStatus extends BaseHttpServlet {
     private static void showEventsStatus(PrintWriter w) {
         w.println("Server Events Information");
         w.println("  - Total events fired:" + ServerEventManager.getTotalEventCnt());
-        w.println("  - Total events delivered:" + ServerEventManager.getDeliveredEventCnt());
+        w.println("  - Total events queued:" + ServerEventManager.getQueuedEventCnt());
+        w.println("  - Total events sent to clients:" + ServerEventManager.getSentEventCnt());
+        w.println("  - Total events coalesced:" + ServerEventManager.getCoalescedEventCnt());
+        w.println("  - Total events dropped:" + ServerEventManager.getDroppedEventCnt());
+        w.println("  - Events waiting to be sent:" + ServerEventManager.getPendingEventCnt());
         int qCnt= ServerEventManager.getActiveQueueCnt();
         w.println("  - Total active queues:" + qCnt);
         if(qCnt>0) {
@@ -313,7 +318,7 @@ public class ServerStatus extends BaseHttpServlet {
 
     private static String makeQueueList() {
         return ServerEventManager.getQueueDescriptionList(10).stream()
-                .map( d -> String.format("     - %s, %s\n",d.channel(), new Date(d.lastPutTime())))
+                .map( d -> String.format("     - %s, %s, pending: %d, dropped: %d\n",d.channel(), new Date(d.lastPutTime()), d.pendingCnt(), d.droppedCnt()))
                 .reduce("", (all, entry) -> all+entry);
     }
 
@@ -3,6 +3,11 @@ package edu.caltech.ipac.firefly.server.visualize;
 import edu.caltech.ipac.firefly.data.HasSizeOf;
 import edu.caltech.ipac.firefly.visualize.Band;
 import edu.caltech.ipac.firefly.visualize.PlotState;
+import edu.caltech.ipac.util.AppProperties;
+import edu.caltech.ipac.util.cache.Cache;
+import edu.caltech.ipac.util.cache.CacheKey;
+import edu.caltech.ipac.util.cache.CacheManager;
+import edu.caltech.ipac.util.cache.StringKey;
 import edu.caltech.ipac.visualize.plot.ActiveFitsReadGroup;
 import edu.caltech.ipac.visualize.plot.Histogram;
 import edu.caltech.ipac.visualize.plot.ImageHeader;
@@ -21,6 +26,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import static edu.caltech.ipac.firefly.visualize.Band.BLUE;
 import static edu.caltech.ipac.firefly.visualize.Band.GREEN;
@@ -33,6 +39,12 @@ import static edu.caltech.ipac.firefly.visualize.Band.RED;
 public class DirectStretchUtils {
 
     private final static ExecutorService exeService= Executors.newWorkStealingPool();
+    /**
+     * When true, the stretched tiles of a standard (non 3 color) image are kept in the vis memory cache, keyed by
+     * data (file, hdu, plane), range values and tile.  Asking for other compress levels or the same stretch again
+     * only stretches the tiles that were evicted, and does not re-read or re-flip the data when none were.
+     */
+    private final static boolean TILE_CACHE= AppProperties.getBooleanProperty("visualize.stretch.tileCache", true);
     public enum CompressType {FULL, HALF, HALF_FULL, QUARTER_HALF, QUARTER_HALF_FULL}
 
     public static StretchDataInfo getStretchData(PlotState state, ActiveFitsReadGroup frGroup, int tileSize, CompressType ct)
@@ -62,12 +74,14 @@ public class DirectStretchUtils {
     private static StretchDataInfo getStretchStandard(PlotState state, FitsRead fr, int tileSize, CompressType ct)
             throws Exception {
         StretchVars sv= getStretchVars(fr,tileSize, ct);
-        float [] flip1d= fr.getRawFloatAryFlipped(true);
         RangeValues rv= state.getRangeValues();
+        String tileKeyBase= TILE_CACHE && fr.getDataKey()!=null ? fr.getDataKey()+"--"+rv+"--"+tileSize : null;
+        Supplier<float[]> flip1d= lazyFlipped(fr);
         Histogram histogram= fr.getHistogram();
 
         var sTileList = doTileStretch(sv,tileSize, StretchStandardTile::new,
-                (stdef, strContainer) -> () -> strContainer.stretch(stdef, rv, flip1d,fr.getHeader(),histogram) );
+                (stdef, strContainer) -> () -> strContainer.stretch(stdef, rv, flip1d,fr.getDataKey(true),fr.getHeader(),histogram,
+                        tileKeyBase!=null ? new StringKey(tileKeyBase, stdef.x, stdef.y) : null) );
         return buildStandardResult(sTileList,rv,sv.totWidth,sv.totHeight,ct);
     }
 
@@ -85,7 +99,7 @@ public class DirectStretchUtils {
          new ArrayList<Stretch3CTile>(sv.tileLen);
 
         var sTileList =doTileStretch(sv,tileSize, Stretch3CTile::new,
-                (stdef,strContainer) -> () -> strContainer.stretch(stdef, rvAry, tComp.float1dAry,tComp.imHeadAry,tComp.histAry,rgbI) );
+                (stdef,strContainer) -> () -> strContainer.stretch(stdef, rvAry, tComp.float1dAry,tComp.dataKeyAry,tComp.imHeadAry,tComp.histAry,rgbI) );
         int bLen= state.getBands().length;
         byte[] byte1d= new byte[sv.totWidth*sv.totHeight * bLen];
         byte[] byte1dHalf=  useHalf(ct) ? new byte[dRoundUp(sv.totWidth,2) * dRoundUp(sv.totHeight,2) * bLen] : null;
@@ -184,6 +198,19 @@ public class DirectStretchUtils {
         return flipped;
     }
 
+    /**
+     * the flipped data is only retrieved if a tile needs to be stretched, and only once for all the tiles
+     */
+    private static Supplier<float[]> lazyFlipped(FitsRead fr) {
+        float[][] flipped= new float[1][];
+        return () -> {
+            synchronized (flipped) {
+                if (flipped[0]==null) flipped[0]= fr.getRawFloatAryFlipped(true);
+                return flipped[0];
+            }
+        };
+    }
+
     private static StretchVars getStretchVars(FitsRead fr, int tileSize, CompressType ct) {
         int totWidth= fr.getNaxis1();
         int totHeight= fr.getNaxis2();
@@ -198,6 +225,7 @@ public class DirectStretchUtils {
     private static ThreeCComponents get3CComponents(ActiveFitsReadGroup frGroup, int totWidth, int totHeight, PlotState state) {
         int idx;
         float[][] float1dAry= new float[3][];
+        String[] dataKeyAry= new String[3];
         ImageHeader[] imHeadAry= new ImageHeader[3];
         Histogram[] histAry= new Histogram[3];
         Band[] bands= state.getBands();
@@ -206,10 +234,11 @@ public class DirectStretchUtils {
             FitsRead bandFr= frGroup.getFitsRead(band);
             idx= band.getIdx();
             float1dAry[idx] = bandFr.getRawFloatAryFlipped(false);
+            dataKeyAry[idx]= bandFr.getDataKey(true);
             imHeadAry[idx]= new ImageHeader(bandFr.getHeader());
             histAry[idx]= bandFr.getHistogram();
         }
-        return new ThreeCComponents(float1dAry,imHeadAry,histAry);
+        return new ThreeCComponents(float1dAry,dataKeyAry,imHeadAry,histAry);
     }
 
     private static RGBIntensity get3CRGBIntensity(PlotState state,ActiveFitsReadGroup frGroup, Band[] bands) {
@@ -301,7 +330,7 @@ public class DirectStretchUtils {
     }
 
     private interface SetupStretchTask<T> { Callable<Void> makeTask(StretchTileDef stdef, T stretchContainer); }
-    private record ThreeCComponents(float[][] float1dAry, ImageHeader[] imHeadAry, Histogram[] histAry) {}
+    private record ThreeCComponents(float[][] float1dAry, String[] dataKeyAry, ImageHeader[] imHeadAry, Histogram[] histAry) {}
     private record StretchVars(int totWidth, int totHeight, int xPanels, int yPanels, int tileLen, CompressType ct) {}
     private record StretchTileDef(int x, int y, int width, int height, CompressType ct) {}
 
@@ -374,13 +403,13 @@ public class DirectStretchUtils {
         byte[][] resultHalf;
         byte[][] resultQuarter;
 
-        Void stretch(StretchTileDef stdef, RangeValues[] rvAry, float [][] float1dAry,
+        Void stretch(StretchTileDef stdef, RangeValues[] rvAry, float [][] float1dAry, String[] dataKeyAry,
                                ImageHeader [] imHeadAry, Histogram[] histAry, RGBIntensity rgbIntensity) {
             byte[][] pixelDataAry= new byte[3][];
             for(int i=0;i<3; i++) pixelDataAry[i]= new byte[stdef.width * stdef.height];
             int lastPixel = stdef.x + stdef.width -1;
             int lastLine = stdef.y + stdef.height -1;
-            ImageStretch.stretchPixels3Color(rvAry, float1dAry, pixelDataAry, imHeadAry, histAry,
+            ImageStretch.stretchPixels3Color(rvAry, float1dAry, dataKeyAry, pixelDataAry, imHeadAry, histAry,
                     rgbIntensity, stdef.x, lastPixel, stdef.y, lastLine );
             this.result =  pixelDataAry;
             if (useHalf(stdef.ct))   {
@@ -399,22 +428,49 @@ public class DirectStretchUtils {
         }
     }
 
-    private static class StretchStandardTile {
+    private static class StretchStandardTile implements Serializable, HasSizeOf {
         byte[] result;
         byte[] resultHalf;
         byte[] resultQuarter;
 
-        Void stretch(StretchTileDef stdef, RangeValues rv, float [] float1d, Header header, Histogram histogram) {
-            final ImageHeader imHead= new ImageHeader(header) ;
-            byte [] byteAry= new byte[stdef.width * stdef.height];
-            int lastPixel = stdef.x + stdef.width -1;
-            int lastLine = stdef.y + stdef.height -1;
-            ImageStretch.stretchPixels8Bit(rv, float1d, byteAry, imHead,  histogram, stdef.x, lastPixel, stdef.y, lastLine );
-            if (useHalf(stdef.ct))   this.resultHalf = makeDecimated(byteAry, 2, stdef.width, stdef.height);
-            if (useQuarter(stdef.ct)) this.resultQuarter = makeDecimated(byteAry, 4, stdef.width, stdef.height);
-            this.result =byteAry;
+        Void stretch(StretchTileDef stdef, RangeValues rv, Supplier<float[]> float1d, String dataKey, Header header, Histogram histogram,
+                     CacheKey tileKey) {
+            Cache<StretchStandardTile> cache= tileKey!=null ? CacheManager.getVisMemCache() : null;
+            StretchStandardTile cached= cache!=null ? cache.get(tileKey) : null;
+            boolean changed= cached==null;
+            if (cached!=null) {
+                this.result= cached.result;
+                this.resultHalf= cached.resultHalf;
+                this.resultQuarter= cached.resultQuarter;
+            }
+            else {
+                final ImageHeader imHead= new ImageHeader(header) ;
+                byte [] byteAry= new byte[stdef.width * stdef.height];
+                int lastPixel = stdef.x + stdef.width -1;
+                int lastLine = stdef.y + stdef.height -1;
+                ImageStretch.stretchPixels8Bit(rv, float1d.get(), dataKey, byteAry, imHead,  histogram, stdef.x, lastPixel, stdef.y, lastLine );
+                this.result =byteAry;
+            }
+            if (useHalf(stdef.ct) && this.resultHalf==null) {
+                this.resultHalf = makeDecimated(this.result, 2, stdef.width, stdef.height);
+                changed= true;
+            }
+            if (useQuarter(stdef.ct) && this.resultQuarter==null) {
+                this.resultQuarter = makeDecimated(this.result, 4, stdef.width, stdef.height);
+                changed= true;
+            }
+            if (cache!=null && changed) cache.put(tileKey, this);
             return null;
         }
+
+        @Override
+        public long getSizeOf() {
+            long sum= 48;
+            if (result!=null) sum+=result.length;
+            if (resultHalf!=null) sum+=resultHalf.length;
+            if (resultQuarter!=null) sum+=resultQuarter.length;
+            return sum;
+        }
     }
 
     private static class StretchMaskTile {
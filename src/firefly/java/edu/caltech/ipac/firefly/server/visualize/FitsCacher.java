@@ -58,13 +58,14 @@ public class FitsCacher {
                 if (fitsDataEval!=null) return fitsDataEval;
 
                 try {
-                    prepareCacheSpace(fitsFileInfo);
                     long start = System.currentTimeMillis();
                     fitsDataEval= FitsEvaluation.readAndEvaluate(fitsFile, clearHdu, req);
+                    prepareCacheSpace(fitsFileInfo, fitsDataEval);
                     fitsDataEval.addRelatedDataToAllImages(fitsFileInfo.getRelatedData());
+                    fitsDataEval.setLoadTime(System.currentTimeMillis() - start);
                     addToCache(fitsFileInfo, fitsDataEval);
                     addFileInfoToCache(fitsFileInfo);
-                    logTime(fitsFileInfo, System.currentTimeMillis() - start);
+                    logTime(fitsFileInfo, fitsDataEval.getLoadTime());
                     return fitsDataEval;
                 } catch (FitsException e) {
                     File dir= fitsFile.getParentFile();
@@ -118,8 +119,19 @@ public class FitsCacher {
         addToCache(fitsFileInfo,fitsDataEval);
     }
 
-    private static void prepareCacheSpace(FileInfo fitsFileInfo) {
-        memCache.put(fitsFileInfo, (HasSizeOf) () -> fitsFileInfo.getFile().length()); //force the cache to make space
+    /**
+     * Make room for the pixels of every FitsRead that keeps them on the heap, before they are read.  Mapped pixel
+     * data is not on the heap, so there is nothing to make room for.  Whether a FitsRead is mapped is only known
+     * after the map is attempted, so this is decided per FitsRead, after the file is read.
+     */
+    private static void prepareCacheSpace(FileInfo fitsFileInfo, FitsDataEval fitsDataEval) {
+        long heapSize= 0;
+        for (FitsRead fr : fitsDataEval.getFitReadAry()) {
+            if (fr!=null && fr.isPixelDataOnHeap()) heapSize+= (long)fr.getNaxis1() * fr.getNaxis2() * 4;
+        }
+        if (heapSize==0) return;
+        long size= heapSize;
+        memCache.put(fitsFileInfo, (HasSizeOf) () -> size); //force the cache to make space
         memCache.remove(fitsFileInfo);
     }
 
@@ -13,6 +13,7 @@ package edu.caltech.ipac.firefly.server.visualize.fitseval;
  */
 
 
+import edu.caltech.ipac.firefly.data.HasLoadCost;
 import edu.caltech.ipac.firefly.data.HasSizeOf;
 import edu.caltech.ipac.firefly.data.RelatedData;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsRead;
@@ -26,12 +27,13 @@ import java.util.List;
 /**
  * @author Trey Roby
  */
-public class FitsDataEval implements Serializable, HasSizeOf {
+public class FitsDataEval implements Serializable, HasSizeOf, HasLoadCost {
 
     private final FitsRead [] frAry;
     private final List<RelatedData>[] relatedDataAry;
     private final File hduUnCompressedFile;
     private long baseSize= 0;
+    private long loadTime= 0;
 
 
 
@@ -44,6 +46,8 @@ public class FitsDataEval implements Serializable, HasSizeOf {
     public FitsRead[] getFitReadAry() { return frAry; }
     public List<RelatedData> getRelatedData(int imageIdx) { return relatedDataAry[imageIdx]; }
     public File getHduUnCompressedFile() { return hduUnCompressedFile; }
+    public long getLoadTime() { return loadTime; }
+    public void setLoadTime(long loadTime) { this.loadTime= loadTime; }
 
     public long getSizeOf() {
         long fitsTotal= Arrays.stream(this.frAry).map(FitsRead::getSizeOf).reduce(0L, Long::sum);
@@ -45,6 +45,9 @@ public class FitsEvaluation {
             BasicHDU<?>[]  workingHDUS= uFitsInfo!=null ? uFitsInfo.HDUs() : HDUs;
             if (workingHDUS.length==0) throw new FitsException("Bad format in FITS file, no HDUs found");
             FitsRead[] frAry = FitsReadFactory.createFitsReadArray(workingHDUS, f, clearHdu);
+            if (uFitsInfo!=null) {
+                for (FitsRead fr : frAry) fr.setUncompressedFile(uFitsInfo.file());
+            }
             FitsDataEval fitsDataEval= new FitsDataEval(frAry,fitsFile);
             if (workingHDUS.length >1) { // Do evaluation
                 for(int i= 0; i<frAry.length; i++) {
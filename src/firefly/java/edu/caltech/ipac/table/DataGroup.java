@@ -508,6 +508,28 @@ public class DataGroup implements Serializable, Cloneable, Iterable<DataObject>
         }
     }
 
+    /**
+     * Columnar access to the data.  Use the typed getters of the returned list, i.e. {@link PrimitiveList.Doubles#getDouble(int)},
+     * to read values without boxing them or creating a row object.
+     * @param cname the column name
+     * @return the data of the given column, or null if the column does not exist
+     */
+    public PrimitiveList getColumnData(String cname) {
+        return getDataList(cname);
+    }
+
+    /**
+     * @return the data of all columns, in the same order as {@link #getDataDefinitions()}
+     */
+    public PrimitiveList[] getColumnData() {
+        DataType[] cols = getDataDefinitions();
+        PrimitiveList[] colData = new PrimitiveList[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            colData[i] = getDataList(cols[i].getKeyName());
+        }
+        return colData;
+    }
+
     public void trimToSize() {
         for (PrimitiveList plist : data.values()) {
             plist.trimToSize();
@@ -548,6 +570,8 @@ public class DataGroup implements Serializable, Cloneable, Iterable<DataObject>
                         dataList = new PrimitiveList.Bytes(initCapacity);
                     } else if (clz == Boolean.class) {
                         dataList = new PrimitiveList.Booleans(initCapacity);
+                    } else if (clz == String.class) {
+                        dataList = new PrimitiveList.Strings(initCapacity);
                     } else {
                         dataList = new PrimitiveList.Objects(initCapacity);
                     }
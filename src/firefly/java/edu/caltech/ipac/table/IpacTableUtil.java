@@ -276,6 +276,24 @@ public class IpacTableUtil {
         writer.println(" ");
     }
 
+    /**
+     * Same as {@link #writeRow(PrintWriter, List, DataObject)}, but reads directly from the columns' data.
+     * @param colData   the data of each of the headers, in the same order
+     * @param rowIdx    the row to write
+     */
+    public static void writeRow(PrintWriter writer, List<DataType> headers, PrimitiveList[] colData, int rowIdx) {
+        for (int i = 0; i < headers.size(); i++) {
+            DataType dt = headers.get(i);
+            String v = dt.formatFixedWidth(colData[i] == null ? null : colData[i].get(rowIdx));
+            // when writing out the IPAC table.. if ROWID is given, and data is not found. use the getRowId() value instead.
+            if (v == null && dt.getKeyName().equals(DataGroup.ROW_IDX)) {
+                v = dt.formatFixedWidth(rowIdx);
+            }
+            writer.print(" " + v);
+        }
+        writer.println(" ");
+    }
+
 
     public static IpacTableDef createColumnDefs(String line) {
         IpacTableDef tableDef = new IpacTableDef();
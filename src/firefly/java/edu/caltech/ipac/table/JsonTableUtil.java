@@ -16,12 +16,14 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.stream.Collectors;
 
 import static edu.caltech.ipac.table.TableMeta.DERIVED_FROM;
@@ -180,16 +182,40 @@ public class JsonTableUtil {
                 .forEach(att -> data.getTableMeta().removeAttribute(att.getKey()));
 
         if (data.size() > 0) {
-            List<List> tableData = new ArrayList<>();
+            PrimitiveList[] cols = data.getColumnData();
+            List<List> tableData = new ArrayList<>(data.size());
             for (int i = 0; i < data.size(); i++) {
-                Object[] rowData = Arrays.stream(data.get(i).getData()).map(d -> mapToJsonAware(d,cleanUpStrings)).toArray();
-                tableData.add(Arrays.asList(rowData));
+                tableData.add(new JsonRow(cols, i, cleanUpStrings));
             }
             tdata.put("data", tableData);
         }
         return tdata;
     }
 
+    /**
+     * A row of table data backed by the columns of a DataGroup.  Cells are converted as they are written out,
+     * so no Object[] is created per row.
+     */
+    private static class JsonRow extends AbstractList<Object> implements RandomAccess {
+        private final PrimitiveList[] cols;
+        private final int row;
+        private final boolean cleanUpStrings;
+
+        JsonRow(PrimitiveList[] cols, int row, boolean cleanUpStrings) {
+            this.cols = cols;
+            this.row = row;
+            this.cleanUpStrings = cleanUpStrings;
+        }
+
+        public Object get(int idx) {
+            PrimitiveList col = cols[idx];
+            // primitive values need no mapping
+            return col instanceof PrimitiveList.NullablePrimitiveList ? col.get(row) : mapToJsonAware(col.get(row), cleanUpStrings);
+        }
+
+        public int size() { return cols.length; }
+    }
+
     /**
      * if obj is an array of primitive, return a list of its equivalent Objects
      * @param obj
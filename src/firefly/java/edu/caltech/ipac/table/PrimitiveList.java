@@ -8,6 +8,7 @@ import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 
 /**
  * Date: 6/15/18
@@ -27,6 +28,16 @@ public interface PrimitiveList {
         set(size(), val);
     }
 
+    /**
+     * Use this together with the typed getters of the specialized lists, i.e. {@link Doubles#getDouble(int)},
+     * to read a column without boxing its values.
+     * @param idx the row index
+     * @return true if the value at the given index is null
+     */
+    default boolean isNull(int idx) {
+        return get(idx) == null;
+    }
+
     default void checkType(Object val) {
         if (val != null && !val.getClass().isAssignableFrom(getDataClass())) {
             throw new RuntimeException(String.format("Type mismatch(%s): expecting %s but found %s", val, getDataClass(), val.getClass()));
@@ -93,10 +104,14 @@ public interface PrimitiveList {
         }
 
         public Object get(int idx) {
-            if (nulls.length() > idx && nulls.get(idx)) return null;
+            if (isNull(idx)) return null;
             return getImpl(idx);
         }
 
+        public boolean isNull(int idx) {
+            return nulls.length() > idx && nulls.get(idx);
+        }
+
         public void set(int idx, Object val) {
             checkType(val);
             ensureCapacity(idx);
@@ -118,6 +133,24 @@ public interface PrimitiveList {
             clearImpl();
         }
 
+        /**
+         * Append a null value.  Use this together with the typed add methods of the specialized lists,
+         * i.e. {@link Doubles#addDouble(double)}, to fill a column without boxing its values.
+         */
+        public void addNull() {
+            nulls.set(next());
+        }
+
+        /**
+         * @return the index of a newly appended element, after ensuring there is capacity for it
+         */
+        protected int next() {
+            int idx = size;
+            ensureCapacity(idx);
+            size = idx + 1;
+            return idx;
+        }
+
         abstract public Object getImpl(int idx);
         abstract public void setImpl(int idx, @NotNull Object val);
         abstract public void clearImpl();
@@ -136,6 +169,8 @@ public interface PrimitiveList {
 
         public Object getImpl(int idx) { return data[idx]; }
         public void setImpl(int idx, Object val) { data[idx] = (double) val; }
+        public double getDouble(int idx) { return data[idx]; }
+        public void addDouble(double val) { data[next()] = val; }
         public void clearImpl() { data = null; }
 
         /**
@@ -167,6 +202,8 @@ public interface PrimitiveList {
 
         public Object getImpl(int idx) { return data[idx]; }
         public void setImpl(int idx, Object val) { data[idx] = (float) val; }
+        public float getFloat(int idx) { return data[idx]; }
+        public void addFloat(float val) { data[next()] = val; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -196,6 +233,8 @@ public interface PrimitiveList {
             return data[idx];
         }
         public void setImpl(int idx, Object val) { data[idx] = (long) val; }
+        public long getLong(int idx) { return data[idx]; }
+        public void addLong(long val) { data[next()] = val; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -225,6 +264,8 @@ public interface PrimitiveList {
             return data[idx];
         }
         public void setImpl(int idx, Object val) { data[idx] = (int)val; }
+        public int getInt(int idx) { return data[idx]; }
+        public void addInt(int val) { data[next()] = val; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -254,6 +295,7 @@ public interface PrimitiveList {
             return data[idx];
         }
         public void setImpl(int idx, Object val) { data[idx] = (short)val; }
+        public short getShort(int idx) { return data[idx]; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -283,6 +325,7 @@ public interface PrimitiveList {
             return data[idx];
         }
         public void setImpl(int idx, Object val) { data[idx] = (byte)val; }
+        public byte getByte(int idx) { return data[idx]; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -312,6 +355,7 @@ public interface PrimitiveList {
             return data[idx];
         }
         public void setImpl(int idx, Object val) { data[idx] = (boolean) val;}
+        public boolean getBoolean(int idx) { return data[idx]; }
         public void clearImpl() { data = null; }
 
         protected void ensureCapacity(int minCapacity) {
@@ -327,6 +371,70 @@ public interface PrimitiveList {
         }
     }
 
-}
+    /**
+     * A list for String columns.  Repeated values share the same String instance via a dictionary, which is
+     * common for categorical columns like band or flag.  Once the dictionary reaches MAX_DICT_SIZE, new values
+     * are stored as-is.  Non-String values are accepted and stored unchanged.
+     */
+    class Strings implements PrimitiveList {
+        public static final int MAX_DICT_SIZE = 10_000;
+        private Object[] data;
+        private HashMap<String, String> dict = new HashMap<>();
+        private int size;
 
+        public Strings() { this(1000); }
 
+        public Strings(int initCapacity) {
+            data = new Object[initCapacity];
+        }
+
+        public Class getDataClass() {
+            return String.class;
+        }
+
+        public Object get(int idx) {
+            return data[idx];
+        }
+
+        public String getString(int idx) {
+            Object v = data[idx];
+            return v == null ? null : v.toString();
+        }
+
+        public void set(int idx, Object val) {
+            if (idx >= data.length) {
+                data = Arrays.copyOf(data, newCapacity(idx + 1, data.length));
+            }
+            if (val instanceof String s && dict != null) {
+                String v = dict.get(s);
+                if (v == null && dict.size() < MAX_DICT_SIZE) {
+                    dict.put(s, s);
+                    v = s;
+                }
+                val = v == null ? s : v;
+            }
+            data[idx] = val;
+            if (idx >= size) size = idx + 1;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            data = new Object[0];
+            dict = new HashMap<>();
+            size = 0;
+        }
+
+        /**
+         * also release the dictionary; the list is not expected to grow after this.
+         */
+        public void trimToSize() {
+            if (size != data.length) {
+                data = Arrays.copyOf(data, size);
+            }
+            dict = null;
+        }
+    }
+}
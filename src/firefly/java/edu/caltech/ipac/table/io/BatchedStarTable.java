@@ -0,0 +1,97 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.table.io;
+
+import edu.caltech.ipac.table.DataGroup;
+import edu.caltech.ipac.table.TableMeta;
+import edu.caltech.ipac.util.StringUtils;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.votable.VOStarTable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of a sequential StarTable based on a {@link BatchedTable}.  Only one batch of rows is held in memory
+ * at a time.
+ *
+ * Date: 10/18/26
+ */
+public class BatchedStarTable extends AbstractStarTable {
+    private final BatchedTable table;
+    private final DataGroup headers;
+    private final List<String> columns;
+
+    public BatchedStarTable(BatchedTable table, List<String> columns) {
+        this.table = table;
+        this.headers = table.getHeaders();
+        this.columns = columns;
+    }
+
+    public ColumnInfo getColumnInfo(int idx) {
+        String cname = columns.get(idx);
+        var sampleData = headers.size() > 0 ? headers.getData(cname, 0) : null ;
+        return DataGroupStarTable.convertToColumnInfo(headers.getDataDefintion(cname), sampleData);
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public long getRowCount() {
+        return table.getRowCount();
+    }
+
+    public String getName() {
+        return headers.getAttribute(TableMeta.NAME);
+    }
+
+    @Override
+    public List getParameters() {
+        List list = super.getParameters();
+        String utype = headers.getAttribute(TableMeta.UTYPE);
+        if (!StringUtils.isEmpty(utype)) {
+            list = list == null ? new ArrayList() : list;
+            list.add(new DescribedValue(new DefaultValueInfo(VOStarTable.UTYPE_INFO), utype));
+        }
+        return list;
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        BatchedTable.Batches batches = table.batches();
+        return new RowSequence() {
+            private DataGroup batch;
+            private int idx = -1;
+
+            public boolean next() throws IOException {
+                idx++;
+                while (batch == null || idx >= batch.size()) {
+                    batch = batches.next();
+                    idx = 0;
+                    if (batch == null) return false;
+                }
+                return true;
+            }
+
+            public Object getCell(int icol) {
+                return batch.getData(columns.get(icol), idx);
+            }
+
+            public Object[] getRow() {
+                Object[] row = new Object[columns.size()];
+                for (int i = 0; i < row.length; i++) row[i] = getCell(i);
+                return row;
+            }
+
+            public void close() {
+                batch = null;
+            }
+        };
+    }
+}
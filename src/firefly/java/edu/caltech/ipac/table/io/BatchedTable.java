@@ -0,0 +1,41 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.table.io;
+
+import edu.caltech.ipac.table.DataGroup;
+
+import java.io.IOException;
+
+/**
+ * A table read one batch of rows at a time, so it can be written out without holding all of it in memory.
+ *
+ * Date: 10/18/26
+ */
+public interface BatchedTable {
+
+    /**
+     * @return the columns and meta of this table.  It may also contain the first few rows, as a sample of the data;
+     *         they are not part of the batches.
+     */
+    DataGroup getHeaders();
+
+    /**
+     * @return the number of rows in this table
+     */
+    long getRowCount();
+
+    /**
+     * Start reading the rows from the beginning.  It may be called more than once.
+     * @return the batches of rows, in order
+     */
+    Batches batches();
+
+    interface Batches {
+        /**
+         * @return the next batch of rows, with the same columns as the headers, or null when there is no more
+         * @throws IOException on error
+         */
+        DataGroup next() throws IOException;
+    }
+}
@@ -74,7 +74,7 @@ public class DataGroupStarTable extends RandomStarTable {
 //  internal helper functions
 //====================================================================
 
-    private static ColumnInfo convertToColumnInfo(DataType dt, Object data) {
+    static ColumnInfo convertToColumnInfo(DataType dt, Object data) {
         Class dClz = data != null ? data.getClass() : dt.getDataType();
 
         // name, datatype, <DESCRIPTION>
@@ -13,6 +13,7 @@ import edu.caltech.ipac.table.DataType;
 import edu.caltech.ipac.util.StringUtils;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil;
 import nom.tam.fits.BasicHDU;
+import nom.tam.fits.BinaryTableHDU;
 import nom.tam.fits.Fits;
 import nom.tam.fits.FitsException;
 import nom.tam.fits.FitsFactory;
@@ -26,8 +27,14 @@ import nom.tam.image.compression.hdu.CompressedImageHDU;
 import nom.tam.util.ArrayFuncs;
 import nom.tam.util.Cursor;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -48,6 +55,8 @@ public final class FITSTableReader
     private static final Logger.LoggerImpl logger = Logger.getLogger();
     private static final Pattern TDISP = Pattern.compile("(A|I|B|O|Z|F|E|EN|ES|G|D)(\\d+)?(?:\\.(\\d+))?.*");
     private static final Pattern EXPONENTIAL = Pattern.compile("E|EN|ES|D");                                    // Table 20 from https://fits.gsfc.nasa.gov/standard30/fits_standard30aa.pdf
+    private static final Pattern TFORM = Pattern.compile("(\\d*)([A-Z])(.*)");
+    private static final int READ_BLOCK_SIZE = 4 * 1024 * 1024;        // bytes of rows read at a time when streaming a binary table
 
     public static boolean debug = true;
 
@@ -112,6 +121,65 @@ public final class FITSTableReader
         }
     }
 
+    /**
+     * Parse a FITS binary table, sending its rows to the handler as they are read.  Unlike convertFitsToDataGroup,
+     * the table is never loaded into memory.  Rows are read from the file in blocks, and decoded directly into
+     * the same values convertFitsToDataGroup would return.
+     * @param handler the handler to send the table to
+     * @param fitsFilename the file name
+     * @param request the request; used for its data type hint
+     * @param tableIdx table index, i.e. HDU number in FITS
+     * @return false if the HDU cannot be streamed; it is not a binary table, or it has complex or variable-length
+     *         columns.  Nothing is sent to the handler in this case.
+     * @throws IOException on error reading the file
+     */
+    public static boolean parseTable(TableParseHandler handler, String fitsFilename, TableServerRequest request, int tableIdx) throws IOException {
+
+        FitsFactory.useThreadLocalSettings(true);
+        try (Fits fits = new Fits(fitsFilename)) {
+            BasicHDU<?> hdu = fits.getHDU(tableIdx);
+            BasicHDU<?> tableHdu = hdu;
+            if (tableIdx == 0 && hdu != null) {
+                // same as convertFitsToDataGroup; only an empty primary HDU falls through to the table after it
+                if (FitsReadUtil.getNaxis(hdu.getHeader()) > 0) return false;
+                tableHdu = fits.getHDU(1);
+            }
+            if (!(tableHdu instanceof BinaryTableHDU binTableHdu)) return false;
+
+            Header header = binTableHdu.getHeader();
+            BinCol[] cols = getBinCols(header);
+            long offset = binTableHdu.getData().getFileOffset();
+            if (cols == null || offset < 0) return false;
+
+            FitsFactory.setLongStringsEnabled(false);
+            Class<?>[] bases = Arrays.stream(cols).map(BinCol::base).toArray(Class[]::new);
+            DataGroup table = makeTableHeader(binTableHdu, fitsFilename, bases, null, null);
+            FitsFactory.setLongStringsEnabled(true);
+            SpectrumMetaInspector.searchForSpectrum(table, hdu, SpectrumMetaInspector.hasSpectrumHint(request));
+
+            try {
+                handler.start();
+                handler.startTable(tableIdx);
+                handler.header(table);
+                if (!handler.headerOnly()) {
+                    readRows(handler, fitsFilename, offset, header.getIntValue("NAXIS1", 0), header.getLongValue("NAXIS2", 0), cols);
+                }
+                handler.endTable(tableIdx);     // only when the whole table was read
+            } finally {
+                handler.end();
+            }
+            return true;
+        } catch (FitsException e) {
+            logTableReadError(fitsFilename, tableIdx, e.getMessage());
+            throw new IOException(e.getMessage(), e);
+        } catch (IOException e) {
+            logTableReadError(fitsFilename, tableIdx, e.getMessage());
+            throw e;
+        } finally {
+            FitsFactory.useThreadLocalSettings(false);
+        }
+    }
+
     private static boolean is1dImage(BasicHDU<?> hdu) {
         Header header = hdu.getHeader();
         int naxis = header.getIntValue("NAXIS", 0);
@@ -233,13 +301,13 @@ public final class FITSTableReader
     //This function is loosely based on the packagedType function from the FitsStarTable class (uk.ac.starlink.fits package)
     private static Class<?> getClassType(Object base, int icol, boolean[] isScaled, String colFormat) {
         if (base == null) {
-            if (isScaled[icol]) return Double.class;
+            if (isScaled[icol]) return double.class;
             return getClassByTform(colFormat);
         } else {
             Class<?> cls = base.getClass().getComponentType();
             if (cls != null && Array.getLength(base) == 1) {
                 if (isScaled[icol]) {
-                    return Double.class;
+                    return double.class;
                 }
                 return cls;
             } else if (cls != null && cls.isArray()) {
@@ -320,7 +388,6 @@ public final class FITSTableReader
 
         int colCount = hduTable.getNCols();
         Class<?>[] bases = new Class[colCount];
-        String[] colNames = new String[colCount];
 
         int nrow = hduTable.getNRows();
         int ncol = hduTable.getNCols();
@@ -335,8 +402,6 @@ public final class FITSTableReader
 
         try {
             for (int icol = 0; icol < ncol; ++icol) {
-                colNames[icol] = hduTable.getColumnName(icol);
-
                 String tscal = hduTable.getColumnMeta(icol, "TSCAL");
                 String tzero = hduTable.getColumnMeta(icol, "TZERO");
                 double zeroval;
@@ -376,6 +441,39 @@ public final class FITSTableReader
         catch (NumberFormatException e) {
             logger.error("Number format exception reading column meta: " + e.getMessage());
         }
+        DataGroup dataGroup = makeTableHeader(hduTable, title, bases, inclCols, inclHeaders);
+        if (loadData) {
+            // creating DataGroup rows.
+            dataGroup.setInitCapacity(nrow);
+            DataType[] dataDefinitions= dataGroup.getDataDefinitions();
+            hduTable.getKernel();
+            for (int row = 0; row < nrow; row++){
+                addRowToDG(dataGroup, dataDefinitions, row, hduTable, hasBlank, blanks, isScaled, scales, zeros);
+            }
+        }
+        dataGroup.trimToSize();
+        return dataGroup;
+    }
+
+    /**
+     * @param hduTable the table hdu
+     * @param title the title of the DataGroup
+     * @param bases the java type of each column's value
+     * @param inclCols cols to include when creating DataType entries
+     * @param inclHeaders headers to include when creating DataGroup TableMeta
+     * @return a DataGroup with the columns and header keywords of the table, without data
+     */
+    private static DataGroup makeTableHeader(TableHDU<?> hduTable,
+                                             String title,
+                                             Class<?>[] bases,
+                                             String[] inclCols,
+                                             String[] inclHeaders) throws FitsException {
+        int colCount = hduTable.getNCols();
+        String[] colNames = new String[colCount];
+        for (int icol = 0; icol < colCount; ++icol) {
+            colNames[icol] = hduTable.getColumnName(icol);
+        }
+
         //creating DataType list ... column info
         ArrayList<DataType> dataTypes = new ArrayList<>();
         List<String> colList = inclCols == null ? null : Arrays.asList(inclCols);
@@ -388,16 +486,6 @@ public final class FITSTableReader
         }
 
         DataGroup dataGroup = new DataGroup(title, dataTypes);
-        // creating DataGroup rows.
-        dataGroup.setInitCapacity(nrow);
-        DataType[] dataDefinitions= dataGroup.getDataDefinitions();
-
-        if (loadData) {
-            hduTable.getKernel();
-            for (int row = 0; row < nrow; row++){
-                addRowToDG(dataGroup, dataDefinitions, row, hduTable, hasBlank, blanks, isScaled, scales, zeros);
-            }
-        }
 
         // setting DataGroup meta info
         for(int colIdx = 0; colIdx < dataTypes.size(); colIdx++) {
@@ -429,7 +517,6 @@ public final class FITSTableReader
                 dataGroup.getTableMeta().addKeyword(n, v); //should keywords be in order as they appear in the Table Header?
             }
         }
-        dataGroup.trimToSize();
         return dataGroup;
     }
 
@@ -441,6 +528,179 @@ public final class FITSTableReader
         }
     }
 
+    /**
+     * A fixed-size column of a binary table, and how to decode it from the bytes of a row
+     * @param type the data type from TFORMn
+     * @param repeat the number of elements
+     * @param offset the byte offset of this column within a row
+     * @param eval the scale and blank value of this column
+     */
+    private record BinCol(char type, int repeat, int offset, EvalVal eval) {
+
+        /**
+         * @return the java type of this column's values; the same as getClassType returns for the same column
+         */
+        Class<?> base() {
+            if (type == 'A') return String.class;
+            if (repeat == 1) {
+                if (eval.scaled() && type != 'L' && type != 'X') return double.class;
+                return switch (type) {
+                    case 'L', 'X' -> boolean.class;
+                    case 'B', 'I', 'J' -> int.class;
+                    case 'K' -> long.class;
+                    case 'E' -> float.class;
+                    default -> double.class;
+                };
+            }
+            return switch (type) {
+                case 'L', 'X' -> boolean[].class;
+                case 'B' -> byte[].class;
+                case 'I' -> short[].class;
+                case 'J' -> int[].class;
+                case 'K' -> long[].class;
+                case 'E' -> float[].class;
+                default -> double[].class;
+            };
+        }
+
+        /**
+         * Decode the value of this column.  Like getValAsObject, only single values are scaled and checked for blanks;
+         * arrays are returned as is.
+         * @param buf the rows being read, in big-endian byte order
+         * @param rowStart the index of the row's first byte in buf
+         * @return the value of this column
+         */
+        Object decode(ByteBuffer buf, int rowStart) {
+            int p = rowStart + offset;
+            if (repeat == 0) return null;
+            if (type == 'A') {
+                byte[] bytes = buf.array();
+                int end = p;
+                while (end < p + repeat && bytes[end] != 0) end++;         // strings may be terminated by NUL
+                String val = new String(bytes, p, end - p, StandardCharsets.US_ASCII).stripTrailing();
+                return val.isEmpty() ? null : val;
+            }
+            if (type == 'X') {
+                boolean[] bits = new boolean[repeat];
+                for (int i = 0; i < repeat; i++) bits[i] = (buf.get(p + i / 8) & (0x80 >> (i % 8))) != 0;
+                return repeat == 1 ? bits[0] : bits;
+            }
+            if (repeat == 1) {
+                return switch (type) {
+                    case 'L' -> buf.get(p) == 'T' ? Boolean.TRUE : buf.get(p) == 'F' ? Boolean.FALSE : null;
+                    case 'B' -> eval.evalValue(buf.get(p) & 0xff);        // FITS bytes are unsigned
+                    case 'I' -> eval.evalValue((int) buf.getShort(p));
+                    case 'J' -> eval.evalValue(buf.getInt(p));
+                    case 'K' -> eval.evalValue(buf.getLong(p));
+                    case 'E' -> eval.evalValue(buf.getFloat(p));
+                    default -> eval.evalValue(buf.getDouble(p));
+                };
+            }
+            return switch (type) {
+                case 'L' -> {
+                    boolean[] vals = new boolean[repeat];
+                    for (int i = 0; i < repeat; i++) vals[i] = buf.get(p + i) == 'T';
+                    yield vals;
+                }
+                case 'B' -> {
+                    byte[] vals = new byte[repeat];
+                    buf.get(p, vals);
+                    yield vals;
+                }
+                case 'I' -> {
+                    short[] vals = new short[repeat];
+                    buf.slice(p, repeat * 2).asShortBuffer().get(vals);
+                    yield vals;
+                }
+                case 'J' -> {
+                    int[] vals = new int[repeat];
+                    buf.slice(p, repeat * 4).asIntBuffer().get(vals);
+                    yield vals;
+                }
+                case 'K' -> {
+                    long[] vals = new long[repeat];
+                    buf.slice(p, repeat * 8).asLongBuffer().get(vals);
+                    yield vals;
+                }
+                case 'E' -> {
+                    float[] vals = new float[repeat];
+                    buf.slice(p, repeat * 4).asFloatBuffer().get(vals);
+                    yield vals;
+                }
+                default -> {
+                    double[] vals = new double[repeat];
+                    buf.slice(p, repeat * 8).asDoubleBuffer().get(vals);
+                    yield vals;
+                }
+            };
+        }
+    }
+
+    /**
+     * @param header the header of a binary table
+     * @return the columns of this table, or null if any of its columns are not supported by parseTable
+     */
+    private static BinCol[] getBinCols(Header header) {
+        int ncol = header.getIntValue("TFIELDS", 0);
+        BinCol[] cols = new BinCol[ncol];
+        int offset = 0;
+        try {
+            for (int icol = 0; icol < ncol; icol++) {
+                int n = icol + 1;
+                Matcher m = TFORM.matcher(header.getStringValue("TFORM" + n, "").trim());
+                if (!m.matches()) return null;
+                int repeat = m.group(1).isEmpty() ? 1 : Integer.parseInt(m.group(1));
+                char type = m.group(2).charAt(0);
+                int width = switch (type) {
+                    case 'L', 'B', 'A' -> repeat;
+                    case 'X' -> (repeat + 7) / 8;
+                    case 'I' -> repeat * 2;
+                    case 'J', 'E' -> repeat * 4;
+                    case 'K', 'D' -> repeat * 8;
+                    default -> -1;                      // complex, variable-length, or unknown
+                };
+                if (width < 0) return null;
+                if (type == 'A' && header.getStringValue("TDIM" + n, "").contains(",")) return null;      // array of strings
+
+                double scale = header.getDoubleValue("TSCAL" + n, 1.0);
+                double zero = header.getDoubleValue("TZERO" + n, 0.0);
+                boolean hasBlank = header.containsKey("TNULL" + n);
+                long blank = hasBlank ? header.getLongValue("TNULL" + n) : 0;
+                cols[icol] = new BinCol(type, repeat, offset, new EvalVal(blank, scale != 1.0 || zero != 0.0, hasBlank, scale, zero));
+                offset += width;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return offset == header.getIntValue("NAXIS1", -1) ? cols : null;
+    }
+
+    /**
+     * Read the rows of a binary table in blocks of READ_BLOCK_SIZE bytes, sending each row to the handler.
+     */
+    private static void readRows(TableParseHandler handler, String fitsFilename, long offset, int rowLen, long nrows, BinCol[] cols) throws IOException {
+        if (rowLen <= 0) return;
+        int blockRows = (int) Math.max(1, Math.min(nrows, READ_BLOCK_SIZE / rowLen));
+        ByteBuffer buf = ByteBuffer.allocate(blockRows * rowLen);
+        try (FileChannel channel = FileChannel.open(Paths.get(fitsFilename), StandardOpenOption.READ)) {
+            for (long row = 0; row < nrows; row += blockRows) {
+                int count = (int) Math.min(blockRows, nrows - row);
+                buf.clear().limit(count * rowLen);
+                long pos = offset + row * rowLen;
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, pos + buf.position()) < 0) throw new EOFException("Unexpected end of file at row " + row);
+                }
+                for (int i = 0; i < count; i++) {
+                    Object[] rowData = new Object[cols.length];
+                    for (int icol = 0; icol < cols.length; icol++) {
+                        rowData[icol] = cols[icol].decode(buf, i * rowLen);
+                    }
+                    handler.data(rowData);
+                }
+            }
+        }
+    }
+
     //This function is loosely based on the packageValue function from the FitsStarTable class in the uk.ac.starlink.fits package
     private static Object getValAsObject(Object elem, int icol, boolean[] hasBlank, long[] blanks, boolean[] isScaled,
                                          double[] scales, double[] zeros) throws FitsException {
@@ -449,14 +709,15 @@ public final class FITSTableReader
             }
             else if (!elem.getClass().isArray()) {
                 if (elem instanceof String) return isEmpty((String)elem) ? null : elem;
-                if (elem instanceof Byte || elem instanceof Short) return ((Number)elem).intValue();
+                if (elem instanceof Byte b) return Byte.toUnsignedInt(b);            // FITS bytes are unsigned
+                if (elem instanceof Short) return ((Number)elem).intValue();
                 return elem;
             }
             else if (Array.getLength(elem) == 1) {
                 String cls = elem.getClass().getComponentType().toString();
                 EvalVal evaluator = new EvalVal(blanks[icol], isScaled[icol], hasBlank[icol], scales[icol], zeros[icol]);
                 return switch (cls) {
-                    case "byte" -> evaluator.evalValue((int)((byte[])(elem))[0]);
+                    case "byte" -> evaluator.evalValue(((byte[])(elem))[0] & 0xff);      // FITS bytes are unsigned
                     case "short" -> evaluator.evalValue((int)((short[])(elem))[0]);
                     case "int" -> evaluator.evalValue(((int[])(elem))[0]);
                     case "long" -> evaluator.evalValue(((long[])(elem))[0]);
@@ -86,13 +86,13 @@ public final class IpacTableReader {
                     lineNum++;
                 }
             }
+            handler.endTable(0);        // only when the whole table was read; end() alone tells the handler it ended abnormally
         } catch (Exception e) {
             String msg = e.getMessage() + "<br>on line " + lineNum + ": " + line;
             if (msg.length() > 128) msg = msg.substring(0, 128) + "...";
             logger.error(e, "on line " + lineNum + ": " + line);
             throw new IOException(msg);
         } finally {
-            handler.endTable(0);
             handler.end();
         }
     }
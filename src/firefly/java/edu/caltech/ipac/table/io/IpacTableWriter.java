@@ -61,12 +61,46 @@ public class IpacTableWriter {
         save(new PrintWriter(new BufferedOutputStream(stream, IpacTableUtil.FILE_IO_BUFFER_SIZE)), dataGroup);
     }
 
-    private static void save(PrintWriter out, DataGroup dataGroup) throws IOException {
+    /**
+     * save the table to a stream one batch of rows at a time, stream is not closed.
+     * Column widths depend on all of the data, so the rows are read twice; once to size the columns, then to write them.
+     *
+     * @param stream the output stream to write to
+     * @param table the table to save
+     * @throws IOException on error
+     */
+    public static void save(OutputStream stream, BatchedTable table) throws IOException {
+        PrintWriter out = new PrintWriter(new BufferedOutputStream(stream, IpacTableUtil.FILE_IO_BUFFER_SIZE));
+        DataGroup dataGroup = table.getHeaders();
+
+        DataType[] cols = dataGroup.getDataDefinitions();
+        for (DataType dt : cols) dt.setWidth(headerWidth(dt));
+        BatchedTable.Batches batches = table.batches();
+        for (DataGroup batch = batches.next(); batch != null; batch = batches.next()) {
+            fitToData(cols, batch);
+        }
 
+        List<DataType> headers = writeHeaders(out, dataGroup);
+        batches = table.batches();
+        for (DataGroup batch = batches.next(); batch != null; batch = batches.next()) {
+            writeRows(out, headers, batch);
+        }
+        out.flush();
+    }
 
+    private static void save(PrintWriter out, DataGroup dataGroup) throws IOException {
         shrinkToFitData(dataGroup);
+        List<DataType> headers = writeHeaders(out, dataGroup);
+        writeRows(out, headers, dataGroup);
+        out.flush();
+    }
+
+    /**
+     * write the table meta and column headers
+     * @return the columns to write, in order
+     */
+    private static List<DataType> writeHeaders(PrintWriter out, DataGroup dataGroup) {
         List<DataType> headers = Arrays.asList(dataGroup.getDataDefinitions());
-        int totalRow = dataGroup.size();
 
         // this should return only visible columns
         headers = headers.stream()
@@ -128,22 +162,43 @@ public class IpacTableWriter {
 
         // print column headers
         IpacTableUtil.writeHeader(out, modHeaders);
+        return headers;
+    }
 
-        for (int i = 0; i < totalRow; i++) {
-            IpacTableUtil.writeRow(out, headers, dataGroup.get(i));
+    /**
+     * write the rows of data, formatted by the given columns
+     */
+    private static void writeRows(PrintWriter out, List<DataType> headers, DataGroup data) {
+        PrimitiveList[] colData = headers.stream().map(dt -> data.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+        for (int i = 0; i < data.size(); i++) {
+            IpacTableUtil.writeRow(out, headers, colData, i);
         }
-        out.flush();
     }
 
     /**
      * this method will shrink the Column's width to fit the maximum's width of the data
      */
     private static void shrinkToFitData(DataGroup dataGroup) {
-        for (DataType dt : dataGroup.getDataDefinitions()) {
-            String[] headers = {dt.getKeyName(), dt.getTypeDesc(), dt.getUnits(), dt.getNullString()};
-            int maxWidth = Arrays.stream(headers).mapToInt(s -> s == null ? 0 : s.length()).max().getAsInt();
-            for (int i=0; i<dataGroup.size(); i++) {
-                Object val = dataGroup.getData(dt.getKeyName(), i);
+        DataType[] cols = dataGroup.getDataDefinitions();
+        for (DataType dt : cols) dt.setWidth(headerWidth(dt));
+        fitToData(cols, dataGroup);
+    }
+
+    private static int headerWidth(DataType dt) {
+        String[] headers = {dt.getKeyName(), dt.getTypeDesc(), dt.getUnits(), dt.getNullString()};
+        return Arrays.stream(headers).mapToInt(s -> s == null ? 0 : s.length()).max().getAsInt();
+    }
+
+    /**
+     * widen the columns, if needed, to fit the given data
+     */
+    private static void fitToData(DataType[] cols, DataGroup data) {
+        for (DataType dt : cols) {
+            int maxWidth = dt.getWidth();
+            PrimitiveList colData = data.getColumnData(dt.getKeyName());
+            if (colData == null) continue;
+            for (int i=0; i<data.size(); i++) {
+                Object val = colData.get(i);
                 int dWidth = val == null ? 0 : dt.format(val, true, false).length();
                 if (dWidth > maxWidth) maxWidth = dWidth;
             }
@@ -12,6 +12,28 @@ import java.io.Writer;
 public class RegionTableWriter {
     private static Logger.LoggerImpl LOG = Logger.getLogger();
     public static void write(Writer writer, DataGroup data, String centerCols) throws IOException {
+        write(writer, centerCols, (outf, cols) -> {
+            if (data != null && data.size() > 0) writeRows(outf, data, cols);
+        });
+    }
+
+    /**
+     * write the table one batch of rows at a time
+     */
+    public static void write(Writer writer, BatchedTable table, String centerCols) throws IOException {
+        write(writer, centerCols, (outf, cols) -> {
+            BatchedTable.Batches batches = table.batches();
+            for (DataGroup batch = batches.next(); batch != null; batch = batches.next()) {
+                writeRows(outf, batch, cols);
+            }
+        });
+    }
+
+    private interface RowsWriter {
+        void write(BufferedWriter outf, String[] cols) throws IOException;
+    }
+
+    private static void write(Writer writer, String centerCols, RowsWriter rows) throws IOException {
 
         BufferedWriter outf = new BufferedWriter(writer, IpacTableUtil.FILE_IO_BUFFER_SIZE);
         if (centerCols == null) {
@@ -20,23 +42,7 @@ public class RegionTableWriter {
         outf.write("J2000; color=blue");
         String[] cols = centerCols.split(","); //center cols is of format "s_ra,s_dec"
         try {
-            if (data != null && data.size() > 0) {
-                for (DataObject row : data.values()) {
-                    outf.newLine();
-                    Object ra = row.getDataElement(cols[0]);
-                    Object dec = row.getDataElement(cols[1]);
-                    if (cols[0].equals(cols[1])) {//single column with an array entry for RA and DEC
-                        Object singleCol = row.getDataElement(cols[0]);
-                        if (singleCol == null) continue;
-                        double[] entries = (double[]) singleCol;
-                        ra = entries[0];
-                        dec = entries[1];
-                    }
-                    if (ra == null || dec == null) continue;
-                    outf.write("point    " + ra + "    " + dec);
-                    outf.write(" # 10 point=circle");
-                }
-            }
+            rows.write(outf, cols);
             outf.close();
         } catch (Exception e) {
             e.printStackTrace();
@@ -45,4 +51,22 @@ public class RegionTableWriter {
             outf.close();
         }
     }
+
+    private static void writeRows(BufferedWriter outf, DataGroup data, String[] cols) throws IOException {
+        for (DataObject row : data.values()) {
+            outf.newLine();
+            Object ra = row.getDataElement(cols[0]);
+            Object dec = row.getDataElement(cols[1]);
+            if (cols[0].equals(cols[1])) {//single column with an array entry for RA and DEC
+                Object singleCol = row.getDataElement(cols[0]);
+                if (singleCol == null) continue;
+                double[] entries = (double[]) singleCol;
+                ra = entries[0];
+                dec = entries[1];
+            }
+            if (ra == null || dec == null) continue;
+            outf.write("point    " + ra + "    " + dec);
+            outf.write(" # 10 point=circle");
+        }
+    }
 }
@@ -4,6 +4,7 @@
 
 package edu.caltech.ipac.table.io;
 
+import edu.caltech.ipac.firefly.core.Util;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
 import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
@@ -11,19 +12,29 @@ import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
 import edu.caltech.ipac.table.ResourceInfo;
+import edu.caltech.ipac.util.AppProperties;
 import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static edu.caltech.ipac.firefly.server.db.DuckDbAdapter.addRow;
 import static edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil.colIdxWithArrayData;
 import static edu.caltech.ipac.firefly.core.Util.serialize;
 import static edu.caltech.ipac.firefly.core.Util.Try;
+import static edu.caltech.ipac.table.DataGroup.ROW_IDX;
 /**
  * Date: 10/23/24
  *
@@ -40,6 +51,15 @@ public interface TableParseHandler {
     void header(DataGroup header) throws IOException;
     void data(Object[] row ) throws IOException;
 
+    /**
+     * @return a handler that ingests the parsed table into the given database.  When {@link PipelinedDbIngest#ENABLED},
+     * parsing, conversion and appending are done on separate threads.
+     */
+    static TableParseHandler dbIngest(DbAdapter dbAdapter, Consumer<DataGroup> extraMetaSetter, boolean searchForSpectrum) {
+        return PipelinedDbIngest.ENABLED ? new PipelinedDbIngest(dbAdapter, extraMetaSetter, searchForSpectrum)
+                                         : new DbIngest(dbAdapter, extraMetaSetter, searchForSpectrum);
+    }
+
     abstract class Base implements TableParseHandler {
         protected List<ResourceInfo> resourceInfo;
         Consumer<DataGroup> extraMetaSetter;     // additional meta to include with along with the data
@@ -144,5 +164,243 @@ public interface TableParseHandler {
             if (conn != null)       Try.it(() -> conn.close());
         }
     }
-}
 
+    /**
+     * Same as DbIngest, except the work is split into 3 stages connected by bounded queues:
+     * <ul>
+     *     <li>parse: the reader's thread collects rows into blocks of {@link #BLOCK_SIZE}</li>
+     *     <li>convert: a worker serializes array data of each block</li>
+     *     <li>append: one or more workers append the blocks into the database</li>
+     * </ul>
+     * When STAGING_CNT is greater than 1, each append worker writes into its own staging table, and the
+     * staging tables are merged into DATA, ordered by ROW_IDX, when the table ends.  This trades an extra copy
+     * for parallel appends, and pays off only when appending is the slowest stage.
+     * A slow stage blocks the one before it once its queue is full, so memory use is bounded by the queue sizes.
+     * At most MAX_THREADS workers run at once; an ingest waits until all of its workers can run at once.
+     * When a stage fails, or the table ends abnormally(end() without a successful endTable()), every stage stops
+     * and the staging tables are dropped.
+     */
+    class PipelinedDbIngest extends Base {
+        public static final boolean ENABLED = AppProperties.getBooleanProperty("dbIngest.pipeline.enabled", false);
+        public static final int BLOCK_SIZE = AppProperties.getIntProperty("dbIngest.pipeline.blockSize", 5_000);
+        public static final int QUEUE_SIZE = AppProperties.getIntProperty("dbIngest.pipeline.queueSize", 4);
+        public static final int STAGING_CNT = AppProperties.getIntProperty("dbIngest.pipeline.stagingTables", 1);
+        public static final int MAX_THREADS = AppProperties.getIntProperty("dbIngest.pipeline.maxThreads", 16);
+        private static final Semaphore THREAD_PERMITS = new Semaphore(MAX_THREADS, true);      // bounds the number of running workers
+        // never rejects; the number of busy threads is bounded by THREAD_PERMITS, not by the pool.  A permit is released
+        // when its task ends, just before the thread goes back to the pool, so the pool may briefly hold a few more idle threads.
+        private static final ExecutorService INGEST_EXEC = Executors.newCachedThreadPool(Thread.ofPlatform().name("db-ingest-", 0).daemon().factory());
+        private static final RowBlock END_OF_DATA = new RowBlock(new Object[0][], 0, 0);
+
+        private final DbAdapter dbAdapter;
+        private final int stagingCnt;
+        private List<Integer> aryIdx;
+        private Object[][] buffer;
+        private int filled;
+        private int rowCnt;
+        private BlockingQueue<RowBlock> toConvert;
+        private List<BlockingQueue<RowBlock>> toAppend;
+        private List<Future<?>> workers;
+        private volatile Exception failure;
+
+        record RowBlock(Object[][] rows, int startIdx, int size) {}
+
+        public PipelinedDbIngest(DbAdapter dbAdapter, Consumer<DataGroup> extraMetaSetter, boolean searchForSpectrum) {
+            this(dbAdapter, extraMetaSetter, searchForSpectrum, STAGING_CNT);
+        }
+
+        public PipelinedDbIngest(DbAdapter dbAdapter, Consumer<DataGroup> extraMetaSetter, boolean searchForSpectrum, int stagingCnt) {
+            super(extraMetaSetter, false, searchForSpectrum);
+            this.dbAdapter = dbAdapter;
+            this.stagingCnt = Math.max(Math.min(stagingCnt, MAX_THREADS - 1), 1);       // one thread is used for convert
+        }
+
+        public void header(DataGroup header) throws IOException {
+            super.header(header);
+            aryIdx = colIdxWithArrayData(EmbeddedDbUtil.makeDbCols(header));
+            try {
+                dbAdapter.ingestData(() -> header, dbAdapter.getDataTable());
+            } catch (DataAccessException e) {
+                throw new IOException(e);
+            }
+
+            toConvert = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            toAppend = new ArrayList<>();
+            workers = new ArrayList<>();
+            int permits = stagingCnt + 1;
+            try {
+                THREAD_PERMITS.acquire(permits);    // released by each worker when it ends
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            try {
+                for (int i = 0; i < stagingCnt; i++) {
+                    var queue = new ArrayBlockingQueue<RowBlock>(QUEUE_SIZE);
+                    String tblName = stagingCnt == 1 ? dbAdapter.getDataTable() : stagingTable(i);
+                    toAppend.add(queue);
+                    workers.add(INGEST_EXEC.submit(() -> runStage(() -> appendBlocks(queue, tblName))));
+                }
+                workers.add(INGEST_EXEC.submit(() -> runStage(this::convertBlocks)));
+            } catch (RuntimeException e) {
+                // permits of the stages that were never submitted are not released by anyone else
+                THREAD_PERMITS.release(permits - workers.size());
+                stop(e);
+                throw new IOException("Unable to start ingest pipeline", e);
+            }
+            buffer = new Object[BLOCK_SIZE][];
+        }
+
+        public void data(Object[] row) throws IOException {
+            buffer[filled++] = row;
+            rowCnt++;
+            if (filled == BLOCK_SIZE) sendBuffer();
+        }
+
+        public void endTable(int idx) throws IOException {
+            if (workers == null) return;
+            try {
+                if (filled > 0) sendBuffer();
+                send(toConvert, END_OF_DATA);
+                for (Future<?> w : workers) w.get();
+                if (failure != null) throw failure;
+                if (stagingCnt > 1) mergeStaging();
+                workers = null;
+            } catch (Exception e) {
+                stop(e);
+                throw e instanceof IOException ioe ? ioe : new IOException(e);
+            }
+        }
+
+        public void end() {
+            stop(new IOException("Table ended abnormally"));
+        }
+
+    //====================================================================
+    //  pipeline stages
+    //====================================================================
+
+        private void convertBlocks() throws Exception {
+            int next = 0;
+            while (true) {
+                RowBlock block = take(toConvert);
+                if (block == END_OF_DATA) {
+                    for (var q : toAppend) send(q, END_OF_DATA);
+                    return;
+                }
+                if (!aryIdx.isEmpty()) {
+                    for (int r = 0; r < block.size(); r++) {
+                        Object[] row = block.rows()[r];
+                        aryIdx.forEach(idx -> row[idx] = serialize(row[idx]));      // serialize array data if necessary
+                    }
+                }
+                send(toAppend.get(next), block);
+                next = (next + 1) % toAppend.size();
+            }
+        }
+
+        private void appendBlocks(BlockingQueue<RowBlock> queue, String tblName) throws Exception {
+            try (DuckDBConnection conn = (DuckDBConnection) JdbcFactory.getDataSource(dbAdapter.getDbInstance()).getConnection()) {
+                if (!tblName.equals(dbAdapter.getDataTable())) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("CREATE OR REPLACE TABLE %s AS SELECT * FROM %s LIMIT 0".formatted(tblName, dbAdapter.getDataTable()));
+                    }
+                }
+                conn.setAutoCommit(false);
+                try (DuckDBAppender appender = conn.createAppender(DuckDBConnection.DEFAULT_SCHEMA, tblName)) {
+                    while (true) {
+                        RowBlock block = take(queue);
+                        if (block == END_OF_DATA) break;
+                        for (int r = 0; r < block.size(); r++) {
+                            addRow(appender, block.rows()[r], block.startIdx() + r);
+                        }
+                    }
+                    appender.flush();
+                }
+                conn.commit();
+            }
+        }
+
+        private void mergeStaging() throws SQLException {
+            List<String> selects = new ArrayList<>();
+            for (int i = 0; i < stagingCnt; i++) selects.add("SELECT * FROM " + stagingTable(i));
+            execute(stmt -> stmt.execute("INSERT INTO %s SELECT * FROM (%s) ORDER BY %s"
+                                .formatted(dbAdapter.getDataTable(), String.join(" UNION ALL ", selects), ROW_IDX)));
+        }
+
+    //====================================================================
+    //  helpers
+    //====================================================================
+
+        private interface StmtCall { void run(Statement stmt) throws SQLException; }
+
+        private void execute(StmtCall call) throws SQLException {
+            try (var conn = JdbcFactory.getDataSource(dbAdapter.getDbInstance()).getConnection();
+                 var stmt = conn.createStatement()) {
+                call.run(stmt);
+            }
+        }
+
+        private String stagingTable(int idx) {
+            return "%s_STAGE_%d".formatted(dbAdapter.getDataTable(), idx);
+        }
+
+        private void sendBuffer() throws IOException {
+            try {
+                send(toConvert, new RowBlock(buffer, rowCnt - filled, filled));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            buffer = new Object[BLOCK_SIZE][];
+            filled = 0;
+        }
+
+        private void runStage(Util.CallWithEx stage) {
+            try {
+                stage.run();
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            } finally {
+                THREAD_PERMITS.release();
+            }
+        }
+
+        /**
+         * stop the workers if they are still running, wait for them to end, then drop the staging tables
+         * @param cause the reason the workers are stopped
+         */
+        private void stop(Exception cause) {
+            if (workers != null) {
+                if (failure == null) failure = cause;       // every stage checks for failure while it waits
+                workers.forEach(w -> Try.it(() -> w.get()));
+                workers = null;
+            }
+            if (stagingCnt > 1) {
+                Try.it(() -> execute(stmt -> {
+                    for (int i = 0; i < stagingCnt; i++) stmt.execute("DROP TABLE IF EXISTS " + stagingTable(i));
+                }));
+            }
+        }
+
+        /**
+         * take the next block from the queue, waiting if necessary, unless another stage has failed.
+         */
+        private RowBlock take(BlockingQueue<RowBlock> queue) throws Exception {
+            while (true) {
+                RowBlock block = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (block != null) return block;
+                if (failure != null) throw new IOException("Ingest pipeline failed", failure);
+            }
+        }
+
+        /**
+         * put the block into the queue, waiting if necessary, unless another stage has failed.
+         */
+        private void send(BlockingQueue<RowBlock> queue, RowBlock block) throws Exception {
+            while (!queue.offer(block, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null) throw new IOException("Ingest pipeline failed", failure);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import edu.caltech.ipac.table.ParamInfo;
 import edu.caltech.ipac.table.ResourceInfo;
 import edu.caltech.ipac.table.TableMeta;
 import edu.caltech.ipac.table.TableUtil;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.CollectionUtil;
 import edu.caltech.ipac.util.FormatUtil;
 import edu.caltech.ipac.util.StringUtils;
@@ -47,7 +48,6 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +87,7 @@ public class VoTableReader {
                     Pattern.CASE_INSENSITIVE );
 
     private static final Logger.LoggerImpl LOG = Logger.getLogger();
+    private static final boolean STREAMING = AppProperties.getBooleanProperty("votable.stream.enabled", true);
 
     private static final StoragePolicy FIREFLY = new ByteStoreStoragePolicy() {
         protected ByteStore attemptMakeByteStore() throws IOException {
@@ -112,8 +113,7 @@ public class VoTableReader {
      */
     public static DataGroup[] voToDataGroups(String location, TableServerRequest request, int ...indices) throws IOException {
         TableParseHandler.Memory handler = new TableParseHandler.Memory(false, SpectrumMetaInspector.hasSpectrumHint(request));
-        VOElement docRoot = getVoTableRoot(location, null);
-        parse(handler, docRoot, indices);
+        parse(handler, location, indices);
         return handler.getAllTable();
     }
 
@@ -127,8 +127,9 @@ public class VoTableReader {
     public static DataGroup[] voToDataGroups(String location,
                                              boolean headerOnly,
                                              int ...indices) throws IOException {
-        VOElement docRoot = getVoTableRoot(location, null);
-        return voToDataGroups(docRoot, headerOnly, indices);
+        TableParseHandler.Memory handler = new TableParseHandler.Memory(headerOnly, false);
+        parse(handler, location, indices);
+        return handler.getAllTable();
     }
 
     /**
@@ -162,7 +163,7 @@ public class VoTableReader {
                                              boolean headerOnly,
                                              int ...indices) throws IOException {
         TableParseHandler.Memory handler = new TableParseHandler.Memory(headerOnly, false);
-        parse(handler, docRoot, indices);
+        parse(handler, docRoot, null, null, indices);
         return handler.getAllTable();
     }
 
@@ -219,6 +220,20 @@ public class VoTableReader {
     }
 
     private static VOElement getVoTableRoot(String location, StoragePolicy policy) throws IOException {
+        File voTable = getVoTableFile(location);
+        try {
+            return getVoTableRoot(new FileInputStream(voTable), policy);
+        }  catch (Exception e) {
+            LOG.error(e, "Unable to parse VOTABLE from "+ location);
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param location  file path or URL of a VOTable
+     * @return the file of the VOTable; a URL is downloaded into a temp file first
+     */
+    private static File getVoTableFile(String location) throws IOException {
 
         String voTablePath = location;
         try {
@@ -234,14 +249,8 @@ public class VoTableReader {
             }
         } catch (MalformedURLException ex) { /* ok to ignore.  location may not be a URL */ }
 
-
-        try {
-            // at this point, voTablePath is a file path.
-            return getVoTableRoot(new FileInputStream(voTablePath), policy);
-        }  catch (Exception e) {
-            LOG.error(e, "Unable to parse VOTABLE from "+ location);
-            throw new IOException(e.getMessage(), e);
-        }
+        // at this point, voTablePath is a file path.
+        return new File(voTablePath);
     }
 
     private static VOElement getVoTableRoot(InputStream source, StoragePolicy policy) throws IOException {
@@ -322,24 +331,73 @@ public class VoTableReader {
     public static void parse(TableParseHandler handler,
                              String location,
                              int ...indices) throws IOException {
-        VOElement docRoot = getVoTableRoot(location, FIREFLY);
-        parse(handler, docRoot, indices);
+        parse(handler, location, null, indices);
     }
 
+    /**
+     * Same as {@link #parse(TableParseHandler, String, int...)}, but only the given columns are returned.
+     * <p>
+     * Tables serialized as TABLEDATA, BINARY, or BINARY2 are read by VoTableStreamParser; rows are sent to
+     * the handler as they are decoded.  Other tables are read through STIL.
+     *
+     * @param handler  the handler responsible for processing the parsed data.
+     * @param location the location of the VOTable; file path or URL
+     * @param onlyColumns  the columns to return, in this order.  Names not in the table are ignored.  Null to return all columns.
+     * @param indices  a list of table indices to parse. If no indices are specified, parse all tables.
+     * @throws IOException if an I/O error occurs during parsing.
+     */
+    public static void parse(TableParseHandler handler,
+                             String location,
+                             String[] onlyColumns,
+                             int ...indices) throws IOException {
+        File voTable = getVoTableFile(location);
+        VoTableStreamParser streamParser = STREAMING ? VoTableStreamParser.open(voTable) : null;
+        try {
+            VOElement docRoot = streamParser == null ? null : getVoTableRoot(streamParser.getMetadata(), FIREFLY);
+            if (docRoot != null && canStream(streamParser, docRoot, indices)) {
+                parse(handler, docRoot, streamParser, onlyColumns, indices);
+            } else {
+                parse(handler, getVoTableRoot(voTable.getPath(), FIREFLY), null, onlyColumns, indices);
+            }
+        } finally {
+            if (streamParser != null) streamParser.close();
+        }
+    }
+
+    private static boolean canStream(VoTableStreamParser streamParser, VOElement docRoot, int ...indices) {
+        try {
+            List<TableElement> tableAry = getAllTableElements(docRoot);
+            for (int i = 0; i < tableAry.size(); i++) {
+                if (isSelected(i, indices) && !streamParser.canStream(i, tableAry.get(i).getChildrenByName("FIELD"))) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;           // let the STIL path report it
+        }
+    }
+
+    private static boolean isSelected(int idx, int ...indices) {
+        return indices == null || indices.length == 0 || Arrays.stream(indices).anyMatch(i -> i == idx);
+    }
+
+    /**
+     * @param streamParser  reads the rows of the tables; null to read them from docRoot through STIL
+     */
     private static void parse(TableParseHandler handler,
                               VOElement docRoot,
+                              VoTableStreamParser streamParser,
+                              String[] onlyColumns,
                               int ...indices) throws IOException {
         try {
             handler.start();
-            List<Integer> indicesList = indices == null ? Collections.emptyList() : Arrays.asList(Arrays.stream(indices).boxed().toArray(Integer[]::new));
             List<TableElement> tableAry = getAllTableElements(docRoot);
             for (int i = 0; i < tableAry.size(); i++) {
-                if (indicesList.isEmpty() || indicesList.contains(i)) {
+                if (isSelected(i, indices)) {
                     TableElement tableEl = tableAry.get(i);
                     List<ResourceInfo> resources = getResourcesForTable(docRoot, tableEl);
                     handler.resources(resources);
                     handler.startTable(i);
-                    parseTable(handler, tableEl, new VOStarTable(tableEl));
+                    parseTable(handler, tableEl, i, streamParser, onlyColumns);
                     handler.endTable(i);
                 }
             }
@@ -351,11 +409,14 @@ public class VoTableReader {
         }
     }
 
-    private static void parseTable(TableParseHandler handler, TableElement tableEl, StarTable table) throws IOException {
+    private static void parseTable(TableParseHandler handler, TableElement tableEl, int tableIdx, VoTableStreamParser streamParser, String[] onlyColumns) throws IOException {
 
         DataGroup header = getTableHeader(tableEl);
+        int[] colIdx = getColumnIdx(header, onlyColumns);
+        if (colIdx != null) header = selectColumns(header, colIdx);
         List<DataType> cols = Arrays.asList(header.getDataDefinitions());
-        header.setInitCapacity((int)table.getRowCount());
+        StarTable table = streamParser == null ? new VOStarTable(tableEl) : null;
+        if (table != null) header.setInitCapacity((int)table.getRowCount());
 
         // post-process to handle custom logic
         DataType raCol = cols.stream().filter(dt -> HMS_UCD_PATTERN.matcher(String.valueOf(dt.getUCD())).matches())
@@ -370,13 +431,45 @@ public class VoTableReader {
 
         // table data
         if (!handler.headerOnly()) {
-            RowSequence rs = table.getRowSequence();
-            while (rs.next()) {
-                handler.data(handleVariance(rs.getRow()));
+            if (streamParser != null) {
+                streamParser.readRows(tableIdx, tableEl.getChildrenByName("FIELD"), colIdx, row -> handler.data(handleVariance(row)));
+            } else {
+                RowSequence rs = table.getRowSequence();
+                while (rs.next()) {
+                    handler.data(handleVariance(selectColumns(rs.getRow(), colIdx)));
+                }
             }
         }
     }
 
+    /**
+     * @return the index of the given columns in header, in the given order, or null if all columns are returned
+     */
+    private static int[] getColumnIdx(DataGroup header, String[] onlyColumns) {
+        if (onlyColumns == null) return null;
+        List<DataType> cols = Arrays.asList(header.getDataDefinitions());
+        return Arrays.stream(onlyColumns)
+                .map(header::getDataDefintion)
+                .filter(Objects::nonNull)
+                .mapToInt(cols::indexOf)
+                .toArray();
+    }
+
+    private static DataGroup selectColumns(DataGroup header, int[] colIdx) {
+        DataType[] cols = header.getDataDefinitions();
+        List<DataType> selCols = Arrays.stream(colIdx).mapToObj(i -> cols[i].newCopyOf()).collect(Collectors.toList());
+        DataGroup selected = new DataGroup(header.getTitle(), selCols);
+        selected.addMetaFrom(header);
+        return selected;
+    }
+
+    private static Object[] selectColumns(Object[] row, int[] colIdx) {
+        if (colIdx == null) return row;
+        Object[] selected = new Object[colIdx.length];
+        for (int i = 0; i < colIdx.length; i++) selected[i] = row[colIdx[i]];
+        return selected;
+    }
+
 
     private static Object[] handleVariance(Object[] row) {
         for (int i = 0; i < row.length; i++) {
@@ -0,0 +1,671 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.table.io;
+
+import uk.ac.starlink.votable.VOElement;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static edu.caltech.ipac.util.StringUtils.isEmpty;
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.COMMENT;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.PROCESSING_INSTRUCTION;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads the rows of a VOTable with StAX, without building a DOM of its data or storing its rows.
+ * <p>
+ * The file is read twice.  The first pass copies the document without its DATA elements, so the metadata can be
+ * parsed the usual way, and notes how each table's data is serialized.  The second pass decodes the rows of
+ * TABLEDATA, and of BINARY and BINARY2 inline base64 streams, as they are read.  Values of columns not asked for,
+ * and cells flagged as null by BINARY2, are skipped without being decoded.
+ * <p>
+ * Values are the same types as VOStarTable returns for the same FIELD.  Tables serialized any other way, or with
+ * complex or multidimensional character columns, are not supported; see {@link #canStream(int, VOElement[])}.
+ *
+ * Date: 10/18/26
+ */
+final class VoTableStreamParser implements Closeable {
+
+    private enum Serialization {NONE, TABLEDATA, BINARY, BINARY2, OTHER}
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final File source;
+    private final byte[] metadata;                  // the document without its DATA elements
+    private final List<Serialization> tables;       // how the data of each table is serialized
+    private InputStream input;
+    private XMLStreamReader reader;                 // the second pass; opened when the first rows are read
+    private int depth;                              // number of open elements at the reader, not counting DATA
+    private boolean inTopResource;                  // whether the reader is within a top-level RESOURCE
+    private int lastTable = -1;                     // index of the last table the reader came to
+
+    interface RowHandler {
+        void row(Object[] row) throws IOException;
+    }
+
+    private VoTableStreamParser(File source, byte[] metadata, List<Serialization> tables) {
+        this.source = source;
+        this.metadata = metadata;
+        this.tables = tables;
+    }
+
+    /**
+     * Make the first pass through the file.
+     * @param source the VOTable file
+     * @return the parser, or null if the file is not well-formed XML
+     */
+    static VoTableStreamParser open(File source) throws IOException {
+        List<Serialization> tables = new ArrayList<>();
+        ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(source), 64 * 1024)) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(metadata, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");          // the copy is always UTF-8
+            int depth = 0;
+            boolean inTopResource = false;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case START_ELEMENT -> {
+                        String name = reader.getLocalName();
+                        if (name.equals("DATA")) {
+                            Serialization ser = getSerialization(reader);           // the DATA element is not copied
+                            if (inTopResource && depth == 3) tables.set(tables.size() - 1, ser);
+                            continue;
+                        }
+                        depth++;
+                        if (depth == 2) inTopResource = name.equals("RESOURCE");
+                        if (inTopResource && depth == 3 && name.equals("TABLE")) tables.add(Serialization.NONE);
+                        copyStartElement(reader, writer);
+                    }
+                    case END_ELEMENT -> {
+                        depth--;
+                        writer.writeEndElement();
+                    }
+                    case CHARACTERS, SPACE -> writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    case CDATA -> writer.writeCData(reader.getText());
+                    case COMMENT -> writer.writeComment(reader.getText());
+                    case PROCESSING_INSTRUCTION -> writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                    case END_DOCUMENT -> writer.writeEndDocument();
+                    default -> {}       // DTD and entity references are dropped
+                }
+            }
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            return null;
+        }
+        return new VoTableStreamParser(source, metadata.toByteArray(), tables);
+    }
+
+    /**
+     * @return the document without its DATA elements; all other elements are kept
+     */
+    InputStream getMetadata() {
+        return new ByteArrayInputStream(metadata);
+    }
+
+    /**
+     * @param tableIdx the index of the table, in the order of VoTableReader's tables
+     * @param fields   the FIELDs of the table
+     * @return true if the rows of this table can be read by this parser
+     */
+    boolean canStream(int tableIdx, VOElement[] fields) {
+        if (tableIdx >= tables.size() || tables.get(tableIdx) == Serialization.OTHER) return false;
+        for (VOElement f : fields) {
+            if (Field.make(f) == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read the rows of a table.  Tables must be read in order.
+     * @param tableIdx the index of the table, in the order of VoTableReader's tables
+     * @param fields   the FIELDs of the table
+     * @param colIdx   the index of the fields to return, in the order to return them; null to return all
+     * @param handler  receives each row
+     */
+    void readRows(int tableIdx, VOElement[] fields, int[] colIdx, RowHandler handler) throws IOException {
+        if (tables.get(tableIdx) == Serialization.NONE) return;
+
+        Field[] cols = new Field[fields.length];
+        for (int i = 0; i < fields.length; i++) cols[i] = Field.make(fields[i]);
+        int[] outIdx = new int[fields.length];         // where each field goes in the returned row; -1 if it's not returned
+        int outCount = colIdx == null ? fields.length : colIdx.length;
+        if (colIdx == null) {
+            for (int i = 0; i < outIdx.length; i++) outIdx[i] = i;
+        } else {
+            Arrays.fill(outIdx, -1);
+            for (int i = 0; i < colIdx.length; i++) outIdx[colIdx[i]] = i;
+        }
+
+        try {
+            moveToData(tableIdx);
+            while (reader.next() != END_ELEMENT) {            // until the end of DATA
+                if (reader.getEventType() != START_ELEMENT) continue;
+                switch (reader.getLocalName()) {
+                    case "TABLEDATA" -> readTableData(cols, outIdx, outCount, handler);
+                    case "BINARY" -> readBinary(cols, outIdx, outCount, false, handler);
+                    case "BINARY2" -> readBinary(cols, outIdx, outCount, true, handler);
+                    default -> skipElement(reader);
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            if (reader != null) reader.close();
+        } catch (XMLStreamException ignored) {}
+        if (input != null) input.close();
+    }
+
+//====================================================================
+//  internal
+//====================================================================
+
+    /**
+     * Advance the second pass to the DATA element of the given table
+     */
+    private void moveToData(int tableIdx) throws IOException, XMLStreamException {
+        if (reader == null) {
+            input = new BufferedInputStream(new FileInputStream(source), 64 * 1024);
+            reader = INPUT_FACTORY.createXMLStreamReader(input);
+        }
+        if (tableIdx <= lastTable) throw new IOException("Tables must be read in order");
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("DATA")) {
+                    if (inTopResource && depth == 3 && lastTable == tableIdx) return;
+                    skipElement(reader);
+                    continue;
+                }
+                depth++;
+                if (depth == 2) inTopResource = name.equals("RESOURCE");
+                if (inTopResource && depth == 3 && name.equals("TABLE")) lastTable++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+        throw new EOFException("DATA of table " + tableIdx + " not found");
+    }
+
+    private void readTableData(Field[] cols, int[] outIdx, int outCount, RowHandler handler) throws XMLStreamException, IOException {
+        Object[] row = null;
+        int col = 0;
+        while (true) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                if (reader.getLocalName().equals("TR")) {
+                    row = new Object[outCount];
+                    col = 0;
+                } else {
+                    if (col < cols.length && outIdx[col] >= 0) {
+                        row[outIdx[col]] = cols[col].parse(reader.getElementText());
+                    } else {
+                        skipElement(reader);
+                    }
+                    col++;
+                }
+            } else if (event == END_ELEMENT) {
+                if (reader.getLocalName().equals("TABLEDATA")) return;
+                handler.row(row);          // end of TR; TD are consumed above
+            }
+        }
+    }
+
+    private void readBinary(Field[] cols, int[] outIdx, int outCount, boolean binary2, RowHandler handler) throws XMLStreamException, IOException {
+        while (reader.next() != START_ELEMENT || !reader.getLocalName().equals("STREAM")) {
+            if (reader.getEventType() == END_ELEMENT) return;      // BINARY without STREAM
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Base64.getMimeDecoder().wrap(new StreamText(reader)), 64 * 1024));
+        byte[] nulls = new byte[binary2 ? (cols.length + 7) / 8 : 0];
+        while (true) {
+            in.mark(1);
+            if (in.read() < 0) break;
+            in.reset();
+            if (binary2) in.readFully(nulls);
+            Object[] row = new Object[outCount];
+            for (int i = 0; i < cols.length; i++) {
+                boolean isNull = binary2 && (nulls[i >> 3] & (0x80 >>> (i & 7))) != 0;
+                if (outIdx[i] < 0 || isNull) {
+                    cols[i].skip(in);
+                } else {
+                    row[outIdx[i]] = cols[i].read(in);
+                }
+            }
+            handler.row(row);
+        }
+        while (reader.next() != END_ELEMENT) {                  // until the end of BINARY
+            if (reader.getEventType() == START_ELEMENT) skipElement(reader);
+        }
+    }
+
+    /**
+     * @param reader positioned at the start of a DATA element; it is moved to the end of it.
+     * @return how the data is serialized
+     */
+    private static Serialization getSerialization(XMLStreamReader reader) throws XMLStreamException {
+        Serialization ser = Serialization.NONE;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                if (depth == 2 && !name.equals("INFO")) {
+                    ser = switch (name) {
+                        case "TABLEDATA" -> Serialization.TABLEDATA;
+                        case "BINARY" -> Serialization.BINARY;
+                        case "BINARY2" -> Serialization.BINARY2;
+                        default -> Serialization.OTHER;         // FITS, PARQUET, etc
+                    };
+                } else if (depth == 3 && name.equals("STREAM") && ser != Serialization.TABLEDATA) {
+                    String href = reader.getAttributeValue(null, "href");
+                    String encoding = reader.getAttributeValue(null, "encoding");
+                    if (!isEmpty(href) || !"base64".equals(encoding)) ser = Serialization.OTHER;
+                }
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+        return ser;
+    }
+
+    private static void copyStartElement(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        String prefix = reader.getPrefix();
+        String ns = reader.getNamespaceURI();
+        if (isEmpty(ns)) {
+            writer.writeStartElement(reader.getLocalName());
+        } else {
+            writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), ns);
+        }
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = reader.getNamespacePrefix(i);
+            if (isEmpty(nsPrefix)) {
+                writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+            } else {
+                writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+            }
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attPrefix = reader.getAttributePrefix(i);
+            if (isEmpty(attPrefix)) {
+                writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            } else {
+                writer.writeAttribute(attPrefix, reader.getAttributeNamespace(i), reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+        }
+    }
+
+    /**
+     * @param reader positioned at the start of an element; it is moved to the end of it.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == END_ELEMENT) depth--;
+        }
+    }
+
+    /**
+     * The text content of a STREAM element, as bytes.  It ends at the end of the element.
+     */
+    private static final class StreamText extends InputStream {
+        private final XMLStreamReader reader;
+        private char[] chars;
+        private int pos;
+        private int end;
+        private boolean done;
+
+        StreamText(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (pos >= end) {
+                if (done) return -1;
+                try {
+                    int event = reader.next();
+                    if (event == CHARACTERS || event == CDATA || event == SPACE) {
+                        chars = reader.getTextCharacters();
+                        pos = reader.getTextStart();
+                        end = pos + reader.getTextLength();
+                    } else if (event == END_ELEMENT) {
+                        done = true;
+                    } else if (event == START_ELEMENT) {
+                        throw new IOException("Unexpected element in STREAM: " + reader.getLocalName());
+                    }
+                } catch (XMLStreamException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            int n = Math.min(len, end - pos);
+            for (int i = 0; i < n; i++) b[off + i] = (byte) chars[pos + i];
+            pos += n;
+            return n;
+        }
+    }
+
+    /**
+     * How the values of a FIELD are decoded.  Numeric arrays, of any shape, are returned as flat primitive arrays,
+     * and character arrays as String.  Only single integer values are checked against the null value of VALUES.
+     */
+    private static final class Field {
+        private final String type;
+        private final boolean isArray;
+        private final int count;            // number of elements; -1 if variable
+        private final int size;             // bytes per element; bits are handled separately
+        private final boolean hasNull;
+        private final long nullVal;
+
+        private Field(String type, boolean isArray, int count, int size, boolean hasNull, long nullVal) {
+            this.type = type;
+            this.isArray = isArray;
+            this.count = count;
+            this.size = size;
+            this.hasNull = hasNull;
+            this.nullVal = nullVal;
+        }
+
+        /**
+         * @return the decoder of this FIELD, or null if it's not supported
+         */
+        static Field make(VOElement field) {
+            String type = field.getAttribute("datatype");
+            String arraysize = field.getAttribute("arraysize");
+            int size = switch (isEmpty(type) ? "" : type) {
+                case "boolean", "bit", "unsignedByte", "char" -> 1;
+                case "short", "unicodeChar" -> 2;
+                case "int", "float" -> 4;
+                case "long", "double" -> 8;
+                default -> -1;                      // complex or unknown
+            };
+            if (size < 0) return null;
+
+            boolean isString = type.equals("char") || type.equals("unicodeChar");
+            boolean isArray = !isEmpty(arraysize) && !isString;
+            int count = 1;
+            if (!isEmpty(arraysize)) {
+                if (isString && arraysize.contains("x")) return null;       // array of strings
+                try {
+                    for (String dim : arraysize.trim().split("x")) {
+                        if (dim.endsWith("*")) {
+                            count = -1;
+                        } else if (count > 0) {
+                            count *= Integer.parseInt(dim);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            boolean hasNull = false;
+            long nullVal = 0;
+            VOElement values = field.getChildByName("VALUES");
+            String nullStr = values == null ? null : values.getAttribute("null");
+            if (!isEmpty(nullStr) && List.of("unsignedByte", "short", "int", "long").contains(type)) {
+                try {
+                    nullVal = parseLong(nullStr.trim());
+                    hasNull = true;
+                } catch (NumberFormatException ignored) {}
+            }
+            return new Field(type, isArray, count, size, hasNull, nullVal);
+        }
+
+        /**
+         * @return the value of a BINARY or BINARY2 cell
+         */
+        Object read(DataInputStream in) throws IOException {
+            int n = count < 0 ? in.readInt() : count;
+            if (type.equals("bit")) {
+                byte[] bytes = readBytes(in, (n + 7) / 8);
+                boolean[] bits = new boolean[n];
+                for (int i = 0; i < n; i++) bits[i] = (bytes[i >> 3] & (0x80 >>> (i & 7))) != 0;
+                return isArray ? bits : n > 0 ? bits[0] : null;
+            }
+            if (type.equals("char")) {
+                byte[] bytes = readBytes(in, n);
+                int len = 0;
+                while (len < n && bytes[len] != 0) len++;
+                return toString(new String(bytes, 0, len, StandardCharsets.ISO_8859_1));
+            }
+            if (type.equals("unicodeChar")) {
+                StringBuilder sb = new StringBuilder(n);
+                boolean ended = false;
+                for (int i = 0; i < n; i++) {
+                    char c = in.readChar();
+                    ended = ended || c == 0;
+                    if (!ended) sb.append(c);
+                }
+                return toString(sb.toString());
+            }
+            if (!isArray) {
+                return switch (type) {
+                    case "boolean" -> toBoolean((char) in.readByte());
+                    case "unsignedByte" -> toShort(in.readUnsignedByte());
+                    case "short" -> toShort(in.readShort());
+                    case "int" -> {
+                        int v = in.readInt();
+                        yield isNull(v) ? null : v;
+                    }
+                    case "long" -> {
+                        long v = in.readLong();
+                        yield isNull(v) ? null : v;
+                    }
+                    case "float" -> in.readFloat();
+                    default -> in.readDouble();
+                };
+            }
+            if (type.equals("boolean")) {
+                boolean[] vals = new boolean[n];
+                for (int i = 0; i < n; i++) vals[i] = Boolean.TRUE.equals(toBoolean((char) in.readByte()));
+                return vals;
+            }
+            ByteBuffer buf = ByteBuffer.wrap(readBytes(in, n * size));
+            switch (type) {
+                case "unsignedByte" -> {
+                    short[] vals = new short[n];
+                    for (int i = 0; i < n; i++) vals[i] = (short) (buf.get(i) & 0xff);
+                    return vals;
+                }
+                case "short" -> {
+                    short[] vals = new short[n];
+                    buf.asShortBuffer().get(vals);
+                    return vals;
+                }
+                case "int" -> {
+                    int[] vals = new int[n];
+                    buf.asIntBuffer().get(vals);
+                    return vals;
+                }
+                case "long" -> {
+                    long[] vals = new long[n];
+                    buf.asLongBuffer().get(vals);
+                    return vals;
+                }
+                case "float" -> {
+                    float[] vals = new float[n];
+                    buf.asFloatBuffer().get(vals);
+                    return vals;
+                }
+                default -> {
+                    double[] vals = new double[n];
+                    buf.asDoubleBuffer().get(vals);
+                    return vals;
+                }
+            }
+        }
+
+        /**
+         * Skip a BINARY or BINARY2 cell without decoding it
+         */
+        void skip(DataInputStream in) throws IOException {
+            int n = count < 0 ? in.readInt() : count;
+            int bytes = type.equals("bit") ? (n + 7) / 8 : n * size;
+            while (bytes > 0) {
+                int skipped = in.skipBytes(bytes);
+                if (skipped <= 0) throw new EOFException();
+                bytes -= skipped;
+            }
+        }
+
+        /**
+         * @return the value of a TABLEDATA cell
+         */
+        Object parse(String text) {
+            if (type.equals("char") || type.equals("unicodeChar")) return toString(text);
+
+            String s = text.trim();
+            if (s.isEmpty()) return null;
+            try {
+                if (type.equals("bit")) {
+                    String bitStr = s.replaceAll("\\s", "");
+                    boolean[] bits = new boolean[bitStr.length()];
+                    for (int i = 0; i < bits.length; i++) bits[i] = bitStr.charAt(i) == '1';
+                    return isArray ? bits : bits[0];
+                }
+                if (!isArray) {
+                    return switch (type) {
+                        case "boolean" -> toBoolean(s);
+                        case "unsignedByte", "short" -> toShort(parseLong(s));
+                        case "int" -> {
+                            long v = parseLong(s);
+                            yield isNull(v) ? null : (int) v;
+                        }
+                        case "long" -> {
+                            long v = parseLong(s);
+                            yield isNull(v) ? null : v;
+                        }
+                        case "float" -> (float) parseDouble(s);
+                        default -> parseDouble(s);
+                    };
+                }
+
+                String[] vals = s.split("\\s+");
+                int n = vals.length;
+                switch (type) {
+                    case "boolean" -> {
+                        boolean[] ary = new boolean[n];
+                        for (int i = 0; i < n; i++) ary[i] = Boolean.TRUE.equals(toBoolean(vals[i]));
+                        return ary;
+                    }
+                    case "unsignedByte", "short" -> {
+                        short[] ary = new short[n];
+                        for (int i = 0; i < n; i++) ary[i] = (short) parseLong(vals[i]);
+                        return ary;
+                    }
+                    case "int" -> {
+                        int[] ary = new int[n];
+                        for (int i = 0; i < n; i++) ary[i] = (int) parseLong(vals[i]);
+                        return ary;
+                    }
+                    case "long" -> {
+                        long[] ary = new long[n];
+                        for (int i = 0; i < n; i++) ary[i] = parseLong(vals[i]);
+                        return ary;
+                    }
+                    case "float" -> {
+                        float[] ary = new float[n];
+                        for (int i = 0; i < n; i++) ary[i] = (float) parseDouble(vals[i]);
+                        return ary;
+                    }
+                    default -> {
+                        double[] ary = new double[n];
+                        for (int i = 0; i < n; i++) ary[i] = parseDouble(vals[i]);
+                        return ary;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;            // same as a blank cell
+            }
+        }
+
+        private boolean isNull(long v) {
+            return hasNull && v == nullVal;
+        }
+
+        private Short toShort(long v) {
+            return isNull(v) ? null : (short) v;
+        }
+
+        private static String toString(String s) {
+            return s.isBlank() ? null : s;
+        }
+
+        private static Boolean toBoolean(char c) {
+            return switch (c) {
+                case 'T', 't', '1' -> Boolean.TRUE;
+                case 'F', 'f', '0' -> Boolean.FALSE;
+                default -> null;
+            };
+        }
+
+        private static Boolean toBoolean(String s) {
+            if (s.equalsIgnoreCase("true")) return Boolean.TRUE;
+            if (s.equalsIgnoreCase("false")) return Boolean.FALSE;
+            return s.length() == 1 ? toBoolean(s.charAt(0)) : null;
+        }
+
+        private static long parseLong(String s) {
+            return s.startsWith("0x") || s.startsWith("0X") ? Long.parseLong(s.substring(2), 16) : Long.parseLong(s);
+        }
+
+        private static double parseDouble(String s) {
+            return switch (s) {
+                case "Inf", "+Inf", "inf", "+inf" -> Double.POSITIVE_INFINITY;
+                case "-Inf", "-inf" -> Double.NEGATIVE_INFINITY;
+                default -> Double.parseDouble(s);
+            };
+        }
+
+        private static byte[] readBytes(DataInputStream in, int n) throws IOException {
+            byte[] bytes = new byte[n];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+}
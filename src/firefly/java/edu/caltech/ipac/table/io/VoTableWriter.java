@@ -65,6 +65,25 @@ public class VoTableWriter {
         FitsFactory.useThreadLocalSettings(false);
     }
 
+    /**
+     * save the table to a stream one batch of rows at a time, stream is not closed
+     *
+     * @param stream the output stream to write to
+     * @param table the table to save
+     * @param outputFormat votable output format
+     * @throws IOException on error
+     */
+    public static void save(OutputStream stream, BatchedTable table, FormatUtil.Format outputFormat) throws IOException {
+
+        FitsFactory.useThreadLocalSettings(true);  // consistent with FitsTableReader
+        FitsFactory.setLongStringsEnabled(false);
+
+        VoTableWriterImpl voWriter = new VoTableWriterImpl(outputFormat, table);
+        voWriter.write(stream);
+
+        FitsFactory.useThreadLocalSettings(false);
+    }
+
     /**
      * A {@link VOTableWriter} implementation that outputs extra metadata from a {@link DataGroup} in VOTable format.
      * This writer is designed for a single DataGroup and does not support multiple tables.
@@ -72,10 +91,18 @@ public class VoTableWriter {
      */
     public static class VoTableWriterImpl extends VOTableWriter {
         private final DataGroup dataGroup;
+        private final BatchedTable table;          // when set, rows are read from here instead of dataGroup
 
         public VoTableWriterImpl(FormatUtil.Format outputFormat, DataGroup dataGroup) {
             super(getDataFormat(outputFormat), true, getVotVersion(outputFormat));
             this.dataGroup = dataGroup;
+            this.table = null;
+        }
+
+        public VoTableWriterImpl(FormatUtil.Format outputFormat, BatchedTable table) {
+            super(getDataFormat(outputFormat), true, getVotVersion(outputFormat));
+            this.dataGroup = table.getHeaders();
+            this.table = table;
         }
 
         public void write(OutputStream stream) throws IOException {
@@ -85,7 +112,7 @@ public class VoTableWriter {
                     .map(DataType::getKeyName)
                     .collect(Collectors.toList());
 
-            StarTable st = new DataGroupStarTable(dataGroup, columns);
+            StarTable st = table == null ? new DataGroupStarTable(dataGroup, columns) : new BatchedStarTable(table, columns);
             writeStarTable(st, stream);
         }
 
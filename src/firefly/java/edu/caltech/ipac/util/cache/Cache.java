@@ -6,7 +6,10 @@ package edu.caltech.ipac.util.cache;
 import edu.caltech.ipac.firefly.data.FileInfo;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -30,6 +33,31 @@ public interface Cache<T> {
      */
     List<? extends CacheKey> getKeys();
 
+    /**
+     * Returns the values of the given keys.  Implementations backed by a remote store should fetch them
+     * in as few round trips as possible.
+     * @param keys the keys to look up
+     * @return a map of key to value; keys not in the cache are left out
+     */
+    default Map<CacheKey, T> getAll(Collection<? extends CacheKey> keys) {
+        Map<CacheKey, T> rval = new LinkedHashMap<>();
+        if (keys == null) return rval;
+        for (CacheKey k : keys) {
+            T v = get(k);
+            if (v != null) rval.put(k, v);
+        }
+        return rval;
+    }
+
+    /**
+     * Put all the given values into this cache.  A null value removes its key.
+     * @param values a map of key to value
+     */
+    default void putAll(Map<? extends CacheKey, ? extends T> values) {
+        if (values == null) return;
+        values.forEach((k, v) -> put(k, v));
+    }
+
     /**
      * Set a get validator for this cache.  The validator will be called before returning the value from the cache.
      * If the value failed the validation, it will be removed from the cache and null will be returned.
@@ -73,6 +73,9 @@ public class DecimateKey implements Cloneable {
     public String getXCol() {return xColNameOrExpr; }
     public String getYCol() {return yColNameOrExpr; }
 
+    public double getXMin() {return xMin; }
+    public double getYMin() {return yMin; }
+
     public int getNX() {return nX; }
     public int getNY() {return nY; }
 
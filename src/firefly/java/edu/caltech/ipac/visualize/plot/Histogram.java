@@ -7,6 +7,14 @@ import edu.caltech.ipac.firefly.data.HasSizeOf;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.server.util.StopWatch;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -28,6 +36,9 @@ public class Histogram implements HasSizeOf {
     private static final int HISTSIZ2 = 4096;  /* full size of hist array */
     private static final int HISTSIZ = 2048;     /* half size of hist array */
     private static final boolean debug= false;
+    private static final int MIN_PART_SIZE = 10000;
+    private static final int MAX_PARTS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int FILE_VERSION = 1;
 
     private int[] hist;
     private double histMin;
@@ -121,6 +132,63 @@ public class Histogram implements HasSizeOf {
 //        Logger.briefInfo("histogram="+t+ ", count=" +count);
     }
 
+    private Histogram(int[] hist, double histMin, double histBinsize, double irafMin, double irafMax, double largeBinPercent) {
+        this.hist = hist;
+        this.histMin = histMin;
+        this.histBinsize = histBinsize;
+        this.irafMin = irafMin;
+        this.irafMax = irafMax;
+        this.largeBinPercent = largeBinPercent;
+    }
+
+    /**
+     * Save this histogram, so it can be read back with {@link #read(File, long)} instead of being computed again
+     * @param f the file to write to
+     * @param dataVersion identifies the data the histogram was computed from, i.e. the last modified time of the FITS file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File f, long dataVersion) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeLong(dataVersion);
+            out.writeDouble(histMin);
+            out.writeDouble(histBinsize);
+            out.writeDouble(irafMin);
+            out.writeDouble(irafMax);
+            out.writeDouble(largeBinPercent);
+            out.writeInt(hist.length);
+            for (int v : hist) out.writeInt(v);
+        }
+    }
+
+    /**
+     * @param f the file written by {@link #write(File, long)}
+     * @param dataVersion identifies the data the histogram is needed for
+     * @return the saved histogram, or null if it was saved for a different version of the data
+     * @throws IOException if the file cannot be read
+     */
+    public static Histogram read(File f, long dataVersion) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != FILE_VERSION || in.readLong() != dataVersion) return null;
+            double histMin = in.readDouble();
+            double histBinsize = in.readDouble();
+            double irafMin = in.readDouble();
+            double irafMax = in.readDouble();
+            double largeBinPercent = in.readDouble();
+            int[] hist = new int[in.readInt()];
+            for (int i = 0; i < hist.length; i++) hist[i] = in.readInt();
+            return new Histogram(hist, histMin, histBinsize, irafMin, irafMax, largeBinPercent);
+        }
+    }
+
+    /**
+     * @param length the number of pixels
+     * @return the number of parts to split the pixels into, so each thread gets at least MIN_PART_SIZE of them
+     */
+    private static int getPartCount(int length) {
+        return Math.max(1, Math.min(MAX_PARTS, length / MIN_PART_SIZE));
+    }
+
     private static HistEntry makeHistogramEntry(float[] float1dArray, double histMin, double histBinsize) {
 
         var hist = new int[HISTSIZ2 + 1];
@@ -129,9 +197,9 @@ public class Histogram implements HasSizeOf {
         double histDatamax = -Double.MAX_VALUE;
         double histDatamin = Double.MAX_VALUE;
         try {
-            var len = float1dArray.length< 10000 ? 1 : 4;
+            var len = getPartCount(float1dArray.length);
             var taskList = new ArrayList<Callable<Void>>();
-            var partSize = float1dArray.length / 4;
+            var partSize = float1dArray.length / len;
             var phistList = new ArrayList<PartialHistogram>();
 
 
@@ -177,8 +245,8 @@ public class Histogram implements HasSizeOf {
         double datamax= -Double.MAX_VALUE;
         try {
             var taskList = new ArrayList<Callable<Void>>();
-            var len = float1dArray.length< 10000 ? 1 : 4;
-            var partSize = float1dArray.length / 4;
+            var len = getPartCount(float1dArray.length);
+            var partSize = float1dArray.length / len;
             var pMinMaxList = new ArrayList<PartialMinMax>();
 
             for (int i = 0; i < len; i++) {
@@ -200,7 +268,7 @@ public class Histogram implements HasSizeOf {
             // assemble results
             for (PartialMinMax pMinMax : pMinMaxList) {
                 if (pMinMax.datamin < datamin) datamin = pMinMax.datamin;
-                if (pMinMax.datamin > datamax) datamax = pMinMax.datamax;
+                if (pMinMax.datamax > datamax) datamax = pMinMax.datamax;
             }
         } catch (Exception e) {
             Logger.warn(e, "Histgram Entry failed");
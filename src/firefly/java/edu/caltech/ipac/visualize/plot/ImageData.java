@@ -199,7 +199,7 @@ public class ImageData implements Serializable {
                 bufferedImage = new BufferedImage(getColorModel(), getRaster(), false, null);
                 ImageHeader imHead= new ImageHeader(fitsReadAry[0].getHeader());
                 ImageStretch.stretchPixels8Bit(rangeValuesAry[Band.NO_BAND.getIdx()],
-                                               fitsReadAry[0].getRawFloatAry(), db.getData(0),
+                                               fitsReadAry[0].getRawFloatAry(), fitsReadAry[0].getRawDataKey(), db.getData(0),
                                                imHead,  fitsReadAry[0].getHistogram(),
                                                x, lastPixel, y, lastLine );
 
@@ -207,6 +207,7 @@ public class ImageData implements Serializable {
         }
         else if (imageType ==ImageType.TYPE_24_BIT) {
             float[][] float1dAry= new float[3][];
+            String[] dataKeyAry= new String[3];
             byte[][] pixelDataAry= new byte[3][];
             ImageHeader[] imHeadAry= new ImageHeader[3];
             Histogram[] histAry= new Histogram[3];
@@ -217,13 +218,14 @@ public class ImageData implements Serializable {
                     histAry[i]=null;
                 } else {
                     float1dAry[i] = fitsReadAry[i].getRawFloatAryStandard();
+                    dataKeyAry[i]= fitsReadAry[i].getDataKey(false);
                     imHeadAry[i]= new ImageHeader(fitsReadAry[i].getHeader());
                     histAry[i]= fitsReadAry[i].getHistogram();
                 }
                 pixelDataAry[i]= db.getData(i);
 
             }
-            ImageStretch.stretchPixels3Color(rangeValuesAry, float1dAry, pixelDataAry, imHeadAry, histAry,
+            ImageStretch.stretchPixels3Color(rangeValuesAry, float1dAry, dataKeyAry, pixelDataAry, imHeadAry, histAry,
                     rgbIntensity, x, lastPixel, y, lastLine );
             bufferedImage = new BufferedImage(getColorModel(), getRaster(), false, null);
         }
@@ -175,10 +175,9 @@ public class Zscale {
 	float[] sample = new float[maxpix];
 	int op = 0;
 	for (int line = (lineStep + 1)/2; line < ny; line+=lineStep) {
-	    /* Load a row of float values from the image */
+	    /* Take the sampled pixels of the line directly from the image, only they are read */
 		int ipixIndex = (line-1) * nx;
-		float[] row= getDataSlice(ipixIndex, nx, float1d, blank_value );
-		subSample (row, sample, op, npixPerLine, colStep);
+		subSample (float1d, ipixIndex, sample, op, npixPerLine, colStep, blank_value);
 		op += npixPerLine;
 		npix += npixPerLine;
 		if (npix > maxpix)
@@ -189,39 +188,20 @@ public class Zscale {
 	return new SampleRetval(npix, sample);
   }
 	
-  private static float[] getDataSlice(int start, int length, float[] data,double blank_value ){
-	  int ipixIndex = start;
-	  float[] row = new float[length];
-	  for (int i=0; i < length; i++){
-		  if ( data[ipixIndex] == blank_value){
-			  row[i] = Float.NaN;
-		  }
-		  else {
-			  row[i] = data[ipixIndex];
-
-		  }
-		  ipixIndex++;
-	  }
-	  return row;
-  }
-
 /** subSample -- Subsample an image line.  Extract the first pixel and
- * every "step"th pixel thereafter for a total of npix pixels.
+ * every "step"th pixel thereafter for a total of npix pixels.  Blank pixels are
+ * replaced with NaN.
  */
 
- private static void  subSample (float[] row,
-     float[] sample, int op, int npix, int step){
+ private static void  subSample (float[] data, int start,
+     float[] sample, int op, int npix, int step, double blank_value){
 
-	if (step <= 1)
-	    System.arraycopy(row, 0, sample, op, npix);
-	    //memmove (b, row, npix);
-	else {
-	    int ip = 0;
-	    for (int i=0; i < npix; i++) {
-		sample[op] = row[ip];
+	int ip = start;
+	for (int i=0; i < npix; i++) {
+		float v = data[ip];
+		sample[op] = v == blank_value ? Float.NaN : v;
 		ip += step;
 		op ++;
-	    }
 	}
 }
 
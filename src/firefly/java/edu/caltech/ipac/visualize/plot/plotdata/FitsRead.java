@@ -4,6 +4,9 @@
 package edu.caltech.ipac.visualize.plot.plotdata;
 
 import edu.caltech.ipac.firefly.data.HasSizeOf;
+import edu.caltech.ipac.firefly.server.ServerContext;
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.visualize.plot.CoordinateSys;
 import edu.caltech.ipac.visualize.plot.Histogram;
 import edu.caltech.ipac.visualize.plot.ImageHeader;
@@ -32,6 +35,16 @@ import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getHeaderSiz
  *
  */
 public class FitsRead implements Serializable, HasSizeOf {
+    /**
+     * When true, the pixels of an uncompressed FITS file are read through a memory-mapped view of the file
+     * instead of being kept on the heap.  The arrays returned by getRawFloatAry* are then new copies each time.
+     */
+    public static final boolean USE_MAPPED_DATA= AppProperties.getBooleanProperty("visualize.fits.mappedPixels", true);
+    /**
+     * When true, the histogram of a FITS file in the server's working directories is saved next to the file,
+     * so it does not need to be computed again after the FitsRead is evicted, or on another server sharing the directory.
+     */
+    private static final boolean SAVE_HISTOGRAM= AppProperties.getBooleanProperty("visualize.fits.saveHistogram", true);
     private static RangeValues DEFAULT_RANGE_VALUE = new RangeValues();
     private final int planeNumber;
     private final boolean cube;
@@ -51,6 +64,9 @@ public class FitsRead implements Serializable, HasSizeOf {
     private boolean dataFlipped= false;
     private boolean requestedFlipped= false;
     private final String syncKey;
+    private File uncompressedFile;
+    private transient MappedPixelData mappedData;
+    private transient boolean mapAttempted= false;
 
 
     /**
@@ -113,16 +129,56 @@ public class FitsRead implements Serializable, HasSizeOf {
 
     public float[] getRawFloatAry() {
         if (float1d!=null) return float1d;
+        MappedPixelData mapped= getMappedData();
+        if (mapped!=null) return mapped.readPlane(false);
         float1d= FitsReadUtil.dataArrayFromHDUAndPlane(this.file,this.hduNumber, planeNumber);
         return float1d;
     }
 
+    /**
+     * Check if the pixels are, or will be when they are first needed, kept on the heap.  This is the case when mapping
+     * is off, or when the data cannot be mapped: there is no file, a plane is over 2GB, or the map failed.
+     * The map is attempted if it has not been already.
+     * @return true if the pixels are on the heap, false if they are read from a memory-mapped view of the file
+     */
+    public boolean isPixelDataOnHeap() {
+        return float1d!=null || getMappedData()==null;
+    }
+
+    /**
+     * @return the memory-mapped view of the data or null if the data is in memory or the file cannot be mapped
+     */
+    private MappedPixelData getMappedData() {
+        if (!USE_MAPPED_DATA || float1d!=null || file==null) return null;
+        synchronized (syncKey) {
+            if (!mapAttempted) {
+                mappedData= MappedPixelData.map(uncompressedFile!=null ? uncompressedFile : file, hduNumber, planeNumber);
+                mapAttempted= true;
+            }
+            return mappedData;
+        }
+    }
+
+    /**
+     * Set the uncompressed copy of a gzip or tile compressed file.  The pixels are then mapped from it instead of
+     * being decompressed again from the original file, and kept on the heap, each time they are needed.
+     * @param uncompressedFile the uncompressed copy, it must have the same HDUs as the original
+     */
+    public void setUncompressedFile(File uncompressedFile) {
+        synchronized (syncKey) {
+            this.uncompressedFile= uncompressedFile;
+            this.mapAttempted= false;
+        }
+    }
+
     private String makeSyncKey() {
         String ctxStr= this.file!=null ? this.file.getAbsolutePath() : LocalDateTime.now().toString();
         return ctxStr+"--"+this.hduNumber+"--"+this.planeNumber;
     }
 
     public float[] getRawFloatAryFlipped(boolean cacheOnSecondRequest) {
+        MappedPixelData mapped= getMappedData();
+        if (mapped!=null) return mapped.readPlane(true);
         float[] retAry;
         synchronized (syncKey) {
             if (float1d==null && cacheOnSecondRequest && !requestedFlipped) {
@@ -142,6 +198,8 @@ public class FitsRead implements Serializable, HasSizeOf {
     }
 
     public float[] getRawFloatAryStandard() {
+        MappedPixelData mapped= getMappedData();
+        if (mapped!=null) return mapped.readPlane(false);
         synchronized (syncKey) {
             float[] retAry = getRawFloatAry();
             if (dataFlipped) {
@@ -152,7 +210,8 @@ public class FitsRead implements Serializable, HasSizeOf {
         }
     }
 
-    private static void flipInPlace(float [] float1d, int naxis1, int naxis2) {
+    private void flipInPlace(float [] float1d, int naxis1, int naxis2) {
+        ImageStretchUtil.clearZscale(float1d, getDataKey());
         int idx=0;
         float val;
         for (int y= naxis2-1; y>=naxis2/2; y--) {
@@ -227,7 +286,8 @@ public class FitsRead implements Serializable, HasSizeOf {
 
         int index = yint * this.getNaxis1() + xint;
 
-        double raw_dn = getRawFloatAry()[index];
+        MappedPixelData mapped= getMappedData();
+        double raw_dn = mapped!=null ? mapped.get(index) : getRawFloatAry()[index];
 
         return (!getOrigin().startsWith(ImageHeader.PALOMAR_ID)) ?
                 ImageStretch.getFluxStandard(raw_dn, getBlankValue(), getBscale(), getBzero(), getBitPix()) :
@@ -258,7 +318,13 @@ public class FitsRead implements Serializable, HasSizeOf {
      * @return array of byte (4096 elements)
      */
     public byte[] getHistColors(Histogram hist, RangeValues rangeValues) {
-        return ImageStretch.getHistColors( hist, rangeValues, float1d,
+        float[] data;
+        String dataKey;
+        synchronized (syncKey) {
+            data= getRawFloatAry();
+            dataKey= getRawDataKey();
+        }
+        return ImageStretch.getHistColors( hist, rangeValues, data, dataKey,
                 getBzero(), getBscale(), getNaxis1(), getNaxis2(), getBitPix(), getBlankValue());
     }
 
@@ -266,14 +332,57 @@ public class FitsRead implements Serializable, HasSizeOf {
     public Header getZeroHeader() { return zeroHeader; }
     public Histogram getHistogram() {
         if (hist==null) {
-            double bscale= getBscale();
-            double bzero= getBzero();
-            double datamax = header.getDoubleValue("DATAMAX", Double.NaN);
-            double datamin = header.getDoubleValue("DATAMIN", Double.NaN);
-            hist= new Histogram(getRawFloatAry(), (datamin - bzero) / bscale, (datamax - bzero) / bscale);
+            File histFile= getHistogramFile();
+            if (histFile!=null && histFile.canRead()) {
+                try {
+                    hist= Histogram.read(histFile, file.lastModified());
+                } catch (IOException e) {
+                    Logger.getLogger("FitsRead").debug("Could not read saved histogram: " + e.getMessage());
+                }
+            }
+            if (hist==null) {
+                double bscale= getBscale();
+                double bzero= getBzero();
+                double datamax = header.getDoubleValue("DATAMAX", Double.NaN);
+                double datamin = header.getDoubleValue("DATAMIN", Double.NaN);
+                hist= new Histogram(getRawFloatAry(), (datamin - bzero) / bscale, (datamax - bzero) / bscale);
+                if (histFile!=null) {
+                    try {
+                        hist.write(histFile, file.lastModified());
+                    } catch (IOException e) {
+                        Logger.getLogger("FitsRead").debug("Could not save histogram: " + e.getMessage());
+                    }
+                }
+            }
         }
         return hist;
     }
+
+    /**
+     * Use the histogram of another FitsRead with the same pixel values, i.e. a flipped one
+     * @param hist the histogram
+     */
+    void setHistogram(Histogram hist) { this.hist= hist; }
+
+    boolean hasHistogram() { return hist!=null; }
+
+    /**
+     * @return the file the histogram is saved to, or null if it should not be saved.  Only files in the server's
+     * working directories get one, the others may not be writable or be shared with other applications.
+     */
+    private File getHistogramFile() {
+        if (!SAVE_HISTOGRAM || file==null || tileCompress) return null;
+        try {
+            String path= file.getCanonicalPath();
+            File workDir= ServerContext.getWorkingDir();
+            File sharedDir= ServerContext.getSharedWorkingDir();
+            boolean inWorkDir= (workDir!=null && path.startsWith(workDir.getCanonicalPath())) ||
+                               (sharedDir!=null && path.startsWith(sharedDir.getCanonicalPath()));
+            return inWorkDir ? new File(file.getParentFile(), file.getName()+"-"+hduNumber+"-"+planeNumber+".hist") : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
     public int getImageScaleFactor() { return 1; }
 
 
@@ -315,6 +424,27 @@ public class FitsRead implements Serializable, HasSizeOf {
      */
     public int getHduNumber() { return hduNumber; }
 
+    /**
+     * @return a key identifying the pixel data of this FitsRead (file, hdu and plane), or null if it is not read from a file
+     */
+    public String getDataKey() { return file!=null ? syncKey : null; }
+
+    /**
+     * Results computed from the pixels, i.e. zscale, depend on the order of the lines.  Use this key to cache them.
+     * @param flipped true for the array returned by getRawFloatAryFlipped, false for getRawFloatAryStandard
+     * @return the data key plus the orientation of the array, or null if it is not read from a file
+     */
+    public String getDataKey(boolean flipped) { return file!=null ? syncKey + (flipped ? "--flipped" : "--standard") : null; }
+
+    /**
+     * @return same as getDataKey(boolean), for the array currently returned by getRawFloatAry
+     */
+    public String getRawDataKey() {
+        synchronized (syncKey) {
+            return getDataKey(float1d!=null && dataFlipped);
+        }
+    }
+
     /**
      * The Bscale  keyword shall be used, along with the BZERO keyword, when the array pixel values are not the true  physical  values,
      * to transform the primary data array  values to the true physical values they represent, using Eq. 5.3. The value field shall contain a
@@ -108,6 +108,7 @@ public class FlipXY {
 
         FitsRead[] outFitsRead = FitsReadFactory.createFitsReadArray(newFits);
         FitsRead fr = outFitsRead[0];
+        if (fitsRead.hasHistogram()) fr.setHistogram(fitsRead.getHistogram());  // flipping does not change the pixel values
 
         return fr;
     }
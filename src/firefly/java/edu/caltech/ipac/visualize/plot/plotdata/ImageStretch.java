@@ -26,6 +26,7 @@ public class ImageStretch {
 
     public static void stretchPixels8Bit(RangeValues rangeValues,
                                          float[] float1d,
+                                         String dataKey,
                                          byte[] pixelData,
                                          ImageHeader iH,
                                          Histogram hist,
@@ -33,14 +34,15 @@ public class ImageStretch {
                                          int lastPixel,
                                          int startLine,
                                          int lastLine ) {
-        double slow = getSlow(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
-        double shigh = getShigh(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+        double slow = getSlow(rangeValues, float1d, dataKey, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+        double shigh = getShigh(rangeValues, float1d, dataKey, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
         stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine, iH.naxis1, hist,
                 (byte)255, float1d, pixelData, rangeValues,slow,shigh);
     }
 
     public static void stretchPixels3Color(RangeValues rangeValuesAry[],
                                            float[][] float1dAry,
+                                           String[] dataKeyAry,
                                            byte[][] pixelDataAry,
                                            ImageHeader[] imageHeaderAry,
                                            Histogram[] histAry,
@@ -56,14 +58,14 @@ public class ImageStretch {
 
         if (isHuePreserving(rangeValuesAry[0])) {
             stretchPixelsHuePreserving(startPixel, lastPixel, startLine, lastLine, imageHeaderAry, histAry,
-                    rgbIntensity, float1dAry, pixelDataAry, rangeValuesAry);
+                    rgbIntensity, float1dAry, dataKeyAry, pixelDataAry, rangeValuesAry);
         }
         else {
             for(int i=0; (i<float1dAry.length); i++) {
                 if (float1dAry[i]!=null) {
                     ImageHeader iH= imageHeaderAry[i];
-                    double slow = getSlow(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
-                    double shigh = getShigh(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+                    double slow = getSlow(rangeValuesAry[i], float1dAry[i], dataKeyAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+                    double shigh = getShigh(rangeValuesAry[i], float1dAry[i], dataKeyAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
                     stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine,iH.naxis1, histAry[i],
                             (byte)0, float1dAry[i], pixelDataAry[i], rangeValuesAry[i],slow,shigh);
                 }
@@ -82,7 +84,7 @@ public class ImageStretch {
                                                   ImageHeader[] imageHeaderAry,
                                                   Histogram[] histAry,
                                                   RGBIntensity rgbIntensity,
-                                                  float[][]float1dAry, byte[][] pixelDataAry, RangeValues[] rangeValuesAry) {
+                                                  float[][]float1dAry, String[] dataKeyAry, byte[][] pixelDataAry, RangeValues[] rangeValuesAry) {
 
         for (int i = 0; (i < float1dAry.length); i++) {
             if (float1dAry[i] == null || imageHeaderAry[i] == null || histAry[i] == null) {
@@ -102,7 +104,7 @@ public class ImageStretch {
         for(int i=0; i<3; i++) {
             ImageHeader iH= imageHeaderAry[i];
             blankPxValAry[i]= iH.blank_value;
-            slowAry[i] = getSlow(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+            slowAry[i] = getSlow(rangeValuesAry[i], float1dAry[i], dataKeyAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
             slowAry[i] = getScaled(slowAry[i], imageHeaderAry[i], rangeValuesAry[i]);
         }
 
@@ -283,7 +285,6 @@ public class ImageStretch {
 
         double sdiff = slow == shigh ? 1.0 : shigh - slow;
         double gamma=rangeValues.getGammaValue();
-        int pixelCount = 0;
 
         int stretchAlgorithm= rangeValues.getStretchAlgorithm();
         double[] dtbl= switch (stretchAlgorithm) { // lookup table only used with certain algorithms
@@ -293,24 +294,67 @@ public class ImageStretch {
             default -> new double[0];
         };
 
-        interface StretchVal { byte getStretchValue(float val); }
-        StretchVal sv= switch (stretchAlgorithm) {
-            case RangeValues.STRETCH_LINEAR -> (val) -> getLinearStretchedPixelValue(val,slow,sdiff);
-            case RangeValues.STRETCH_POWERLAW_GAMMA -> (val) -> getPowerLawGammaStretchedPixelValue(val, gamma, slow, shigh);
-            default -> (val) -> getNoneLinerStretchedPixelValue(val,dtbl,sdiff);
+        RowKernel kernel= switch (stretchAlgorithm) {
+            case RangeValues.STRETCH_LINEAR -> (in, from, to, out, outPos) -> stretchRowLinear(in, from, to, out, outPos, blank_pixel_value, slow, sdiff);
+            case RangeValues.STRETCH_POWERLAW_GAMMA -> (in, from, to, out, outPos) -> stretchRowPowerLawGamma(in, from, to, out, outPos, blank_pixel_value, gamma, slow, shigh);
+            default -> (in, from, to, out, outPos) -> stretchRowTable(in, from, to, out, outPos, blank_pixel_value, dtbl, sdiff);
         };
+        stretchTile(kernel, startPixel, lastPixel, startLine, lastLine, naxis1, float1dArray, pixeldata);
+    }
+
+    /**
+     * Stretches the pixels of one line of a tile, from index <code>from</code> to <code>to</code> inclusive, into
+     * <code>out</code> starting at <code>outPos</code>.  A kernel is picked once per tile, so the per-pixel loop
+     * does not go through a call per pixel and the values that depend only on the range are computed once.
+     */
+    private interface RowKernel { void stretchRow(float[] in, int from, int to, byte[] out, int outPos); }
+
+    private static void stretchTile(RowKernel kernel, int startPixel, int lastPixel, int startLine, int lastLine,
+                                    int naxis1, float[] float1dArray, byte[] pixeldata) {
+        int lineLen= lastPixel - startPixel + 1;
+        int pixelCount = 0;
         for (int line = startLine; line <= lastLine; line++) {
             int start_index = line * naxis1 + startPixel;
-            int last_index = line * naxis1 + lastPixel;
+            kernel.stretchRow(float1dArray, start_index, start_index + lineLen - 1, pixeldata, pixelCount);
+            pixelCount+= lineLen;
+        }
+    }
 
-            for (int index = start_index; index <= last_index; index++) {
-                pixeldata[pixelCount]= Double.isNaN(float1dArray[index]) ?
-                        blank_pixel_value : sv.getStretchValue(float1dArray[index]);
-                pixelCount++;
+    private static void stretchRowLinear(float[] in, int from, int to, byte[] out, int outPos,
+                                         byte blank, double slow, double sdiff) {
+        for (int index = from; index <= to; index++, outPos++) {
+            float val= in[index];
+            if (Double.isNaN(val)) {
+                out[outPos]= blank;
+            } else {
+                double dRenVal= ((val - slow) * 254) / sdiff;
+                out[outPos]= dRenVal < 0 ? 0 : dRenVal > 254 ? (byte)254 : (byte)dRenVal;
             }
         }
     }
 
+    private static void stretchRowPowerLawGamma(float[] in, int from, int to, byte[] out, int outPos,
+                                                byte blank, double gamma, double zp, double mp) {
+        double invGamma= 1.0 / gamma;
+        double range= Math.pow(mp - zp, invGamma);
+        for (int index = from; index <= to; index++, outPos++) {
+            float x= in[index];
+            if (Double.isNaN(x)) out[outPos]= blank;
+            else if (x <= zp) out[outPos]= 0;
+            else if (x >= mp) out[outPos]= (byte)254;
+            else out[outPos]= (byte)(255 * (Math.pow(x - zp, invGamma) / range));
+        }
+    }
+
+    private static void stretchRowTable(float[] in, int from, int to, byte[] out, int outPos,
+                                        byte blank, double[] dtbl, double sdiff) {
+        int[] ary= sdiff>0 ? shiftPosAry : shiftNegAry;
+        for (int index = from; index <= to; index++, outPos++) {
+            float val= in[index];
+            out[outPos]= Double.isNaN(val) ? blank : lookupStretchedPixelValue(val, dtbl, ary);
+        }
+    }
+
     /**
      * The algorithm accepts positive Q, which should be controlled by a slider.
      * The mapping from flux to color value is 255 * 0.1 * asinh(Q*(x-xMin)/(xMax-xMin)) / asinh(0.1*Q)
@@ -328,14 +372,15 @@ public class ImageStretch {
      *    0.1 * asinh(Q*(xDataMax-xMin)/(xMax-xMin)) / asinh(0.1*Q) = 1
      *
      * @param flux pixel value
-     * @param maxFlux upper range value
      * @param minFlux lower range value
+     * @param fluxRange upper range value minus lower range value
      * @param qvalue Q parameter for asinh stretch algorithm
+     * @param asinhNorm asinh(0.1*qvalue), constant for a tile
      * @return mapped color value from 0 to 244
      */
-    private static double  getASinhStretchedPixelValue(double flux, double maxFlux, double minFlux, double qvalue)  {
+    private static double  getASinhStretchedPixelValue(double flux, double minFlux, double fluxRange, double qvalue, double asinhNorm)  {
         if (flux <= minFlux) { return 0d; }
-        double color = 255 * 0.1 * asinh(qvalue*(flux - minFlux) / (maxFlux - minFlux)) / asinh(0.1 * qvalue);
+        double color = 255 * 0.1 * asinh(qvalue*(flux - minFlux) / fluxRange) / asinhNorm;
         return Math.min(color, 254d);
 
     }
@@ -350,8 +395,7 @@ public class ImageStretch {
     /**
      * find the correct value from the lookup table
      */
-    private static byte getNoneLinerStretchedPixelValue(double dRunVal, double[] dtbl, double sdiff) {
-        int[] ary= sdiff>0 ? shiftPosAry : shiftNegAry;
+    private static byte lookupStretchedPixelValue(double dRunVal, double[] dtbl, int[] ary) {
         int pixval = 128;
         for(int delta : ary) {
             if (dtbl[pixval] < dRunVal) pixval += delta;
@@ -361,13 +405,6 @@ public class ImageStretch {
         return (byte)pixval;
     }
 
-    private static byte getLinearStretchedPixelValue(double val, double slow, double sdiff) {
-        var dRenVal= ((val - slow) * 254) / sdiff;
-        if (dRenVal < 0) return 0;
-        else if (dRenVal > 254) return (byte) 254;
-        else return (byte) dRenVal;
-    }
-
     private static double[] getLogDtbl(double sdiff, double slow, RangeValues rangeValues) {
 
         double[] dtbl = new double[256];
@@ -425,22 +462,21 @@ public class ImageStretch {
             rangeValues.setAsinhQValue(qvalue);
         }
 
-        int pixelCount = 0;
-        double flux;
-
-        for (int line = startLine; line <= lastLine; line++) {
-            int start_index = line * naxis1 + startPixel;
-            int last_index = line * naxis1 + lastPixel;
-            for (int index = start_index; index <= last_index; index++) {
-                flux = float1dArray[index];
-                if (Double.isNaN(flux)) { // if original pixel value is NaN, assign it to blank
-                    pixeldata[pixelCount] = blank_pixel_value;
-                } else {
-                    pixeldata[pixelCount] = (byte) getASinhStretchedPixelValue(flux, maxFlux, minFlux, qvalue);
-                }
-                pixelCount++;
-            }
-        }
+        final double minF= minFlux;
+        final double fluxRange= maxFlux - minFlux;
+        final double q= qvalue;
+        final double asinhNorm= asinh(0.1 * qvalue);
+        stretchTile((in, from, to, out, outPos) -> {
+                    for (int index = from; index <= to; index++, outPos++) {
+                        double flux = in[index];
+                        if (Double.isNaN(flux)) { // if original pixel value is NaN, assign it to blank
+                            out[outPos] = blank_pixel_value;
+                        } else {
+                            out[outPos] = (byte) getASinhStretchedPixelValue(flux, minF, fluxRange, q, asinhNorm);
+                        }
+                    }
+                },
+                startPixel, lastPixel, startLine, lastLine, naxis1, float1dArray, pixeldata);
     }
 
     /**
@@ -488,15 +524,6 @@ public class ImageStretch {
         return dtbl;
     }
 
-    private static byte getPowerLawGammaStretchedPixelValue(double x, double gamma, double zp, double mp){
-        if (x <= zp) { return 0; }
-        if (x >= mp) { return (byte)254; }
-        double  rd =  x-zp;
-        double  nsd = Math.pow(rd, 1.0 / gamma)/ Math.pow(mp - zp, 1.0 / gamma);
-        double pixValue = 255*nsd;
-        return (byte)pixValue;
-    }
-
     /**
      * Return an array where each element corresponds to an element of
      * the histogram, and the value in each element is the screen pixel
@@ -505,7 +532,7 @@ public class ImageStretch {
      *
      * @return array of byte (4096 elements)
      */
-    public static byte[] getHistColors(Histogram hist, RangeValues rangeValues, float[] float1d,
+    public static byte[] getHistColors(Histogram hist, RangeValues rangeValues, float[] float1d, String dataKey,
                                        double bzero, double bscale, int naxis1, int naxis2,
                                        int bitpix, double blank_value) {
 
@@ -518,8 +545,8 @@ public class ImageStretch {
             hist_bin_values[i] = (float) hist.getDNfromBin(i);
         }
 
-        double slow = getSlow(rangeValues, float1d, hist, bzero, bscale, naxis1, naxis2, blank_value);
-        double shigh = getShigh(rangeValues, float1d, hist, bzero, bscale, naxis1, naxis2, blank_value);
+        double slow = getSlow(rangeValues, float1d, dataKey, hist, bzero, bscale, naxis1, naxis2, blank_value);
+        double shigh = getShigh(rangeValues, float1d, dataKey, hist, bzero, bscale, naxis1, naxis2, blank_value);
 
         int start_pixel = 0;
         int last_pixel = 4095;
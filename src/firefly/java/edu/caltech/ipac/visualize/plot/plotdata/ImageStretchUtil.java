@@ -3,12 +3,45 @@
  */
 package edu.caltech.ipac.visualize.plot.plotdata;
 
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.visualize.plot.Histogram;
 import edu.caltech.ipac.visualize.plot.ImageHeader;
 import edu.caltech.ipac.visualize.plot.RangeValues;
 import edu.caltech.ipac.visualize.plot.Zscale;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
 class ImageStretchUtil {
+
+    /** upper limit on the number of pixels sampled by zscale, whatever the range values ask for */
+    private static final int MAX_ZSCALE_SAMPLES = AppProperties.getIntProperty("visualize.zscale.maxSamples", 100_000);
+
+    /** number of zscale results kept for data read from a file */
+    private static final int ZSCALE_CACHE_SIZE = AppProperties.getIntProperty("visualize.zscale.cacheSize", 1000);
+
+    /**
+     * zscale results by data key (file, hdu and plane) and parameters.  Every tile of a stretch asks for both z1
+     * and z2 of the same data, and the data array is a new copy for each request when the pixels are mapped, so
+     * this computes it once per plane for as long as the entry is kept, instead of twice per tile.
+     */
+    private static final Map<String, Zscale.ZscaleRetval> zscaleCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, .75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<String, Zscale.ZscaleRetval> eldest) {
+                    return size() > ZSCALE_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * zscale results of data not read from a file, by data array then by parameters.
+     * Entries go away with the data array.
+     */
+    private static final Map<float[], Map<String, Zscale.ZscaleRetval>> zscaleByArray =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * The Bscale  keyword shall be used, along with the BZERO keyword, when the array pixel values are not the true  physical  values,
      * to transform the primary data array  values to the true physical values they represent, using Eq. 5.3. The value field shall contain a
@@ -34,31 +67,63 @@ class ImageStretchUtil {
         }
     }
 
-    static double getShigh(RangeValues rangeValues, float[] float1d, Histogram hist, double bzero, double bscale,
+    static double getShigh(RangeValues rangeValues, float[] float1d, String dataKey, Histogram hist, double bzero, double bscale,
                               int naxis1, int naxis2, double blank_value) {
         return switch (rangeValues.getUpperWhich()) {
             case RangeValues.ABSOLUTE -> (rangeValues.getUpperValue() - bzero) / bscale;
             case RangeValues.PERCENTAGE -> hist.get_pct(rangeValues.getUpperValue(), true);
             case RangeValues.SIGMA -> hist.get_sigma(rangeValues.getUpperValue(), true);
-            case RangeValues.ZSCALE -> getZscaleValue(float1d, naxis1, naxis2, blank_value, rangeValues).z2();
+            case RangeValues.ZSCALE -> getZscaleValue(float1d, dataKey, naxis1, naxis2, blank_value, rangeValues).z2();
             default -> 0;
         };
     }
 
-    static Zscale.ZscaleRetval getZscaleValue(float[] float1d, int naxis1, int naxis2, double blank_value, RangeValues rangeValues) {
+    /**
+     * @param float1d the data array
+     * @param dataKey identifies the data (file, hdu, plane and orientation), see FitsRead.getDataKey(boolean);
+     *                null if it is not read from a file.  Zscale samples whole lines, so the result differs by orientation.
+     */
+    static Zscale.ZscaleRetval getZscaleValue(float[] float1d, String dataKey, int naxis1, int naxis2, double blank_value, RangeValues rangeValues) {
         double contrast = rangeValues.getZscaleContrast();
-        int optSize = rangeValues.getZscaleSamples();
+        int optSize = Math.min(rangeValues.getZscaleSamples(), MAX_ZSCALE_SAMPLES);
         int lenStdline = rangeValues.getZscaleSamplesPerLine();
-        return Zscale.cdl_zscale(float1d, naxis1, naxis2, contrast / 100.0, optSize, lenStdline, blank_value );
+        String params = contrast + "|" + optSize + "|" + lenStdline + "|" + blank_value + "|" + naxis1 + "|" + naxis2;
+        if (dataKey==null) {
+            return zscaleByArray.computeIfAbsent(float1d, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(params,
+                            k -> Zscale.cdl_zscale(float1d, naxis1, naxis2, contrast / 100.0, optSize, lenStdline, blank_value));
+        }
+        String key = dataKey + "|" + params;
+        Zscale.ZscaleRetval retval = zscaleCache.get(key);
+        if (retval==null) {     // computed outside the lock, so zscale of other data is not held up by this one
+            retval = Zscale.cdl_zscale(float1d, naxis1, naxis2, contrast / 100.0, optSize, lenStdline, blank_value);
+            zscaleCache.put(key, retval);
+        }
+        return retval;
+    }
+
+    /**
+     * Forget the zscale results of the given data array, call when it is changed in place
+     * @param float1d the data array
+     * @param dataKey the data key of the array, see FitsRead.getDataKey(); its results in every orientation are removed.
+     *                null if it is not read from a file
+     */
+    static void clearZscale(float[] float1d, String dataKey) {
+        zscaleByArray.remove(float1d);
+        if (dataKey!=null) {
+            synchronized (zscaleCache) {
+                zscaleCache.keySet().removeIf(k -> k.startsWith(dataKey + "--"));
+            }
+        }
     }
 
-    static double getSlow(RangeValues rangeValues, float[] float1d, Histogram hist, double bzero, double bscale,
+    static double getSlow(RangeValues rangeValues, float[] float1d, String dataKey, Histogram hist, double bzero, double bscale,
                           int naxis1, int naxis2, double blank_value) {
         return switch (rangeValues.getLowerWhich()) {
             case RangeValues.ABSOLUTE ->  (rangeValues.getLowerValue() - bzero) / bscale;
             case RangeValues.PERCENTAGE -> hist.get_pct(rangeValues.getLowerValue(), false);
             case RangeValues.SIGMA -> hist.get_sigma(rangeValues.getLowerValue(), false);
-            case RangeValues.ZSCALE -> getZscaleValue(float1d, naxis1, naxis2, blank_value, rangeValues).z1();
+            case RangeValues.ZSCALE -> getZscaleValue(float1d, dataKey, naxis1, naxis2, blank_value, rangeValues).z1();
             default -> 0;
         };
     }
@@ -0,0 +1,127 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.firefly.server.util.Logger;
+import nom.tam.fits.BasicHDU;
+import nom.tam.fits.Fits;
+import nom.tam.fits.Header;
+import nom.tam.fits.ImageHDU;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getBitPix;
+import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getNaxis;
+import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getNaxis1;
+import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getNaxis2;
+import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.getNaxis4;
+
+/**
+ * A read-only, memory-mapped view of one plane of an uncompressed FITS image.
+ * <p>
+ * The pixels stay in the file (and the OS page cache) and are converted from the on-disk BITPIX (always big endian)
+ * to float as they are read.  The values are raw, the same as the float array returned by
+ * {@link FitsReadUtil#dataArrayFromHDUAndPlane}, so BSCALE/BZERO are applied by the callers just as before.
+ * <p>
+ * Only absolute reads are done on the buffer, so an instance can be used by several threads.
+ *
+ * Date: 10/18/26
+ */
+class MappedPixelData {
+
+    private final ByteBuffer buffer;
+    private final int bitpix;
+    private final int bytesPerPixel;
+    private final int naxis1;
+    private final int naxis2;
+
+    private MappedPixelData(MappedByteBuffer buffer, int bitpix, int naxis1, int naxis2) {
+        this.buffer = buffer;
+        this.bitpix = bitpix;
+        this.bytesPerPixel = Math.abs(bitpix) / 8;
+        this.naxis1 = naxis1;
+        this.naxis2 = naxis2;
+    }
+
+    /**
+     * @param file the FITS file
+     * @param hduNumber the hdu in the file
+     * @param planeNumber the plane in the hdu, 0 if not a cube
+     * @return a mapped view of the plane or null if the hdu cannot be mapped (i.e. compressed, or a plane larger than 2GB)
+     */
+    static MappedPixelData map(File file, int hduNumber, int planeNumber) {
+        try (Fits fits = new Fits(file)) {
+            BasicHDU<?> hdu = fits.getHDU(hduNumber);
+            if (!(hdu instanceof ImageHDU) || hdu.getData() == null) return null;
+            Header h = hdu.getHeader();
+            int naxis = getNaxis(h);
+            if (naxis < 2 || naxis > 4 || (naxis == 4 && getNaxis4(h) != 1)) return null;
+            int bitpix = getBitPix(h);
+            if (FitsReadUtil.getDataType(bitpix) == null) return null;
+
+            long offset = hdu.getData().getFileOffset();
+            if (offset < 0) return null;
+            int naxis1 = getNaxis1(h);
+            int naxis2 = getNaxis2(h);
+            long planeBytes = (long) naxis1 * naxis2 * (Math.abs(bitpix) / 8);
+            if (planeBytes > Integer.MAX_VALUE) return null;
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long start = offset + planeBytes * planeNumber;
+                if (start + planeBytes > channel.size()) return null;
+                return new MappedPixelData(channel.map(FileChannel.MapMode.READ_ONLY, start, planeBytes), bitpix, naxis1, naxis2);
+            }
+        } catch (Exception e) {
+            Logger.getLogger("FitsRead").debug("Could not map FITS data, falling back to reading it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param index the index of the pixel in the plane (y * naxis1 + x)
+     * @return the raw value of the pixel
+     */
+    float get(int index) {
+        int pos = index * bytesPerPixel;
+        return switch (bitpix) {
+            case 8 -> buffer.get(pos);
+            case 16 -> buffer.getShort(pos);
+            case 32 -> buffer.getInt(pos);
+            case 64 -> buffer.getLong(pos);
+            case -32 -> buffer.getFloat(pos);
+            default -> (float) buffer.getDouble(pos);
+        };
+    }
+
+    /**
+     * Read the whole plane into a new array
+     * @param flipped if true the lines are returned in reverse order, the same as {@link FitsRead#getRawFloatAryFlipped}
+     * @return the raw values of the plane
+     */
+    float[] readPlane(boolean flipped) {
+        float[] out = new float[naxis1 * naxis2];
+        for (int line = 0; line < naxis2; line++) {
+            int outPos = (flipped ? naxis2 - 1 - line : line) * naxis1;
+            readLine(line, out, outPos);
+        }
+        return out;
+    }
+
+    private void readLine(int line, float[] out, int outPos) {
+        int index = line * naxis1;
+        int pos = index * bytesPerPixel;
+        switch (bitpix) {
+            case -32 -> buffer.asFloatBuffer().get(index, out, outPos, naxis1);
+            case 8 -> { for (int i = 0; i < naxis1; i++) out[outPos + i] = buffer.get(pos + i); }
+            case 16 -> { for (int i = 0; i < naxis1; i++) out[outPos + i] = buffer.getShort(pos + i * 2); }
+            case 32 -> { for (int i = 0; i < naxis1; i++) out[outPos + i] = buffer.getInt(pos + i * 4); }
+            case 64 -> { for (int i = 0; i < naxis1; i++) out[outPos + i] = buffer.getLong(pos + i * 8); }
+            default -> { for (int i = 0; i < naxis1; i++) out[outPos + i] = (float) buffer.getDouble(pos + i * 8); }
+        }
+    }
+}
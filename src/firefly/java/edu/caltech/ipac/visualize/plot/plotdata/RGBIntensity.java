@@ -104,7 +104,7 @@ public class RGBIntensity {
         for(int i=0; i<3; i++) {
             blankPxValAry[i]= imageHeaderAry[i].blank_value;
             ImageHeader iH= imageHeaderAry[i];
-            slowAry[i] = getSlow(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1,
+            slowAry[i] = getSlow(rangeValuesAry[i], float1dAry[i], fitsReadAry[i].getRawDataKey(), histAry[i], iH.bzero, iH.bscale, iH.naxis1,
                                                iH.naxis2, iH.blank_value);
             slowAry[i] = getScaled(slowAry[i], iH, rangeValuesAry[i]);
         }
@@ -135,7 +135,7 @@ public class RGBIntensity {
             // use the last image header, because after reprojection, bzero and bscale are removed in green and blue
             // zscale parameters are shared between range values, no matter range values which to use
             ImageHeader ih= imageHeaderAry[2];
-            Zscale.ZscaleRetval zscale_retval = getZscaleValue(intensity, ih.naxis1, ih.naxis2, ih.blank_value,rangeValuesAry[0]);
+            Zscale.ZscaleRetval zscale_retval = getZscaleValue(intensity, null, ih.naxis1, ih.naxis2, ih.blank_value,rangeValuesAry[0]);
             _intensityLow = zscale_retval.z1();
             _intensityHigh = zscale_retval.z2();
         } else {
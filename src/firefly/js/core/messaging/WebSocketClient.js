@@ -9,6 +9,7 @@ import {WSCH} from '../History.js';
 import {dispatchConnectionStatus, getAppOptions} from '../AppDataCntlr.js';
 
 export const CH_ID = 'channelID';
+const BATCH = 'batch';          // tells the server this client accepts an array of events in one message
 
 /**
  * A proxy to the underlining WebSocket connection
@@ -76,8 +77,8 @@ function makeWsConn(baseUrl, resolve, reject) {
 
     const urlInfo = parseUrl(document.location);
     const wsch = urlInfo.searchObject?.[WSCH] || window.firefly?.wsch;
-    const wschParam = wsch ? `?${CH_ID}=${wsch}` : '';
-    const wsUrl = `${baseUrl}sticky/firefly/events${wschParam}`;
+    const wschParam = wsch ? `&${CH_ID}=${wsch}` : '';
+    const wsUrl = `${baseUrl}sticky/firefly/events?${BATCH}=true${wschParam}`;
 
     const requireWs = getAppOptions()?.RequireWebSocketUptime ?? !!wsch;        // if flag is not set, defaults to true when wsch is given.
 
@@ -139,6 +140,13 @@ function makeWsConn(baseUrl, resolve, reject) {
 
     const onMessage = (event) => {
         const eventData = event.data && JSON.parse(event.data);
+        if (Array.isArray(eventData)) {
+            eventData.forEach(onEvent);     // a batch of events
+        } else {
+            onEvent(eventData);
+        }
+    };
+    const onEvent = (eventData) => {
         if (eventData) {
             logger.tag('onMessage').debug(eventData);
             if (eventData.name === 'EVT_CONN_EST') {
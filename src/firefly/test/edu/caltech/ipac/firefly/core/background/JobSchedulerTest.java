@@ -0,0 +1,89 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.core.background;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static edu.caltech.ipac.firefly.core.background.JobScheduler.Priority.ASYNC;
+import static edu.caltech.ipac.firefly.core.background.JobScheduler.Priority.PACKAGING;
+import static edu.caltech.ipac.firefly.core.background.JobScheduler.Priority.SEARCH;
+
+/**
+ * Tests the per-owner limits, turn taking, and bounded queues of JobScheduler
+ */
+public class JobSchedulerTest {
+
+    @Test
+    public void testFairShare() throws Exception {
+        JobScheduler scheduler = new JobScheduler(2, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) futures.add(scheduler.submit(ASYNC, "hog", task("hog" + i, started, release)));
+        futures.add(scheduler.submit(ASYNC, "other", task("other", started, release)));
+
+        waitFor(() -> started.size() == 2);
+        // one per owner; 'other' does not wait behind 'hog'.  Both start in the same round, in either order.
+        Assert.assertEquals(Set.of("hog0", "other"), Set.copyOf(started));
+        Assert.assertEquals(2, scheduler.getRunning(ASYNC));
+        Assert.assertEquals(2, scheduler.getQueued(ASYNC));
+        Assert.assertEquals(0, scheduler.getRunning(PACKAGING));
+
+        release.countDown();
+        for (Future<String> f : futures) f.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(List.of("hog1", "hog2"), List.copyOf(started.subList(2, 4)));     // 'hog' runs one at a time, in order
+        waitFor(() -> scheduler.getRunning(ASYNC) == 0);
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception {
+        JobScheduler scheduler = new JobScheduler(1, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        Future<String> running = scheduler.submit(PACKAGING, "u1", task("a", started, release));
+        waitFor(() -> started.size() == 1);
+        Future<String> queued = scheduler.submit(PACKAGING, "u2", task("b", started, release));
+        Assert.assertThrows(RejectedExecutionException.class, () -> scheduler.submit(PACKAGING, "u3", task("c", started, release)));
+
+        release.countDown();
+        Assert.assertEquals("a", running.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testThreadKind() throws Exception {
+        JobScheduler scheduler = new JobScheduler(2, 2, 10);
+        Callable<String> kind = () -> Thread.currentThread().isVirtual() ? "virtual" : "platform";
+        Assert.assertEquals("virtual", scheduler.submit(ASYNC, "u1", kind).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("platform", scheduler.submit(SEARCH, "u1", kind).get(5, TimeUnit.SECONDS));      // pins carriers in native calls
+        Assert.assertEquals("platform", scheduler.submit(PACKAGING, "u1", kind).get(5, TimeUnit.SECONDS));
+    }
+
+    private static Callable<String> task(String name, List<String> started, CountDownLatch release) {
+        return () -> {
+            started.add(name);
+            release.await();
+            return name;
+        };
+    }
+
+    private static void waitFor(BooleanSupplier cond) throws InterruptedException {
+        for (int i = 0; i < 500 && !cond.getAsBoolean(); i++) Thread.sleep(10);
+        Assert.assertTrue(cond.getAsBoolean());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static edu.caltech.ipac.firefly.server.db.ResultSetManager.MAX_RESULT_SETS;
+
+/**
+ * Tests eviction of the result sets tracked by a ResultSetManager
+ */
+public class ResultSetManagerTest {
+
+    private static final long LATER = 60 * 60 * 1000;      // well past MIN_IDLE, so every result set is idle
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ResultSetManager rsm = new ResultSetManager();
+        for (int i = 0; i <= MAX_RESULT_SETS; i++) rsm.add("DATA_" + i, null, 10, 2);
+
+        Assert.assertTrue("recently used ones are kept", rsm.evict(null).isEmpty());
+
+        rsm.touch("DATA_0");
+        Collection<String> evicted = rsm.evict(null, System.currentTimeMillis() + LATER);
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertTrue(evicted.contains("DATA_1"));
+        Assert.assertEquals(MAX_RESULT_SETS, rsm.size());
+    }
+
+    @Test
+    public void testPinned() {
+        ResultSetManager rsm = new ResultSetManager();
+        Assert.assertFalse("unknown result set", rsm.pin("DATA_X"));
+
+        for (int i = 0; i <= MAX_RESULT_SETS; i++) rsm.add("DATA_" + i, null, 10, 2);
+        Assert.assertTrue(rsm.pin("DATA_0"));
+        Assert.assertTrue(rsm.pin("DATA_0"));       // two exports of the same result set
+        for (int i = 0; i <= MAX_RESULT_SETS; i++) rsm.touch("DATA_" + i);      // DATA_0 is the least recently used
+
+        Collection<String> evicted = rsm.evict(null, System.currentTimeMillis() + LATER);
+        Assert.assertFalse("pinned one is kept", evicted.contains("DATA_0"));
+        Assert.assertTrue(evicted.contains("DATA_1"));
+
+        // still pinned by the other export
+        rsm.unpin("DATA_0");
+        for (int i = 0; i < MAX_RESULT_SETS; i++) rsm.add("DATA_N" + i, null, 10, 2);
+        evicted = rsm.evict("DATA_N0", System.currentTimeMillis() + LATER);
+        Assert.assertFalse(evicted.contains("DATA_0"));
+        Assert.assertTrue(rsm.contains("DATA_0"));
+
+        // evicted once both are done
+        rsm.unpin("DATA_0");
+        rsm.unpin("DATA_0");        // extra unpin is ignored
+        for (int i = 0; i < MAX_RESULT_SETS; i++) rsm.add("DATA_M" + i, null, 10, 2);
+        evicted = rsm.evict(null, System.currentTimeMillis() + LATER);
+        Assert.assertTrue(evicted.contains("DATA_0"));
+        Assert.assertFalse(rsm.contains("DATA_0"));
+        Assert.assertEquals(MAX_RESULT_SETS, rsm.size());
+    }
+}
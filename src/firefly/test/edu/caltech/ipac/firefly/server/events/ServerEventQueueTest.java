@@ -0,0 +1,90 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.events;
+
+import edu.caltech.ipac.firefly.data.ServerEvent;
+import edu.caltech.ipac.firefly.util.event.Name;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests coalescing and batching of the events sent through a ServerEventQueue
+ */
+public class ServerEventQueueTest {
+
+    @Test
+    public void testCoalesceAndBatch() throws Exception {
+        TestConnector conn = new TestConnector(true);
+        ServerEventQueue queue = new ServerEventQueue("conn1", "ch1", "user1", conn);
+
+        queue.putEvent(jobUpdate("job1", 10));
+        queue.putEvent(jobUpdate("job2", 10));
+        queue.putEvent(new ServerEvent(Name.ACTION, ServerEvent.Scope.SELF, new FluxAction("table.update").toString()));
+        queue.putEvent(jobUpdate("job1", 50));
+
+        Assert.assertTrue(conn.latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, conn.messages.size());                       // sent as one batch
+        JSONArray batch = (JSONArray) JSONValue.parse(conn.messages.get(0));
+        Assert.assertEquals(3, batch.size());                               // the first job1 update was replaced, in place
+        Assert.assertEquals("job1", getPayload(batch.get(0)).get("jobId"));
+        Assert.assertEquals(50L, getPayload(batch.get(0)).get("progress"));
+        Assert.assertEquals("job2", getPayload(batch.get(1)).get("jobId"));
+        Assert.assertEquals(FluxAction.TBL_UPDATE, getType(batch.get(2)));
+        Assert.assertEquals(1, queue.convertToDescription().coalescedCnt());
+    }
+
+    @Test
+    public void testNoBatch() throws Exception {
+        TestConnector conn = new TestConnector(false);
+        conn.latch = new CountDownLatch(2);
+        ServerEventQueue queue = new ServerEventQueue("conn1", "ch1", "user1", conn);
+        queue.putEvent(jobUpdate("job1", 10));
+        queue.putEvent(jobUpdate("job2", 10));
+
+        Assert.assertTrue(conn.latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, conn.messages.size());
+        Assert.assertTrue(JSONValue.parse(conn.messages.get(0)) instanceof JSONObject);
+    }
+
+    private static ServerEvent jobUpdate(String jobId, int progress) {
+        JSONObject info = new JSONObject();
+        info.put("jobId", jobId);
+        info.put("progress", progress);
+        FluxAction action = new FluxAction(FluxAction.JOB_INFO, info);
+        return new ServerEvent(Name.ACTION, ServerEvent.Scope.SELF, action.toString());
+    }
+
+    private static JSONObject getPayload(Object event) {
+        return (JSONObject) ((JSONObject)((JSONObject) event).get("data")).get(FluxAction.PAYLOAD);
+    }
+
+    private static Object getType(Object event) {
+        return ((JSONObject)((JSONObject) event).get("data")).get(FluxAction.TYPE);
+    }
+
+    private static class TestConnector implements ServerEventQueue.EventConnector {
+        final List<String> messages = new ArrayList<>();
+        final boolean acceptsBatch;
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TestConnector(boolean acceptsBatch) { this.acceptsBatch = acceptsBatch; }
+
+        public synchronized void send(String message) {
+            messages.add(message);
+            latch.countDown();
+        }
+        public boolean isOpen() { return true; }
+        public void close() {}
+        public boolean acceptsBatch() { return acceptsBatch; }
+    }
+}
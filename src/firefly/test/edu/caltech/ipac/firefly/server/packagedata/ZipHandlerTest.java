@@ -0,0 +1,78 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.packagedata;
+
+import edu.caltech.ipac.firefly.data.FileInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Checks how staged files are written to the zip
+ */
+public class ZipHandlerTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("zipHandlerTest").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testEntryMethods() throws Exception {
+        byte[] content = "some content, some content, some content".getBytes();
+        Files.write(new File(dir, "a.txt").toPath(), content);
+        Files.write(new File(dir, "b.png").toPath(), content);
+        try (GZIPOutputStream gz = new GZIPOutputStream(new FileOutputStream(new File(dir, "c.fits.gz")))) {
+            gz.write(content);
+        }
+
+        File zip = new File(dir, "out.zip");
+        ZipHandler handler = new ZipHandler(dir);
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (String name : new String[]{"a.txt", "b.png", "c.fits.gz", "a.txt"}) {
+                FileInfo fi = new FileInfo(name, name, 0);
+                long bytes = handler.addZipEntry(zout, handler.stage(fi, dir));
+                Assert.assertEquals(content.length, bytes);
+            }
+        }
+
+        try (ZipFile zf = new ZipFile(zip)) {
+            Assert.assertEquals(ZipEntry.DEFLATED, zf.getEntry("a.txt").getMethod());
+            Assert.assertEquals(ZipEntry.STORED, zf.getEntry("b.png").getMethod());
+            Assert.assertNotNull("duplicate is renamed", zf.getEntry("a-1.txt"));
+            ZipEntry fits = zf.getEntry("c.fits");
+            Assert.assertNotNull(".gz is uncompressed", fits);
+            for (String name : new String[]{"a.txt", "a-1.txt", "b.png", "c.fits"}) {
+                Assert.assertArrayEquals(content, zf.getInputStream(zf.getEntry(name)).readAllBytes());
+            }
+        }
+        Assert.assertTrue("local files are not removed", new File(dir, "b.png").exists());
+    }
+
+    @Test(expected = java.nio.file.AccessDeniedException.class)
+    public void testDenied() throws Exception {
+        FileInfo fi = new FileInfo("a.txt", "a.txt", 0);
+        fi.setHasAccess(false);
+        new ZipHandler(dir).stage(fi, dir);
+    }
+}
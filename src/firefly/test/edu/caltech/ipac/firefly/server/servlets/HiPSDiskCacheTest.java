@@ -0,0 +1,89 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.servlets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Checks that the least recently used directories are removed once the HiPS cache is over its limit
+ */
+public class HiPSDiskCacheTest {
+
+    private File dir;
+    private File excluded;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("hipsCacheTest").toFile();
+        excluded = new File(dir, "resource-db");
+        excluded.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        long now = System.currentTimeMillis();
+        File a = makeFile(new File(dir, "Dir0"), "a.png", now - 3000);
+        File a2 = makeFile(new File(dir, "Dir0"), "a2.png", now - 4000);
+        File b = makeFile(new File(dir, "Dir1"), "b.png", now - 2000);
+        File c = makeFile(new File(dir, "Dir2"), "c.png", now - 1000);
+        File db = makeFile(excluded, "x.db", now - 5000);
+
+        HiPSDiskCache cache = new HiPSDiskCache(dir, List.of(excluded), 250, Runnable::run);
+        Assert.assertFalse("oldest directory is removed when indexed", a.exists());
+        Assert.assertFalse(a2.exists());
+        Assert.assertTrue(db.exists());
+        Assert.assertEquals(200, cache.getTotalSize());
+
+        // replacing a file counts only the change in size
+        long oldSize = b.length();
+        makeFile(b.getParentFile(), b.getName(), now);
+        cache.added(b, oldSize);
+        Assert.assertEquals(200, cache.getTotalSize());
+
+        cache.accessed(b);
+        File d = makeFile(new File(dir, "Dir3"), "d.png", now);
+        cache.added(d, 0);
+        Assert.assertTrue("recently served is kept", b.exists());
+        Assert.assertFalse(c.exists());
+        Assert.assertTrue(d.exists());
+        Assert.assertEquals(2, cache.getDirCount());
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        File a = makeFile(dir, "a.png", System.currentTimeMillis());
+        HiPSDiskCache cache = new HiPSDiskCache(dir, List.of(excluded), 0, Runnable::run);
+        cache.added(a, 0);
+        Assert.assertTrue(a.exists());
+        Assert.assertEquals(0, cache.getDirCount());
+    }
+
+    private static File makeFile(File dir, String name, long lastModified) throws IOException {
+        dir.mkdirs();
+        File f = new File(dir, name);
+        Files.write(f.toPath(), new byte[100]);
+        f.setLastModified(lastModified);
+        return f;
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File c : files) delete(c);
+        f.delete();
+    }
+}
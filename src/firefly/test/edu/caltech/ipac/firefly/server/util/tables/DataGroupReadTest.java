@@ -21,6 +21,7 @@ import edu.caltech.ipac.table.VotableTest;
 import edu.caltech.ipac.table.io.FITSTableReader;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import edu.caltech.ipac.table.io.IpacTableWriter;
+import edu.caltech.ipac.table.io.TableParseHandler;
 import edu.caltech.ipac.table.io.VoTableReader;
 import nom.tam.fits.FitsException;
 import org.apache.logging.log4j.Level;
@@ -29,12 +30,17 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 import static edu.caltech.ipac.firefly.TestUtil.getDataFile;
 import static edu.caltech.ipac.firefly.TestUtil.logMemUsage;
@@ -104,6 +110,41 @@ public class DataGroupReadTest {
         Assert.assertEquals("cell (base_GaussianCentroid_x, 764)", 850.043863, getDouble(data.get(764).getDataElement("base_GaussianCentroid_x")), 0.000001);       // last row
     }
 
+    @Test
+    public void fitsTableStreamed() throws IOException, FitsException {
+        File fits = File.createTempFile("streamed-", ".fits");
+        fits.deleteOnExit();
+        writeBinTable(fits);
+        DataGroup expected = FITSTableReader.convertFitsToDataGroup(fits.getPath(), null, 0);
+
+        TableParseHandler.Memory handler = new TableParseHandler.Memory(false, false);
+        Assert.assertTrue("streamed", FITSTableReader.parseTable(handler, fits.getPath(), null, 0));
+        DataGroup data = handler.getTable(0);
+
+        // streamed table should be the same as the one read into memory
+        Assert.assertEquals("Number of rows", expected.size(), data.size());
+        Assert.assertEquals("Number of columns", expected.getDataDefinitions().length, data.getDataDefinitions().length);
+        for (DataType col : expected.getDataDefinitions()) {
+            String cname = col.getKeyName();
+            DataType dt = data.getDataDefintion(cname);
+            Assert.assertEquals("column type", col.getTypeDesc(), dt.getTypeDesc());
+            Assert.assertEquals("column arraySize", col.getArraySize(), dt.getArraySize());
+            Assert.assertEquals("column unit", col.getUnits(), dt.getUnits());
+            for (int r = 0; r < expected.size(); r++) {
+                Assert.assertTrue("cell (%s, %d)".formatted(cname, r), Objects.deepEquals(expected.getData(cname, r), data.getData(cname, r)));
+            }
+        }
+
+        Assert.assertEquals("cell (flux, 1)", 12.0, data.getData("flux", 1));           // scaled
+        Assert.assertNull("cell (id, 2)", data.getData("id", 2));                       // TNULL
+        Assert.assertNull("cell (name, 1)", data.getData("name", 1));                   // empty string
+        Assert.assertEquals("cell (name, 2)", "ngc224", data.getData("name", 2));
+        Assert.assertEquals("cell (qual, 1)", 200, data.getData("qual", 1));           // unsigned byte
+        Assert.assertEquals("cell (qual, 2)", 255, expected.getData("qual", 2));
+        Assert.assertEquals("column arraySize", "3x2", data.getDataDefintion("spec").getArraySize());
+        Assert.assertArrayEquals("cell (spec, 0)", new float[]{1, 2, 3, 4, 5, 6}, (float[]) data.getData("spec", 0), 0f);
+    }
+
     @Test
     public void cloneWithoutData() throws IOException, FitsException {
         DataGroup data = IpacTableReader.read(ipacTable);
@@ -398,6 +439,45 @@ public class DataGroupReadTest {
 
     }
 
+    /**
+     * write a binary table of 3 rows after an empty primary HDU; it has a blank value, a scaled column, strings, and a 2-d array
+     */
+    private static void writeBinTable(File file) throws IOException {
+        String[] primary = {"SIMPLE  = T", "BITPIX  = 8", "NAXIS   = 0", "EXTEND  = T"};
+        String[] table = {"XTENSION= 'BINTABLE'", "BITPIX  = 8", "NAXIS   = 2", "NAXIS1  = 48", "NAXIS2  = 3",
+                "PCOUNT  = 0", "GCOUNT  = 1", "TFIELDS = 7",
+                "TTYPE1  = 'id'", "TFORM1  = 'J'", "TNULL1  = -1",
+                "TTYPE2  = 'flux'", "TFORM2  = 'I'", "TSCAL2  = 0.5", "TZERO2  = 10.0",
+                "TTYPE3  = 'name'", "TFORM3  = '8A'",
+                "TTYPE4  = 'spec'", "TFORM4  = '6E'", "TDIM4   = '(3,2)'",
+                "TTYPE5  = 'ra'", "TFORM5  = 'D'", "TUNIT5  = 'deg'",
+                "TTYPE6  = 'flag'", "TFORM6  = 'L'",
+                "TTYPE7  = 'qual'", "TFORM7  = 'B'"};
+
+        ByteBuffer data = ByteBuffer.allocate(48 * 3);
+        Object[][] rows = {{1, (short) 0, "m31", 1f, 10.68, 'T', 5}, {2, (short) 4, "", 0f, 11.5, 'F', 200}, {-1, (short) -2, "ngc224", 7f, 12.0, 'T', 255}};
+        for (Object[] row : rows) {
+            data.putInt((int) row[0]).putShort((short) row[1]);
+            data.put(Arrays.copyOf(((String) row[2]).getBytes(StandardCharsets.US_ASCII), 8));
+            for (int i = 0; i < 6; i++) data.putFloat((float) row[3] + i);
+            data.putDouble((double) row[4]).put((byte) (char) row[5]).put((byte) (int) row[6]);
+        }
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(headerBlock(primary));
+            out.write(headerBlock(table));
+            out.write(Arrays.copyOf(data.array(), 2880));
+        }
+    }
+
+    private static byte[] headerBlock(String[] cards) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : cards) sb.append("%-80s".formatted(c));
+        sb.append("%-80s".formatted("END"));
+        while (sb.length() % 2880 != 0) sb.append(' ');
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
     private static double getDouble(Object val) {
         if (val instanceof Double) {
             return (Double) val;
@@ -14,6 +14,7 @@ import edu.caltech.ipac.table.IpacTableDef;
 import edu.caltech.ipac.firefly.util.FileLoader;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.IpacTableUtil;
+import edu.caltech.ipac.table.io.BatchedTable;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import edu.caltech.ipac.table.io.IpacTableWriter;
 import org.json.simple.JSONObject;
@@ -56,6 +57,31 @@ public class IpacTableTest {
         checkTableData(data);
     }
 
+    @Test
+    public void testWriteIpacTableInBatches() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        IpacTableWriter.save(expected, IpacTableReader.read(ipacTable));
+
+        // written 2 rows at a time, the output should be the same as the whole table at once
+        DataGroup data = IpacTableReader.read(ipacTable);
+        DataGroup headers = data.subset(0, 1);
+        BatchedTable table = new BatchedTable() {
+            public DataGroup getHeaders() { return headers; }
+            public long getRowCount() { return data.size(); }
+            public Batches batches() {
+                int[] next = {0};
+                return () -> {
+                    if (next[0] >= data.size()) return null;
+                    next[0] += 2;
+                    return data.subset(next[0] - 2, next[0]);
+                };
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        IpacTableWriter.save(output, table);
+        Assert.assertEquals(expected.toString(), output.toString());
+    }
+
     @Test
     public void testGetMetaInfo() throws IOException {
         IpacTableDef tableDef = IpacTableUtil.getMetaInfo(ipacTable);
@@ -13,8 +13,10 @@ import edu.caltech.ipac.firefly.server.query.EmbeddedDbProcessor;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
 import edu.caltech.ipac.table.JsonTableUtil;
+import edu.caltech.ipac.table.PrimitiveList;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -171,6 +173,42 @@ public class TableTest extends ConfigTest {
         Assert.assertEquals("NumberRange:: lower=-1, upper=3", dec.get("cellRenderer"));
     }
 
+    /**
+     * columnar access to DataGroup; typed getters, null handling, and string dictionary
+     */
+    @Test
+    public void testColumnData() {
+        DataGroup dg = new DataGroup("test", new DataType[]{new DataType("d", Double.class), new DataType("s", String.class)});
+        dg.add(new Object[]{1.5, "a"});
+        dg.add(new Object[]{null, new String("a")});
+        dg.add(new Object[]{3.0, null});
+
+        PrimitiveList[] cols = dg.getColumnData();
+        assertEquals(2, cols.length);
+
+        PrimitiveList.Doubles d = (PrimitiveList.Doubles) cols[0];
+        Assert.assertFalse(d.isNull(0));
+        assertEquals(1.5, d.getDouble(0), 0);
+        Assert.assertTrue(d.isNull(1));
+        assertEquals(3.0, d.getDouble(2), 0);
+
+        PrimitiveList.Strings s = (PrimitiveList.Strings) dg.getColumnData("s");
+        Assert.assertSame("repeated values share the same instance", s.getString(0), s.getString(1));
+        Assert.assertTrue(s.isNull(2));
+
+        JSONObject json = JsonTableUtil.toJsonTableData(dg, false);
+        assertEquals("[[1.5,\"a\"],[null,\"a\"],[3.0,null]]", JSONValue.toJSONString(json.get("data")));
+
+        // typed appends
+        PrimitiveList.Integers ints = new PrimitiveList.Integers(1);
+        ints.addInt(7);
+        ints.addNull();
+        ints.addInt(9);
+        assertEquals(3, ints.size());
+        assertEquals(7, ints.getInt(0));
+        Assert.assertTrue(ints.isNull(1));
+        assertEquals(9, ints.get(2));
+    }
 
 //====================================================================
 //  Not part of main test.
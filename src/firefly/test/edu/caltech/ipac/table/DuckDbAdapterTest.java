@@ -10,8 +10,10 @@ import edu.caltech.ipac.firefly.data.SortInfo;
 import edu.caltech.ipac.firefly.data.TableServerRequest;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.server.db.DbMonitor;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
 import edu.caltech.ipac.firefly.server.db.DuckDbReadable;
 import edu.caltech.ipac.firefly.server.db.HsqlDbAdapter;
+import edu.caltech.ipac.firefly.server.db.ResultSetManager;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.query.DecimationProcessor;
 import edu.caltech.ipac.firefly.server.query.EmbeddedDbProcessor;
@@ -20,6 +22,10 @@ import edu.caltech.ipac.firefly.server.query.tables.IpacTableFromSource;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.FileLoader;
 import edu.caltech.ipac.table.io.DsvTableIO;
+import edu.caltech.ipac.table.io.IpacTableReader;
+import edu.caltech.ipac.table.io.TableParseHandler;
+import edu.caltech.ipac.table.io.VoTableReader;
+import edu.caltech.ipac.util.FormatUtil;
 import edu.caltech.ipac.util.decimate.DecimateKey;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.logging.log4j.Level;
@@ -27,7 +33,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -217,6 +228,77 @@ public class DuckDbAdapterTest extends ConfigTest {
 
 	}
 
+	/**
+	 * zoomed-in decimation; served from the pyramid, or from the data within the view when zoomed in further than the pyramid goes
+	 */
+	@Test
+	public void testDecimateZoom() throws DataAccessException {
+		File duckFile = FileLoader.resolveFile(DuckDbAdapterTest.class, "/table_1mil.csv");
+
+		TableServerRequest duck = new TableServerRequest(IpacTableFromSource.PROC_ID);
+		duck.setParam(ServerParams.SOURCE, duckFile.getAbsolutePath());
+		duck.setInclColumns("\"ra\", \"dec\"");
+		duck.setPageSize(-1);
+
+		TableServerRequest deciReq = new TableServerRequest(DecimationProcessor.ID);
+		deciReq.setParam(SEARCH_REQUEST, JsonTableUtil.toJsonTableRequest(duck).toJSONString());
+		deciReq.setParam(DecimationProcessor.DECIMATE_INFO, new DecimateInfo("ra", "dec").toString());
+		deciReq.setPageSize(-1);
+
+		DataGroup full = new SearchManager().getDataGroup(deciReq).getData();
+		double raMin = Double.MAX_VALUE, raMax = -Double.MAX_VALUE, decMin = Double.MAX_VALUE, decMax = -Double.MAX_VALUE;
+		for (int i = 0; i < full.size(); i++) {
+			double ra = ((Number) full.getData("ra", i)).doubleValue();
+			double dec = ((Number) full.getData("dec", i)).doubleValue();
+			raMin = Math.min(raMin, ra); raMax = Math.max(raMax, ra);
+			decMin = Math.min(decMin, dec); decMax = Math.max(decMax, dec);
+		}
+
+		// zoom into the center; one from the pyramid, then one a lot finer than it goes
+		for (double zoom : new double[]{4, 1e5}) {
+			double raC = (raMin + raMax) / 2, raW = (raMax - raMin) / zoom / 2;
+			double decC = (decMin + decMax) / 2, decW = (decMax - decMin) / zoom / 2;
+			DecimateInfo deciInfo = new DecimateInfo("ra", "dec");
+			deciInfo.setXMin(raC - raW);
+			deciInfo.setXMax(raC + raW);
+			deciInfo.setYMin(decC - decW);
+			deciInfo.setYMax(decC + decW);
+			deciReq.setParam(DecimationProcessor.DECIMATE_INFO, deciInfo.toString());
+
+			DataGroup zoomed = new SearchManager().getDataGroup(deciReq).getData();
+			DecimateKey key = DecimateKey.parse(zoomed.getAttribute(DecimateKey.DECIMATE_KEY));
+			assertNotNull(key);
+			assertTrue("grid covers the view", key.getXMin() <= raC - raW && key.getXMin() + key.getXUnit() * key.getNX() >= raC + raW - key.getXUnit());
+			assertTrue(zoomed.size() <= key.getNX() * key.getNY());
+			for (int i = 0; i < zoomed.size(); i++) {
+				double ra = ((Number) zoomed.getData("ra", i)).doubleValue();
+				double dec = ((Number) zoomed.getData("dec", i)).doubleValue();
+				assertTrue("point near the view", Math.abs(ra - raC) <= raW + key.getXUnit() && Math.abs(dec - decC) <= decW + key.getYUnit());
+				assertTrue(((Number) zoomed.getData("weight", i)).longValue() > 0);
+			}
+		}
+
+		// an unfinished build; only the finest level, and no INFO.  it's not used, and is built again
+		DbAdapter dbAdapter = ((EmbeddedDbProcessor) SearchManager.getProcessor(IpacTableFromSource.PROC_ID)).getDbAdapter(duck);
+		String pyrInfo = "select table_name from information_schema.tables where table_name like 'DECI_PYR_%_INFO'";
+		DataGroup infos = dbAdapter.execQuery(pyrInfo, null);
+		assertEquals(1, infos.size());
+		String pyr = infos.getData("table_name", 0).toString().replace("_INFO", "");
+		int levels = dbAdapter.execQuery("select distinct lvl from " + pyr, null).size();
+		dbAdapter.execUpdate("DROP TABLE %s_INFO".formatted(pyr));
+		dbAdapter.execUpdate("DELETE FROM %1$s WHERE lvl < (SELECT max(lvl) FROM %1$s)".formatted(pyr));
+
+		DecimateInfo deciInfo = new DecimateInfo("ra", "dec");
+		deciInfo.setXMin(raMin + (raMax - raMin) / 3);
+		deciInfo.setXMax(raMax - (raMax - raMin) / 3);
+		deciInfo.setYMin(decMin + (decMax - decMin) / 3);
+		deciInfo.setYMax(decMax - (decMax - decMin) / 3);
+		deciReq.setParam(DecimationProcessor.DECIMATE_INFO, deciInfo.toString());
+		assertTrue(new SearchManager().getDataGroup(deciReq).getData().size() > 0);
+		assertTrue(dbAdapter.hasTable(pyr + "_INFO"));
+		assertEquals(levels, dbAdapter.execQuery("select distinct lvl from " + pyr, null).size());
+	}
+
 	@Test
 	public void testCleanup() throws DataAccessException {
 
@@ -247,6 +329,251 @@ public class DuckDbAdapterTest extends ConfigTest {
 		assertFalse("DuckDb file is deleted", dbAdapter.getDbFile().exists());
 	}
 
+	/**
+	 * VOTable export, read in batches; from DATA when unfiltered, and from a result set when filtered and sorted
+	 */
+	@Test
+	public void testBatchedExport() throws Exception {
+		File duckFile = FileLoader.resolveFile(DuckDbAdapterTest.class, "/iris.parquet");
+
+		TableServerRequest treq = new TableServerRequest(IpacTableFromSource.PROC_ID);
+		treq.setParam(ServerParams.SOURCE, duckFile.getAbsolutePath());
+
+		EmbeddedDbProcessor proc = (EmbeddedDbProcessor) SearchManager.getProcessor(IpacTableFromSource.PROC_ID);
+		DbAdapter dbAdapter = proc.getDbAdapter(treq);
+		try {
+			DataGroup all = proc.getData(treq).getData();
+			DataGroup exported = exportVoTable(treq);
+			assertEquals(all.size(), exported.size());
+			for (int i = 0; i < all.size(); i++) {
+				assertEquals(all.getData("sepal.width", i), exported.getData("sepal.width", i));
+			}
+
+			treq.setFilters(List.of("\"sepal.width\" > 3"));
+			treq.setSortInfo(new SortInfo("sepal.width"));
+			DataGroup filtered = proc.getData(treq).getData();
+			exported = exportVoTable(treq);
+			assertTrue(filtered.size() > 0 && filtered.size() < all.size());
+			assertEquals(filtered.size(), exported.size());
+			for (int i = 0; i < filtered.size(); i++) {
+				assertEquals(filtered.getData("sepal.width", i), exported.getData("sepal.width", i));
+			}
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	/**
+	 * ingest an IPAC table through the pipelined handler using parallel staging tables; row order must be preserved.
+	 */
+	@Test
+	public void testPipelinedIngest() throws Exception {
+		int rows = TableParseHandler.PipelinedDbIngest.BLOCK_SIZE * 5 + 3;		// spread over a few blocks, plus a partial one
+		DuckDbAdapter dbAdapter = newTempAdapter("pipelined");
+		try {
+			dbAdapter.initDbFile();
+			var handler = new TableParseHandler.PipelinedDbIngest(dbAdapter, null, false, 3);
+			IpacTableReader.parseTable(handler, makeIpacTable(rows));
+
+			assertEquals("Staging tables are removed", 4, dbAdapter.getTableNames().size());
+			DataGroup data = dbAdapter.execQuery("select * from DATA order by ROW_NUM", "DATA");
+			assertEquals(rows, data.size());
+			for (int i = 0; i < rows; i += 997) {
+				assertEquals(i, data.get(i).getIntData("id"));
+				assertEquals(i * 0.5, data.get(i).getDouble("val", 0), 0.01);
+				assertEquals(i, data.get(i).getIntData(DataGroup.ROW_IDX));
+			}
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	/**
+	 * the source fails part way through; nothing of the partial table is committed, and the staging tables are removed.
+	 */
+	@Test
+	public void testPipelinedIngestFailure() throws Exception {
+		InputStream failing = new InputStream() {
+			public int read() throws IOException { throw new IOException("connection reset"); }
+		};
+		DuckDbAdapter dbAdapter = newTempAdapter("pipelinedFail");
+		try {
+			dbAdapter.initDbFile();
+			var handler = new TableParseHandler.PipelinedDbIngest(dbAdapter, null, false, 3);
+			InputStream src = new SequenceInputStream(makeIpacTable(TableParseHandler.PipelinedDbIngest.BLOCK_SIZE * 2 + 3), failing);
+			assertThrows(IOException.class, () -> IpacTableReader.parseTable(handler, src));
+
+			assertEquals("Staging tables are removed", 4, dbAdapter.getTableNames().size());
+			assertEquals(0, dbAdapter.execQuery("select * from DATA", "DATA").size());
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	@Test
+	public void testDerivedResultSet() throws Exception {
+		DuckDbAdapter dbAdapter = newTempAdapter("derived");
+		try {
+			dbAdapter.initDbFile();
+			IpacTableReader.parseTable(TableParseHandler.dbIngest(dbAdapter, null, false), makeIpacTable(100));
+
+			TableServerRequest treq = new TableServerRequest("test");
+			treq.setFilters(List.of("id > 10"));
+			treq.setSortInfo(new SortInfo(SortInfo.Direction.DESC, "val"));
+			dbAdapter.createTempResults(treq, "DATA_BASE");
+
+			// narrower filters, no sort; derived from DATA_BASE but must keep the original order
+			TableServerRequest nreq = new TableServerRequest("test");
+			nreq.setFilters(List.of("id > 10", "id < 20"));
+			dbAdapter.createTempResults(nreq, "DATA_REFINED");
+
+			TableServerRequest pageReq = new TableServerRequest("test");
+			pageReq.setPageSize(5);
+			DataGroupPart page = dbAdapter.execRequestQuery(pageReq, "DATA_REFINED");
+			assertEquals(9, page.getRowCount());
+			assertEquals(5, page.getData().size());
+			for (int i = 0; i < 5; i++) {
+				assertEquals(11 + i, page.getData().get(i).getIntData("id"));
+				assertEquals(11 + i, page.getData().get(i).getIntData(DataGroup.ROW_IDX));
+				assertEquals(i, page.getData().get(i).getIntData(DataGroup.ROW_NUM));
+			}
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	@Test
+	public void testReopenIndexesResultSets() throws Exception {
+		DuckDbAdapter dbAdapter = newTempAdapter("reopen");
+		String resultSetID = "DATA_0123456789ABCDEF0123456789ABCDEF";
+		try {
+			dbAdapter.initDbFile();
+			IpacTableReader.parseTable(TableParseHandler.dbIngest(dbAdapter, null, false), makeIpacTable(100));
+
+			TableServerRequest treq = new TableServerRequest("test");
+			treq.setFilters(List.of("id > 9"));
+			dbAdapter.createTempResults(treq, resultSetID);
+			dbAdapter.close(false);
+
+			// result sets already in the file are known again once it's reopened
+			DuckDbAdapter reopened = new DuckDbAdapter(dbAdapter.getDbFile());
+			ResultSetManager resultSets = ((DbAdapter.EmbeddedDbInstance) reopened.getDbInstance()).getResultSets();
+			assertEquals(Integer.valueOf(90), resultSets.getRowCount(resultSetID));
+			assertNull(resultSets.findBase(treq));		// how it was created is not known
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	@Test
+	public void testKeysetPaging() throws Exception {
+		DuckDbAdapter dbAdapter = newTempAdapter("keyset");
+		try {
+			dbAdapter.initDbFile();
+			IpacTableReader.parseTable(TableParseHandler.dbIngest(dbAdapter, null, false), makeIpacTable(1000));
+
+			TableServerRequest treq = new TableServerRequest("test");
+			treq.setSortInfo(new SortInfo(SortInfo.Direction.DESC, "id"));
+			dbAdapter.createTempResults(treq, "DATA_SORTED");
+
+			TableServerRequest pageReq = new TableServerRequest("test");
+			pageReq.setPageSize(10);
+			pageReq.setStartIndex(900);
+			DataGroupPart page = dbAdapter.execRequestQuery(pageReq, "DATA_SORTED");
+			assertEquals(1000, page.getRowCount());
+			assertEquals(10, page.getData().size());
+			assertEquals(99, page.getData().get(0).getIntData("id"));
+			assertEquals(90, page.getData().get(9).getIntData("id"));
+			page.getData().setTitle("modified");
+
+			// same page again; served from the page cache, unaffected by changes made to the previous one
+			DataGroupPart again = dbAdapter.execRequestQuery(pageReq, "DATA_SORTED");
+			assertNotEquals("modified", again.getData().getTitle());
+			assertEquals(99, again.getData().get(0).getIntData("id"));
+
+			// last partial page
+			pageReq.setStartIndex(995);
+			page = dbAdapter.execRequestQuery(pageReq, "DATA_SORTED");
+			assertEquals(5, page.getData().size());
+			assertEquals(0, page.getData().get(4).getIntData("id"));
+		} finally {
+			dbAdapter.close(true);
+		}
+	}
+
+	@Test
+	public void testSharedData() throws Exception {
+		DuckDbAdapter shared = newTempAdapter("shared");
+		DuckDbAdapter session = newTempAdapter("session");
+		try {
+			shared.initDbFile();
+			IpacTableReader.parseTable(TableParseHandler.dbIngest(shared, null, false), makeIpacTable(100));
+			shared.execUpdate("CHECKPOINT");
+			shared.close(false);
+
+			session.initDbFile();
+			session.linkSharedData(shared.getDbFile());
+			assertTrue(session.hasTable("DATA"));
+			assertTrue(session.hasTable("DATA_DD"));
+			DataGroup data = session.execQuery("select * from DATA order by ROW_NUM", "DATA");
+			assertEquals(100, data.size());
+			assertEquals(99, data.get(99).getIntData("id"));
+			assertEquals(100, session.getDbStats().rowCnt());		// counted from the shared database
+
+			// modifying DATA copies it into the session's database; the shared one stays the same
+			session.deleteColumn("val");
+			assertEquals(100, session.execQuery("select * from DATA", "DATA").size());
+			assertNull(session.getHeaders("DATA").getDataDefintion("val"));
+
+			session.close(true);
+			DataGroup orig = shared.execQuery("select * from DATA", "DATA");
+			assertNotNull(orig.getDataDefintion("val"));
+		} finally {
+			session.close(true);
+			shared.close(true);
+		}
+	}
+
+	@Test
+	public void testResultSetRefinement() {
+		ResultSetManager rsm = new ResultSetManager();
+		TableServerRequest base = new TableServerRequest("test");
+		base.setFilters(List.of("ra > 10"));
+		rsm.add("DATA_A", base, 1000, 5);
+		rsm.add("DATA_ALL", new TableServerRequest("test"), 5000, 5);
+
+		TableServerRequest req = new TableServerRequest("test");
+		req.setFilters(List.of("ra > 10", "dec < 5"));
+		assertEquals("smallest matching result set", "DATA_A", rsm.findBase(req));
+
+		req.setFilters(List.of("dec < 5"));
+		assertEquals("DATA_ALL", rsm.findBase(req));
+
+		req.setSqlFilter("OR::ra < 1");
+		assertNull("OR-ed sql filter widens the results", rsm.findBase(req));
+
+		req.setSqlFilter(null);
+		req.setFilters(List.of("ROW_NUM < 10"));
+		assertNull("ROW_NUM differs between result sets", rsm.findBase(req));
+
+		req.setFilters(List.of("dec < 5"));
+		req.setSqlFilter("AND::row_num < 10");
+		assertNull("ROW_NUM in the sql filter, in any case", rsm.findBase(req));
+
+		req.setSqlFilter(null);
+		req.setFilters(List.of("RA >  10", "dec < 5"));
+		assertEquals("same filter in a different case", "DATA_A", rsm.findBase(req));
+
+		rsm.add("DATA_S", base, 100, 5);
+		req.setFilters(List.of("ra > 10", "name = 'abc'"));
+		rsm.add("DATA_N", req, 10, 5);
+		req.setFilters(List.of("ra > 10", "name = 'ABC'"));
+		assertEquals("string literals are compared as is", "DATA_S", rsm.findBase(req));
+
+		assertEquals(Integer.valueOf(1000), rsm.getRowCount("DATA_A"));
+		assertNull(rsm.getRowCount("DATA_B"));
+	}
+
 	@Test
 	public void testLikeSubstitution() {
 		// replace uppercase LIKE
@@ -282,6 +609,34 @@ public class DuckDbAdapterTest extends ConfigTest {
 //  PRIVATE section
 //====================================================================
 
+	private static DataGroup exportVoTable(TableServerRequest treq) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new SearchManager().save(out, treq, FormatUtil.Format.VO_TABLE_TABLEDATA);
+		return VoTableReader.voToDataGroups(new ByteArrayInputStream(out.toByteArray()), false)[0];
+	}
+
+	/**
+	 * @param rows number of rows
+	 * @return an IPAC table with an int column id, and a double column val = id * 0.5
+	 */
+	private static ByteArrayInputStream makeIpacTable(int rows) {
+		StringBuilder ipac = new StringBuilder("|    id|     val|\n|   int|  double|\n");
+		for (int i = 0; i < rows; i++) {
+			ipac.append(" %6d %8.1f\n".formatted(i, i * 0.5));
+		}
+		return new ByteArrayInputStream(ipac.toString().getBytes());
+	}
+
+	/**
+	 * @param prefix prefix of the database file name
+	 * @return a DuckDbAdapter backed by a new temp file; close(true) it when done
+	 */
+	private static DuckDbAdapter newTempAdapter(String prefix) throws IOException {
+		File dbFile = File.createTempFile(prefix, ".duckdb");
+		dbFile.delete();
+		return new DuckDbAdapter(ext -> dbFile);
+	}
+
 	private static void fullTableTest(DataGroup t1, DataGroup t2, String ...checkCols) {
 		assertEquals(t1.size(), t2.size());
 		assertEquals(t1.getDataDefinitions().length, t2.getDataDefinitions().length);
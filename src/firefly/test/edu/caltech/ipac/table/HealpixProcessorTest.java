@@ -7,6 +7,7 @@ import edu.caltech.ipac.firefly.ConfigTest;
 import edu.caltech.ipac.firefly.data.ServerParams;
 import edu.caltech.ipac.firefly.data.SortInfo;
 import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.firefly.server.db.DuckDbUDF;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.query.HealpixProcessor;
 import edu.caltech.ipac.firefly.server.query.SearchManager;
@@ -22,11 +23,13 @@ import org.junit.Test;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static edu.caltech.ipac.firefly.server.query.HealpixProcessor.*;
 import static edu.caltech.ipac.table.JsonTableUtil.toJsonTableRequest;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class HealpixProcessorTest extends ConfigTest {
@@ -148,6 +151,44 @@ public class HealpixProcessorTest extends ConfigTest {
         }
     }
 
+    @Test
+    public void healpixAllOrders() {
+        try {
+            // every order is summed from the same index; the total count is the same at any order
+            TableServerRequest req = makeMapReq(makeSearchReq());
+            long total = -1;
+            for (int order : new int[]{0, 3, 10, BASE_ORDER}) {
+                req.setParam(ORDER, order + "");
+                DataGroup res = new SearchManager().getDataGroup(req).getData();
+                long sum = 0;
+                for (DataObject row : res) sum += (long) row.getDataElement("count");
+                if (total < 0) total = sum;
+                assertEquals("total count at order " + order, total, sum);
+                if (order == 0) assertTrue("at most 12 pixels at order 0", res.size() <= 12);
+            }
+        } catch (Exception e) {
+            fail("HealpixProcessorTest.healpixAllOrders failed with exception: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void deg2pix() {
+        // the 12 base pixels
+        assertEquals(4, DuckDbUDF.deg2pix(0, 0, 0));
+        assertEquals(0, DuckDbUDF.deg2pix(0, 0, 89.9));
+        assertEquals(3, DuckDbUDF.deg2pix(0, 300, 89.9));
+        assertEquals(8, DuckDbUDF.deg2pix(0, 0, -89.9));
+        assertEquals(DuckDbUDF.deg2pix(12, 0, 45), DuckDbUDF.deg2pix(12, 360, 45));
+
+        // nested; a pixel at a coarser order is the finer pixel shifted by 2 bits per order
+        Random rand = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            double ra = rand.nextDouble() * 360;
+            double dec = Math.toDegrees(Math.asin(2 * rand.nextDouble() - 1));
+            assertEquals(DuckDbUDF.deg2pix(10, ra, dec), DuckDbUDF.deg2pix(12, ra, dec) >> 4);
+        }
+    }
+
     /**
      * This function test only the expected data among the actual data returned
      * For each expected pixel, it will then call fetch the points in that pixel
@@ -9,13 +9,19 @@ import edu.caltech.ipac.firefly.core.FileAnalysisReport;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.server.util.StopWatch;
 import edu.caltech.ipac.firefly.util.FileLoader;
+import edu.caltech.ipac.table.io.TableParseHandler;
 import edu.caltech.ipac.table.io.VoTableReader;
 import org.apache.logging.log4j.Level;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
 
 /**
  * @author loi
@@ -36,6 +42,61 @@ public class VoTableReaderTest extends ConfigTest {
 
 
 
+    @Test
+    public void streamedTables() throws Exception {
+        // the same 2 rows, as TABLEDATA and as BINARY2; the second row has a null id and a null mag
+        ByteBuffer bin = ByteBuffer.allocate(128);
+        bin.put((byte) 0).putInt(1).putInt(3).put("m31".getBytes()).putFloat(1.5f).putShort((short) 1).putShort((short) 2).putShort((short) 3);
+        bin.put((byte) 0x20).putInt(-99).putInt(0).putFloat(0f).putShort((short) 4).putShort((short) 5).putShort((short) 6);
+        String fields = """
+                <FIELD name="id" datatype="int"><VALUES null="-99"/></FIELD>
+                <FIELD name="name" datatype="char" arraysize="*"/>
+                <FIELD name="mag" datatype="float" unit="mag"/>
+                <FIELD name="flags" datatype="short" arraysize="3"/>
+                """;
+        String votable = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <VOTABLE version="1.4" xmlns="http://www.ivoa.net/xml/VOTable/v1.3">
+                <RESOURCE type="results">
+                  <TABLE name="tabledata">%s
+                    <DATA><TABLEDATA>
+                      <TR><TD>1</TD><TD>m31</TD><TD>1.5</TD><TD>1 2 3</TD></TR>
+                      <TR><TD>-99</TD><TD></TD><TD>NaN</TD><TD>4 5 6</TD></TR>
+                    </TABLEDATA></DATA>
+                  </TABLE>
+                  <TABLE name="binary2">%s
+                    <DATA><BINARY2><STREAM encoding="base64">%s</STREAM></BINARY2></DATA>
+                  </TABLE>
+                </RESOURCE>
+                </VOTABLE>
+                """.formatted(fields, fields, Base64.getMimeEncoder().encodeToString(Arrays.copyOf(bin.array(), bin.position())));
+        File file = File.createTempFile("streamed-", ".xml");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), votable);
+
+        DataGroup[] tables = VoTableReader.voToDataGroups(file.getPath());
+        Assert.assertEquals("Number of tables", 2, tables.length);
+        for (DataGroup table : tables) {
+            Assert.assertEquals("Number of rows", 2, table.size());
+            Assert.assertEquals("column unit", "mag", table.getDataDefintion("mag").getUnits());
+            Assert.assertEquals("cell (id, 0)", 1, table.getData("id", 0));
+            Assert.assertEquals("cell (name, 0)", "m31", table.getData("name", 0));
+            Assert.assertEquals("cell (mag, 0)", 1.5f, table.getData("mag", 0));
+            Assert.assertArrayEquals("cell (flags, 1)", new short[]{4, 5, 6}, (short[]) table.getData("flags", 1));
+            Assert.assertNull("cell (id, 1)", table.getData("id", 1));
+            Assert.assertNull("cell (mag, 1)", table.getData("mag", 1));
+        }
+
+        // only the given columns, in the given order
+        TableParseHandler.Memory handler = new TableParseHandler.Memory(false, false);
+        VoTableReader.parse(handler, file.getPath(), new String[]{"mag", "id", "not-a-column"}, 1);
+        DataGroup table = handler.getTable(0);
+        Assert.assertEquals("Number of columns", 2, table.getDataDefinitions().length);
+        Assert.assertEquals("first column", "mag", table.getDataDefinitions()[0].getKeyName());
+        Assert.assertEquals("cell (mag, 0)", 1.5f, table.getData("mag", 0));
+        Assert.assertEquals("cell (id, 0)", 1, table.getData("id", 0));
+    }
+
     @Category({TestCategory.Perf.class})
     @Test
     public void perfTestMidSize() throws Exception {
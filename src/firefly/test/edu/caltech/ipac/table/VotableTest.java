@@ -6,12 +6,17 @@ package edu.caltech.ipac.table;
 import edu.caltech.ipac.firefly.ConfigTest;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.util.FileLoader;
+import edu.caltech.ipac.table.io.BatchedTable;
 import edu.caltech.ipac.table.io.VoTableReader;
+import edu.caltech.ipac.table.io.VoTableWriter;
+import edu.caltech.ipac.util.FormatUtil;
 import org.json.simple.JSONObject;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -80,6 +85,40 @@ public class VotableTest extends ConfigTest {
         }
     }
 
+    @Test
+    public void batchedWriteTest() throws IOException {
+        // written 2 rows at a time, it should read back the same as the whole table written at once
+        DataGroup data = VoTableReader.voToDataGroups(testFile.getAbsolutePath())[0];
+        DataGroup headers = data.subset(0, 1);
+        BatchedTable table = new BatchedTable() {
+            public DataGroup getHeaders() { return headers; }
+            public long getRowCount() { return data.size(); }
+            public Batches batches() {
+                int[] next = {0};
+                return () -> {
+                    if (next[0] >= data.size()) return null;
+                    next[0] += 2;
+                    return data.subset(next[0] - 2, Math.min(next[0], data.size()));
+                };
+            }
+        };
+        for (FormatUtil.Format format : List.of(FormatUtil.Format.VO_TABLE_TABLEDATA, FormatUtil.Format.VO_TABLE_BINARY2)) {
+            ByteArrayOutputStream whole = new ByteArrayOutputStream();
+            VoTableWriter.save(whole, data, format);
+            ByteArrayOutputStream batched = new ByteArrayOutputStream();
+            VoTableWriter.save(batched, table, format);
+
+            DataGroup expected = VoTableReader.voToDataGroups(new ByteArrayInputStream(whole.toByteArray()), false)[0];
+            DataGroup actual = VoTableReader.voToDataGroups(new ByteArrayInputStream(batched.toByteArray()), false)[0];
+            verifyTableData(actual);
+            for (int r = 0; r < expected.size(); r++) {
+                for (DataType dt : expected.getDataDefinitions()) {
+                    Assert.assertEquals(format + " " + dt.getKeyName(), expected.getData(dt.getKeyName(), r), actual.getData(dt.getKeyName(), r));
+                }
+            }
+        }
+    }
+
     private void verifyTableData(DataGroup data) {
         // test table row and column count
         Assert.assertEquals("Number of rows:", 3, data.size());
@@ -7,6 +7,8 @@ package edu.caltech.ipac.util.cache;
 import edu.caltech.ipac.firefly.ConfigTest;
 import edu.caltech.ipac.firefly.core.RedisService;
 import edu.caltech.ipac.firefly.data.userdata.UserInfo;
+import edu.caltech.ipac.firefly.server.cache.DistribMapCache;
+import edu.caltech.ipac.firefly.server.cache.DistributedCache;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import org.apache.logging.log4j.Level;
 import org.junit.After;
@@ -16,6 +18,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static edu.caltech.ipac.util.cache.Cache.fileCheck;
 import static org.junit.Assert.*;
@@ -90,6 +95,80 @@ public class CacheTest extends ConfigTest {
         testObject(cache);
     }
 
+    @Test
+    public void distributedBatch() {
+        testBatch(CacheManager.getDistributed());
+        testBatch(CacheManager.getDistributedMap("test"));
+        testBatch(CacheManager.getLocal());
+    }
+
+    @Test
+    public void nearCache() {
+        Cache<String> near = new DistribMapCache<String>("nearTest").withNearCache(10, 60);
+        Cache<String> remote = CacheManager.getDistributedMap("nearTest");
+        near.put(new StringKey("a"), "1");
+        assertEquals("1", remote.get(new StringKey("a")));      // written through
+
+        remote.put(new StringKey("b"), "2");
+        assertEquals("2", near.get(new StringKey("b")));        // read through
+        near.remove(new StringKey("b"));
+        assertNull(remote.get(new StringKey("b")));
+        assertNull(near.get(new StringKey("b")));
+    }
+
+    @Test
+    public void scanAndIndex() {
+        DistributedCache<UserInfo> cache = new DistribMapCache<UserInfo>("indexTest").withIndex(UserInfo::getEmail);
+        for (int i = 0; i < 1200; i++) {        // more than one SCAN page
+            UserInfo u = new UserInfo("user" + i, "password");
+            u.setEmail(i % 3 == 0 ? "a@acme.com" : "b@acme.com");
+            cache.put(new StringKey(u.getLoginName()), u);
+        }
+        assertEquals(1200, cache.getKeys().stream().distinct().count());
+        assertEquals(400, cache.getAllOf("a@acme.com").size());
+        assertEquals(800, cache.getAllOf("b@acme.com").size());
+
+        cache.remove(new StringKey("user0"));
+        UserInfo moved = cache.get(new StringKey("user1"));
+        moved.setEmail("a@acme.com");
+        cache.put(new StringKey("user1"), moved);
+        assertEquals(400, cache.getAllOf("a@acme.com").size());
+        assertEquals(799, cache.getAllOf("b@acme.com").size());
+    }
+
+    @Test
+    public void deflateSerializer() throws Exception {
+        var serializer = new DistributedCache.DeflateSerializer(new DistributedCache.JavaSerializer(), 10);
+        String text = "abc".repeat(1000);
+        String s = serializer.serialize(text);
+        assertTrue(s.length() < text.length());
+        assertEquals(text, serializer.deserialize(s));
+        assertEquals("short", serializer.deserialize(serializer.serialize("short")));
+        assertEquals(text, serializer.deserialize(text));       // values written without compression are still readable
+
+        UserInfo u = new UserInfo("userId", "password");
+        assertEquals(u.toString(), serializer.deserialize(serializer.serialize(u)).toString());
+    }
+
+    private void testBatch(Cache<Object> cache) {
+        Map<StringKey, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) values.put(new StringKey("batch" + i), i % 2 == 0 ? i : "v" + i);
+        cache.putAll(values);
+
+        var keys = List.of(new StringKey("batch0"), new StringKey("batch1"), new StringKey("not-found"), new StringKey("batch19"));
+        Map<CacheKey, Object> found = cache.getAll(keys);
+        assertEquals(3, found.size());
+        assertEquals(0, found.get(new StringKey("batch0")));
+        assertEquals("v1", found.get(new StringKey("batch1")));
+        assertEquals("v19", found.get(new StringKey("batch19")));
+        assertFalse(found.containsKey(new StringKey("not-found")));
+
+        Map<StringKey, Object> removes = new LinkedHashMap<>();
+        removes.put(new StringKey("batch0"), null);
+        cache.putAll(removes);
+        assertNull(cache.get(new StringKey("batch0")));
+        assertEquals("v1", cache.get(new StringKey("batch1")));
+    }
 
     private void testObject(Cache cache) {
         cache.put(new StringKey("1"), 1);
@@ -174,6 +174,26 @@ public class HistogramTest extends ConfigTest {
 
     }
 
+    @Test
+    public void testWriteRead() throws IOException {
+        File f = File.createTempFile("histogramTest", ".hist");
+        try {
+            hist.write(f, 1234L);
+            Assert.assertNull("different data version", Histogram.read(f, 1L));
+
+            Histogram saved = Histogram.read(f, 1234L);
+            Assert.assertNotNull(saved);
+            Assert.assertArrayEquals(hist.getHistogramArray(), saved.getHistogramArray());
+            Assert.assertArrayEquals(hist.getTblArray(), saved.getTblArray(), delta);
+            Assert.assertEquals(hist.get_pct(0.5, true), saved.get_pct(0.5, true), delta);
+            Assert.assertEquals(hist.getDNMin(), saved.getDNMin(), delta);
+            Assert.assertEquals(hist.getDNMax(), saved.getDNMax(), delta);
+            Assert.assertEquals(hist.getLargeBinPercent(), saved.getLargeBinPercent(), delta);
+        } finally {
+            f.delete();
+        }
+    }
+
     /**
      * This method calculates the expected pct value
      * @param histArray
@@ -0,0 +1,119 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.visualize.plot.Histogram;
+import edu.caltech.ipac.visualize.plot.RangeValues;
+import edu.caltech.ipac.visualize.plot.Zscale;
+import nom.tam.fits.Fits;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checks that the memory-mapped pixels are the same as the ones read by nom.tam
+ */
+public class MappedPixelDataTest {
+
+    private File fitsFile;
+
+    @Before
+    public void setUp() throws IOException {
+        fitsFile = File.createTempFile("mappedPixelTest", ".fits");
+    }
+
+    @After
+    public void tearDown() {
+        fitsFile.delete();
+    }
+
+    @Test
+    public void testCubePlane() throws Exception {
+        short[][][] cube = new short[2][3][4];      // 2 planes, naxis2=3, naxis1=4
+        for (int p = 0; p < 2; p++)
+            for (int y = 0; y < 3; y++)
+                for (int x = 0; x < 4; x++) cube[p][y][x] = (short) (p * 100 - y * 10 + x - 5);
+        writeFits(cube);
+
+        for (int plane = 0; plane < 2; plane++) {
+            float[] expected = FitsReadUtil.dataArrayFromHDUAndPlane(fitsFile, 0, plane);
+            MappedPixelData mapped = MappedPixelData.map(fitsFile, 0, plane);
+            Assert.assertNotNull(mapped);
+            Assert.assertArrayEquals(expected, mapped.readPlane(false), 0f);
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i], mapped.get(i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testFlipped() throws Exception {
+        float[][] data = new float[][]{{1, 2, 3}, {4, Float.NaN, 6}};
+        writeFits(data);
+
+        MappedPixelData mapped = MappedPixelData.map(fitsFile, 0, 0);
+        Assert.assertNotNull(mapped);
+        Assert.assertArrayEquals(new float[]{1, 2, 3, 4, Float.NaN, 6}, mapped.readPlane(false), 0f);
+        Assert.assertArrayEquals(new float[]{4, Float.NaN, 6, 1, 2, 3}, mapped.readPlane(true), 0f);
+    }
+
+    @Test
+    public void testZscaleHistColors() throws Exception {
+        float[][] data = new float[40][50];
+        for (int y = 0; y < 40; y++)
+            for (int x = 0; x < 50; x++) data[y][x] = (x * 7 + y * 13) % 97;
+        writeFits(data);
+        RangeValues zscale = new RangeValues(RangeValues.ZSCALE, 0, RangeValues.ZSCALE, 0, Double.NaN, 2.0,
+                RangeValues.STRETCH_LINEAR, 25, 600, 120, (short) 0, Double.NaN, 1);
+
+        byte[] expected;
+        try (Fits fits = new Fits(fitsFile)) {       // no file, so the pixels are kept in memory
+            FitsRead fr = FitsReadFactory.createFitsReadArray(fits)[0];
+            expected = fr.getHistColors(fr.getHistogram(), zscale);
+        }
+        try (Fits fits = new Fits(fitsFile)) {
+            FitsRead fr = FitsReadFactory.createFitsReadArray(fits.read(), fitsFile, true)[0];
+            Histogram hist = fr.getHistogram();
+            Assert.assertArrayEquals(expected, fr.getHistColors(hist, zscale));
+        }
+    }
+
+    @Test
+    public void testZscaleByOrientation() {
+        int nx = 50, ny = 40;
+        float[] standard = new float[nx * ny];
+        float[] flipped = new float[nx * ny];
+        for (int y = 0; y < ny; y++) {
+            for (int x = 0; x < nx; x++) {
+                standard[y * nx + x] = (y * y * (x + 1)) % 101;
+                flipped[(ny - 1 - y) * nx + x] = standard[y * nx + x];
+            }
+        }
+        RangeValues zscale = new RangeValues(RangeValues.ZSCALE, 0, RangeValues.ZSCALE, 0, Double.NaN, 2.0,
+                RangeValues.STRETCH_LINEAR, 25, 600, 120, (short) 0, Double.NaN, 1);
+        String dataKey = "zscaleTest--0--0";
+
+        // each orientation gets its own result, whichever is computed first
+        Zscale.ZscaleRetval flip = ImageStretchUtil.getZscaleValue(flipped, dataKey + "--flipped", nx, ny, Double.NaN, zscale);
+        Zscale.ZscaleRetval std = ImageStretchUtil.getZscaleValue(standard, dataKey + "--standard", nx, ny, Double.NaN, zscale);
+        Assert.assertEquals(ImageStretchUtil.getZscaleValue(flipped, null, nx, ny, Double.NaN, zscale), flip);
+        Assert.assertEquals(ImageStretchUtil.getZscaleValue(standard, null, nx, ny, Double.NaN, zscale), std);
+        Assert.assertSame(std, ImageStretchUtil.getZscaleValue(standard, dataKey + "--standard", nx, ny, Double.NaN, zscale));
+
+        ImageStretchUtil.clearZscale(standard, dataKey);
+        Assert.assertNotSame(std, ImageStretchUtil.getZscaleValue(standard, dataKey + "--standard", nx, ny, Double.NaN, zscale));
+    }
+
+    private void writeFits(Object data) throws Exception {
+        try (Fits fits = new Fits()) {
+            fits.addHDU(Fits.makeHDU(data));
+            fits.write(fitsFile);
+        }
+    }
+}